@@ -0,0 +1,48 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes a batch track request body, as batchTrackEvents does, for batches of 1, 100 and 10k events.
+ * Run with -prof gc to see allocation per batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchEventsBodyBenchmark {
+
+  @Param({"1", "100", "10000"})
+  public int numberOfEvents;
+
+  private List<Event> events;
+
+  @Setup
+  public void setUp() {
+    events = BenchmarkData.createEvents(numberOfEvents);
+  }
+
+  @Benchmark
+  public long produceBatchEventsBody() throws IOException {
+    BenchmarkData.CountingOutputStream output = new BenchmarkData.CountingOutputStream();
+    EventHubClient.produceBatchEventsBody(events).write(output);
+    return output.count;
+  }
+}
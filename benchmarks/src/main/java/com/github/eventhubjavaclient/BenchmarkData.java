@@ -0,0 +1,90 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import org.joda.time.DateTime;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events and response bodies shared by the benchmarks, shaped like real EventHub traffic.
+ */
+public class BenchmarkData {
+
+  private static final String[] EVENT_TYPES = new String[] {"signup", "click", "submission", "email_sent"};
+  private static final DateTime DATE = new DateTime(2014, 11, 22, 0, 0);
+
+  public static Event createEvent(final int number) {
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put("experiment", "signup_v" + (number % 3));
+    properties.put("treatment", number % 2 == 0 ? "control" : "variant");
+    properties.put("page", "/courses/" + number);
+    return new Event(EVENT_TYPES[number % EVENT_TYPES.length], "generated_id_" + number, DATE, properties);
+  }
+
+  public static List<Event> createEvents(final int count) {
+    List<Event> events = new ArrayList<Event>(count);
+    for(int i = 0; i < count; i++) {
+      events.add(createEvent(i));
+    }
+    return events;
+  }
+
+  public static String createStringArrayJson(final int count) {
+    StringBuilder sb = new StringBuilder("[");
+    for(int i = 0; i < count; i++) {
+      if(i > 0)
+        sb.append(',');
+      sb.append("\"value_").append(i).append('"');
+    }
+    return sb.append(']').toString();
+  }
+
+  public static String createIntArrayJson(final int count) {
+    StringBuilder sb = new StringBuilder("[");
+    for(int i = 0; i < count; i++) {
+      if(i > 0)
+        sb.append(',');
+      sb.append(count * 1000 - i);
+    }
+    return sb.append(']').toString();
+  }
+
+  public static String createIntTableJson(final int rows) {
+    StringBuilder sb = new StringBuilder("[");
+    for(int row = 0; row < rows; row++) {
+      if(row > 0)
+        sb.append(',');
+      sb.append(createIntArrayJson(rows - row));
+    }
+    return sb.append(']').toString();
+  }
+
+  public static String createUsersJson(final int count) {
+    StringBuilder sb = new StringBuilder("[");
+    for(int i = 0; i < count; i++) {
+      if(i > 0)
+        sb.append(',');
+      sb.append("{\"external_user_id\":\"user").append(i).append("@example.com\",\"plan\":\"pro\"}");
+    }
+    return sb.append(']').toString();
+  }
+
+  /**
+   * Counts and discards what is written, so encoding can be measured without the cost of keeping the output.
+   */
+  public static class CountingOutputStream extends OutputStream {
+    public long count;
+
+    @Override public void write(final int b) {
+      count++;
+    }
+
+    @Override public void write(final byte[] b, final int off, final int len) {
+      count += len;
+    }
+  }
+}
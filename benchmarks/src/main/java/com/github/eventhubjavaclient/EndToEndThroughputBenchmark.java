@@ -0,0 +1,81 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second through a real client and connection pool against an in-process stub server. Use -t to change the
+ * number of calling threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class EndToEndThroughputBenchmark {
+
+  private static final String[] FUNNEL_STEPS = new String[] {"signup", "click", "submission"};
+
+  private StubServer server;
+  private EventHubClient client;
+  private Event event;
+  private List<Event> batch;
+  private DateTime startDate;
+  private DateTime endDate;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new StubServer(16);
+    server.setBody("/events/types", BenchmarkData.createStringArrayJson(50));
+    server.setBody("/events/funnel", BenchmarkData.createIntArrayJson(FUNNEL_STEPS.length));
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), 10000, 10000);
+    event = BenchmarkData.createEvent(1);
+    batch = BenchmarkData.createEvents(100);
+    endDate = new DateTime(2014, 12, 25, 0, 0);
+    startDate = endDate.minusDays(30);
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Benchmark
+  public void trackEvent() throws Exception {
+    client.trackEvent(event);
+  }
+
+  @Benchmark
+  public void batchTrack100Events() throws Exception {
+    client.batchTrackEvents(batch);
+  }
+
+  @Benchmark
+  public String[] getEventTypes() throws Exception {
+    return client.getEventTypes();
+  }
+
+  @Benchmark
+  public int[] retrieveEventFunnelCounts() throws Exception {
+    return client.retrieveEventFunnelCounts(startDate, endDate, FUNNEL_STEPS, 7);
+  }
+}
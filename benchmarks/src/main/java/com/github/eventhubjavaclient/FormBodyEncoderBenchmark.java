@@ -0,0 +1,65 @@
+package com.github.eventhubjavaclient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a filter request body with FormBodyEncoder and with the URLEncoder plus StringBuilder equivalent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormBodyEncoderBenchmark {
+
+  @Param({"1", "10", "100"})
+  public int numberOfFilters;
+
+  @Param({"ascii", "unicode"})
+  public String values;
+
+  private Map<String, String> filters;
+
+  @Setup
+  public void setUp() {
+    filters = new LinkedHashMap<String, String>();
+    String suffix = "ascii".equals(values) ? "value with spaces & symbols" : "valeur ça coûte 10€";
+    for(int i = 0; i < numberOfFilters; i++) {
+      filters.put("key" + i, suffix + i);
+    }
+  }
+
+  @Benchmark
+  public byte[] formBodyEncoder() {
+    return EventHubClient.produceFiltersRequestBody(filters, "ufk[]", "ufv[]");
+  }
+
+  @Benchmark
+  public byte[] urlEncoder() throws UnsupportedEncodingException {
+    StringBuilder keys = new StringBuilder();
+    StringBuilder values = new StringBuilder();
+    for(Map.Entry<String, String> entry : filters.entrySet()) {
+      keys.append(URLEncoder.encode("ufk[]", "UTF-8")).append('=').append(URLEncoder.encode(entry.getKey(), "UTF-8")).append('&');
+      values.append(URLEncoder.encode("ufv[]", "UTF-8")).append('=').append(URLEncoder.encode(entry.getValue(), "UTF-8")).append('&');
+    }
+    values.setLength(values.length() - 1);
+    return keys.append(values).toString().getBytes("UTF-8");
+  }
+}
@@ -0,0 +1,68 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses response bodies the way the client does: key and value lists, funnel counts, cohort tables and found users.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseParsingBenchmark {
+
+  @Param({"10", "1000"})
+  public int size;
+
+  private ResponseParser parser;
+  private String stringArrayJson;
+  private String intArrayJson;
+  private String intTableJson;
+  private String usersJson;
+
+  @Setup
+  public void setUp() {
+    parser = new ResponseParser();
+    stringArrayJson = BenchmarkData.createStringArrayJson(size);
+    intArrayJson = BenchmarkData.createIntArrayJson(size);
+    // A cohort table is square-ish so keep the element count comparable with the arrays
+    intTableJson = BenchmarkData.createIntTableJson((int) Math.sqrt(size * 2));
+    usersJson = BenchmarkData.createUsersJson(size);
+  }
+
+  @Benchmark
+  public String[] extractStringArray() throws BadlyFormedResponseBodyException {
+    return parser.extractFromBody(stringArrayJson, String[].class);
+  }
+
+  @Benchmark
+  public int[] extractIntArray() throws BadlyFormedResponseBodyException {
+    return parser.extractFromBody(intArrayJson, int[].class);
+  }
+
+  @Benchmark
+  public int[][] extractIntTable() throws BadlyFormedResponseBodyException {
+    return parser.extractFromBody(intTableJson, int[][].class);
+  }
+
+  @Benchmark
+  public List<String> extractUserNames() throws BadlyFormedResponseBodyException {
+    return parser.extractUserNames(usersJson);
+  }
+}
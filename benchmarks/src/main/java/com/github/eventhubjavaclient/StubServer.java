@@ -0,0 +1,73 @@
+package com.github.eventhubjavaclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An in-process HTTP server answering every path with a fixed body, so end to end benchmarks measure the client and the
+ * loopback network rather than a real EventHub.
+ */
+public class StubServer {
+
+  private static final byte[] EMPTY_ARRAY = "[]".getBytes();
+
+  static {
+    // Without TCP_NODELAY small responses wait on the client's delayed ACK, capping each connection at ~25 requests/s
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, byte[]> bodies = new ConcurrentHashMap<String, byte[]>();
+
+  public StubServer(final int threads) throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+    executor = Executors.newFixedThreadPool(threads);
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override public void handle(final HttpExchange exchange) throws IOException {
+        respond(exchange);
+      }
+    });
+    server.start();
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public void setBody(final String path, final String body) {
+    bodies.put(path, body.getBytes());
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void respond(final HttpExchange exchange) throws IOException {
+    InputStream in = exchange.getRequestBody();
+    byte[] discard = new byte[8192];
+    while(in.read(discard) != -1) {
+      // Drain the request so the connection can be reused
+    }
+    byte[] body = bodies.get(exchange.getRequestURI().getPath());
+    if(body == null)
+      body = EMPTY_ARRAY;
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, body.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(body);
+    out.close();
+  }
+}
@@ -0,0 +1,100 @@
+package com.github.eventhubjavaclient.event;
+
+import com.github.eventhubjavaclient.BenchmarkData;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes and deserializes single events and a 100 event timeline through EventSerializer and EventDeserializer,
+ * with and without interning, and single events through EventCodec once its dictionary holds the event's type and keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventSerializationBenchmark {
+
+  private static final Type COLLECTION_TYPE = new TypeToken<Collection<Event>>(){}.getType();
+
+  private Gson gson;
+  private Gson interningGson;
+  private Event event;
+  private String eventJson;
+  private String timelineJson;
+  private EventCodec codec;
+  private byte[] encodedEvent;
+
+  @Setup
+  public void setUp() {
+    GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Event.class, new EventDeserializer());
+    gsonBuilder.registerTypeAdapter(Event.class, new EventSerializer());
+    gson = gsonBuilder.create();
+    interningGson = new GsonBuilder().registerTypeAdapter(Event.class, new EventDeserializer(new StringInterner())).create();
+    event = BenchmarkData.createEvent(1);
+    eventJson = gson.toJson(event, Event.class);
+    List<Event> timeline = BenchmarkData.createEvents(100);
+    timelineJson = gson.toJson(timeline, COLLECTION_TYPE);
+    codec = new EventCodec();
+    codec.encode(event);
+    encodedEvent = codec.encode(event);
+  }
+
+  @Benchmark
+  public String serializeEvent() {
+    return gson.toJson(event, Event.class);
+  }
+
+  @Benchmark
+  public String writeEvent() throws IOException {
+    StringWriter writer = new StringWriter(256);
+    EventSerializer.writeEvent(new JsonWriter(writer), event);
+    return writer.toString();
+  }
+
+  @Benchmark
+  public Event deserializeEvent() {
+    return gson.fromJson(eventJson, Event.class);
+  }
+
+  @Benchmark
+  public Collection<Event> deserializeTimeline() {
+    return gson.fromJson(timelineJson, COLLECTION_TYPE);
+  }
+
+  @Benchmark
+  public Collection<Event> deserializeTimelineInterning() {
+    return interningGson.fromJson(timelineJson, COLLECTION_TYPE);
+  }
+
+  @Benchmark
+  public byte[] encodeEvent() {
+    return codec.encode(event);
+  }
+
+  @Benchmark
+  public Event decodeEvent() {
+    return codec.decode(encodedEvent);
+  }
+}
@@ -0,0 +1,150 @@
+package com.github.eventhubjavaclient;
+
+/**
+ * Configuration for an {@link AdaptiveBatchSender}. Every setting has a default so only the values that matter need setting.
+ * <p>
+ * Sub-batches are limited both in events and in encoded bytes. After each sub-batch that took no longer than the
+ * target latency, any limit it filled grows by its additive increase. After a slow or failed one, both limits are
+ * multiplied by the decrease factor.
+ */
+public class AdaptiveBatchConfig {
+
+  public static final int DEFAULT_INITIAL_BATCH_SIZE = 100;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 10000;
+  public static final int DEFAULT_BATCH_SIZE_INCREASE = 50;
+  public static final long DEFAULT_INITIAL_BATCH_BYTES = 256 * 1024;
+  public static final long DEFAULT_MAX_BATCH_BYTES = 4 * 1024 * 1024;
+  public static final long DEFAULT_BATCH_BYTES_INCREASE = 64 * 1024;
+  public static final double DEFAULT_DECREASE_FACTOR = 0.5;
+  public static final long DEFAULT_TARGET_LATENCY_MILLIS = 1000;
+
+  private int initialBatchSize = DEFAULT_INITIAL_BATCH_SIZE;
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private int batchSizeIncrease = DEFAULT_BATCH_SIZE_INCREASE;
+  private long initialBatchBytes = DEFAULT_INITIAL_BATCH_BYTES;
+  private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+  private long batchBytesIncrease = DEFAULT_BATCH_BYTES_INCREASE;
+  private double decreaseFactor = DEFAULT_DECREASE_FACTOR;
+  private long targetLatencyMillis = DEFAULT_TARGET_LATENCY_MILLIS;
+
+  public int getInitialBatchSize() {
+    return initialBatchSize;
+  }
+
+  /**
+   * @param initialBatchSize The most events in a sub-batch before any have been sent. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setInitialBatchSize(final int initialBatchSize) {
+    checkPositive(initialBatchSize, "initialBatchSize");
+    this.initialBatchSize = initialBatchSize;
+    return this;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * @param maxBatchSize The most events a sub-batch can ever hold. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setMaxBatchSize(final int maxBatchSize) {
+    checkPositive(maxBatchSize, "maxBatchSize");
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  public int getBatchSizeIncrease() {
+    return batchSizeIncrease;
+  }
+
+  /**
+   * @param batchSizeIncrease How many events the limit grows by after a full, fast sub-batch. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setBatchSizeIncrease(final int batchSizeIncrease) {
+    checkPositive(batchSizeIncrease, "batchSizeIncrease");
+    this.batchSizeIncrease = batchSizeIncrease;
+    return this;
+  }
+
+  public long getInitialBatchBytes() {
+    return initialBatchBytes;
+  }
+
+  /**
+   * @param initialBatchBytes The most encoded bytes in a sub-batch before any have been sent. A single event bigger
+   *                          than the limit is still sent, on its own. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setInitialBatchBytes(final long initialBatchBytes) {
+    checkPositive(initialBatchBytes, "initialBatchBytes");
+    this.initialBatchBytes = initialBatchBytes;
+    return this;
+  }
+
+  public long getMaxBatchBytes() {
+    return maxBatchBytes;
+  }
+
+  /**
+   * @param maxBatchBytes The most encoded bytes a sub-batch can ever hold. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setMaxBatchBytes(final long maxBatchBytes) {
+    checkPositive(maxBatchBytes, "maxBatchBytes");
+    this.maxBatchBytes = maxBatchBytes;
+    return this;
+  }
+
+  public long getBatchBytesIncrease() {
+    return batchBytesIncrease;
+  }
+
+  /**
+   * @param batchBytesIncrease How many bytes the limit grows by after a full, fast sub-batch. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setBatchBytesIncrease(final long batchBytesIncrease) {
+    checkPositive(batchBytesIncrease, "batchBytesIncrease");
+    this.batchBytesIncrease = batchBytesIncrease;
+    return this;
+  }
+
+  public double getDecreaseFactor() {
+    return decreaseFactor;
+  }
+
+  /**
+   * @param decreaseFactor What both limits are multiplied by after a slow or failed sub-batch. Must be greater than 0
+   *                       and less than 1.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setDecreaseFactor(final double decreaseFactor) {
+    if(!(decreaseFactor > 0 && decreaseFactor < 1))
+      throw new IllegalArgumentException("decreaseFactor must be greater than 0 and less than 1 but was " + decreaseFactor);
+    this.decreaseFactor = decreaseFactor;
+    return this;
+  }
+
+  public long getTargetLatencyMillis() {
+    return targetLatencyMillis;
+  }
+
+  /**
+   * @param targetLatencyMillis How long a sub-batch may take before the limits are cut. Keep it well inside the
+   *                            client's read timeout. Must be greater than 0.
+   * @return This config
+   */
+  public AdaptiveBatchConfig setTargetLatencyMillis(final long targetLatencyMillis) {
+    checkPositive(targetLatencyMillis, "targetLatencyMillis");
+    this.targetLatencyMillis = targetLatencyMillis;
+    return this;
+  }
+
+  private static void checkPositive(final long value, final String name) {
+    if(value < 1)
+      throw new IllegalArgumentException(name + " must be greater than 0 but was " + value);
+  }
+}
@@ -0,0 +1,235 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventSerializer;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch tracks lists of events of any length by splitting them into sub-batches whose size adapts to how the server
+ * copes, to get the most events through per second without requests running into the read timeout. Sub-batch limits,
+ * in events and encoded bytes, grow additively while requests come back within the target latency and are cut by a
+ * factor when one is slow or fails with a sign of load: a 5xx, a 429 or a timeout (AIMD). A 413 cuts only the bytes
+ * limit, and other failures, such as a 400 for a bad event, leave the limits alone. The limits are shared by every
+ * thread using the sender.
+ */
+public class AdaptiveBatchSender {
+
+  // Static
+
+  private static final byte[] EVENTS_PREFIX = "events=%5B".getBytes();
+  private static final byte[] EVENT_SEPARATOR = "%2C".getBytes();
+  private static final byte[] EVENTS_SUFFIX = "%5D".getBytes();
+  private static final int PAYLOAD_TOO_LARGE = 413;
+  private static final int TOO_MANY_REQUESTS = 429;
+
+  /**
+   * Creates a sender with the default config.
+   * @param client The client used to send sub-batches. Must be NotNull.
+   * @return The sender
+   */
+  public static AdaptiveBatchSender createDefaultSender(final EventHubClient client) {
+    return createCustomSender(client, new AdaptiveBatchConfig());
+  }
+
+  /**
+   * Creates a sender with the provided config.
+   * @param client The client used to send sub-batches. Must be NotNull.
+   * @param config The configuration for the sender. Must be NotNull.
+   * @return The sender
+   */
+  public static AdaptiveBatchSender createCustomSender(final EventHubClient client, final AdaptiveBatchConfig config) {
+    if(client == null)
+      throw new IllegalArgumentException("client must not be null");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    return new AdaptiveBatchSender(client, config);
+  }
+
+  // Instance
+
+  private final EventHubClient client;
+  private final int maxBatchSize;
+  private final int batchSizeIncrease;
+  private final long maxBatchBytes;
+  private final long batchBytesIncrease;
+  private final double decreaseFactor;
+  private final long targetLatencyNanos;
+
+  // Guarded by this
+  private int batchSizeLimit;
+  private long batchBytesLimit;
+
+  private AdaptiveBatchSender(final EventHubClient client, final AdaptiveBatchConfig config) {
+    this.client = client;
+    this.maxBatchSize = config.getMaxBatchSize();
+    this.batchSizeIncrease = config.getBatchSizeIncrease();
+    this.maxBatchBytes = config.getMaxBatchBytes();
+    this.batchBytesIncrease = config.getBatchBytesIncrease();
+    this.decreaseFactor = config.getDecreaseFactor();
+    this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(config.getTargetLatencyMillis());
+    this.batchSizeLimit = Math.min(config.getInitialBatchSize(), maxBatchSize);
+    this.batchBytesLimit = Math.min(config.getInitialBatchBytes(), maxBatchBytes);
+  }
+
+  /**
+   * Sends the events in order, in as many sub-batches as the current limits call for. Each event is encoded once, up
+   * front, so its size is known when sub-batches are cut.
+   * @param events The events to track. Must be NotNull and contain at least one event, each with a NotNull event type
+   *               and external user ID.
+   * @return What was sent, and the error that stopped sending if any.
+   * @throws IllegalInputException Thrown if illegal input is provided.
+   */
+  public BatchTrackResult send(final List<Event> events) throws IllegalInputException {
+    EventHubClient.checkNotEmpty(events);
+    for(Event event : events) {
+      EventHubClient.checkEvent(event);
+    }
+    byte[][] encodedEvents = encode(events);
+
+    int sent = 0;
+    int requests = 0;
+    while(sent < events.size()) {
+      int end = cutSubBatch(encodedEvents, sent);
+      int size = end - sent;
+      long bytes = 0;
+      for(int i = sent; i < end; i++) {
+        bytes += encodedEvents[i].length;
+      }
+      byte[] body = joinSubBatch(encodedEvents, sent, end, bytes);
+      requests++;
+      long start = System.nanoTime();
+      try {
+        client.batchTrackEncodedEvents(body);
+      } catch(Exception e) {
+        onFailed(e);
+        return new BatchTrackResult(sent, requests, Collections.unmodifiableList(events.subList(sent, events.size())), e);
+      }
+      onSent(size, end < events.size(), System.nanoTime() - start);
+      sent = end;
+    }
+    return new BatchTrackResult(sent, requests, Collections.<Event>emptyList(), null);
+  }
+
+  /**
+   * @return The most events the next sub-batch will hold.
+   */
+  public synchronized int getBatchSizeLimit() {
+    return batchSizeLimit;
+  }
+
+  /**
+   * @return The most encoded event bytes the next sub-batch will hold.
+   */
+  public synchronized long getBatchBytesLimit() {
+    return batchBytesLimit;
+  }
+
+  private synchronized int cutSubBatch(final byte[][] encodedEvents, final int start) {
+    // A sub-batch always takes at least one event, however big
+    int end = start + 1;
+    long bytes = encodedEvents[start].length;
+    while(end < encodedEvents.length && end - start < batchSizeLimit && bytes + encodedEvents[end].length <= batchBytesLimit) {
+      bytes += encodedEvents[end].length;
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * @param cut Whether events were left for later sub-batches, so a limit held this one back.
+   */
+  private synchronized void onSent(final int size, final boolean cut, final long elapsedNanos) {
+    if(elapsedNanos > targetLatencyNanos) {
+      decrease();
+      return;
+    }
+    // Only the limit a sub-batch was held back by has shown it can grow, the last sub-batch says nothing about either
+    if(cut && size >= batchSizeLimit)
+      batchSizeLimit = Math.min(maxBatchSize, batchSizeLimit + batchSizeIncrease);
+    else if(cut)
+      batchBytesLimit = Math.min(maxBatchBytes, batchBytesLimit + batchBytesIncrease);
+  }
+
+  /**
+   * Backs off only on signs of congestion. Failures down to what the events hold, or to anything other than load, say
+   * nothing about how big sub-batches should be.
+   */
+  private synchronized void onFailed(final Exception e) {
+    if(e instanceof UnexpectedResponseCodeException) {
+      int code = ((UnexpectedResponseCodeException) e).getActualCode();
+      if(code == PAYLOAD_TOO_LARGE)
+        batchBytesLimit = Math.max(1, (long) (batchBytesLimit * decreaseFactor));
+      else if(code == TOO_MANY_REQUESTS || code >= 500)
+        decrease();
+    } else if(isTimeout(e)) {
+      decrease();
+    }
+  }
+
+  private synchronized void decrease() {
+    batchSizeLimit = Math.max(1, (int) (batchSizeLimit * decreaseFactor));
+    batchBytesLimit = Math.max(1, (long) (batchBytesLimit * decreaseFactor));
+  }
+
+  /**
+   * @return Whether connecting, waiting for a pooled connection or reading the response timed out.
+   */
+  private static boolean isTimeout(final Throwable e) {
+    for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if(cause instanceof InterruptedIOException)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Encodes each event as the percent-encoded JSON object it is in a batch track body.
+   */
+  private static byte[][] encode(final List<Event> events) {
+    byte[][] encodedEvents = new byte[events.size()][];
+    ByteArrayOutputStream output = new ByteArrayOutputStream(256);
+    Writer writer = FormBodyEncoder.encodingWriter(output);
+    try {
+      for(int i = 0; i < encodedEvents.length; i++) {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        // Matches Gson's default output, as BatchEventsRequestBody does
+        jsonWriter.setHtmlSafe(true);
+        EventSerializer.writeEvent(jsonWriter, events.get(i));
+        jsonWriter.flush();
+        encodedEvents[i] = output.toByteArray();
+        output.reset();
+      }
+    } catch(IOException e) {
+      throw new IllegalStateException("Writing to memory failed", e);
+    }
+    return encodedEvents;
+  }
+
+  private static byte[] joinSubBatch(final byte[][] encodedEvents, final int start, final int end, final long eventBytes) {
+    int length = (int) (EVENTS_PREFIX.length + eventBytes + (end - start - 1) * EVENT_SEPARATOR.length + EVENTS_SUFFIX.length);
+    byte[] body = new byte[length];
+    int position = append(body, 0, EVENTS_PREFIX);
+    for(int i = start; i < end; i++) {
+      if(i > start)
+        position = append(body, position, EVENT_SEPARATOR);
+      position = append(body, position, encodedEvents[i]);
+    }
+    append(body, position, EVENTS_SUFFIX);
+    return body;
+  }
+
+  private static int append(final byte[] body, final int position, final byte[] bytes) {
+    System.arraycopy(bytes, 0, body, position, bytes.length);
+    return position + bytes.length;
+  }
+}
@@ -0,0 +1,576 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.StringInterner;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.github.eventhubjavaclient.transport.PooledHttpTransportConfig;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.util.EntityUtils;
+import org.joda.time.DateTime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_BATCH_TRACK_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_COHORT_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_FUNNEL_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_KEYS_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_TRACK_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_TYPES_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.EVENT_VALUES_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.OK_RESPONSE;
+import static com.github.eventhubjavaclient.EventHubClient.SERVER_STATS_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_ADD_OR_UPDATE_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_ALIAS_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_FIND_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_KEYS_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_TIMELINE_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.USER_VALUES_PATH;
+import static com.github.eventhubjavaclient.EventHubClient.checkEvent;
+import static com.github.eventhubjavaclient.EventHubClient.checkEventCohortTableInput;
+import static com.github.eventhubjavaclient.EventHubClient.checkEventFunnelInput;
+import static com.github.eventhubjavaclient.EventHubClient.checkNotEmpty;
+import static com.github.eventhubjavaclient.EventHubClient.checkNotNull;
+import static com.github.eventhubjavaclient.EventHubClient.produceBatchEventsBody;
+import static com.github.eventhubjavaclient.EventHubClient.produceEventCohortTableRequestBody;
+import static com.github.eventhubjavaclient.EventHubClient.produceEventFunnelCountsRequestBody;
+import static com.github.eventhubjavaclient.EventHubClient.produceFiltersRequestBody;
+import static com.github.eventhubjavaclient.EventHubClientUtils.EVENT_HUB_DATE_FORMATTER;
+
+/**
+ * A non-blocking client for the EventHub server. Every method returns straight away with a {@link CompletableFuture}
+ * and requests are multiplexed over a small number of NIO selector threads, so hundreds of requests can be in flight
+ * without a thread each.
+ * <p>
+ * Methods and results mirror {@link EventHubClient}. Errors are delivered through the returned future rather than
+ * thrown: {@link IllegalInputException} for bad input, {@link UnexpectedResponseCodeException} for anything but a 200
+ * OK and {@link BadlyFormedResponseBodyException} for a response that cannot be parsed. Callbacks attached without an
+ * executor run on the selector threads, so should not block.
+ */
+public class AsyncEventHubClient {
+
+  // Static
+
+  public static final int DEFAULT_IO_THREAD_COUNT = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final ContentType FORM_URLENCODED = ContentType.create("application/x-www-form-urlencoded");
+
+  /**
+   * Creates a client with default connection pool settings.
+   * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @return The created and started client
+   */
+  public static AsyncEventHubClient createDefaultClient(String baseUrl, Integer connectionTimeout, Integer readTimeout) {
+    return new AsyncEventHubClient(baseUrl, connectionTimeout, readTimeout, new PooledHttpTransportConfig(), DEFAULT_IO_THREAD_COUNT);
+  }
+
+  /**
+   * Creates a client with the provided connection pool settings.
+   * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @param poolConfig Limits on the connections kept open to the server. Must be NotNull.
+   * @param ioThreadCount The number of selector threads driving the connections. Must be greater than 0.
+   * @return The created and started client
+   */
+  public static AsyncEventHubClient createCustomClient(String baseUrl, Integer connectionTimeout, Integer readTimeout,
+      PooledHttpTransportConfig poolConfig, int ioThreadCount) {
+    if(poolConfig == null)
+      throw new IllegalArgumentException("poolConfig must not be null");
+    if(ioThreadCount < 1)
+      throw new IllegalArgumentException("ioThreadCount must be greater than 0 but was " + ioThreadCount);
+    return new AsyncEventHubClient(baseUrl, connectionTimeout, readTimeout, poolConfig, ioThreadCount);
+  }
+
+  /**
+   * Turns a 200 OK response body into the result of a request.
+   */
+  private interface BodyParser<T> {
+    T parse(String body) throws BadlyFormedResponseBodyException;
+  }
+
+  private static final BodyParser<Void> IGNORE_BODY = new BodyParser<Void>() {
+    @Override public Void parse(final String body) {
+      return null;
+    }
+  };
+
+  private static final BodyParser<String> BODY_AS_STRING = new BodyParser<String>() {
+    @Override public String parse(final String body) {
+      return body;
+    }
+  };
+
+  // Instance
+
+  private final URI baseUri;
+  private final String basePath;
+  private final CloseableHttpAsyncClient httpClient;
+  private final PoolingNHttpClientConnectionManager connectionManager;
+  private final ScheduledExecutorService idleConnectionEvictor;
+  private volatile ResponseParser parser = new ResponseParser();
+
+  private final BodyParser<String[]> stringArrayParser = new BodyParser<String[]>() {
+    @Override public String[] parse(final String body) throws BadlyFormedResponseBodyException {
+      return parser.extractFromBody(body, String[].class);
+    }
+  };
+
+  private AsyncEventHubClient(String baseUrl, Integer connectionTimeout, Integer readTimeout,
+      final PooledHttpTransportConfig poolConfig, int ioThreadCount) {
+    baseUri = parseBaseUrl(baseUrl);
+    String path = baseUri.getRawPath() == null ? "" : baseUri.getRawPath();
+    basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+
+    IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom().setIoThreadCount(ioThreadCount).setTcpNoDelay(true);
+    RequestConfig.Builder requestConfig = RequestConfig.custom();
+    if(connectionTimeout != null) {
+      ioReactorConfig.setConnectTimeout(connectionTimeout);
+      requestConfig.setConnectTimeout(connectionTimeout);
+      requestConfig.setConnectionRequestTimeout(connectionTimeout);
+    }
+    if(readTimeout != null) {
+      ioReactorConfig.setSoTimeout(readTimeout);
+      requestConfig.setSocketTimeout(readTimeout);
+    }
+    try {
+      connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig.build()));
+    } catch(IOReactorException e) {
+      throw new IllegalStateException("Could not start the I/O reactor", e);
+    }
+    connectionManager.setMaxTotal(poolConfig.getMaxTotalConnections());
+    connectionManager.setDefaultMaxPerRoute(poolConfig.getMaxConnectionsPerHost());
+    httpClient = HttpAsyncClients.custom()
+                                 .setConnectionManager(connectionManager)
+                                 .setDefaultRequestConfig(requestConfig.build())
+                                 .disableCookieManagement()
+                                 .build();
+    httpClient.start();
+
+    final long maxIdleMillis = poolConfig.getMaxIdleMillis();
+    idleConnectionEvictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, "eventhub-async-idle-connection-evictor");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    idleConnectionEvictor.scheduleWithFixedDelay(new Runnable() {
+      @Override public void run() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(maxIdleMillis, TimeUnit.MILLISECONDS);
+      }
+    }, maxIdleMillis, Math.max(maxIdleMillis / 2, 1), TimeUnit.MILLISECONDS);
+  }
+
+  // Users
+
+  /**
+   * Adds the user if they don't exist and updates their properties if they do exist.
+   * @param userId The userID to update, must be NotNull
+   * @param userFieldValueMap The key-value pairs to attach to this user.
+   * @return A future completed once the server has accepted the user.
+   */
+  public CompletableFuture<Void> addOrUpdateUser(final String userId, final Map<String,String> userFieldValueMap) {
+    try {
+      checkNotNull(userId);
+      URIBuilder uri = uri(USER_ADD_OR_UPDATE_PATH).addParameter("external_user_id", userId);
+      if(userFieldValueMap!=null) {
+        for(Map.Entry<String, String> entry : userFieldValueMap.entrySet()) {
+          uri.addParameter(entry.getKey(), entry.getValue());
+        }
+      }
+      return execute(new HttpPost(build(uri)), IGNORE_BODY);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Gets all key-value keys over all the users.
+   * @return A future of the user keys.
+   */
+  public CompletableFuture<String[]> getUserKeys() {
+    return execute(acceptJson(new HttpGet(build(uri(USER_KEYS_PATH)))), stringArrayParser);
+  }
+
+  /**
+   * Gets all values for the given key from the set of all user key-value pairs (over every user).
+   * @param userKey The key to find all values for.
+   * @return A future of all values for the given key.
+   */
+  public CompletableFuture<String[]> getUserValues(final String userKey) {
+    return getUserValues(userKey, null);
+  }
+
+  /**
+   * Gets all values for the given key from the set of all user key-value pairs (over every user), filtered using the given prefix.
+   * @param userKey The key to find all values for.
+   * @param prefix The prefix to filter the values by. No filter will be applied if set to null.
+   * @return A future of the filtered values for the given key.
+   */
+  public CompletableFuture<String[]> getUserValues(final String userKey, final String prefix) {
+    try {
+      checkNotNull(userKey);
+      URIBuilder uri = uri(USER_VALUES_PATH).addParameter("user_key", userKey);
+      if(prefix!=null)
+        uri.addParameter("prefix", prefix);
+      return execute(new HttpGet(build(uri)), stringArrayParser);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Creates an alias for a user.
+   * @param newUserName The new user name. Must be NotNull.
+   * @param existingUserName The old user name to map the new name to. Must be NotNull.
+   * @return A future completed once the server has created the alias.
+   */
+  public CompletableFuture<Void> aliasUser(final String newUserName, final String existingUserName) {
+    try {
+      checkNotNull(newUserName);
+      checkNotNull(existingUserName);
+      URIBuilder uri = uri(USER_ALIAS_PATH).addParameter("from_external_user_id", newUserName)
+                                           .addParameter("to_external_user_id", existingUserName);
+      return execute(new HttpPost(build(uri)), IGNORE_BODY);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Gets events for the given user.
+   * @param userName The user to get the events for.
+   * @param offset The offset in the server results to start from.
+   * @param numberOfRecords The number of Event records to return.
+   * @return A future of the specified events for the given user.
+   */
+  public CompletableFuture<Collection<Event>> getUserTimeline(final String userName, final int offset, final int numberOfRecords) {
+    try {
+      checkNotNull(userName);
+      URIBuilder uri = uri(USER_TIMELINE_PATH).addParameter("external_user_id", userName)
+                                              .addParameter("offset", Integer.toString(offset))
+                                              .addParameter("num_records", Integer.toString(numberOfRecords));
+      return execute(new HttpGet(build(uri)), new BodyParser<Collection<Event>>() {
+        @Override public Collection<Event> parse(final String body) throws BadlyFormedResponseBodyException {
+          return parser.extractEvents(body);
+        }
+      });
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Gets all users that match the provided filters.
+   * @param filters The filters to match. Must be NotNull and not empty.
+   * @return A future of the matching user names.
+   */
+  public CompletableFuture<List<String>> getUsers(final Map<String, String> filters) {
+    try {
+      checkNotNull(filters);
+      checkNotEmpty(filters);
+      HttpPost request = new HttpPost(build(uri(USER_FIND_PATH)));
+      request.setEntity(new ByteArrayEntity(produceFiltersRequestBody(filters, "ufk[]", "ufv[]"), FORM_URLENCODED));
+      return execute(request, new BodyParser<List<String>>() {
+        @Override public List<String> parse(final String body) throws BadlyFormedResponseBodyException {
+          return parser.extractUserNames(body);
+        }
+      });
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  // Events
+
+  /**
+   * Gets the event keys for the provided event type.
+   * @param eventType The event type to get all event keys for. Must be NotNull.
+   * @return A future of the event keys.
+   */
+  public CompletableFuture<String[]> getEventKeys(final String eventType) {
+    try {
+      checkNotNull(eventType);
+      return execute(acceptJson(new HttpGet(build(uri(EVENT_KEYS_PATH).addParameter("event_type", eventType)))), stringArrayParser);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Gets all event types.
+   * @return A future of all event types.
+   */
+  public CompletableFuture<String[]> getEventTypes() {
+    return execute(acceptJson(new HttpGet(build(uri(EVENT_TYPES_PATH)))), stringArrayParser);
+  }
+
+  /**
+   * Gets all event values for the given event type and key.
+   * @param eventType The event type.
+   * @param eventKey The event key.
+   * @return A future of all event values for the given event type and key.
+   */
+  public CompletableFuture<String[]> getEventValues(final String eventType, final String eventKey) {
+    return getEventValues(eventType, eventKey, null);
+  }
+
+  /**
+   * Gets all event values for the given event type and key with the given prefix.
+   * @param eventType The event type.
+   * @param eventKey The event key.
+   * @param prefix The prefix to filter event values by.
+   * @return A future of the event values for the given event type and key, with the given prefix.
+   */
+  public CompletableFuture<String[]> getEventValues(final String eventType, final String eventKey, final String prefix) {
+    try {
+      checkNotNull(eventType);
+      checkNotNull(eventKey);
+      URIBuilder uri = uri(EVENT_VALUES_PATH).addParameter("event_type", eventType)
+                                             .addParameter("event_key", eventKey);
+      if(prefix!=null)
+        uri.addParameter("prefix", prefix);
+      return execute(new HttpGet(build(uri)), stringArrayParser);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Tracks the given event.
+   * @param event The event to track, must be NotNull with a NotNull event type and external user ID.
+   * @return A future completed once the server has accepted the event.
+   */
+  public CompletableFuture<Void> trackEvent(final Event event) {
+    try {
+      checkEvent(event);
+      URIBuilder uri = uri(EVENT_TRACK_PATH).addParameter("event_type", event.getEventType())
+                                            .addParameter("external_user_id", event.getExternalUserId());
+      DateTime date = event.getDate();
+      if(date!=null)
+        uri.addParameter("date", date.toString(EVENT_HUB_DATE_FORMATTER));
+      for(Map.Entry<String, String> entry : event.getPropertyEntrySet()) {
+        uri.addParameter(entry.getKey(), entry.getValue());
+      }
+      HttpPost request = new HttpPost(build(uri));
+      request.setHeader("Content-Type", "application/x-www-form-urlencoded");
+      return execute(acceptJson(request), IGNORE_BODY);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Batch tracks all the provided events. The request body is encoded in full before it is sent.
+   * @param events The events to track. Must be NotNull and contain at least one event.
+   * @return A future completed once the server has accepted the events.
+   */
+  public CompletableFuture<Void> batchTrackEvents(final List<Event> events) {
+    try {
+      checkNotEmpty(events);
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      produceBatchEventsBody(events).write(body);
+      HttpPost request = new HttpPost(build(uri(EVENT_BATCH_TRACK_PATH)));
+      request.setEntity(new ByteArrayEntity(body.toByteArray(), FORM_URLENCODED));
+      return execute(request, IGNORE_BODY);
+    } catch(IllegalInputException e) {
+      return failed(e);
+    } catch(IOException e) {
+      return failed(e);
+    }
+  }
+
+  // Event cohort
+
+  /**
+   * Retrieves the event cohort table, see {@link EventHubClient#retrieveEventCohortTable}.
+   * @return A future of the cohort table.
+   */
+  public CompletableFuture<int[][]> retrieveEventCohortTable(final DateTime startDate, final DateTime endDate, final String rowEventType,
+      final String columnEventType, final int numberOfDaysPerRow, final int numberOfDaysPerColumn, final Map<String, String> rowFilters,
+      final Map<String, String> columnFilters) {
+    try {
+      checkEventCohortTableInput(startDate, endDate, rowEventType, columnEventType, numberOfDaysPerRow, numberOfDaysPerColumn,
+          rowFilters, columnFilters);
+      HttpPost request = new HttpPost(build(uri(EVENT_COHORT_PATH)));
+      request.setEntity(new ByteArrayEntity(produceEventCohortTableRequestBody(startDate, endDate, rowEventType, columnEventType,
+          numberOfDaysPerRow, numberOfDaysPerColumn, rowFilters, columnFilters), FORM_URLENCODED));
+      return execute(request, new BodyParser<int[][]>() {
+        @Override public int[][] parse(final String body) throws BadlyFormedResponseBodyException {
+          return parser.extractFromBody(body, int[][].class);
+        }
+      });
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  // Event funnel
+
+  /**
+   * Retrieves the event funnel counts, see {@link EventHubClient#retrieveEventFunnelCounts}.
+   * @return A future of the count of users reaching each funnel step.
+   */
+  public CompletableFuture<int[]> retrieveEventFunnelCounts(final DateTime startDate, final DateTime endDate, final String[] funnelSteps,
+      final int daysToCompleteFunnel) {
+    try {
+      checkEventFunnelInput(startDate, endDate, funnelSteps, daysToCompleteFunnel);
+      HttpPost request = new HttpPost(build(uri(EVENT_FUNNEL_PATH)));
+      request.setEntity(new ByteArrayEntity(produceEventFunnelCountsRequestBody(startDate, endDate, funnelSteps, daysToCompleteFunnel),
+          FORM_URLENCODED));
+      return execute(acceptJson(request), new BodyParser<int[]>() {
+        @Override public int[] parse(final String body) throws BadlyFormedResponseBodyException {
+          return parser.extractFromBody(body, int[].class);
+        }
+      });
+    } catch(IllegalInputException e) {
+      return failed(e);
+    }
+  }
+
+  /**
+   * Retrieves the server stats from the EventHub API.
+   * @return A future of the server stats, as a String.
+   */
+  public CompletableFuture<String> getServerStats() {
+    return execute(new HttpGet(build(uri(SERVER_STATS_PATH))), BODY_AS_STRING);
+  }
+
+  /**
+   * Turns interning deserialization on or off for events returned by getUserTimeline. When on, event types and
+   * property keys are interned through a dictionary belonging to this client and properties are kept in an
+   * {@link com.github.eventhubjavaclient.event.ArrayPropertyMap}, cutting heap use when holding deep timelines.
+   * @param maxInternedStrings The most distinct types and keys the dictionary holds, or 0 to turn interning off.
+   */
+  public void setInternedStringCapacity(final int maxInternedStrings) {
+    if(maxInternedStrings < 0)
+      throw new IllegalArgumentException("maxInternedStrings must not be negative but was " + maxInternedStrings);
+    parser = maxInternedStrings == 0 ? new ResponseParser() : new ResponseParser(new StringInterner(maxInternedStrings));
+  }
+
+  /**
+   * Stops the selector threads and closes every connection. Requests still in flight fail.
+   */
+  public void close() {
+    idleConnectionEvictor.shutdownNow();
+    try {
+      httpClient.close();
+    } catch(IOException e) {
+      // Closing the connections failed, nothing more we can do with them
+    }
+  }
+
+  // Utils
+
+  private <T> CompletableFuture<T> execute(final HttpUriRequest request, final BodyParser<T> bodyParser) {
+    final CompletableFuture<T> result = new CompletableFuture<T>();
+    final Future<HttpResponse> exchange = httpClient.execute(request, new FutureCallback<HttpResponse>() {
+      @Override public void completed(final HttpResponse response) {
+        try {
+          int status = response.getStatusLine().getStatusCode();
+          HttpEntity entity = response.getEntity();
+          // Reading the entity also releases the connection
+          String body = entity == null ? null : EntityUtils.toString(entity, UTF_8);
+          if(!isExpected(status)) {
+            result.completeExceptionally(new UnexpectedResponseCodeException(OK_RESPONSE, status));
+            return;
+          }
+          result.complete(bodyParser.parse(body));
+        } catch(Exception e) {
+          result.completeExceptionally(e);
+        }
+      }
+
+      @Override public void failed(final Exception e) {
+        result.completeExceptionally(e);
+      }
+
+      @Override public void cancelled() {
+        result.cancel(false);
+      }
+    });
+    result.whenComplete(new BiConsumer<T, Throwable>() {
+      @Override public void accept(final T value, final Throwable throwable) {
+        if(result.isCancelled())
+          exchange.cancel(true);
+      }
+    });
+    return result;
+  }
+
+  private static boolean isExpected(final int status) {
+    for(int expected : OK_RESPONSE) {
+      if(expected == status)
+        return true;
+    }
+    return false;
+  }
+
+  private static <T> CompletableFuture<T> failed(final Exception e) {
+    CompletableFuture<T> result = new CompletableFuture<T>();
+    result.completeExceptionally(e);
+    return result;
+  }
+
+  private static <R extends HttpUriRequest> R acceptJson(final R request) {
+    request.setHeader("Accept", "application/json");
+    return request;
+  }
+
+  private URIBuilder uri(final String path) {
+    return new URIBuilder(baseUri).setPath(basePath + path);
+  }
+
+  private static URI build(final URIBuilder uri) {
+    try {
+      return uri.build();
+    } catch(URISyntaxException e) {
+      // The base URL was checked when the client was created and parameters are encoded
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static URI parseBaseUrl(final String baseUrl) {
+    if(baseUrl == null)
+      throw new IllegalArgumentException("baseUrl must not be null");
+    URI uri = URI.create(baseUrl);
+    if(uri.getScheme() == null || uri.getHost() == null)
+      throw new IllegalArgumentException("baseUrl must be an absolute http URL but was " + baseUrl);
+    return uri;
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventSerializer;
+import com.google.gson.stream.JsonWriter;
+
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The body of a batch track request, encoded straight onto the request's output stream when Jersey sends it. Only a
+ * fixed size buffer is held in memory however many events there are, rather than a JSON tree plus a String of the body.
+ */
+class BatchEventsRequestBody implements StreamingOutput {
+
+  private static final byte[] EVENTS_PARAMETER = "events=".getBytes();
+
+  private final List<Event> events;
+
+  BatchEventsRequestBody(final List<Event> events) {
+    this.events = events;
+  }
+
+  @Override public void write(final OutputStream output) throws IOException {
+    output.write(EVENTS_PARAMETER);
+    // The JSON is the value of the events parameter so is percent-encoded on its way to the stream
+    JsonWriter jsonWriter = new JsonWriter(FormBodyEncoder.encodingWriter(output));
+    // Matches Gson's default output
+    jsonWriter.setHtmlSafe(true);
+    jsonWriter.beginArray();
+    for(Event event : events) {
+      EventSerializer.writeEvent(jsonWriter, event);
+    }
+    jsonWriter.endArray();
+    // Flush rather than close, the output stream belongs to Jersey
+    jsonWriter.flush();
+  }
+}
@@ -0,0 +1,57 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+
+import java.util.List;
+
+/**
+ * The outcome of an {@link AdaptiveBatchSender#send} call. Sub-batches are sent in order and sending stops at the first
+ * that fails, so the events sent are always a prefix of those given.
+ */
+public class BatchTrackResult {
+
+  private final int sentEventCount;
+  private final int numberOfRequests;
+  private final List<Event> unsentEvents;
+  private final Exception error;
+
+  BatchTrackResult(final int sentEventCount, final int numberOfRequests, final List<Event> unsentEvents, final Exception error) {
+    this.sentEventCount = sentEventCount;
+    this.numberOfRequests = numberOfRequests;
+    this.unsentEvents = unsentEvents;
+    this.error = error;
+  }
+
+  /**
+   * @return The number of events the server accepted.
+   */
+  public int getSentEventCount() {
+    return sentEventCount;
+  }
+
+  /**
+   * @return The number of requests made, including a failed one.
+   */
+  public int getNumberOfRequests() {
+    return numberOfRequests;
+  }
+
+  /**
+   * @return The events from the failed sub-batch on, empty if every event was sent. Events of a sub-batch that timed
+   * out may have reached the server regardless.
+   */
+  public List<Event> getUnsentEvents() {
+    return unsentEvents;
+  }
+
+  /**
+   * @return The exception the failed sub-batch got, or null if every event was sent.
+   */
+  public Exception getError() {
+    return error;
+  }
+
+  public boolean isSuccessful() {
+    return error == null;
+  }
+}
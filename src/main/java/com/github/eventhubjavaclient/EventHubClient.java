@@ -1,31 +1,52 @@
 package com.github.eventhubjavaclient;
 
 import com.github.eventhubjavaclient.event.Event;
-import com.github.eventhubjavaclient.event.EventDeserializer;
-import com.github.eventhubjavaclient.event.EventSerializer;
+import com.github.eventhubjavaclient.event.StringInterner;
 import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
 import com.github.eventhubjavaclient.exception.IllegalInputException;
 import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSyntaxException;
-import com.google.gson.reflect.TypeToken;
+import com.github.eventhubjavaclient.metrics.MetricsFilter;
+import com.github.eventhubjavaclient.metrics.MetricsRegistry;
+import com.github.eventhubjavaclient.tracing.NoOpRequestTracer;
+import com.github.eventhubjavaclient.tracing.RequestSpan;
+import com.github.eventhubjavaclient.tracing.RequestTracer;
+import com.github.eventhubjavaclient.tracing.TraceContext;
+import com.github.eventhubjavaclient.tracing.TracePhase;
+import com.github.eventhubjavaclient.tracing.TracingFilter;
+import com.github.eventhubjavaclient.transport.CompressionConfig;
+import com.github.eventhubjavaclient.transport.CompressionFilter;
+import com.github.eventhubjavaclient.transport.EventHubTransport;
+import com.github.eventhubjavaclient.transport.PooledHttpTransport;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import org.joda.time.DateTime;
+import org.joda.time.Days;
 
 import javax.ws.rs.core.MediaType;
-import java.lang.reflect.Type;
+import javax.ws.rs.core.StreamingOutput;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.github.eventhubjavaclient.EventHubClientUtils.EVENT_HUB_DATE_FORMATTER;
 
@@ -34,7 +55,8 @@ public class EventHubClient {
   // Static
 
   /**
-   * Creates a client instance with a default config.
+   * Creates a client instance with a default config, sending requests through a {@link PooledHttpTransport} with
+   * default pool settings.
    * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
    * @param connectionTimeout Timeout for making the initial connection
    * @param readTimeout Timeout for reading data
@@ -42,11 +64,12 @@ public class EventHubClient {
    */
   public static EventHubClient createDefaultClient(String baseUrl, Integer connectionTimeout, Integer readTimeout ) {
     ClientConfig config = new DefaultClientConfig();
-    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout);
+    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout, new PooledHttpTransport(), null);
   }
 
   /**
-   * Creates a custom EventHubClient with the provided config
+   * Creates a custom EventHubClient with the provided config, sending requests through a {@link PooledHttpTransport}
+   * with default pool settings.
    * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
    * @param config The configuration to provide to provide to the client
    * @param connectionTimeout Timeout for making the initial connection
@@ -54,42 +77,105 @@ public class EventHubClient {
    * @return The created client, using the provided URL and config
    */
   public static EventHubClient createCustomClient(String baseUrl, Integer connectionTimeout, Integer readTimeout, ClientConfig config) {
-    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout);
+    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout, new PooledHttpTransport(), null);
   }
 
-  private static final String USER_KEYS_PATH = "/users/keys";
-  private static final String USER_VALUES_PATH = "/users/values";
-  private static final String USER_ALIAS_PATH = "/users/alias";
-  private static final String USER_ADD_OR_UPDATE_PATH = "/users/add_or_update";
-  private static final String USER_TIMELINE_PATH = "/users/timeline";
-  private static final String USER_FIND_PATH = "/users/find";
+  /**
+   * Creates a custom EventHubClient with the provided config, sending requests through the provided transport.
+   * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @param config The configuration to provide to provide to the client
+   * @param transport The transport the client sends requests through. It is closed when the client is closed.
+   * @return The created client, using the provided URL, config and transport
+   */
+  public static EventHubClient createCustomClient(String baseUrl, Integer connectionTimeout, Integer readTimeout, ClientConfig config,
+      EventHubTransport transport) {
+    if(transport == null)
+      throw new IllegalArgumentException("transport must not be null");
+    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout, transport, null);
+  }
+
+  /**
+   * Creates a custom EventHubClient with the provided config, sending requests through the provided transport and
+   * compressing them as the compression config says.
+   * @param baseUrl The base URL of the EventHub server e.g. http://localhost:portnumber
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @param config The configuration to provide to provide to the client
+   * @param transport The transport the client sends requests through. It is closed when the client is closed.
+   * @param compressionConfig When to compress request bodies and whether to accept compressed responses.
+   * @return The created client, using the provided URL, config, transport and compression
+   */
+  public static EventHubClient createCustomClient(String baseUrl, Integer connectionTimeout, Integer readTimeout, ClientConfig config,
+      EventHubTransport transport, CompressionConfig compressionConfig) {
+    if(transport == null)
+      throw new IllegalArgumentException("transport must not be null");
+    if(compressionConfig == null)
+      throw new IllegalArgumentException("compressionConfig must not be null");
+    return new EventHubClient(baseUrl, config, connectionTimeout, readTimeout, transport, compressionConfig);
+  }
+
+  static final String USER_KEYS_PATH = "/users/keys";
+  static final String USER_VALUES_PATH = "/users/values";
+  static final String USER_ALIAS_PATH = "/users/alias";
+  static final String USER_ADD_OR_UPDATE_PATH = "/users/add_or_update";
+  static final String USER_TIMELINE_PATH = "/users/timeline";
+  static final String USER_FIND_PATH = "/users/find";
 
-  private static final String EVENT_KEYS_PATH = "/events/keys";
-  private static final String EVENT_TYPES_PATH = "/events/types";
-  private static final String EVENT_VALUES_PATH = "/events/values";
-  private static final String EVENT_FUNNEL_PATH = "/events/funnel";
-  private static final String EVENT_TRACK_PATH = "/events/track";
-  private static final String EVENT_BATCH_TRACK_PATH = "/events/batch_track";
-  private static final String EVENT_COHORT_PATH = "/events/cohort";
+  static final String EVENT_KEYS_PATH = "/events/keys";
+  static final String EVENT_TYPES_PATH = "/events/types";
+  static final String EVENT_VALUES_PATH = "/events/values";
+  static final String EVENT_FUNNEL_PATH = "/events/funnel";
+  static final String EVENT_TRACK_PATH = "/events/track";
+  static final String EVENT_BATCH_TRACK_PATH = "/events/batch_track";
+  static final String EVENT_COHORT_PATH = "/events/cohort";
 
-  private static final String SERVER_STATS_PATH = "/varz";
+  static final String SERVER_STATS_PATH = "/varz";
 
-  private static final int[] OK_RESPONSE = new int[] {200};
+  static final int[] OK_RESPONSE = new int[] {200};
+
+  public static final int DEFAULT_BATCH_CONCURRENCY = 8;
 
   // Instance
 
+  private Client client;
+  private EventHubTransport transport;
   private WebResource webResource;
-  private Gson gson;
+  private volatile ResponseParser parser;
+  // Created on first use, only timeline prefetching and parallel queries need it
+  private ExecutorService backgroundExecutor;
+  private final SingleFlight singleFlight = new SingleFlight();
+  private final MetricsRegistry metrics = new MetricsRegistry();
+  private volatile RequestTracer tracer = NoOpRequestTracer.INSTANCE;
 
-  private EventHubClient(String baseUrl, ClientConfig config, Integer connectionTimeout, Integer readTimeout) {
-    Client client = Client.create(config);
+  private EventHubClient(String baseUrl, ClientConfig config, Integer connectionTimeout, Integer readTimeout,
+      EventHubTransport transport, CompressionConfig compressionConfig) {
+    this.transport = transport;
+    // The transport may set properties it needs, so it gets a copy rather than a config the caller may share
+    ClientConfig clientConfig = copyConfig(config);
+    client = new Client(transport.createClientHandler(clientConfig, connectionTimeout, readTimeout), clientConfig);
+    // Added first so it is nearest the network, seeing the response before any other filter
+    client.addFilter(new TracingFilter());
+    if(compressionConfig != null)
+      client.addFilter(new CompressionFilter(compressionConfig));
+    // Added last so it sees each request before any other filter, timing the whole of it
+    client.addFilter(new MetricsFilter(metrics, URI.create(baseUrl).getRawPath()));
     client.setConnectTimeout(connectionTimeout);
     client.setReadTimeout(readTimeout);
     webResource = client.resource(baseUrl);
-    GsonBuilder gsonBuilder = new GsonBuilder();
-    gsonBuilder.registerTypeAdapter(Event.class, new EventDeserializer());
-    gsonBuilder.registerTypeAdapter(Event.class, new EventSerializer());
-    gson = gsonBuilder.create();
+    parser = new ResponseParser(null, metrics);
+  }
+
+  private static ClientConfig copyConfig(final ClientConfig config) {
+    DefaultClientConfig copy = new DefaultClientConfig();
+    if(config != null) {
+      copy.getClasses().addAll(config.getClasses());
+      copy.getSingletons().addAll(config.getSingletons());
+      copy.getFeatures().putAll(config.getFeatures());
+      copy.getProperties().putAll(config.getProperties());
+    }
+    return copy;
   }
 
   // Users
@@ -104,15 +190,22 @@ public class EventHubClient {
   public void addOrUpdateUser(final String userId, final Map<String,String> userFieldValueMap)
       throws UnexpectedResponseCodeException, IllegalInputException {
     checkNotNull(userId);
-    WebResource resource = webResource.path(USER_ADD_OR_UPDATE_PATH)
-                                         .queryParam("external_user_id", userId);
-    if(userFieldValueMap!=null) {
-      for(Map.Entry<String, String> entry : userFieldValueMap.entrySet()) {
-        resource = resource.queryParam(entry.getKey(), entry.getValue());
+    RequestSpan span = startSpan(USER_ADD_OR_UPDATE_PATH);
+    try {
+      WebResource resource = webResource.path(USER_ADD_OR_UPDATE_PATH)
+                                           .queryParam("external_user_id", userId);
+      if(userFieldValueMap!=null) {
+        for(Map.Entry<String, String> entry : userFieldValueMap.entrySet()) {
+          resource = resource.queryParam(entry.getKey(), entry.getValue());
+        }
       }
+      span.mark(TracePhase.ENCODE);
+      ClientResponse response = resource.post(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      response.close();
+    } finally {
+      endSpan(span);
     }
-    ClientResponse response = resource.post(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
   }
 
   /**
@@ -122,12 +215,17 @@ public class EventHubClient {
    * @throws BadlyFormedResponseBodyException Thrown if the response body was not a well-formed JSON array.
    */
   public String[] getUserKeys() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
-    ClientResponse response = webResource.path(USER_KEYS_PATH)
-                                         .accept(MediaType.APPLICATION_JSON_TYPE)
-                                         .get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody,String[].class);
+    RequestSpan span = startSpan(USER_KEYS_PATH);
+    try {
+      ClientResponse response = webResource.path(USER_KEYS_PATH)
+                                           .accept(MediaType.APPLICATION_JSON_TYPE)
+                                           .get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      String responseBody = response.getEntity(String.class);
+      return decoded(span, parser.extractFromBody(responseBody,String[].class));
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -155,15 +253,20 @@ public class EventHubClient {
   public String[] getUserValues(final String userKey, final String prefix)
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
     checkNotNull(userKey);
-    WebResource request = webResource.path(USER_VALUES_PATH)
-                                     .queryParam("user_key",userKey);
-    if(prefix!=null)
-      request = request.queryParam("prefix",prefix);
+    RequestSpan span = startSpan(USER_VALUES_PATH);
+    try {
+      WebResource request = webResource.path(USER_VALUES_PATH)
+                                       .queryParam("user_key",userKey);
+      if(prefix!=null)
+        request = request.queryParam("prefix",prefix);
 
-    ClientResponse response = request.get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody, String[].class);
+      ClientResponse response = request.get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      String responseBody = response.getEntity(String.class);
+      return decoded(span, parser.extractFromBody(responseBody, String[].class));
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -177,12 +280,18 @@ public class EventHubClient {
       throws UnexpectedResponseCodeException, IllegalInputException {
     checkNotNull(newUserName);
     checkNotNull(existingUserName);
-    ClientResponse response = webResource.path(USER_ALIAS_PATH)
-                                         .queryParam("from_external_user_id", newUserName)
-                                         .queryParam("to_external_user_id",existingUserName)
-                                         .accept(MediaType.WILDCARD_TYPE)
-                                         .post(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
+    RequestSpan span = startSpan(USER_ALIAS_PATH);
+    try {
+      ClientResponse response = webResource.path(USER_ALIAS_PATH)
+                                           .queryParam("from_external_user_id", newUserName)
+                                           .queryParam("to_external_user_id",existingUserName)
+                                           .accept(MediaType.WILDCARD_TYPE)
+                                           .post(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      response.close();
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -198,17 +307,78 @@ public class EventHubClient {
   public Collection<Event> getUserTimeline(final String userName, final int offset, final int numberOfRecords)
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
     checkNotNull(userName);
-    ClientResponse response = webResource.path(USER_TIMELINE_PATH)
-                                         .queryParam("external_user_id",userName)
-                                         .queryParam("offset", Integer.toString(offset))
-                                         .queryParam("num_records", Integer.toString(numberOfRecords))
-                                         .get(ClientResponse.class);
+    RequestSpan span = startSpan(USER_TIMELINE_PATH);
+    try {
+      ClientResponse response = webResource.path(USER_TIMELINE_PATH)
+                                           .queryParam("external_user_id",userName)
+                                           .queryParam("offset", Integer.toString(offset))
+                                           .queryParam("num_records", Integer.toString(numberOfRecords))
+                                           .get(ClientResponse.class);
+
+      checkResponseCode(response,OK_RESPONSE);
+      String entity = response.getEntity(String.class);
+      return decoded(span, parser.extractEvents(entity));
+    } finally {
+      endSpan(span);
+    }
+  }
+
+  /**
+   * Iterates over the whole timeline of the given user, requesting it a page at a time and prefetching the next page in
+   * the background. See {@link TimelineIterator}.
+   * @param userName The user to get the events for. Must be NotNull.
+   * @param pageSize The number of events requested per page. Must be greater than 0.
+   * @return An iterator over the user's events, which should be closed if not iterated to the end.
+   * @throws IllegalInputException Thrown if illegal input is provided (null username or page size below 1).
+   */
+  public TimelineIterator iterateUserTimeline(final String userName, final int pageSize) throws IllegalInputException {
+    checkNotNull(userName);
+    if(pageSize < 1)
+      throw new IllegalInputException("Expecting a page size greater than 0 but was " + pageSize);
+    return new TimelineIterator(this, userName, 0, pageSize, getBackgroundExecutor());
+  }
+
+  /**
+   * Streams the whole timeline of the given user, as {@link #iterateUserTimeline(String, int)} does. Pages are
+   * fetched as the stream is consumed; closing the stream cancels any prefetch in progress.
+   * @param userName The user to get the events for. Must be NotNull.
+   * @param pageSize The number of events requested per page. Must be greater than 0.
+   * @return A sequential stream of the user's events.
+   * @throws IllegalInputException Thrown if illegal input is provided (null username or page size below 1).
+   */
+  public Stream<Event> streamUserTimeline(final String userName, final int pageSize) throws IllegalInputException {
+    final TimelineIterator iterator = iterateUserTimeline(userName, pageSize);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                        .onClose(new Runnable() {
+                          @Override public void run() {
+                            iterator.close();
+                          }
+                        });
+  }
+
+  /**
+   * Gets one page of a user's timeline, parsing events straight from the response stream.
+   */
+  List<Event> readUserTimelinePage(final String userName, final int offset, final int numberOfRecords)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(userName);
+    RequestSpan span = startSpan(USER_TIMELINE_PATH);
+    try {
+      ClientResponse response = webResource.path(USER_TIMELINE_PATH)
+                                           .queryParam("external_user_id",userName)
+                                           .queryParam("offset", Integer.toString(offset))
+                                           .queryParam("num_records", Integer.toString(numberOfRecords))
+                                           .get(ClientResponse.class);
 
-    checkResponseCode(response,OK_RESPONSE);
-    String entity = response.getEntity(String.class);
-    checkForBadBody(entity);
-    Type collectionType = new TypeToken<Collection<Event>>(){}.getType();
-    return gson.fromJson(entity,collectionType);
+      checkResponseCode(response,OK_RESPONSE);
+      try {
+        return decoded(span, parser.readEvents(response.getEntityInputStream()));
+      } finally {
+        response.close();
+      }
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -223,13 +393,18 @@ public class EventHubClient {
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
     checkNotNull(filters);
     checkNotEmpty(filters);
-    String body = produceFiltersRequestBody(filters, "ufk[]", "ufv[]");
-    ClientResponse response = webResource.path(USER_FIND_PATH)
-                                         .header("Content-Type", "application/x-www-form-urlencoded")
-                                         .post(ClientResponse.class,body);
-    checkResponseCode(response,OK_RESPONSE);
-    return extractUserNames(response.getEntity(String.class));
-
+    RequestSpan span = startSpan(USER_FIND_PATH);
+    try {
+      byte[] body = produceFiltersRequestBody(filters, "ufk[]", "ufv[]");
+      span.mark(TracePhase.ENCODE);
+      ClientResponse response = webResource.path(USER_FIND_PATH)
+                                           .header("Content-Type", "application/x-www-form-urlencoded")
+                                           .post(ClientResponse.class,body);
+      checkResponseCode(response,OK_RESPONSE);
+      return decoded(span, parser.extractUserNames(response.getEntity(String.class)));
+    } finally {
+      endSpan(span);
+    }
   }
 
   // Events
@@ -245,13 +420,18 @@ public class EventHubClient {
   public String[] getEventKeys(final String eventType)
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
     checkNotNull(eventType);
-    ClientResponse response = webResource.path(EVENT_KEYS_PATH)
-                                         .queryParam("event_type", eventType)
-                                         .accept(MediaType.APPLICATION_JSON_TYPE)
-                                         .get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody,String[].class);
+    RequestSpan span = startSpan(EVENT_KEYS_PATH);
+    try {
+      ClientResponse response = webResource.path(EVENT_KEYS_PATH)
+                                           .queryParam("event_type", eventType)
+                                           .accept(MediaType.APPLICATION_JSON_TYPE)
+                                           .get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      String responseBody = response.getEntity(String.class);
+      return decoded(span, parser.extractFromBody(responseBody,String[].class));
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -261,12 +441,17 @@ public class EventHubClient {
    * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
    */
   public String[] getEventTypes() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
-    ClientResponse response = webResource.path(EVENT_TYPES_PATH)
-                                         .accept(MediaType.APPLICATION_JSON_TYPE)
-                                         .get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody, String[].class);
+    RequestSpan span = startSpan(EVENT_TYPES_PATH);
+    try {
+      ClientResponse response = webResource.path(EVENT_TYPES_PATH)
+                                           .accept(MediaType.APPLICATION_JSON_TYPE)
+                                           .get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      String responseBody = response.getEntity(String.class);
+      return decoded(span, parser.extractFromBody(responseBody, String[].class));
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -297,16 +482,21 @@ public class EventHubClient {
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
     checkNotNull(eventType);
     checkNotNull(eventKey);
-    WebResource request = webResource.path(EVENT_VALUES_PATH)
-                                     .queryParam("event_type", eventType)
-                                     .queryParam("event_key",eventKey);
-    if(prefix!=null)
-      request = request.queryParam("prefix", prefix);
+    RequestSpan span = startSpan(EVENT_VALUES_PATH);
+    try {
+      WebResource request = webResource.path(EVENT_VALUES_PATH)
+                                       .queryParam("event_type", eventType)
+                                       .queryParam("event_key",eventKey);
+      if(prefix!=null)
+        request = request.queryParam("prefix", prefix);
 
-    ClientResponse response = request.get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody, String[].class);
+      ClientResponse response = request.get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      String responseBody = response.getEntity(String.class);
+      return decoded(span, parser.extractFromBody(responseBody, String[].class));
+    } finally {
+      endSpan(span);
+    }
   }
 
   /**
@@ -316,28 +506,33 @@ public class EventHubClient {
    * @throws IllegalInputException Thrown if illegal input is provided (null event).
    */
   public void trackEvent(final Event event) throws UnexpectedResponseCodeException, IllegalInputException {
-    checkNotNull(event);
-    String eventType = event.getEventType();
-    checkNotNull(eventType);
-    String externalUserId = event.getExternalUserId();
-    checkNotNull(externalUserId);
-
-    WebResource resource = webResource.path(EVENT_TRACK_PATH)
-                                      .queryParam("event_type", eventType)
-                                      .queryParam("external_user_id", externalUserId);
-    DateTime date = event.getDate();
-    if(date!=null)
-      resource = resource.queryParam("date", date.toString(EVENT_HUB_DATE_FORMATTER));
-    Map<String,String> additionalParams = event.getUnmodifiablePropertyMap();
-    if(additionalParams!=null) {
-      for(Map.Entry<String, String> entry : additionalParams.entrySet()) {
-        resource = resource.queryParam(entry.getKey(),entry.getValue());
+    checkEvent(event);
+    RequestSpan span = startSpan(EVENT_TRACK_PATH);
+    try {
+      String eventType = event.getEventType();
+      String externalUserId = event.getExternalUserId();
+
+      WebResource resource = webResource.path(EVENT_TRACK_PATH)
+                                        .queryParam("event_type", eventType)
+                                        .queryParam("external_user_id", externalUserId);
+      DateTime date = event.getDate();
+      if(date!=null)
+        resource = resource.queryParam("date", date.toString(EVENT_HUB_DATE_FORMATTER));
+      Map<String,String> additionalParams = event.getUnmodifiablePropertyMap();
+      if(additionalParams!=null) {
+        for(Map.Entry<String, String> entry : additionalParams.entrySet()) {
+          resource = resource.queryParam(entry.getKey(),entry.getValue());
+        }
       }
+      span.mark(TracePhase.ENCODE);
+      ClientResponse response = resource.header("Content-Type", "application/x-www-form-urlencoded")
+                                        .accept(MediaType.APPLICATION_JSON_TYPE)
+                                        .post(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      response.close();
+    } finally {
+      endSpan(span);
     }
-    ClientResponse response = resource.header("Content-Type", "application/x-www-form-urlencoded")
-                                      .accept(MediaType.APPLICATION_JSON_TYPE)
-                                      .post(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
   }
 
   /**
@@ -348,57 +543,234 @@ public class EventHubClient {
    */
   public void batchTrackEvents(final List<Event> events) throws UnexpectedResponseCodeException, IllegalInputException {
     checkNotEmpty(events);
-    final String requestBody = produceBatchEventsBody(events);
-    ClientResponse response = webResource.path(EVENT_BATCH_TRACK_PATH)
-                                         .header("Content-Type", "application/x-www-form-urlencoded")
-                                         .post(ClientResponse.class, requestBody);
-    checkResponseCode(response,OK_RESPONSE);
+    RequestSpan span = startSpan(EVENT_BATCH_TRACK_PATH);
+    try {
+      // The body is encoded as it is written out, so its encoding is counted as sending it
+      final StreamingOutput requestBody = produceBatchEventsBody(events);
+      ClientResponse response = webResource.path(EVENT_BATCH_TRACK_PATH)
+                                           .header("Content-Type", "application/x-www-form-urlencoded")
+                                           .post(ClientResponse.class, requestBody);
+      checkResponseCode(response,OK_RESPONSE);
+      response.close();
+    } finally {
+      endSpan(span);
+    }
+  }
+
+  /**
+   * Batch tracks events already encoded as a whole form body, for {@link AdaptiveBatchSender}.
+   */
+  void batchTrackEncodedEvents(final byte[] body) throws UnexpectedResponseCodeException {
+    RequestSpan span = startSpan(EVENT_BATCH_TRACK_PATH);
+    try {
+      ClientResponse response = webResource.path(EVENT_BATCH_TRACK_PATH)
+                                           .header("Content-Type", "application/x-www-form-urlencoded")
+                                           .post(ClientResponse.class, body);
+      checkResponseCode(response,OK_RESPONSE);
+      response.close();
+    } finally {
+      endSpan(span);
+    }
   }
 
   // Event cohort
 
+  /**
+   * Retrieves a cohort table. Identical calls made while one is in flight share its request rather than sending their own.
+   */
   public int[][] retrieveEventCohortTable(final DateTime startDate, final DateTime endDate, final String rowEventType,
       final String columnEventType, final int numberOfDaysPerRow, final int numberOfDaysPerColumn, final Map<String, String> rowFilters,
       final Map<String, String> columnFilters)
       throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
 
-    checkNotNull(startDate);
-    checkNotNull(endDate);
-    checkNotNull(rowEventType);
-    checkNotNull(columnEventType);
-    checkNotNull(rowFilters);
-    checkNotNull(columnFilters);
-    checkNotZero(numberOfDaysPerRow);
-    checkNotZero(numberOfDaysPerColumn);
+    checkEventCohortTableInput(startDate, endDate, rowEventType, columnEventType, numberOfDaysPerRow, numberOfDaysPerColumn,
+        rowFilters, columnFilters);
+
+    final RequestSpan span = startSpan(EVENT_COHORT_PATH);
+    try {
+      final byte[] body = produceEventCohortTableRequestBody(startDate,endDate,rowEventType,columnEventType,numberOfDaysPerRow,
+          numberOfDaysPerColumn,rowFilters,columnFilters);
+      // The same filters in another order make the same query, so key on them sorted
+      byte[] canonicalBody = rowFilters.size() < 2 && columnFilters.size() < 2 ? body
+          : produceEventCohortTableRequestBody(startDate,endDate,rowEventType,columnEventType,numberOfDaysPerRow,
+              numberOfDaysPerColumn,sortedFilters(rowFilters),sortedFilters(columnFilters));
+      span.mark(TracePhase.ENCODE);
+      return coalesce(flightKey(EVENT_COHORT_PATH, canonicalBody), new SingleFlight.Call<int[][]>() {
+        @Override int[][] call() throws Exception {
+          ClientResponse response = webResource.path(EVENT_COHORT_PATH)
+                                               .header("Content-Type", "application/x-www-form-urlencoded")
+                                               .post(ClientResponse.class, body);
+          checkResponseCode(response,OK_RESPONSE);
+          String entity = response.getEntity(String.class);
+          return decoded(span, parser.extractFromBody(entity,int[][].class));
+        }
+
+        @Override int[][] copy(final int[][] table) {
+          int[][] copy = new int[table.length][];
+          for(int i = 0; i < table.length; i++) {
+            copy[i] = table[i] == null ? null : table[i].clone();
+          }
+          return copy;
+        }
+      });
+    } finally {
+      endSpan(span);
+    }
+  }
 
-    String body = produceEventCohortTableRequestBody(startDate,endDate,rowEventType,columnEventType,numberOfDaysPerRow,
-        numberOfDaysPerColumn,rowFilters,columnFilters);
-    ClientResponse response = webResource.path(EVENT_COHORT_PATH)
-                                         .header("Content-Type", "application/x-www-form-urlencoded")
-                                         .post(ClientResponse.class, body);
-    checkResponseCode(response,OK_RESPONSE);
-    String entity = response.getEntity(String.class);
-    return  extractFromBody(entity,int[][].class);
+  /**
+   * Retrieves a cohort table, as {@link #retrieveEventCohortTable} does, splitting long date ranges into several
+   * requests of whole rows that run concurrently. Each row covers numberOfDaysPerRow days from startDate and a trailing
+   * part row is left out, as in a single request, so the rows of each request join up into the same table.
+   * @param rowsPerRequest The most rows asked for in one request. Must be greater than 0.
+   * @param parallelism The most requests in flight at once, including the one made on the calling thread. Must be
+   *                    greater than 0.
+   * @return The cohort table, its rows in date order.
+   * @throws UnexpectedResponseCodeException Thrown if any request got anything other than a 200 OK response.
+   * @throws BadlyFormedResponseBodyException Thrown if any request got a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided, including a numberOfDaysPerRow below 1.
+   */
+  public int[][] retrieveEventCohortTableInParallel(final DateTime startDate, final DateTime endDate, final String rowEventType,
+      final String columnEventType, final int numberOfDaysPerRow, final int numberOfDaysPerColumn, final Map<String, String> rowFilters,
+      final Map<String, String> columnFilters, final int rowsPerRequest, final int parallelism)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkEventCohortTableInput(startDate, endDate, rowEventType, columnEventType, numberOfDaysPerRow, numberOfDaysPerColumn,
+        rowFilters, columnFilters);
+    if(numberOfDaysPerRow < 1 || rowsPerRequest < 1 || parallelism < 1)
+      throw new IllegalInputException("Expecting days per row, rows per request and parallelism greater than 0 but were "
+          + numberOfDaysPerRow + ", " + rowsPerRequest + " and " + parallelism);
+
+    // The server sees each date as a day in its own zone
+    int numberOfDays = Days.daysBetween(startDate.toLocalDate(), endDate.toLocalDate()).getDays() + 1;
+    final int numberOfRows = numberOfDays / numberOfDaysPerRow;
+    final int numberOfRequests = (numberOfRows + rowsPerRequest - 1) / rowsPerRequest;
+    if(numberOfRequests <= 1)
+      return retrieveEventCohortTable(startDate, endDate, rowEventType, columnEventType, numberOfDaysPerRow,
+          numberOfDaysPerColumn, rowFilters, columnFilters);
+
+    final int[][][] parts = new int[numberOfRequests][][];
+    Exception failure = runConcurrently(numberOfRequests, parallelism, new IndexedTask() {
+      @Override public void run(final int part) throws Exception {
+        int firstRow = part * rowsPerRequest;
+        int endRow = Math.min(numberOfRows, firstRow + rowsPerRequest);
+        // The last request keeps the original end date, so any trailing part row is dropped as it would be
+        DateTime partEndDate = endRow == numberOfRows ? endDate : startDate.plusDays(endRow * numberOfDaysPerRow - 1);
+        parts[part] = retrieveEventCohortTable(startDate.plusDays(firstRow * numberOfDaysPerRow), partEndDate,
+            rowEventType, columnEventType, numberOfDaysPerRow, numberOfDaysPerColumn, rowFilters, columnFilters);
+      }
+    });
+    if(failure != null)
+      throw rethrowCohortFailure(failure);
+    return joinRows(parts);
   }
 
   // Event funnel
 
+  /**
+   * Retrieves funnel counts. Identical calls made while one is in flight share its request rather than sending their own.
+   */
   public int[] retrieveEventFunnelCounts(final DateTime startDate, final DateTime endDate, final String[] funnelSteps,
       final int daysToCompleteFunnel) throws BadlyFormedResponseBodyException, UnexpectedResponseCodeException, IllegalInputException {
-    checkNotNull(startDate);
-    checkNotNull(endDate);
-    checkNotEmpty(funnelSteps);
-    if(daysToCompleteFunnel<1)
-      throw new IllegalInputException("Expected days to complete funnel to be greater than 0, but was "+daysToCompleteFunnel);
+    checkEventFunnelInput(startDate, endDate, funnelSteps, daysToCompleteFunnel);
+
+    final RequestSpan span = startSpan(EVENT_FUNNEL_PATH);
+    try {
+      // Dates are sent as days and the steps in order, so the body itself identifies the query
+      final byte[] body = produceEventFunnelCountsRequestBody(startDate, endDate, funnelSteps, daysToCompleteFunnel);
+      span.mark(TracePhase.ENCODE);
+      return coalesce(flightKey(EVENT_FUNNEL_PATH, body), new SingleFlight.Call<int[]>() {
+        @Override int[] call() throws Exception {
+          ClientResponse response = webResource.path(EVENT_FUNNEL_PATH)
+                                               .header("Content-Type", "application/x-www-form-urlencoded")
+                                               .accept(MediaType.APPLICATION_JSON_TYPE)
+                                               .post(ClientResponse.class, body);
+          checkResponseCode(response,OK_RESPONSE);
+          String responseBody = response.getEntity(String.class);
+          return decoded(span, parser.extractFromBody(responseBody,int[].class));
+        }
+
+        @Override int[] copy(final int[] counts) {
+          return counts.clone();
+        }
+      });
+    } finally {
+      endSpan(span);
+    }
+  }
+
+  /**
+   * Retrieves funnel counts for each of the queries, as {@link #retrieveEventFunnelCountsBatch(List, int)} does, with
+   * up to {@link #DEFAULT_BATCH_CONCURRENCY} requests in flight at once.
+   */
+  public List<FunnelResult> retrieveEventFunnelCountsBatch(final List<FunnelQuery> queries) throws IllegalInputException {
+    return retrieveEventFunnelCountsBatch(queries, DEFAULT_BATCH_CONCURRENCY);
+  }
+
+  /**
+   * Retrieves funnel counts for each of the queries, running them concurrently so the batch takes about as long as
+   * its slowest funnels rather than all of them added up. Queries that are the same are sent once. A failing query
+   * does not stop the others; its exception is given in its result instead.
+   * @param queries The funnels to count, must be NotNull.
+   * @param maxConcurrency The most requests in flight at once, including the one made on the calling thread. Must be
+   *                       greater than 0.
+   * @return A result for each query, in the same order as the queries.
+   * @throws IllegalInputException Thrown if the list or one of its queries is null, or maxConcurrency is below 1.
+   */
+  public List<FunnelResult> retrieveEventFunnelCountsBatch(final List<FunnelQuery> queries, final int maxConcurrency)
+      throws IllegalInputException {
+    checkNotNull(queries);
+    if(maxConcurrency < 1)
+      throw new IllegalInputException("Expecting max concurrency greater than 0 but was " + maxConcurrency);
+    for(FunnelQuery query : queries) {
+      checkNotNull(query);
+    }
+
+    // Each distinct query is sent once, the request body identifies it as it does for coalescing
+    Map<String, Integer> distinctIndexes = new HashMap<String, Integer>();
+    final List<FunnelQuery> distinctQueries = new ArrayList<FunnelQuery>();
+    int[] distinctIndexOfQuery = new int[queries.size()];
+    for(int i = 0; i < queries.size(); i++) {
+      FunnelQuery query = queries.get(i);
+      String key = funnelQueryKey(query);
+      Integer distinctIndex = key == null ? null : distinctIndexes.get(key);
+      if(distinctIndex == null) {
+        distinctIndex = distinctQueries.size();
+        distinctQueries.add(query);
+        if(key != null)
+          distinctIndexes.put(key, distinctIndex);
+      }
+      distinctIndexOfQuery[i] = distinctIndex;
+    }
+
+    final FunnelResult[] distinctResults = new FunnelResult[distinctQueries.size()];
+    runConcurrently(distinctQueries.size(), maxConcurrency, new IndexedTask() {
+      @Override public void run(final int index) {
+        FunnelQuery query = distinctQueries.get(index);
+        long start = System.nanoTime();
+        int[] counts = null;
+        Exception error = null;
+        try {
+          counts = retrieveEventFunnelCounts(query.getStartDate(), query.getEndDate(), query.getFunnelSteps(),
+              query.getDaysToCompleteFunnel());
+        } catch(Exception e) {
+          error = e;
+        }
+        distinctResults[index] = new FunnelResult(query, counts, error, (System.nanoTime() - start) / 1000000);
+      }
+    });
 
-    String body = produceEventFunnelCountsRequestBody(startDate, endDate, funnelSteps, daysToCompleteFunnel);
-    ClientResponse response = webResource.path(EVENT_FUNNEL_PATH)
-                                         .header("Content-Type", "application/x-www-form-urlencoded")
-                                         .accept(MediaType.APPLICATION_JSON_TYPE)
-                                         .post(ClientResponse.class, body);
-    checkResponseCode(response,OK_RESPONSE);
-    String responseBody = response.getEntity(String.class);
-    return extractFromBody(responseBody,int[].class);
+    List<FunnelResult> results = new ArrayList<FunnelResult>(queries.size());
+    boolean[] used = new boolean[distinctResults.length];
+    for(int i = 0; i < queries.size(); i++) {
+      FunnelResult result = distinctResults[distinctIndexOfQuery[i]];
+      int[] counts = result.getCounts();
+      // Repeats get their own copy of the counts, so callers cannot see each other's changes to them
+      if(used[distinctIndexOfQuery[i]] && counts != null)
+        counts = counts.clone();
+      used[distinctIndexOfQuery[i]] = true;
+      results.add(new FunnelResult(queries.get(i), counts, result.getError(), result.getElapsedMillis()));
+    }
+    return results;
   }
 
   /**
@@ -407,82 +779,259 @@ public class EventHubClient {
    * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
    */
   public String getServerStats() throws UnexpectedResponseCodeException {
-    ClientResponse response = webResource.path(SERVER_STATS_PATH)
-                                         .get(ClientResponse.class);
-    checkResponseCode(response,OK_RESPONSE);
-    return response.getEntity(String.class);
+    RequestSpan span = startSpan(SERVER_STATS_PATH);
+    try {
+      ClientResponse response = webResource.path(SERVER_STATS_PATH)
+                                           .get(ClientResponse.class);
+      checkResponseCode(response,OK_RESPONSE);
+      return response.getEntity(String.class);
+    } finally {
+      endSpan(span);
+    }
+  }
+
+  /**
+   * Turns interning deserialization on or off for events returned by getUserTimeline. When on, event types and
+   * property keys are interned through a dictionary belonging to this client and properties are kept in an
+   * {@link com.github.eventhubjavaclient.event.ArrayPropertyMap}, cutting heap use when holding deep timelines.
+   * @param maxInternedStrings The most distinct types and keys the dictionary holds, or 0 to turn interning off.
+   */
+  public void setInternedStringCapacity(final int maxInternedStrings) {
+    if(maxInternedStrings < 0)
+      throw new IllegalArgumentException("maxInternedStrings must not be negative but was " + maxInternedStrings);
+    parser = new ResponseParser(maxInternedStrings == 0 ? null : new StringInterner(maxInternedStrings), metrics);
+  }
+
+  /**
+   * @return Latency, throughput and error metrics for each end point this client has requested.
+   */
+  public MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Sets the tracer told about every call this client makes, with the time taken to encode the request, connect, get
+   * the first byte of the response, read its body and decode it. See {@link TracePhase}. Calls made by
+   * {@link #retrieveEventCohortTableInParallel} and {@link #retrieveEventFunnelCountsBatch} are traced as the single
+   * cohort and funnel calls they are made of.
+   * @param tracer The tracer, must be NotNull. {@link NoOpRequestTracer#INSTANCE} turns tracing off.
+   */
+  public void setTracer(final RequestTracer tracer) {
+    if(tracer == null)
+      throw new IllegalArgumentException("tracer must not be null");
+    this.tracer = tracer;
+  }
+
+  public RequestTracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * Releases the connections and threads held by this client and its transport. The client must not be used afterwards.
+   */
+  public void close() {
+    synchronized(this) {
+      if(backgroundExecutor != null)
+        backgroundExecutor.shutdownNow();
+    }
+    client.destroy();
+    transport.close();
+    metrics.close();
   }
 
   // Utils
 
-  private String produceBatchEventsBody(final List<Event> events) {
-    StringBuilder sb = new StringBuilder("events=");
-    Type collectionType = new TypeToken<Collection<Event>>(){}.getType();
-    sb.append(gson.toJson(events, collectionType));
-    return sb.toString();
+  private <V> V coalesce(final String key, final SingleFlight.Call<V> call)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    try {
+      return singleFlight.execute(key, call);
+    } catch(UnexpectedResponseCodeException e) {
+      // Callers sharing another's request learn of its failure here rather than where it was thrown
+      throw traced(e);
+    } catch(BadlyFormedResponseBodyException e) {
+      throw traced(e);
+    } catch(RuntimeException e) {
+      throw traced(e);
+    } catch(Exception e) {
+      throw new IllegalStateException("Unexpected exception from " + key, e);
+    }
+  }
+
+  /**
+   * A piece of work, run once for each index by {@link #runConcurrently}.
+   */
+  private interface IndexedTask {
+    void run(int index) throws Exception;
+  }
+
+  /**
+   * Runs the task for each index from 0 until numberOfTasks, on the calling thread and up to parallelism - 1 threads of
+   * the background executor, each taking the next index as it finishes one. No new indexes are started once a task
+   * has thrown.
+   * @return The first exception a task threw, or null if none did.
+   */
+  private Exception runConcurrently(final int numberOfTasks, final int parallelism, final IndexedTask task) {
+    final AtomicInteger nextIndex = new AtomicInteger();
+    final AtomicBoolean failed = new AtomicBoolean();
+    Callable<Void> worker = new Callable<Void>() {
+      @Override public Void call() throws Exception {
+        int index;
+        while(!failed.get() && (index = nextIndex.getAndIncrement()) < numberOfTasks) {
+          try {
+            task.run(index);
+          } catch(Exception e) {
+            failed.set(true);
+            throw e;
+          }
+        }
+        return null;
+      }
+    };
+
+    List<Future<Void>> helpers = new ArrayList<Future<Void>>();
+    if(numberOfTasks > 1 && parallelism > 1) {
+      ExecutorService executor = getBackgroundExecutor();
+      for(int i = 1; i < Math.min(parallelism, numberOfTasks); i++) {
+        helpers.add(executor.submit(worker));
+      }
+    }
+    Exception failure = null;
+    try {
+      worker.call();
+    } catch(Exception e) {
+      failure = e;
+    }
+    for(Future<Void> helper : helpers) {
+      try {
+        helper.get();
+      } catch(ExecutionException e) {
+        if(failure == null)
+          failure = (Exception) e.getCause();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failed.set(true);
+        if(failure == null)
+          failure = new IllegalStateException("Interrupted while waiting for concurrent requests", e);
+      }
+    }
+    return failure;
+  }
+
+  private static String funnelQueryKey(final FunnelQuery query) {
+    try {
+      checkEventFunnelInput(query.getStartDate(), query.getEndDate(), query.getFunnelSteps(), query.getDaysToCompleteFunnel());
+    } catch(IllegalInputException e) {
+      // Left for retrieveEventFunnelCounts to fail on, in the query's own result
+      return null;
+    }
+    return flightKey(EVENT_FUNNEL_PATH, produceEventFunnelCountsRequestBody(query.getStartDate(), query.getEndDate(),
+        query.getFunnelSteps(), query.getDaysToCompleteFunnel()));
+  }
+
+  private static RuntimeException rethrowCohortFailure(final Exception failure)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    if(failure instanceof UnexpectedResponseCodeException)
+      throw (UnexpectedResponseCodeException) failure;
+    if(failure instanceof BadlyFormedResponseBodyException)
+      throw (BadlyFormedResponseBodyException) failure;
+    if(failure instanceof IllegalInputException)
+      throw (IllegalInputException) failure;
+    if(failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    throw new IllegalStateException("Unexpected exception retrieving cohort table", failure);
+  }
+
+  private static int[][] joinRows(final int[][][] parts) {
+    int numberOfRows = 0;
+    for(int[][] part : parts) {
+      numberOfRows += part.length;
+    }
+    int[][] table = new int[numberOfRows][];
+    int row = 0;
+    for(int[][] part : parts) {
+      System.arraycopy(part, 0, table, row, part.length);
+      row += part.length;
+    }
+    return table;
+  }
+
+  private static String flightKey(final String path, final byte[] body) {
+    // Form bodies are plain ASCII
+    return path + '?' + new String(body, StandardCharsets.ISO_8859_1);
+  }
+
+  private static Map<String, String> sortedFilters(final Map<String, String> filters) {
+    for(String key : filters.keySet()) {
+      // TreeMap cannot hold a null key, keep the caller's order rather than fail
+      if(key == null)
+        return filters;
+    }
+    return new TreeMap<String, String>(filters);
+  }
+
+  private synchronized ExecutorService getBackgroundExecutor() {
+    if(backgroundExecutor == null) {
+      backgroundExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override public Thread newThread(final Runnable runnable) {
+          Thread thread = new Thread(runnable, "eventhub-client-worker-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return backgroundExecutor;
+  }
+
+  static StreamingOutput produceBatchEventsBody(final List<Event> events) {
+    return new BatchEventsRequestBody(events);
   }
 
-  private String produceEventCohortTableRequestBody(final DateTime startDate, final DateTime endDate, final String rowEventType,
+  static byte[] produceEventCohortTableRequestBody(final DateTime startDate, final DateTime endDate, final String rowEventType,
       final String columnEventType, final int numberOfDaysPerRow, final int numberOfColumns, final Map<String, String> rowFilters,
       final Map<String, String> columnFilters) {
-    StringBuilder sb = produceDateRangeRequestBody(startDate,endDate,new StringBuilder());;
-    sb.append("&row_event_type=").append(rowEventType);
-    sb.append("&column_event_type=").append(columnEventType);
-    sb.append("&num_days_per_row=").append(numberOfDaysPerRow);
-    sb.append("&num_columns=").append(numberOfColumns);
+    FormBodyEncoder body = produceDateRangeRequestBody(startDate, endDate, FormBodyEncoder.forCurrentThread());
+    body.add("row_event_type", rowEventType)
+        .add("column_event_type", columnEventType)
+        .add("num_days_per_row", numberOfDaysPerRow)
+        .add("num_columns", numberOfColumns);
     if(rowFilters!=null && rowFilters.size()>0)
-      sb.append("&").append(produceFiltersRequestBody(rowFilters, "refk[]", "refv[]"));
+      addFilters(rowFilters, "refk[]", "refv[]", body);
     if(columnFilters!=null && columnFilters.size()>0)
-      sb.append("&").append(produceFiltersRequestBody(columnFilters, "cefk[]", "cefv[]"));
-    return sb.toString();
+      addFilters(columnFilters, "cefk[]", "cefv[]", body);
+    return body.toByteArray();
   }
 
-  private static String produceFiltersRequestBody(final Map<String, String> filters, final String keyArrayName, final String valueArrayName) {
-    StringBuilder userFilterKeys = new StringBuilder();
-    StringBuilder userFilterValues = new StringBuilder();
+  static byte[] produceFiltersRequestBody(final Map<String, String> filters, final String keyArrayName, final String valueArrayName) {
+    return addFilters(filters, keyArrayName, valueArrayName, FormBodyEncoder.forCurrentThread()).toByteArray();
+  }
+
+  private static FormBodyEncoder addFilters(final Map<String, String> filters, final String keyArrayName, final String valueArrayName,
+      final FormBodyEncoder body) {
+    // All the keys then all the values, both in the map's iteration order so the nth key matches the nth value
     for(Map.Entry<String, String> entry : filters.entrySet()) {
-      userFilterKeys.append(keyArrayName).append("=").append(entry.getKey()).append("&");
-      userFilterValues.append(valueArrayName).append("=").append(entry.getValue()).append("&");
+      body.add(keyArrayName, entry.getKey());
     }
-    if(userFilterValues.length()!=0) {
-      // Remove the last ampersand
-      userFilterValues.deleteCharAt(userFilterValues.length() - 1);
+    for(Map.Entry<String, String> entry : filters.entrySet()) {
+      body.add(valueArrayName, entry.getValue());
     }
-    return userFilterKeys.toString()+userFilterValues.toString();
+    return body;
   }
 
-  private static String produceEventFunnelCountsRequestBody(final DateTime startDate, final DateTime endDate, final String[] funnelSteps
+  static byte[] produceEventFunnelCountsRequestBody(final DateTime startDate, final DateTime endDate, final String[] funnelSteps
       , final int daysToCompleteFunnel) {
-    StringBuilder sb = produceDateRangeRequestBody(startDate,endDate,new StringBuilder());;
+    FormBodyEncoder body = produceDateRangeRequestBody(startDate, endDate, FormBodyEncoder.forCurrentThread());
     for(String funnelStep : funnelSteps) {
-      sb.append("&funnel_steps[]=").append(funnelStep);
-    }
-    sb.append("&num_days_to_complete_funnel=").append(daysToCompleteFunnel);
-    return sb.toString();
-  }
-
-  private static StringBuilder produceDateRangeRequestBody(final DateTime startDate, final DateTime endDate, final StringBuilder sb) {
-    sb.append("start_date=").append(startDate.toString(EVENT_HUB_DATE_FORMATTER))
-      .append("&end_date=").append(endDate.toString(EVENT_HUB_DATE_FORMATTER));
-    return sb;
-  }
-
-  private <T> T extractFromBody(final String body, Class<T> clazz) throws BadlyFormedResponseBodyException {
-    checkForBadBody(body);
-    T result = null;
-    try {
-      result = gson.fromJson(body, clazz);
-    } catch(JsonSyntaxException e) {
-      throw new BadlyFormedResponseBodyException("Badly formed response",e);
+      body.add("funnel_steps[]", funnelStep);
     }
-    if(result==null)
-      throw new BadlyFormedResponseBodyException("Could not extract from response body");
-    return result;
+    body.add("num_days_to_complete_funnel", daysToCompleteFunnel);
+    return body.toByteArray();
   }
 
-  private void checkForBadBody(final String body) throws BadlyFormedResponseBodyException {
-    if(body == null || "".equals(body))
-      throw new BadlyFormedResponseBodyException("Response body was null");
+  private static FormBodyEncoder produceDateRangeRequestBody(final DateTime startDate, final DateTime endDate, final FormBodyEncoder body) {
+    return body.add("start_date", startDate.toString(EVENT_HUB_DATE_FORMATTER))
+               .add("end_date", endDate.toString(EVENT_HUB_DATE_FORMATTER));
   }
 
   private void checkResponseCode(ClientResponse response, int[] expectedStatusArray) throws UnexpectedResponseCodeException {
@@ -491,56 +1040,88 @@ public class EventHubClient {
       if(status == actualStatus)
         return;
     }
-    throw new UnexpectedResponseCodeException(expectedStatusArray,actualStatus);
+    // Nobody reads the body of an unexpected response, close it so the connection goes back to the pool
+    response.close();
+    throw traced(new UnexpectedResponseCodeException(expectedStatusArray,actualStatus));
+  }
+
+  private RequestSpan startSpan(final String path) {
+    RequestSpan span = tracer.startSpan(path);
+    TraceContext.attach(span);
+    return span;
+  }
+
+  private static void endSpan(final RequestSpan span) {
+    TraceContext.detach(span);
+    span.end();
+  }
+
+  private static <T> T decoded(final RequestSpan span, final T result) {
+    span.mark(TracePhase.DECODE);
+    return result;
+  }
+
+  private static <E extends Exception> E traced(final E e) {
+    TraceContext.current().failed(e);
+    return e;
+  }
+
+  static void checkEvent(final Event event) throws IllegalInputException {
+    checkNotNull(event);
+    checkNotNull(event.getEventType());
+    checkNotNull(event.getExternalUserId());
+  }
+
+  static void checkEventCohortTableInput(final DateTime startDate, final DateTime endDate, final String rowEventType,
+      final String columnEventType, final int numberOfDaysPerRow, final int numberOfDaysPerColumn, final Map<String, String> rowFilters,
+      final Map<String, String> columnFilters) throws IllegalInputException {
+    checkNotNull(startDate);
+    checkNotNull(endDate);
+    checkNotNull(rowEventType);
+    checkNotNull(columnEventType);
+    checkNotNull(rowFilters);
+    checkNotNull(columnFilters);
+    checkNotZero(numberOfDaysPerRow);
+    checkNotZero(numberOfDaysPerColumn);
+  }
+
+  static void checkEventFunnelInput(final DateTime startDate, final DateTime endDate, final String[] funnelSteps,
+      final int daysToCompleteFunnel) throws IllegalInputException {
+    checkNotNull(startDate);
+    checkNotNull(endDate);
+    checkNotEmpty(funnelSteps);
+    if(daysToCompleteFunnel<1)
+      throw new IllegalInputException("Expected days to complete funnel to be greater than 0, but was "+daysToCompleteFunnel);
   }
 
-  private static void checkNotNull(final Object obj) throws IllegalInputException {
+  static void checkNotNull(final Object obj) throws IllegalInputException {
     if(obj==null)
       throw new IllegalInputException("Expecting non null value");
   }
 
-  private static void checkNotEmpty(final Map map) throws IllegalInputException {
+  static void checkNotEmpty(final Map map) throws IllegalInputException {
     if(map==null)
       throw new IllegalInputException("The provided map was null");
     if(map.size()<1)
       throw new IllegalInputException("The provided map was empty");
   }
 
-  private static void checkNotEmpty(final List list) throws IllegalInputException {
+  static void checkNotEmpty(final List list) throws IllegalInputException {
     if(list==null)
       throw new IllegalInputException("The provided list was null");
     if(list.size()<1)
       throw new IllegalInputException("The provided list was empty");
   }
 
-  private static <T> void checkNotEmpty(final T[] array) throws IllegalInputException {
+  static <T> void checkNotEmpty(final T[] array) throws IllegalInputException {
     if(array==null)
       throw new IllegalInputException("The provided array was null");
     if(array.length<1)
       throw new IllegalInputException("The provided array was empty");
   }
 
-  private static void checkNotZero(final int number) throws IllegalInputException {
+  static void checkNotZero(final int number) throws IllegalInputException {
     if(number == 0)
       throw new IllegalInputException("Zero is not a valid input value");
   }
-
-  private List<String> extractUserNames(final String json) throws BadlyFormedResponseBodyException {
-    List<String> names = new ArrayList<String>();
-    JsonArray array = null;
-    try {
-      array = gson.fromJson(json, JsonArray.class);
-    } catch (JsonSyntaxException e) {
-      throw new BadlyFormedResponseBodyException("JSON in response body was badly formed", e);
-    } catch (ClassCastException e) {
-      throw new BadlyFormedResponseBodyException("JSON in response body was not in the expected format");
-    }
-    if(array==null)
-      throw new BadlyFormedResponseBodyException();
-    for(JsonElement jsonElement : array) {
-      JsonObject object = jsonElement.getAsJsonObject();
-      names.add(object.get("external_user_id").getAsString());
-    }
-    return names;
-  }
 }
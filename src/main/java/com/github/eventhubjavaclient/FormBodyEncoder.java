@@ -0,0 +1,269 @@
+package com.github.eventhubjavaclient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Builds application/x-www-form-urlencoded request bodies, percent-encoding names and values as UTF-8 straight into a
+ * byte buffer. The encoding is the same as {@link java.net.URLEncoder} with UTF-8, without its intermediate Strings.
+ * <p>
+ * Each thread has an encoder it can reuse through {@link #forCurrentThread()}, so building a body allocates nothing
+ * beyond the final byte array. Encoders are not thread safe.
+ */
+final class FormBodyEncoder {
+
+  private static final int INITIAL_CAPACITY = 256;
+  // A thread's encoder is shrunk back after building a body bigger than this, so one huge request doesn't pin memory
+  private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+  private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+  private static final boolean[] UNRESERVED = new boolean[128];
+
+  static {
+    for(char c = 'a'; c <= 'z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for(char c = 'A'; c <= 'Z'; c++) {
+      UNRESERVED[c] = true;
+    }
+    for(char c = '0'; c <= '9'; c++) {
+      UNRESERVED[c] = true;
+    }
+    UNRESERVED['-'] = true;
+    UNRESERVED['_'] = true;
+    UNRESERVED['.'] = true;
+    UNRESERVED['*'] = true;
+  }
+
+  private static final ThreadLocal<FormBodyEncoder> THREAD_ENCODER = new ThreadLocal<FormBodyEncoder>() {
+    @Override protected FormBodyEncoder initialValue() {
+      return new FormBodyEncoder();
+    }
+  };
+
+  /**
+   * @return This thread's encoder, emptied ready for a new body.
+   */
+  static FormBodyEncoder forCurrentThread() {
+    FormBodyEncoder encoder = THREAD_ENCODER.get();
+    encoder.reset();
+    return encoder;
+  }
+
+  private byte[] buffer;
+  private int length;
+  // A high surrogate waiting for the low surrogate that completes its code point, or 0
+  private char pendingHighSurrogate;
+
+  FormBodyEncoder() {
+    this(INITIAL_CAPACITY);
+  }
+
+  FormBodyEncoder(final int initialCapacity) {
+    buffer = new byte[initialCapacity];
+  }
+
+  /**
+   * Appends a name=value pair, preceded by an ampersand unless it is the first pair.
+   */
+  FormBodyEncoder add(final String name, final String value) {
+    separate();
+    appendEncoded(name);
+    appendByte('=');
+    appendEncoded(value);
+    return this;
+  }
+
+  FormBodyEncoder add(final String name, final int value) {
+    separate();
+    appendEncoded(name);
+    appendByte('=');
+    appendInt(value);
+    return this;
+  }
+
+  /**
+   * Appends the characters percent-encoded, with no separator. A null sequence appends nothing.
+   */
+  FormBodyEncoder appendEncoded(final CharSequence chars) {
+    if(chars == null)
+      return this;
+    for(int i = 0, n = chars.length(); i < n; i++) {
+      appendEncoded(chars.charAt(i));
+    }
+    endValue();
+    return this;
+  }
+
+  int length() {
+    return length;
+  }
+
+  void reset() {
+    length = 0;
+    pendingHighSurrogate = 0;
+    if(buffer.length > MAX_RETAINED_CAPACITY)
+      buffer = new byte[INITIAL_CAPACITY];
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  void writeTo(final OutputStream output) throws IOException {
+    output.write(buffer, 0, length);
+  }
+
+  @Override public String toString() {
+    char[] chars = new char[length];
+    for(int i = 0; i < length; i++) {
+      // Encoded output is always ASCII
+      chars[i] = (char) buffer[i];
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Creates a writer that percent-encodes everything written to it onto the output stream, holding no more than a small
+   * fixed buffer. Flushing the writer flushes the output stream; closing it does not close the output stream.
+   */
+  static Writer encodingWriter(final OutputStream output) {
+    return new EncodingWriter(output);
+  }
+
+  private void separate() {
+    if(length > 0)
+      appendByte('&');
+  }
+
+  private void appendEncoded(final char c) {
+    if(pendingHighSurrogate != 0) {
+      char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if(Character.isLowSurrogate(c)) {
+        appendUtf8(Character.toCodePoint(high, c));
+        return;
+      }
+      appendMalformed();
+    }
+    if(c < 128) {
+      if(UNRESERVED[c])
+        appendByte(c);
+      else if(c == ' ')
+        appendByte('+');
+      else
+        appendPercentEncoded(c);
+    } else if(Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if(Character.isLowSurrogate(c)) {
+      appendMalformed();
+    } else {
+      appendUtf8(c);
+    }
+  }
+
+  private void endValue() {
+    if(pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      appendMalformed();
+    }
+  }
+
+  private void appendUtf8(final int codePoint) {
+    if(codePoint < 0x800) {
+      appendPercentEncoded(0xC0 | (codePoint >> 6));
+      appendPercentEncoded(0x80 | (codePoint & 0x3F));
+    } else if(codePoint < 0x10000) {
+      appendPercentEncoded(0xE0 | (codePoint >> 12));
+      appendPercentEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+      appendPercentEncoded(0x80 | (codePoint & 0x3F));
+    } else {
+      appendPercentEncoded(0xF0 | (codePoint >> 18));
+      appendPercentEncoded(0x80 | ((codePoint >> 12) & 0x3F));
+      appendPercentEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+      appendPercentEncoded(0x80 | (codePoint & 0x3F));
+    }
+  }
+
+  // Unpaired surrogates are encoded as '?', as URLEncoder does
+  private void appendMalformed() {
+    appendPercentEncoded('?');
+  }
+
+  private void appendPercentEncoded(final int b) {
+    ensureCapacity(3);
+    buffer[length++] = '%';
+    buffer[length++] = HEX[(b >> 4) & 0xF];
+    buffer[length++] = HEX[b & 0xF];
+  }
+
+  private void appendInt(final int value) {
+    // Digits and '-' never need encoding
+    String digits = Integer.toString(value);
+    ensureCapacity(digits.length());
+    for(int i = 0; i < digits.length(); i++) {
+      buffer[length++] = (byte) digits.charAt(i);
+    }
+  }
+
+  private void appendByte(final int b) {
+    ensureCapacity(1);
+    buffer[length++] = (byte) b;
+  }
+
+  private void ensureCapacity(final int extra) {
+    if(length + extra > buffer.length)
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+  }
+
+  private static class EncodingWriter extends Writer {
+
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private final OutputStream output;
+    private final FormBodyEncoder encoder = new FormBodyEncoder(FLUSH_THRESHOLD + 16);
+
+    EncodingWriter(final OutputStream output) {
+      this.output = output;
+    }
+
+    @Override public void write(final char[] chars, final int offset, final int count) throws IOException {
+      for(int i = offset, end = offset + count; i < end; i++) {
+        encoder.appendEncoded(chars[i]);
+        if(encoder.length >= FLUSH_THRESHOLD)
+          drain();
+      }
+    }
+
+    @Override public void write(final String s, final int offset, final int count) throws IOException {
+      for(int i = offset, end = offset + count; i < end; i++) {
+        encoder.appendEncoded(s.charAt(i));
+        if(encoder.length >= FLUSH_THRESHOLD)
+          drain();
+      }
+    }
+
+    @Override public void write(final int c) throws IOException {
+      encoder.appendEncoded((char) c);
+      if(encoder.length >= FLUSH_THRESHOLD)
+        drain();
+    }
+
+    @Override public void flush() throws IOException {
+      drain();
+      output.flush();
+    }
+
+    @Override public void close() throws IOException {
+      encoder.endValue();
+      flush();
+    }
+
+    private void drain() throws IOException {
+      encoder.writeTo(output);
+      // Keep any pending high surrogate, it belongs to the next character written
+      encoder.length = 0;
+    }
+  }
+}
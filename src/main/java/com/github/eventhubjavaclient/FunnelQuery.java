@@ -0,0 +1,37 @@
+package com.github.eventhubjavaclient;
+
+import org.joda.time.DateTime;
+
+/**
+ * The arguments of one {@link EventHubClient#retrieveEventFunnelCounts} call, for running many funnels as a batch.
+ */
+public class FunnelQuery {
+
+  private final DateTime startDate;
+  private final DateTime endDate;
+  private final String[] funnelSteps;
+  private final int daysToCompleteFunnel;
+
+  public FunnelQuery(final DateTime startDate, final DateTime endDate, final String[] funnelSteps, final int daysToCompleteFunnel) {
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.funnelSteps = funnelSteps == null ? null : funnelSteps.clone();
+    this.daysToCompleteFunnel = daysToCompleteFunnel;
+  }
+
+  public DateTime getStartDate() {
+    return startDate;
+  }
+
+  public DateTime getEndDate() {
+    return endDate;
+  }
+
+  public String[] getFunnelSteps() {
+    return funnelSteps == null ? null : funnelSteps.clone();
+  }
+
+  public int getDaysToCompleteFunnel() {
+    return daysToCompleteFunnel;
+  }
+}
@@ -0,0 +1,50 @@
+package com.github.eventhubjavaclient;
+
+/**
+ * The outcome of one query in a {@link EventHubClient#retrieveEventFunnelCountsBatch} call: either its counts or the
+ * exception it failed with, and how long it took.
+ */
+public class FunnelResult {
+
+  private final FunnelQuery query;
+  private final int[] counts;
+  private final Exception error;
+  private final long elapsedMillis;
+
+  FunnelResult(final FunnelQuery query, final int[] counts, final Exception error, final long elapsedMillis) {
+    this.query = query;
+    this.counts = counts;
+    this.error = error;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public FunnelQuery getQuery() {
+    return query;
+  }
+
+  /**
+   * @return The funnel counts, or null if the query failed.
+   */
+  public int[] getCounts() {
+    return counts;
+  }
+
+  /**
+   * @return The exception the query failed with, one of those {@link EventHubClient#retrieveEventFunnelCounts} throws,
+   * or null if it succeeded.
+   */
+  public Exception getError() {
+    return error;
+  }
+
+  public boolean isSuccessful() {
+    return error == null;
+  }
+
+  /**
+   * @return How long the request took. Queries repeated in a batch share the time of the one request made for them.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+}
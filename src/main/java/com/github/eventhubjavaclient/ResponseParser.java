@@ -0,0 +1,137 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventDeserializer;
+import com.github.eventhubjavaclient.event.EventSerializer;
+import com.github.eventhubjavaclient.event.StringInterner;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.metrics.MetricsRegistry;
+import com.github.eventhubjavaclient.tracing.TraceContext;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Turns EventHub response bodies into results. Shared by the blocking and asynchronous clients so both parse, and fail,
+ * in the same way.
+ */
+class ResponseParser {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Type EVENT_COLLECTION_TYPE = new TypeToken<Collection<Event>>(){}.getType();
+
+  private final Gson gson;
+  private final EventDeserializer eventDeserializer;
+  private final MetricsRegistry metrics;
+
+  ResponseParser() {
+    this(null, null);
+  }
+
+  ResponseParser(final StringInterner interner) {
+    this(interner, null);
+  }
+
+  /**
+   * @param interner Interns event types and property keys of deserialized events. May be null for no interning.
+   * @param metrics Counts badly formed responses. May be null.
+   */
+  ResponseParser(final StringInterner interner, final MetricsRegistry metrics) {
+    this.metrics = metrics;
+    eventDeserializer = new EventDeserializer(interner);
+    GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Event.class, eventDeserializer);
+    gsonBuilder.registerTypeAdapter(Event.class, new EventSerializer());
+    gson = gsonBuilder.create();
+  }
+
+  <T> T extractFromBody(final String body, Class<T> clazz) throws BadlyFormedResponseBodyException {
+    checkForBadBody(body);
+    T result = null;
+    try {
+      result = gson.fromJson(body, clazz);
+    } catch(JsonSyntaxException e) {
+      throw badlyFormed(new BadlyFormedResponseBodyException("Badly formed response",e));
+    }
+    if(result==null)
+      throw badlyFormed(new BadlyFormedResponseBodyException("Could not extract from response body"));
+    return result;
+  }
+
+  Collection<Event> extractEvents(final String body) throws BadlyFormedResponseBodyException {
+    checkForBadBody(body);
+    return gson.fromJson(body, EVENT_COLLECTION_TYPE);
+  }
+
+  /**
+   * Reads a JSON array of events from the stream one event at a time, so the body is never held as a String.
+   */
+  List<Event> readEvents(final InputStream body) throws BadlyFormedResponseBodyException {
+    List<Event> events = new ArrayList<Event>();
+    JsonReader reader = new JsonReader(new InputStreamReader(body, UTF_8));
+    try {
+      reader.beginArray();
+      while(reader.hasNext()) {
+        events.add(eventDeserializer.readEvent(reader));
+      }
+      reader.endArray();
+    } catch(IOException e) {
+      throw badlyFormed(new BadlyFormedResponseBodyException("Badly formed response", e));
+    } catch(JsonParseException e) {
+      throw badlyFormed(new BadlyFormedResponseBodyException("Badly formed response", e));
+    } catch(IllegalStateException e) {
+      // JsonReader found a token other than the one expected
+      throw badlyFormed(new BadlyFormedResponseBodyException("Badly formed response", e));
+    } catch(IllegalArgumentException e) {
+      // A date that isn't in the EventHub format
+      throw badlyFormed(new BadlyFormedResponseBodyException("Badly formed response", e));
+    }
+    return events;
+  }
+
+  List<String> extractUserNames(final String json) throws BadlyFormedResponseBodyException {
+    List<String> names = new ArrayList<String>();
+    JsonArray array = null;
+    try {
+      array = gson.fromJson(json, JsonArray.class);
+    } catch (JsonSyntaxException e) {
+      throw badlyFormed(new BadlyFormedResponseBodyException("JSON in response body was badly formed", e));
+    } catch (ClassCastException e) {
+      throw badlyFormed(new BadlyFormedResponseBodyException("JSON in response body was not in the expected format"));
+    }
+    if(array==null)
+      throw badlyFormed(new BadlyFormedResponseBodyException());
+    for(JsonElement jsonElement : array) {
+      JsonObject object = jsonElement.getAsJsonObject();
+      names.add(object.get("external_user_id").getAsString());
+    }
+    return names;
+  }
+
+  private void checkForBadBody(final String body) throws BadlyFormedResponseBodyException {
+    if(body == null || "".equals(body))
+      throw badlyFormed(new BadlyFormedResponseBodyException("Response body was null"));
+  }
+
+  private BadlyFormedResponseBodyException badlyFormed(final BadlyFormedResponseBodyException e) {
+    if(metrics != null)
+      metrics.recordBadlyFormedResponse();
+    TraceContext.current().failed(e);
+    return e;
+  }
+}
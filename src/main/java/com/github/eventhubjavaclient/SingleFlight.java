@@ -0,0 +1,78 @@
+package com.github.eventhubjavaclient;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Lets only one call run per key at a time. A caller arriving while a call for the same key is in flight waits for it
+ * and gets a copy of its result, or the same exception, instead of making the call again. The caller that made the call
+ * gets a copy too, so the result itself is never handed out. Nothing is kept once the
+ * call has finished, so a later caller makes a fresh call.
+ */
+class SingleFlight {
+
+  /**
+   * A call whose result can be shared between callers.
+   */
+  abstract static class Call<V> {
+    abstract V call() throws Exception;
+
+    /**
+     * @return A copy of the result for each caller, so callers cannot see each other's changes to it. Called by
+     * several callers at once on the same result.
+     */
+    abstract V copy(V result);
+  }
+
+  private final ConcurrentMap<Object, FutureTask<Object>> inFlight = new ConcurrentHashMap<Object, FutureTask<Object>>();
+
+  /**
+   * @param key Identifies the call; equal keys must mean calls with equal results.
+   * @param call The call to make if none is in flight for the key.
+   * @return The result of the call.
+   * @throws Exception Whatever the call threw.
+   */
+  @SuppressWarnings("unchecked")
+  <V> V execute(final Object key, final Call<V> call) throws Exception {
+    FutureTask<Object> task = new FutureTask<Object>(new Callable<Object>() {
+      @Override public Object call() throws Exception {
+        return call.call();
+      }
+    });
+    FutureTask<Object> running = inFlight.putIfAbsent(key, task);
+    if(running == null) {
+      try {
+        task.run();
+      } finally {
+        inFlight.remove(key, task);
+      }
+      return call.copy((V) await(task));
+    }
+    return call.copy((V) await(running));
+  }
+
+  private static Object await(final FutureTask<Object> task) throws Exception {
+    boolean interrupted = false;
+    try {
+      while(true) {
+        try {
+          return task.get();
+        } catch(InterruptedException e) {
+          // Another caller is making the call, so keep waiting for it and pass the interrupt on afterwards
+          interrupted = true;
+        }
+      }
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw (Exception) cause;
+    } finally {
+      if(interrupted)
+        Thread.currentThread().interrupt();
+    }
+  }
+}
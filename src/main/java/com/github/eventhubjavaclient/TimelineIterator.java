@@ -0,0 +1,102 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.TimelineReadException;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Iterates over a user's whole timeline, fetching it from the EventHub server a page at a time. As soon as a full page
+ * arrives the next one is requested in the background, so it is usually ready by the time the current page has been
+ * consumed. At most two pages are held in memory. A page with fewer events than the page size ends the timeline.
+ * <p>
+ * Failures to read a page are thrown from {@link #hasNext()} and {@link #next()} as a {@link TimelineReadException}.
+ * Close the iterator when stopping early so a prefetch in progress is cancelled. Iterators are not thread safe.
+ */
+public class TimelineIterator implements Iterator<Event>, Closeable {
+
+  private final EventHubClient client;
+  private final String userName;
+  private final int pageSize;
+  private final ExecutorService prefetchExecutor;
+
+  private List<Event> page = Collections.emptyList();
+  private int index;
+  private int nextOffset;
+  private Future<List<Event>> nextPage;
+
+  TimelineIterator(final EventHubClient client, final String userName, final int offset, final int pageSize,
+      final ExecutorService prefetchExecutor) {
+    this.client = client;
+    this.userName = userName;
+    this.pageSize = pageSize;
+    this.prefetchExecutor = prefetchExecutor;
+    this.nextOffset = offset;
+    this.nextPage = fetch(offset);
+  }
+
+  @Override public boolean hasNext() {
+    while(index >= page.size()) {
+      if(nextPage == null)
+        return false;
+      page = await(nextPage);
+      index = 0;
+      nextOffset += page.size();
+      nextPage = page.size() < pageSize ? null : fetch(nextOffset);
+    }
+    return true;
+  }
+
+  @Override public Event next() {
+    if(!hasNext())
+      throw new NoSuchElementException();
+    Event event = page.get(index);
+    // Let consumed events be collected while the rest of the page is still in use
+    page.set(index++, null);
+    return event;
+  }
+
+  @Override public void remove() {
+    throw new UnsupportedOperationException("Timelines are read only");
+  }
+
+  /**
+   * Stops iterating, cancelling any page being prefetched.
+   */
+  @Override public void close() {
+    if(nextPage != null)
+      nextPage.cancel(true);
+    nextPage = null;
+    page = Collections.emptyList();
+    index = 0;
+  }
+
+  private Future<List<Event>> fetch(final int offset) {
+    return prefetchExecutor.submit(new Callable<List<Event>>() {
+      @Override public List<Event> call() throws Exception {
+        return client.readUserTimelinePage(userName, offset, pageSize);
+      }
+    });
+  }
+
+  private List<Event> await(final Future<List<Event>> future) {
+    try {
+      return future.get();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new TimelineReadException("Interrupted while waiting for the timeline of " + userName, e);
+    } catch(ExecutionException e) {
+      close();
+      throw new TimelineReadException("Could not read the timeline of " + userName + " from offset " + nextOffset, e.getCause());
+    }
+  }
+}
@@ -0,0 +1,383 @@
+package com.github.eventhubjavaclient.cache;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Caches the results of the metadata end points of an {@link EventHubClient}: event types, keys and values, and user
+ * keys and values. These change slowly but are read constantly, e.g. for autocomplete, so serving them from memory
+ * saves a round trip to the EventHub server on almost every call.
+ * <p>
+ * Each end point has its own TTL and a bounded least recently used cache of results. A result read late in its TTL is
+ * reloaded in the background while the cached one is returned, and concurrent misses for the same arguments share a
+ * single request. Errors are not cached. Returned arrays are copies, so callers may change them freely.
+ * <p>
+ * Prefix queries for event and user values are answered locally where possible: the full value set of the event type
+ * and key, or user key, is fetched once and indexed, within a memory budget, and every prefix after that is looked up
+ * in the index. Results from the index are sorted.
+ * <p>
+ * Every other end point is called on the wrapped client, see {@link #getClient()}.
+ */
+public class CachingEventHubClient implements Closeable {
+
+  // Static
+
+  private static final AtomicInteger CACHE_COUNT = new AtomicInteger();
+  private static final List<String> NO_ARGUMENTS = Collections.emptyList();
+
+  /**
+   * Creates a caching client with the default config.
+   * @param client The client whose results are cached. Must be NotNull.
+   * @return The caching client
+   */
+  public static CachingEventHubClient createDefaultClient(final EventHubClient client) {
+    return createCustomClient(client, new MetadataCacheConfig());
+  }
+
+  /**
+   * Creates a caching client with the provided config.
+   * @param client The client whose results are cached. Must be NotNull.
+   * @param config The configuration for the caches. Must be NotNull.
+   * @return The caching client
+   */
+  public static CachingEventHubClient createCustomClient(final EventHubClient client, final MetadataCacheConfig config) {
+    if(client == null)
+      throw new IllegalArgumentException("client must not be null");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    return new CachingEventHubClient(client, config);
+  }
+
+  // Instance
+
+  private final EventHubClient client;
+  private final ExecutorService refreshExecutor;
+  private final RefreshingCache<List<String>, String[]> eventTypes;
+  private final RefreshingCache<List<String>, String[]> eventKeys;
+  private final RefreshingCache<List<String>, String[]> eventValues;
+  private final RefreshingCache<List<String>, String[]> userKeys;
+  private final RefreshingCache<List<String>, String[]> userValues;
+  // Null when prefix indexing is turned off
+  private final RefreshingCache<List<String>, PrefixIndex> eventValueIndexes;
+  private final RefreshingCache<List<String>, PrefixIndex> userValueIndexes;
+
+  private CachingEventHubClient(final EventHubClient client, final MetadataCacheConfig config) {
+    this.client = client;
+    final int cacheNumber = CACHE_COUNT.incrementAndGet();
+    this.refreshExecutor = Executors.newFixedThreadPool(config.getRefreshThreads(), new ThreadFactory() {
+      private final AtomicInteger threadCount = new AtomicInteger();
+
+      @Override public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, "eventhub-cache-" + cacheNumber + "-refresh-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    this.eventTypes = newCache(config, config.getEventTypesTtlMillis(), new RefreshingCache.Loader<List<String>, String[]>() {
+      @Override public String[] load(final List<String> key) throws Exception {
+        return client.getEventTypes();
+      }
+    });
+    this.eventKeys = newCache(config, config.getEventKeysTtlMillis(), new RefreshingCache.Loader<List<String>, String[]>() {
+      @Override public String[] load(final List<String> key) throws Exception {
+        return client.getEventKeys(key.get(0));
+      }
+    });
+    this.eventValues = newCache(config, config.getEventValuesTtlMillis(), new RefreshingCache.Loader<List<String>, String[]>() {
+      @Override public String[] load(final List<String> key) throws Exception {
+        return client.getEventValues(key.get(0), key.get(1), key.get(2));
+      }
+    });
+    this.userKeys = newCache(config, config.getUserKeysTtlMillis(), new RefreshingCache.Loader<List<String>, String[]>() {
+      @Override public String[] load(final List<String> key) throws Exception {
+        return client.getUserKeys();
+      }
+    });
+    this.userValues = newCache(config, config.getUserValuesTtlMillis(), new RefreshingCache.Loader<List<String>, String[]>() {
+      @Override public String[] load(final List<String> key) throws Exception {
+        return client.getUserValues(key.get(0), key.get(1));
+      }
+    });
+
+    final long prefixIndexMaxBytes = config.getPrefixIndexMaxBytes();
+    if(prefixIndexMaxBytes > 0) {
+      this.eventValueIndexes = newIndexCache(config, config.getEventValuesTtlMillis(), new RefreshingCache.Loader<List<String>, PrefixIndex>() {
+        @Override public PrefixIndex load(final List<String> key) throws Exception {
+          return PrefixIndex.build(client.getEventValues(key.get(0), key.get(1)), prefixIndexMaxBytes);
+        }
+      });
+      this.userValueIndexes = newIndexCache(config, config.getUserValuesTtlMillis(), new RefreshingCache.Loader<List<String>, PrefixIndex>() {
+        @Override public PrefixIndex load(final List<String> key) throws Exception {
+          return PrefixIndex.build(client.getUserValues(key.get(0)), prefixIndexMaxBytes);
+        }
+      });
+    } else {
+      this.eventValueIndexes = null;
+      this.userValueIndexes = null;
+    }
+  }
+
+  private RefreshingCache<List<String>, String[]> newCache(final MetadataCacheConfig config, final long ttlMillis,
+      final RefreshingCache.Loader<List<String>, String[]> loader) {
+    return new RefreshingCache<List<String>, String[]>(loader, refreshExecutor, config.getMaxEntriesPerEndpoint(),
+        ttlMillis, config.getRefreshAfterRatio());
+  }
+
+  private RefreshingCache<List<String>, PrefixIndex> newIndexCache(final MetadataCacheConfig config, final long ttlMillis,
+      final RefreshingCache.Loader<List<String>, PrefixIndex> loader) {
+    return new RefreshingCache<List<String>, PrefixIndex>(loader, refreshExecutor, new RefreshingCache.Weigher<PrefixIndex>() {
+      @Override public long weigh(final PrefixIndex index) {
+        return index.getEstimatedBytes();
+      }
+    }, config.getPrefixIndexMaxBytes(), ttlMillis, config.getRefreshAfterRatio());
+  }
+
+  /**
+   * @return The wrapped client, for the end points that are not cached.
+   */
+  public EventHubClient getClient() {
+    return client;
+  }
+
+  /**
+   * Gets all event types, from the cache if possible. See {@link EventHubClient#getEventTypes()}.
+   * @return An array of all event types, as Strings.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   */
+  public String[] getEventTypes() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    try {
+      return get(eventTypes, NO_ARGUMENTS).clone();
+    } catch(IllegalInputException e) {
+      throw new IllegalStateException("getEventTypes takes no input", e);
+    }
+  }
+
+  /**
+   * Gets all event keys for the given event type, from the cache if possible. See {@link EventHubClient#getEventKeys(String)}.
+   * @param eventType The event type. Must be NotNull.
+   * @return An array of event keys as Strings.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided (null event type).
+   */
+  public String[] getEventKeys(final String eventType)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(eventType);
+    return get(eventKeys, Collections.singletonList(eventType)).clone();
+  }
+
+  /**
+   * Gets all event values for the given event type and key, from the cache if possible.
+   * See {@link EventHubClient#getEventValues(String, String)}.
+   * @param eventType The event type. Must be NotNull.
+   * @param eventKey The event key. Must be NotNull.
+   * @return Returns all event values for the given event type and key as an array of Strings.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided (null event type or event key).
+   */
+  public String[] getEventValues(final String eventType, final String eventKey)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return getEventValues(eventType, eventKey, null);
+  }
+
+  /**
+   * Gets all event values for the given event type and key with the given prefix, from the cache if possible.
+   * See {@link EventHubClient#getEventValues(String, String, String)}.
+   * @param eventType The event type. Must be NotNull.
+   * @param eventKey The event key. Must be NotNull.
+   * @param prefix The prefix to filter event values by. No filter will be applied if set to null.
+   * @return Returns all event values for the given event type and key, with the given prefix, as an array of Strings.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided (null event type or event key).
+   */
+  public String[] getEventValues(final String eventType, final String eventKey, final String prefix)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(eventType);
+    checkNotNull(eventKey);
+    if(eventValueIndexes != null) {
+      String[] values = lookUp(eventValueIndexes, Arrays.asList(eventType, eventKey), prefix);
+      if(values != null)
+        return values;
+    }
+    return get(eventValues, Arrays.asList(eventType, eventKey, prefix)).clone();
+  }
+
+  /**
+   * Gets all user keys, from the cache if possible. See {@link EventHubClient#getUserKeys()}.
+   * @return The user keys, guaranteed not null.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API
+   * @throws BadlyFormedResponseBodyException Thrown if the response body was not a well-formed JSON array.
+   */
+  public String[] getUserKeys() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    try {
+      return get(userKeys, NO_ARGUMENTS).clone();
+    } catch(IllegalInputException e) {
+      throw new IllegalStateException("getUserKeys takes no input", e);
+    }
+  }
+
+  /**
+   * Gets all values for the given user key, from the cache if possible. See {@link EventHubClient#getUserValues(String)}.
+   * @param userKey The key to find all values for. Must be NotNull.
+   * @return All values for the given key.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the response body was not a well-formed JSON array.
+   * @throws IllegalInputException Thrown if illegal input is provided (null user key).
+   */
+  public String[] getUserValues(final String userKey)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return getUserValues(userKey, null);
+  }
+
+  /**
+   * Gets all values for the given user key with the given prefix, from the cache if possible.
+   * See {@link EventHubClient#getUserValues(String, String)}.
+   * @param userKey The key to find all values for. Must be NotNull.
+   * @param prefix The prefix to filter the values by. No filter will be applied if set to null.
+   * @return The filtered values for the given key.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the response body was not a well-formed JSON array.
+   * @throws IllegalInputException Thrown if illegal input is provided (null user key).
+   */
+  public String[] getUserValues(final String userKey, final String prefix)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(userKey);
+    if(userValueIndexes != null) {
+      String[] values = lookUp(userValueIndexes, Collections.singletonList(userKey), prefix);
+      if(values != null)
+        return values;
+    }
+    return get(userValues, Arrays.asList(userKey, prefix)).clone();
+  }
+
+  /**
+   * Drops every cached result, so the next call to each end point goes to the EventHub server.
+   */
+  public void invalidateAll() {
+    eventTypes.invalidateAll();
+    eventKeys.invalidateAll();
+    eventValues.invalidateAll();
+    userKeys.invalidateAll();
+    userValues.invalidateAll();
+    if(eventValueIndexes != null) {
+      eventValueIndexes.invalidateAll();
+      userValueIndexes.invalidateAll();
+    }
+  }
+
+  /**
+   * Drops the cached values of one event type and key, for every prefix, e.g. after tracking events with new values.
+   * @param eventType The event type.
+   * @param eventKey The event key.
+   */
+  public void invalidateEventValues(final String eventType, final String eventKey) {
+    final List<String> typeAndKey = Arrays.asList(eventType, eventKey);
+    eventValues.invalidateIf(new Predicate<List<String>>() {
+      @Override public boolean test(final List<String> key) {
+        return key.subList(0, 2).equals(typeAndKey);
+      }
+    });
+    if(eventValueIndexes != null)
+      eventValueIndexes.invalidate(typeAndKey);
+  }
+
+  /**
+   * Drops the cached values of one user key, for every prefix, e.g. after adding or updating users.
+   * @param userKey The user key.
+   */
+  public void invalidateUserValues(final String userKey) {
+    final List<String> userKeyOnly = Collections.singletonList(userKey);
+    userValues.invalidateIf(new Predicate<List<String>>() {
+      @Override public boolean test(final List<String> key) {
+        return key.subList(0, 1).equals(userKeyOnly);
+      }
+    });
+    if(userValueIndexes != null)
+      userValueIndexes.invalidate(userKeyOnly);
+  }
+
+  /**
+   * @return The estimated memory held by prefix indexes, over event values and user values.
+   */
+  public long getPrefixIndexBytes() {
+    return eventValueIndexes == null ? 0 : eventValueIndexes.getTotalWeight() + userValueIndexes.getTotalWeight();
+  }
+
+  /**
+   * @return The number of calls answered from the cache, over all end points.
+   */
+  public long getHitCount() {
+    long hitCount = eventTypes.getHitCount() + eventKeys.getHitCount() + eventValues.getHitCount() + userKeys.getHitCount()
+        + userValues.getHitCount();
+    if(eventValueIndexes != null)
+      hitCount += eventValueIndexes.getHitCount() + userValueIndexes.getHitCount();
+    return hitCount;
+  }
+
+  /**
+   * @return The number of calls that had to wait for the EventHub server, over all end points.
+   */
+  public long getMissCount() {
+    long missCount = eventTypes.getMissCount() + eventKeys.getMissCount() + eventValues.getMissCount()
+        + userKeys.getMissCount() + userValues.getMissCount();
+    if(eventValueIndexes != null)
+      missCount += eventValueIndexes.getMissCount() + userValueIndexes.getMissCount();
+    return missCount;
+  }
+
+  /**
+   * Stops the background refresh threads. The wrapped client is not closed.
+   */
+  @Override public void close() {
+    refreshExecutor.shutdownNow();
+  }
+
+  // Utils
+
+  // The values from the index, or null if the value set was too big to index
+  private static String[] lookUp(final RefreshingCache<List<String>, PrefixIndex> indexes, final List<String> key,
+      final String prefix) throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    PrefixIndex index = get(indexes, key);
+    if(!index.isIndexed())
+      return null;
+    return prefix == null ? index.getValues().clone() : index.findByPrefix(prefix);
+  }
+
+  private static <V> V get(final RefreshingCache<List<String>, V> cache, final List<String> key)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    try {
+      return cache.get(key);
+    } catch(UnexpectedResponseCodeException e) {
+      throw e;
+    } catch(BadlyFormedResponseBodyException e) {
+      throw e;
+    } catch(IllegalInputException e) {
+      throw e;
+    } catch(RuntimeException e) {
+      throw e;
+    } catch(Exception e) {
+      throw new IllegalStateException("Unexpected exception loading " + key, e);
+    }
+  }
+
+  private static void checkNotNull(final String input) throws IllegalInputException {
+    if(input == null)
+      throw new IllegalInputException("Expecting non null value");
+  }
+}
@@ -0,0 +1,498 @@
+package com.github.eventhubjavaclient.cache;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+import static com.github.eventhubjavaclient.EventHubClientUtils.EVENT_HUB_DATE_FORMATTER;
+
+/**
+ * Caches the results of {@link EventHubClient#retrieveEventFunnelCounts} and {@link EventHubClient#retrieveEventCohortTable}.
+ * <p>
+ * A query over days that have all ended, including the days a funnel has to complete in or the cohort columns span,
+ * can no longer change, so its result is cached until evicted. Queries still open to new events are cached for a short
+ * TTL. Results are kept varint encoded, a few bytes per count, within a memory budget split evenly between closed and
+ * open ranges, and each call gets a freshly decoded copy. Concurrent misses for the same query share a single request.
+ * <p>
+ * Results for closed ranges can also be appended to a file and reloaded from it when the next client starts. Each
+ * record carries a CRC32, and records that are damaged or do not decode are dropped on loading. The file is compacted
+ * down to the closed range budget on start up.
+ */
+public class CachingQueryClient implements Closeable {
+
+  // Static
+
+  // Loads only ever run on the calling thread, refreshing is off
+  private static final Executor NO_REFRESH = new Executor() {
+    @Override public void execute(final Runnable command) {
+      command.run();
+    }
+  };
+  // Rough heap cost of a cached entry besides its encoded result
+  private static final long ENTRY_OVERHEAD_BYTES = 128;
+  // Marks that every result written before it was invalidated, in place of a record's id length
+  private static final int INVALIDATION_MARKER = -1;
+  private static final String FUNNEL_ID_PREFIX = "funnel";
+  private static final String COHORT_ID_PREFIX = "cohort";
+
+  /**
+   * Creates a caching client with the default config, holding results in memory only.
+   * @param client The client whose results are cached. Must be NotNull.
+   * @return The caching client
+   */
+  public static CachingQueryClient createDefaultClient(final EventHubClient client) {
+    try {
+      return createCustomClient(client, new QueryCacheConfig());
+    } catch(IOException e) {
+      throw new IllegalStateException("No file is read without a persistence file", e);
+    }
+  }
+
+  /**
+   * Creates a caching client with the provided config, loading any results persisted by an earlier client.
+   * @param client The client whose results are cached. Must be NotNull.
+   * @param config The configuration for the cache. Must be NotNull.
+   * @return The caching client
+   * @throws IOException Thrown if the persistence file could not be read or compacted.
+   */
+  public static CachingQueryClient createCustomClient(final EventHubClient client, final QueryCacheConfig config)
+      throws IOException {
+    if(client == null)
+      throw new IllegalArgumentException("client must not be null");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    CachingQueryClient cachingClient = new CachingQueryClient(client, config);
+    if(config.getPersistenceFile() != null)
+      cachingClient.loadPersistedResults(config.getPersistenceFile());
+    return cachingClient;
+  }
+
+  // Instance
+
+  private final EventHubClient client;
+  private final long closedRangeDelayMillis;
+  private final long maxClosedRangeBytes;
+  private final RefreshingCache<Query, byte[]> closedRanges;
+  private final RefreshingCache<Query, byte[]> openRanges;
+
+  // Guarded by this, null when not persisting
+  private OutputStream persistence;
+  // Guarded by this, results loaded across an invalidation are not persisted after its marker
+  private long invalidationCount;
+
+  private CachingQueryClient(final EventHubClient client, final QueryCacheConfig config) {
+    this.client = client;
+    this.closedRangeDelayMillis = config.getClosedRangeDelayMillis();
+    // Split so the two caches together stay within the budget
+    long maxOpenRangeBytes = config.getMaxCachedBytes() / 2;
+    this.maxClosedRangeBytes = config.getMaxCachedBytes() - maxOpenRangeBytes;
+    RefreshingCache.Weigher<byte[]> weigher = new RefreshingCache.Weigher<byte[]>() {
+      @Override public long weigh(final byte[] result) {
+        return result.length + ENTRY_OVERHEAD_BYTES;
+      }
+    };
+    this.closedRanges = new RefreshingCache<Query, byte[]>(new RefreshingCache.Loader<Query, byte[]>() {
+      @Override public byte[] load(final Query query) throws Exception {
+        long invalidationsBefore = getInvalidationCount();
+        byte[] result = query.run(client);
+        persist(query.id, result, invalidationsBefore);
+        return result;
+      }
+    }, NO_REFRESH, weigher, maxClosedRangeBytes, Long.MAX_VALUE, 1);
+    this.openRanges = new RefreshingCache<Query, byte[]>(new RefreshingCache.Loader<Query, byte[]>() {
+      @Override public byte[] load(final Query query) throws Exception {
+        return query.run(client);
+      }
+    }, NO_REFRESH, weigher, maxOpenRangeBytes, config.getOpenRangeTtlMillis(), 1);
+  }
+
+  /**
+   * @return The wrapped client, for the end points that are not cached.
+   */
+  public EventHubClient getClient() {
+    return client;
+  }
+
+  /**
+   * Retrieves funnel counts, from the cache if possible. See {@link EventHubClient#retrieveEventFunnelCounts}.
+   * @param startDate The first day of the funnel. Must be NotNull.
+   * @param endDate The last day a user may enter the funnel. Must be NotNull.
+   * @param funnelSteps The event types making up the funnel, in order. Must be NotEmpty.
+   * @param daysToCompleteFunnel The number of days users have to complete the funnel. Must be greater than 0.
+   * @return The number of users reaching each step.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided.
+   */
+  public int[] retrieveEventFunnelCounts(final DateTime startDate, final DateTime endDate, final String[] funnelSteps,
+      final int daysToCompleteFunnel) throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(startDate);
+    checkNotNull(endDate);
+    checkNotNull(funnelSteps);
+    StringBuilder id = new StringBuilder(FUNNEL_ID_PREFIX);
+    appendDateRange(id, startDate, endDate);
+    id.append('|').append(daysToCompleteFunnel);
+    for(String step : funnelSteps) {
+      appendString(id, step);
+    }
+    Query query = new Query(id.toString()) {
+      @Override byte[] run(final EventHubClient client) throws Exception {
+        return QueryResultCodec.encode(client.retrieveEventFunnelCounts(startDate, endDate, funnelSteps, daysToCompleteFunnel));
+      }
+    };
+    // Users entering on the last day have daysToCompleteFunnel more days to complete it
+    return QueryResultCodec.decodeCounts(get(query, endDate, daysToCompleteFunnel));
+  }
+
+  /**
+   * Retrieves a cohort table, from the cache if possible. See {@link EventHubClient#retrieveEventCohortTable}.
+   * @param startDate The first day of the first row. Must be NotNull.
+   * @param endDate The last day of the last row. Must be NotNull.
+   * @param rowEventType The event type counted in rows. Must be NotNull.
+   * @param columnEventType The event type counted in columns. Must be NotNull.
+   * @param numberOfDaysPerRow The number of days in each row. Must not be 0.
+   * @param numberOfColumns The number of columns. Must not be 0.
+   * @param rowFilters Filters on row events. Must be NotNull.
+   * @param columnFilters Filters on column events. Must be NotNull.
+   * @return The cohort table.
+   * @throws UnexpectedResponseCodeException Thrown if we got anything other than a 200 OK response from the EventHub API.
+   * @throws BadlyFormedResponseBodyException Thrown if the EventHub API returns a badly formed response.
+   * @throws IllegalInputException Thrown if illegal input is provided.
+   */
+  public int[][] retrieveEventCohortTable(final DateTime startDate, final DateTime endDate, final String rowEventType,
+      final String columnEventType, final int numberOfDaysPerRow, final int numberOfColumns,
+      final Map<String, String> rowFilters, final Map<String, String> columnFilters)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(startDate);
+    checkNotNull(endDate);
+    checkNotNull(rowFilters);
+    checkNotNull(columnFilters);
+    StringBuilder id = new StringBuilder(COHORT_ID_PREFIX);
+    appendDateRange(id, startDate, endDate);
+    appendString(id, rowEventType);
+    appendString(id, columnEventType);
+    id.append('|').append(numberOfDaysPerRow).append('|').append(numberOfColumns);
+    appendFilters(id, rowFilters);
+    appendFilters(id, columnFilters);
+    Query query = new Query(id.toString()) {
+      @Override byte[] run(final EventHubClient client) throws Exception {
+        return QueryResultCodec.encode(client.retrieveEventCohortTable(startDate, endDate, rowEventType, columnEventType,
+            numberOfDaysPerRow, numberOfColumns, rowFilters, columnFilters));
+      }
+    };
+    // The columns of the last row reach numberOfColumns rows' worth of days past it
+    long daysAfterEnd = Math.abs((long) numberOfDaysPerRow) * Math.abs((long) numberOfColumns);
+    return QueryResultCodec.decodeTable(get(query, endDate, daysAfterEnd));
+  }
+
+  /**
+   * Drops every cached result, including from the persistence file when the next client loads it. Queries already
+   * running return their results to their callers but neither cache nor persist them.
+   */
+  public void invalidateAll() {
+    persistInvalidation();
+    closedRanges.invalidateAll();
+    openRanges.invalidateAll();
+  }
+
+  public long getHitCount() {
+    return closedRanges.getHitCount() + openRanges.getHitCount();
+  }
+
+  public long getMissCount() {
+    return closedRanges.getMissCount() + openRanges.getMissCount();
+  }
+
+  /**
+   * @return The memory held by cached results, estimated.
+   */
+  public long getCachedBytes() {
+    return closedRanges.getTotalWeight() + openRanges.getTotalWeight();
+  }
+
+  /**
+   * @return true if results for closed ranges are being written to the persistence file. Writing stops after an error.
+   */
+  public synchronized boolean isPersisting() {
+    return persistence != null;
+  }
+
+  /**
+   * Closes the persistence file. The wrapped client is not closed.
+   */
+  @Override public synchronized void close() {
+    closePersistence();
+  }
+
+  // Utils
+
+  private byte[] get(final Query query, final DateTime endDate, final long daysAfterEnd)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    // The server counts whole days of endDate's zone, so the query is closed once the day after all of them has begun
+    long closesAtMillis = endDate.withTimeAtStartOfDay().plusDays((int) Math.min(Integer.MAX_VALUE - 1, daysAfterEnd + 1))
+                                 .getMillis() + closedRangeDelayMillis;
+    RefreshingCache<Query, byte[]> cache = System.currentTimeMillis() >= closesAtMillis ? closedRanges : openRanges;
+    try {
+      return cache.get(query);
+    } catch(UnexpectedResponseCodeException e) {
+      throw e;
+    } catch(BadlyFormedResponseBodyException e) {
+      throw e;
+    } catch(IllegalInputException e) {
+      throw e;
+    } catch(RuntimeException e) {
+      throw e;
+    } catch(Exception e) {
+      throw new IllegalStateException("Unexpected exception running " + query.id, e);
+    }
+  }
+
+  private void loadPersistedResults(final File file) throws IOException {
+    Map<String, byte[]> results = new LinkedHashMap<String, byte[]>();
+    long totalBytes = 0;
+    if(file.exists()) {
+      // Lengths beyond the file's size can only come from a damaged record
+      long fileLength = file.length();
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        while(true) {
+          String id;
+          byte[] result;
+          try {
+            int idLength = in.readInt();
+            if(idLength == INVALIDATION_MARKER) {
+              // Everything before an invalidation marker is dropped
+              results.clear();
+              totalBytes = 0;
+              continue;
+            }
+            if(idLength < 0 || idLength > fileLength)
+              break;
+            byte[] idBytes = new byte[idLength];
+            in.readFully(idBytes);
+            int resultLength = in.readInt();
+            if(resultLength < 0 || resultLength > fileLength)
+              break;
+            result = new byte[resultLength];
+            in.readFully(result);
+            // A record that fails its checksum may have damaged lengths too, so nothing after it can be trusted
+            if(in.readInt() != checksum(idBytes, result))
+              break;
+            id = new String(idBytes, StandardCharsets.UTF_8);
+          } catch(EOFException e) {
+            // The end of the file, or a record cut short by a crash
+            break;
+          }
+          if(!decodes(id, result))
+            continue;
+          byte[] previous = results.remove(id);
+          if(previous != null)
+            totalBytes -= previous.length + ENTRY_OVERHEAD_BYTES;
+          results.put(id, result);
+          totalBytes += result.length + ENTRY_OVERHEAD_BYTES;
+        }
+      } finally {
+        in.close();
+      }
+    }
+    // Keep the most recently written results that fit the budget, as the cache would have
+    Iterator<byte[]> oldest = results.values().iterator();
+    while(totalBytes > maxClosedRangeBytes && oldest.hasNext()) {
+      totalBytes -= oldest.next().length + ENTRY_OVERHEAD_BYTES;
+      oldest.remove();
+    }
+
+    File compacted = new File(file.getPath() + ".tmp");
+    OutputStream out = new FileOutputStream(compacted);
+    try {
+      for(Map.Entry<String, byte[]> result : results.entrySet()) {
+        out.write(record(result.getKey(), result.getValue()));
+      }
+    } finally {
+      out.close();
+    }
+    Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    for(Map.Entry<String, byte[]> result : results.entrySet()) {
+      closedRanges.put(new Query(result.getKey()) {
+        @Override byte[] run(final EventHubClient client) {
+          throw new IllegalStateException("Persisted results are only looked up, never run");
+        }
+      }, result.getValue());
+    }
+    synchronized(this) {
+      persistence = new FileOutputStream(file, true);
+    }
+  }
+
+  private synchronized long getInvalidationCount() {
+    return invalidationCount;
+  }
+
+  /**
+   * Appends a result, unless its query started before the latest invalidation, so it may predate it.
+   */
+  private synchronized void persist(final String id, final byte[] result, final long invalidationsBefore) {
+    if(invalidationsBefore == invalidationCount)
+      write(record(id, result));
+  }
+
+  private synchronized void persistInvalidation() {
+    invalidationCount++;
+    write(invalidationMarker());
+  }
+
+  // Called holding the lock
+  private void write(final byte[] bytes) {
+    if(persistence == null)
+      return;
+    try {
+      persistence.write(bytes);
+      persistence.flush();
+    } catch(IOException e) {
+      // The cache still works in memory, so give up on the file rather than fail the query
+      closePersistence();
+    }
+  }
+
+  private void closePersistence() {
+    if(persistence == null)
+      return;
+    try {
+      persistence.close();
+    } catch(IOException e) {
+      // Nothing more to do, results already written stay usable
+    }
+    persistence = null;
+  }
+
+  // The id's length and bytes, the result's length and bytes, then a CRC32 of the id and result bytes
+  private static byte[] record(final String id, final byte[] result) {
+    byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(12 + idBytes.length + result.length);
+    writeInt(out, idBytes.length);
+    out.write(idBytes, 0, idBytes.length);
+    writeInt(out, result.length);
+    out.write(result, 0, result.length);
+    writeInt(out, checksum(idBytes, result));
+    return out.toByteArray();
+  }
+
+  private static byte[] invalidationMarker() {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(4);
+    writeInt(out, INVALIDATION_MARKER);
+    return out.toByteArray();
+  }
+
+  private static int checksum(final byte[] idBytes, final byte[] result) {
+    CRC32 crc = new CRC32();
+    crc.update(idBytes);
+    crc.update(result);
+    return (int) crc.getValue();
+  }
+
+  /**
+   * Checks a persisted result decodes as its kind of query does, so a bad one is dropped rather than failing every
+   * lookup of the query.
+   */
+  private static boolean decodes(final String id, final byte[] result) {
+    try {
+      if(id.startsWith(FUNNEL_ID_PREFIX))
+        QueryResultCodec.decodeCounts(result);
+      else if(id.startsWith(COHORT_ID_PREFIX))
+        QueryResultCodec.decodeTable(result);
+      else
+        return false;
+      return true;
+    } catch(IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  private static void writeInt(final ByteArrayOutputStream out, final int value) {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  private static void appendDateRange(final StringBuilder id, final DateTime startDate, final DateTime endDate) {
+    id.append('|').append(startDate.toString(EVENT_HUB_DATE_FORMATTER)).append('|').append(endDate.toString(EVENT_HUB_DATE_FORMATTER));
+  }
+
+  // Length prefixed, so no value can be mistaken for a separator
+  private static void appendString(final StringBuilder id, final String value) {
+    if(value == null)
+      id.append("|-");
+    else
+      id.append('|').append(value.length()).append(':').append(value);
+  }
+
+  // Sorted by key, as the same filters in another order make the same query
+  private static void appendFilters(final StringBuilder id, final Map<String, String> filters) {
+    List<Map.Entry<String, String>> entries = new ArrayList<Map.Entry<String, String>>(filters.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<String, String>>() {
+      @Override public int compare(final Map.Entry<String, String> a, final Map.Entry<String, String> b) {
+        if(a.getKey() == null)
+          return b.getKey() == null ? 0 : -1;
+        return b.getKey() == null ? 1 : a.getKey().compareTo(b.getKey());
+      }
+    });
+    id.append('|').append(entries.size());
+    for(Map.Entry<String, String> entry : entries) {
+      appendString(id, entry.getKey());
+      appendString(id, entry.getValue());
+    }
+  }
+
+  private static void checkNotNull(final Object input) throws IllegalInputException {
+    if(input == null)
+      throw new IllegalInputException("Expecting non null value");
+  }
+
+  /**
+   * A query identified by its canonical form, which is also its key in the persistence file.
+   */
+  private abstract static class Query {
+    final String id;
+
+    Query(final String id) {
+      this.id = id;
+    }
+
+    abstract byte[] run(EventHubClient client) throws Exception;
+
+    @Override public boolean equals(final Object o) {
+      return o instanceof Query && id.equals(((Query) o).id);
+    }
+
+    @Override public int hashCode() {
+      return id.hashCode();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.github.eventhubjavaclient.cache;
+
+/**
+ * Configuration for a {@link CachingEventHubClient}. Every setting has a default so only the values that matter need setting.
+ */
+public class MetadataCacheConfig {
+
+  public static final long DEFAULT_EVENT_TYPES_TTL_MILLIS = 60000;
+  public static final long DEFAULT_EVENT_KEYS_TTL_MILLIS = 60000;
+  public static final long DEFAULT_EVENT_VALUES_TTL_MILLIS = 30000;
+  public static final long DEFAULT_USER_KEYS_TTL_MILLIS = 60000;
+  public static final long DEFAULT_USER_VALUES_TTL_MILLIS = 30000;
+  public static final int DEFAULT_MAX_ENTRIES_PER_ENDPOINT = 10000;
+  public static final double DEFAULT_REFRESH_AFTER_RATIO = 0.75;
+  public static final int DEFAULT_REFRESH_THREADS = 2;
+  public static final long DEFAULT_PREFIX_INDEX_MAX_BYTES = 16L * 1024 * 1024;
+
+  private long eventTypesTtlMillis = DEFAULT_EVENT_TYPES_TTL_MILLIS;
+  private long eventKeysTtlMillis = DEFAULT_EVENT_KEYS_TTL_MILLIS;
+  private long eventValuesTtlMillis = DEFAULT_EVENT_VALUES_TTL_MILLIS;
+  private long userKeysTtlMillis = DEFAULT_USER_KEYS_TTL_MILLIS;
+  private long userValuesTtlMillis = DEFAULT_USER_VALUES_TTL_MILLIS;
+  private int maxEntriesPerEndpoint = DEFAULT_MAX_ENTRIES_PER_ENDPOINT;
+  private double refreshAfterRatio = DEFAULT_REFRESH_AFTER_RATIO;
+  private int refreshThreads = DEFAULT_REFRESH_THREADS;
+  private long prefixIndexMaxBytes = DEFAULT_PREFIX_INDEX_MAX_BYTES;
+
+  public long getEventTypesTtlMillis() {
+    return eventTypesTtlMillis;
+  }
+
+  /**
+   * @param eventTypesTtlMillis How long event types are cached for. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setEventTypesTtlMillis(final long eventTypesTtlMillis) {
+    checkPositive(eventTypesTtlMillis, "eventTypesTtlMillis");
+    this.eventTypesTtlMillis = eventTypesTtlMillis;
+    return this;
+  }
+
+  public long getEventKeysTtlMillis() {
+    return eventKeysTtlMillis;
+  }
+
+  /**
+   * @param eventKeysTtlMillis How long the keys of each event type are cached for. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setEventKeysTtlMillis(final long eventKeysTtlMillis) {
+    checkPositive(eventKeysTtlMillis, "eventKeysTtlMillis");
+    this.eventKeysTtlMillis = eventKeysTtlMillis;
+    return this;
+  }
+
+  public long getEventValuesTtlMillis() {
+    return eventValuesTtlMillis;
+  }
+
+  /**
+   * @param eventValuesTtlMillis How long event values are cached for, per event type, key and prefix. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setEventValuesTtlMillis(final long eventValuesTtlMillis) {
+    checkPositive(eventValuesTtlMillis, "eventValuesTtlMillis");
+    this.eventValuesTtlMillis = eventValuesTtlMillis;
+    return this;
+  }
+
+  public long getUserKeysTtlMillis() {
+    return userKeysTtlMillis;
+  }
+
+  /**
+   * @param userKeysTtlMillis How long user keys are cached for. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setUserKeysTtlMillis(final long userKeysTtlMillis) {
+    checkPositive(userKeysTtlMillis, "userKeysTtlMillis");
+    this.userKeysTtlMillis = userKeysTtlMillis;
+    return this;
+  }
+
+  public long getUserValuesTtlMillis() {
+    return userValuesTtlMillis;
+  }
+
+  /**
+   * @param userValuesTtlMillis How long user values are cached for, per key and prefix. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setUserValuesTtlMillis(final long userValuesTtlMillis) {
+    checkPositive(userValuesTtlMillis, "userValuesTtlMillis");
+    this.userValuesTtlMillis = userValuesTtlMillis;
+    return this;
+  }
+
+  public int getMaxEntriesPerEndpoint() {
+    return maxEntriesPerEndpoint;
+  }
+
+  /**
+   * @param maxEntriesPerEndpoint The most results cached for each end point, the least recently used being evicted
+   *                              first. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setMaxEntriesPerEndpoint(final int maxEntriesPerEndpoint) {
+    checkPositive(maxEntriesPerEndpoint, "maxEntriesPerEndpoint");
+    this.maxEntriesPerEndpoint = maxEntriesPerEndpoint;
+    return this;
+  }
+
+  public double getRefreshAfterRatio() {
+    return refreshAfterRatio;
+  }
+
+  /**
+   * @param refreshAfterRatio The fraction of its TTL after which reading a result also reloads it in the background.
+   *                          Must be greater than 0 and at most 1, where 1 turns refreshing off.
+   * @return This config
+   */
+  public MetadataCacheConfig setRefreshAfterRatio(final double refreshAfterRatio) {
+    if(!(refreshAfterRatio > 0 && refreshAfterRatio <= 1))
+      throw new IllegalArgumentException("refreshAfterRatio must be greater than 0 and at most 1 but was " + refreshAfterRatio);
+    this.refreshAfterRatio = refreshAfterRatio;
+    return this;
+  }
+
+  public int getRefreshThreads() {
+    return refreshThreads;
+  }
+
+  /**
+   * @param refreshThreads The number of background threads refreshing results. Must be greater than 0.
+   * @return This config
+   */
+  public MetadataCacheConfig setRefreshThreads(final int refreshThreads) {
+    checkPositive(refreshThreads, "refreshThreads");
+    this.refreshThreads = refreshThreads;
+    return this;
+  }
+
+  public long getPrefixIndexMaxBytes() {
+    return prefixIndexMaxBytes;
+  }
+
+  /**
+   * @param prefixIndexMaxBytes The memory budget, for each of event values and user values, for holding full value
+   *                            sets indexed so prefix queries are answered without the server. Value sets that do not
+   *                            fit alone are queried from the server per prefix. 0 turns indexing off. Must not be
+   *                            negative.
+   * @return This config
+   */
+  public MetadataCacheConfig setPrefixIndexMaxBytes(final long prefixIndexMaxBytes) {
+    if(prefixIndexMaxBytes < 0)
+      throw new IllegalArgumentException("prefixIndexMaxBytes must not be negative but was " + prefixIndexMaxBytes);
+    this.prefixIndexMaxBytes = prefixIndexMaxBytes;
+    return this;
+  }
+
+  private static void checkPositive(final long value, final String name) {
+    if(value < 1)
+      throw new IllegalArgumentException(name + " must be greater than 0 but was " + value);
+  }
+}
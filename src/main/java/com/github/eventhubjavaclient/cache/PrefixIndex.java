@@ -0,0 +1,97 @@
+package com.github.eventhubjavaclient.cache;
+
+import java.util.Arrays;
+
+/**
+ * All the values of one event key or user key, sorted so the values starting with a prefix can be found by binary
+ * search: they sit next to each other from the first value not less than the prefix. Finding them costs
+ * O(log n) comparisons plus the number of values found, with no per node overhead as a trie would have.
+ * <p>
+ * Value sets too big for the memory budget, or holding nulls, are not indexed; {@link #isIndexed()} is then false and
+ * prefix queries have to go to the server.
+ */
+class PrefixIndex {
+
+  // Rough heap cost of a String of length 0 in a 64-bit JVM, plus references to it from both arrays
+  private static final long STRING_OVERHEAD_BYTES = 48;
+  private static final long ARRAY_OVERHEAD_BYTES = 32;
+  private static final String[] NO_VALUES = new String[0];
+
+  private final String[] values;
+  private final String[] sortedValues;
+  private final long estimatedBytes;
+
+  /**
+   * @param values The full value set, in the order the server returned it.
+   * @param maxBytes The most memory the index may take up. Larger value sets are not indexed.
+   * @return The index.
+   */
+  static PrefixIndex build(final String[] values, final long maxBytes) {
+    long bytes = 2 * ARRAY_OVERHEAD_BYTES;
+    for(String value : values) {
+      if(value == null)
+        return notIndexed();
+      bytes += STRING_OVERHEAD_BYTES + 2L * value.length();
+      if(bytes > maxBytes)
+        return notIndexed();
+    }
+    String[] sortedValues = values.clone();
+    Arrays.sort(sortedValues);
+    return new PrefixIndex(values, sortedValues, bytes);
+  }
+
+  private static PrefixIndex notIndexed() {
+    return new PrefixIndex(null, null, ARRAY_OVERHEAD_BYTES);
+  }
+
+  private PrefixIndex(final String[] values, final String[] sortedValues, final long estimatedBytes) {
+    this.values = values;
+    this.sortedValues = sortedValues;
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  /**
+   * @return false if the value set was too big to index, in which case nothing else may be called.
+   */
+  boolean isIndexed() {
+    return values != null;
+  }
+
+  /**
+   * @return Every value, in the order the server returned them. Not a copy.
+   */
+  String[] getValues() {
+    return values;
+  }
+
+  /**
+   * @param prefix The prefix to look for. Must be NotNull.
+   * @return The values starting with the prefix, in sorted order.
+   */
+  String[] findByPrefix(final String prefix) {
+    int from = lowerBound(prefix);
+    int to = from;
+    while(to < sortedValues.length && sortedValues[to].startsWith(prefix)) {
+      to++;
+    }
+    return from == to ? NO_VALUES : Arrays.copyOfRange(sortedValues, from, to);
+  }
+
+  long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  // The index of the first value not less than key
+  private int lowerBound(final String key) {
+    int low = 0;
+    int high = sortedValues.length;
+    while(low < high) {
+      int mid = (low + high) >>> 1;
+      if(sortedValues[mid].compareTo(key) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.eventhubjavaclient.cache;
+
+import java.io.File;
+
+/**
+ * Configuration for a {@link CachingQueryClient}. Every setting has a default so only the values that matter need setting.
+ */
+public class QueryCacheConfig {
+
+  public static final long DEFAULT_OPEN_RANGE_TTL_MILLIS = 60000;
+  public static final long DEFAULT_CLOSED_RANGE_DELAY_MILLIS = 60L * 60 * 1000;
+  public static final long DEFAULT_MAX_CACHED_BYTES = 64L * 1024 * 1024;
+
+  private long openRangeTtlMillis = DEFAULT_OPEN_RANGE_TTL_MILLIS;
+  private long closedRangeDelayMillis = DEFAULT_CLOSED_RANGE_DELAY_MILLIS;
+  private long maxCachedBytes = DEFAULT_MAX_CACHED_BYTES;
+  private File persistenceFile;
+
+  public long getOpenRangeTtlMillis() {
+    return openRangeTtlMillis;
+  }
+
+  /**
+   * @param openRangeTtlMillis How long results for queries still open to new events are cached for. Must be greater than 0.
+   * @return This config
+   */
+  public QueryCacheConfig setOpenRangeTtlMillis(final long openRangeTtlMillis) {
+    if(openRangeTtlMillis < 1)
+      throw new IllegalArgumentException("openRangeTtlMillis must be greater than 0 but was " + openRangeTtlMillis);
+    this.openRangeTtlMillis = openRangeTtlMillis;
+    return this;
+  }
+
+  public long getClosedRangeDelayMillis() {
+    return closedRangeDelayMillis;
+  }
+
+  /**
+   * @param closedRangeDelayMillis How long after the last day a query covers has ended before its result is taken
+   *                               as final and cached indefinitely, leaving time for late events to arrive. Must not
+   *                               be negative.
+   * @return This config
+   */
+  public QueryCacheConfig setClosedRangeDelayMillis(final long closedRangeDelayMillis) {
+    if(closedRangeDelayMillis < 0)
+      throw new IllegalArgumentException("closedRangeDelayMillis must not be negative but was " + closedRangeDelayMillis);
+    this.closedRangeDelayMillis = closedRangeDelayMillis;
+    return this;
+  }
+
+  public long getMaxCachedBytes() {
+    return maxCachedBytes;
+  }
+
+  /**
+   * @param maxCachedBytes The memory budget for encoded results, half for closed ranges and half for open ranges. The
+   *                       least recently used results are evicted first. Must be greater than 0.
+   * @return This config
+   */
+  public QueryCacheConfig setMaxCachedBytes(final long maxCachedBytes) {
+    if(maxCachedBytes < 1)
+      throw new IllegalArgumentException("maxCachedBytes must be greater than 0 but was " + maxCachedBytes);
+    this.maxCachedBytes = maxCachedBytes;
+    return this;
+  }
+
+  public File getPersistenceFile() {
+    return persistenceFile;
+  }
+
+  /**
+   * @param persistenceFile Optional file results for closed ranges are appended to and reloaded from on start up, so
+   *                        they survive restarts. May be null, to keep results in memory only.
+   * @return This config
+   */
+  public QueryCacheConfig setPersistenceFile(final File persistenceFile) {
+    this.persistenceFile = persistenceFile;
+    return this;
+  }
+}
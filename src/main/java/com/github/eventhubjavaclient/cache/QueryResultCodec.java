@@ -0,0 +1,77 @@
+package com.github.eventhubjavaclient.cache;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes funnel counts and cohort tables as varints, one or two bytes per count for typical results instead of the
+ * four an int[] takes, plus the array headers saved on every row. A table is its row count then, for each row, its
+ * length plus one (0 for a null row) and its counts. Funnel counts are a table of one row.
+ */
+final class QueryResultCodec {
+
+  private QueryResultCodec() {
+  }
+
+  static byte[] encode(final int[] counts) {
+    return encode(new int[][] {counts});
+  }
+
+  static byte[] encode(final int[][] table) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(16 + table.length * 8);
+    writeVarint(out, table.length);
+    for(int[] row : table) {
+      if(row == null) {
+        writeVarint(out, 0);
+        continue;
+      }
+      writeVarint(out, row.length + 1);
+      for(int count : row) {
+        // Counts are never negative, but zig-zag keeps a stray negative to a few bytes
+        writeVarint(out, (count << 1) ^ (count >> 31));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  static int[] decodeCounts(final byte[] bytes) {
+    return decodeTable(bytes)[0];
+  }
+
+  static int[][] decodeTable(final byte[] bytes) {
+    int[] position = new int[1];
+    int[][] table = new int[readVarint(bytes, position)][];
+    for(int i = 0; i < table.length; i++) {
+      int length = readVarint(bytes, position) - 1;
+      if(length < 0)
+        continue;
+      int[] row = new int[length];
+      for(int j = 0; j < length; j++) {
+        int zigZag = readVarint(bytes, position);
+        row[j] = (zigZag >>> 1) ^ -(zigZag & 1);
+      }
+      table[i] = row;
+    }
+    return table;
+  }
+
+  static void writeVarint(final ByteArrayOutputStream out, int value) {
+    while((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  static int readVarint(final byte[] bytes, final int[] position) {
+    int value = 0;
+    for(int shift = 0; shift < 32; shift += 7) {
+      if(position[0] >= bytes.length)
+        throw new IllegalArgumentException("Truncated varint at " + position[0]);
+      byte b = bytes[position[0]++];
+      value |= (b & 0x7F) << shift;
+      if(b >= 0)
+        return value;
+    }
+    throw new IllegalArgumentException("Malformed varint at " + position[0]);
+  }
+}
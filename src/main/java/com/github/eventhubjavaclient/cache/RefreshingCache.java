@@ -0,0 +1,265 @@
+package com.github.eventhubjavaclient.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * A size bounded, least recently used cache whose entries expire a fixed time after being loaded. An entry read after
+ * its refresh time, but before it expires, is returned straight away and reloaded in the background, so frequently
+ * read keys never expire while in use. Only one load runs per key at a time: a miss while the key is already being
+ * loaded waits for that load rather than starting another.
+ * <p>
+ * Failed loads are not cached, so the next read tries again. A failed refresh leaves the old value in place until it
+ * expires.
+ * <p>
+ * Invalidating a key also abandons any load of it already running: its value, which may predate the invalidation, is
+ * still returned to the callers waiting for it but is not cached, and the next read starts a new load.
+ */
+class RefreshingCache<K, V> {
+
+  /**
+   * Loads the value for a key, e.g. by requesting it from the EventHub server.
+   */
+  interface Loader<K, V> {
+    V load(K key) throws Exception;
+  }
+
+  /**
+   * Gives the cost of holding a value, e.g. its approximate size in bytes.
+   */
+  interface Weigher<V> {
+    long weigh(V value);
+  }
+
+  private final Loader<K, V> loader;
+  private final Executor refreshExecutor;
+  private final long expireAfterNanos;
+  private final long refreshAfterNanos;
+  private final Weigher<V> weigher;
+  private final long maxWeight;
+
+  // All guarded by this. A load only caches its value while it is still the one in loading for its key
+  private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true);
+  private final Map<K, FutureTask<V>> loading = new HashMap<K, FutureTask<V>>();
+  private long totalWeight;
+
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+
+  /**
+   * @param loader Loads values on a miss or refresh.
+   * @param refreshExecutor Runs background refreshes.
+   * @param maxEntries The most entries kept, the least recently used being evicted first. Must be greater than 0.
+   * @param expireAfterMillis How long a loaded value is served for. Must be greater than 0.
+   * @param refreshAfterRatio The fraction of expireAfterMillis after which a read triggers a background refresh.
+   *                          1 turns refreshing off.
+   */
+  RefreshingCache(final Loader<K, V> loader, final Executor refreshExecutor, final int maxEntries,
+      final long expireAfterMillis, final double refreshAfterRatio) {
+    this(loader, refreshExecutor, null, maxEntries, expireAfterMillis, refreshAfterRatio);
+  }
+
+  /**
+   * @param loader Loads values on a miss or refresh.
+   * @param refreshExecutor Runs background refreshes.
+   * @param weigher Weighs each value, or null to count every value as 1.
+   * @param maxWeight The most total weight kept, the least recently used entries being evicted first.
+   * @param expireAfterMillis How long a loaded value is served for. Must be greater than 0.
+   * @param refreshAfterRatio The fraction of expireAfterMillis after which a read triggers a background refresh.
+   *                          1 turns refreshing off.
+   */
+  RefreshingCache(final Loader<K, V> loader, final Executor refreshExecutor, final Weigher<V> weigher,
+      final long maxWeight, final long expireAfterMillis, final double refreshAfterRatio) {
+    this.loader = loader;
+    this.refreshExecutor = refreshExecutor;
+    this.weigher = weigher;
+    this.maxWeight = maxWeight;
+    this.expireAfterNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterMillis);
+    this.refreshAfterNanos = (long) (expireAfterNanos * refreshAfterRatio);
+  }
+
+  /**
+   * @param key The key to look up.
+   * @return The cached value, loading it first if it is missing or expired.
+   * @throws Exception Whatever the loader threw for this key.
+   */
+  V get(final K key) throws Exception {
+    FutureTask<V> task;
+    boolean loadHere = false;
+    synchronized(this) {
+      Entry<V> entry = entries.get(key);
+      long age = entry == null ? 0 : System.nanoTime() - entry.loadedAtNanos;
+      if(entry != null && age < expireAfterNanos) {
+        hitCount.incrementAndGet();
+        if(age >= refreshAfterNanos && !loading.containsKey(key))
+          refresh(key);
+        return entry.value;
+      }
+      missCount.incrementAndGet();
+      task = loading.get(key);
+      if(task == null) {
+        task = newLoad(key);
+        loading.put(key, task);
+        loadHere = true;
+      }
+    }
+    if(loadHere)
+      task.run();
+    return await(task);
+  }
+
+  /**
+   * Caches a value loaded elsewhere, e.g. read back from disk, as if it had just been loaded.
+   */
+  synchronized void put(final K key, final V value) {
+    store(key, value);
+  }
+
+  synchronized void invalidate(final K key) {
+    removed(entries.remove(key));
+    loading.remove(key);
+  }
+
+  synchronized void invalidateIf(final Predicate<K> predicate) {
+    Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+    while(iterator.hasNext()) {
+      Map.Entry<K, Entry<V>> entry = iterator.next();
+      if(predicate.test(entry.getKey())) {
+        removed(entry.getValue());
+        iterator.remove();
+      }
+    }
+    Iterator<K> loadingKeys = loading.keySet().iterator();
+    while(loadingKeys.hasNext()) {
+      if(predicate.test(loadingKeys.next()))
+        loadingKeys.remove();
+    }
+  }
+
+  synchronized void invalidateAll() {
+    entries.clear();
+    loading.clear();
+    totalWeight = 0;
+  }
+
+  synchronized long getTotalWeight() {
+    return totalWeight;
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  long getHitCount() {
+    return hitCount.get();
+  }
+
+  long getMissCount() {
+    return missCount.get();
+  }
+
+  // Called holding the lock
+  private void refresh(final K key) {
+    FutureTask<V> task = newLoad(key);
+    loading.put(key, task);
+    try {
+      refreshExecutor.execute(task);
+    } catch(RejectedExecutionException e) {
+      // Shutting down, keep serving the current value until it expires
+      loading.remove(key);
+    }
+  }
+
+  private FutureTask<V> newLoad(final K key) {
+    return new Load(key).task;
+  }
+
+  private synchronized void loaded(final K key, final FutureTask<V> task, final V value) {
+    // Invalidated while loading, so the value may be older than the invalidation and a newer load may be running
+    if(loading.get(key) != task)
+      return;
+    loading.remove(key);
+    if(value != null)
+      store(key, value);
+  }
+
+  // Called holding the lock
+  private void store(final K key, final V value) {
+    Entry<V> entry = new Entry<V>(value, System.nanoTime(), weigher == null ? 1 : weigher.weigh(value));
+    removed(entries.put(key, entry));
+    totalWeight += entry.weight;
+    Iterator<Entry<V>> leastRecentlyUsed = entries.values().iterator();
+    while(totalWeight > maxWeight && leastRecentlyUsed.hasNext()) {
+      removed(leastRecentlyUsed.next());
+      leastRecentlyUsed.remove();
+    }
+  }
+
+  private void removed(final Entry<V> entry) {
+    if(entry != null)
+      totalWeight -= entry.weight;
+  }
+
+  private V await(final FutureTask<V> task) throws Exception {
+    boolean interrupted = false;
+    try {
+      while(true) {
+        try {
+          return task.get();
+        } catch(InterruptedException e) {
+          // The load is shared with other callers, so finish waiting for it and pass the interrupt on afterwards
+          interrupted = true;
+        }
+      }
+    } catch(ExecutionException e) {
+      Throwable cause = e.getCause();
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw (Exception) cause;
+    } finally {
+      if(interrupted)
+        Thread.currentThread().interrupt();
+    }
+  }
+
+  private final class Load implements Callable<V> {
+    final K key;
+    final FutureTask<V> task = new FutureTask<V>(this);
+
+    Load(final K key) {
+      this.key = key;
+    }
+
+    @Override public V call() throws Exception {
+      V value = null;
+      try {
+        value = loader.load(key);
+        return value;
+      } finally {
+        loaded(key, task, value);
+      }
+    }
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    final long loadedAtNanos;
+    final long weight;
+
+    Entry(final V value, final long loadedAtNanos, final long weight) {
+      this.value = value;
+      this.loadedAtNanos = loadedAtNanos;
+      this.weight = weight;
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package com.github.eventhubjavaclient.event;
+
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A map of event properties kept as keys and values side by side in one array, in insertion order. Events have a
+ * handful of properties, so a linear scan finds a key as fast as hashing would, without a HashMap's table and entry
+ * objects. Lookups get slower as the map grows, so it suits small maps only. Null keys and values are allowed.
+ */
+public class ArrayPropertyMap extends AbstractMap<String, String> implements Serializable {
+
+  private static final long serialVersionUID = 4103285712498633117L;
+
+  // Keys at even indexes, each followed by its value
+  private String[] keysAndValues;
+  private int size;
+  private transient int modCount;
+
+  public ArrayPropertyMap() {
+    this(4);
+  }
+
+  /**
+   * @param expectedSize The number of properties expected, so the array is only allocated once. Must not be negative.
+   */
+  public ArrayPropertyMap(final int expectedSize) {
+    if(expectedSize < 0)
+      throw new IllegalArgumentException("expectedSize must not be negative but was " + expectedSize);
+    keysAndValues = new String[expectedSize * 2];
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  @Override public boolean containsKey(final Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override public String get(final Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : keysAndValues[index + 1];
+  }
+
+  @Override public String put(final String key, final String value) {
+    int index = indexOf(key);
+    if(index >= 0) {
+      String previous = keysAndValues[index + 1];
+      keysAndValues[index + 1] = value;
+      return previous;
+    }
+    if(size * 2 == keysAndValues.length)
+      keysAndValues = Arrays.copyOf(keysAndValues, Math.max(8, keysAndValues.length * 2));
+    keysAndValues[size * 2] = key;
+    keysAndValues[size * 2 + 1] = value;
+    size++;
+    modCount++;
+    return null;
+  }
+
+  @Override public String remove(final Object key) {
+    int index = indexOf(key);
+    if(index < 0)
+      return null;
+    String previous = keysAndValues[index + 1];
+    removeAt(index);
+    return previous;
+  }
+
+  @Override public void clear() {
+    Arrays.fill(keysAndValues, 0, size * 2, null);
+    size = 0;
+    modCount++;
+  }
+
+  @Override public Set<Map.Entry<String, String>> entrySet() {
+    return new AbstractSet<Map.Entry<String, String>>() {
+      @Override public Iterator<Map.Entry<String, String>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override public int size() {
+        return size;
+      }
+    };
+  }
+
+  private int indexOf(final Object key) {
+    for(int i = 0, end = size * 2; i < end; i += 2) {
+      String candidate = keysAndValues[i];
+      // Interned keys are usually the same instance, so try that before equals
+      if(candidate == key || (candidate != null && candidate.equals(key)))
+        return i;
+    }
+    return -1;
+  }
+
+  private void removeAt(final int index) {
+    int end = size * 2;
+    System.arraycopy(keysAndValues, index + 2, keysAndValues, index, end - index - 2);
+    keysAndValues[end - 2] = null;
+    keysAndValues[end - 1] = null;
+    size--;
+    modCount++;
+  }
+
+  private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+    private int next;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override public boolean hasNext() {
+      return next < size * 2;
+    }
+
+    @Override public Map.Entry<String, String> next() {
+      if(modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      if(!hasNext())
+        throw new NoSuchElementException();
+      last = next;
+      next += 2;
+      return new Entry(last);
+    }
+
+    @Override public void remove() {
+      if(last < 0)
+        throw new IllegalStateException();
+      if(modCount != expectedModCount)
+        throw new ConcurrentModificationException();
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  private class Entry implements Map.Entry<String, String> {
+    private final int index;
+
+    Entry(final int index) {
+      this.index = index;
+    }
+
+    @Override public String getKey() {
+      return keysAndValues[index];
+    }
+
+    @Override public String getValue() {
+      return keysAndValues[index + 1];
+    }
+
+    @Override public String setValue(final String value) {
+      String previous = keysAndValues[index + 1];
+      keysAndValues[index + 1] = value;
+      return previous;
+    }
+
+    @Override public boolean equals(final Object o) {
+      if(!(o instanceof Map.Entry))
+        return false;
+      Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+      return eq(getKey(), other.getKey()) && eq(getValue(), other.getValue());
+    }
+
+    @Override public int hashCode() {
+      String key = getKey();
+      String value = getValue();
+      return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+    }
+
+    @Override public String toString() {
+      return getKey() + "=" + getValue();
+    }
+
+    private boolean eq(final Object a, final Object b) {
+      return a == null ? b == null : a.equals(b);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+package com.github.eventhubjavaclient.event;
+
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A compact binary encoding for {@link Event}s, for holding large numbers of them in memory or on disk. Lengths and
+ * counts are varints, the date is the number of days since 1970-01-01 and event types and property keys are replaced
+ * by ids from a dictionary built up as events are encoded.
+ * <p>
+ * The first time a codec encodes a type or key it writes the string along with the id it is given, and after that only
+ * the id. Decoding needs the codec that encoded the events, or a fresh codec that decodes them in the order they were
+ * encoded, so it learns each id before it is used. Definitions are idempotent, so a decoder that has learnt a
+ * dictionary can decode its events again in any order. Once the dictionary holds its maximum number of strings, new
+ * types and keys are written out in full every time.
+ * <p>
+ * Decoded events produce the same JSON through {@link EventSerializer} as the events that were encoded: the date keeps
+ * only its day, as in the JSON form, and properties keep their iteration order. Codecs are not thread safe.
+ */
+public class EventCodec {
+
+  // Static
+
+  public static final int DEFAULT_MAX_DICTIONARY_SIZE = 4096;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final LocalDate EPOCH = new LocalDate(1970, 1, 1);
+  private static final int FLAG_HAS_DATE = 1;
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  // Header of a dictionary encoded string: 0 is null, 1 a string not in the dictionary, (id + 1) << 1 a reference to
+  // the dictionary and ((id + 1) << 1) | 1 a string that defines the id
+  private static final int NULL_STRING = 0;
+  private static final int LITERAL_STRING = 1;
+
+  // Instance
+
+  private final int maxDictionarySize;
+  private final Map<String, Integer> ids = new HashMap<String, Integer>();
+  private String[] strings = new String[16];
+  private int dictionarySize;
+  private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+  private int length;
+
+  public EventCodec() {
+    this(DEFAULT_MAX_DICTIONARY_SIZE);
+  }
+
+  /**
+   * @param maxDictionarySize The most event types and property keys given an id. Must not be negative.
+   */
+  public EventCodec(final int maxDictionarySize) {
+    if(maxDictionarySize < 0)
+      throw new IllegalArgumentException("maxDictionarySize must not be negative but was " + maxDictionarySize);
+    this.maxDictionarySize = maxDictionarySize;
+  }
+
+  /**
+   * Encodes the event, adding any new event type or property keys to the dictionary.
+   * @param event The event to encode. Must be NotNull.
+   * @return The encoded event.
+   */
+  public byte[] encode(final Event event) {
+    length = 0;
+    DateTime date = event.getDate();
+    writeVarint(date == null ? 0 : FLAG_HAS_DATE);
+    writeDictionaryString(event.getEventType());
+    writeString(event.getExternalUserId());
+    if(date != null)
+      writeVarint(zigZag(Days.daysBetween(EPOCH, date.toLocalDate()).getDays()));
+    writeVarint(event.getPropertyEntrySet().size());
+    for(Map.Entry<String, String> entry : event.getPropertyEntrySet()) {
+      writeDictionaryString(entry.getKey());
+      writeString(entry.getValue());
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * Decodes an event encoded by {@link #encode(Event)}.
+   * @param encoded The encoded event. Must be NotNull.
+   * @return The decoded event.
+   * @throws IllegalArgumentException Thrown if the bytes are not an encoded event or refer to a dictionary id this
+   * codec has not seen defined.
+   */
+  public Event decode(final byte[] encoded) {
+    return decode(ByteBuffer.wrap(encoded));
+  }
+
+  /**
+   * Decodes an event encoded by {@link #encode(Event)}, reading from the buffer's position and leaving the position
+   * after the event.
+   * @param encoded The buffer holding the encoded event. Must be NotNull.
+   * @return The decoded event.
+   * @throws IllegalArgumentException Thrown if the bytes are not an encoded event or refer to a dictionary id this
+   * codec has not seen defined.
+   */
+  public Event decode(final ByteBuffer encoded) {
+    try {
+      int flags = readVarint(encoded);
+      if((flags & ~FLAG_HAS_DATE) != 0)
+        throw new IllegalArgumentException("Not an encoded event, unknown flags " + flags);
+      String eventType = readDictionaryString(encoded);
+      String externalUserId = readString(encoded);
+      DateTime date = null;
+      if((flags & FLAG_HAS_DATE) != 0)
+        date = EPOCH.plusDays(unZigZag(readVarint(encoded))).toDateTimeAtStartOfDay();
+      int propertyCount = readVarint(encoded);
+      Map<String, String> properties = new LinkedHashMap<String, String>(Math.max(4, propertyCount * 4 / 3 + 1));
+      for(int i = 0; i < propertyCount; i++) {
+        String key = readDictionaryString(encoded);
+        properties.put(key, readString(encoded));
+      }
+      return new Event(eventType, externalUserId, date, properties);
+    } catch(BufferUnderflowException e) {
+      throw new IllegalArgumentException("Encoded event was truncated", e);
+    }
+  }
+
+  /**
+   * @return The number of strings in the dictionary.
+   */
+  public int getDictionarySize() {
+    return dictionarySize;
+  }
+
+  /**
+   * Forgets the strings added to the dictionary since it held the given number of them, undoing the definitions made
+   * by encoding events whose output was thrown away.
+   * @param size The size the dictionary had, as returned by {@link #getDictionarySize()}. Must not be negative or
+   *             greater than the current size.
+   */
+  public void truncateDictionary(final int size) {
+    if(size < 0 || size > dictionarySize)
+      throw new IllegalArgumentException("size must be between 0 and " + dictionarySize + " but was " + size);
+    for(int id = size; id < dictionarySize; id++) {
+      if(strings[id] != null)
+        ids.remove(strings[id]);
+      strings[id] = null;
+    }
+    dictionarySize = size;
+  }
+
+  /**
+   * Empties the dictionary, so the next events encoded can be decoded without the ones before them.
+   */
+  public void reset() {
+    ids.clear();
+    Arrays.fill(strings, 0, dictionarySize, null);
+    dictionarySize = 0;
+  }
+
+  private void writeDictionaryString(final String s) {
+    if(s == null) {
+      writeVarint(NULL_STRING);
+      return;
+    }
+    Integer id = ids.get(s);
+    if(id != null) {
+      writeVarint((id + 1) << 1);
+      return;
+    }
+    if(dictionarySize >= maxDictionarySize) {
+      writeVarint(LITERAL_STRING);
+      writeBytes(s.getBytes(UTF_8));
+      return;
+    }
+    int newId = dictionarySize;
+    define(newId, s);
+    writeVarint(((newId + 1) << 1) | 1);
+    writeBytes(s.getBytes(UTF_8));
+  }
+
+  private String readDictionaryString(final ByteBuffer in) {
+    int header = readVarint(in);
+    if(header == NULL_STRING)
+      return null;
+    if(header == LITERAL_STRING)
+      return readUtf8(in);
+    int id = (header >>> 1) - 1;
+    if((header & 1) != 0) {
+      String s = readUtf8(in);
+      if(id < maxDictionarySize)
+        define(id, s);
+      return s;
+    }
+    String s = id < strings.length ? strings[id] : null;
+    if(s == null)
+      throw new IllegalArgumentException("Dictionary id " + id + " has not been defined");
+    return s;
+  }
+
+  private void define(final int id, final String s) {
+    if(id >= strings.length)
+      strings = Arrays.copyOf(strings, Math.max(strings.length * 2, id + 1));
+    if(strings[id] == null) {
+      strings[id] = s;
+      ids.put(s, id);
+      dictionarySize = Math.max(dictionarySize, id + 1);
+    }
+  }
+
+  // Nullable strings are written as their length + 1, 0 meaning null
+  private void writeString(final String s) {
+    if(s == null) {
+      writeVarint(0);
+      return;
+    }
+    byte[] bytes = s.getBytes(UTF_8);
+    writeVarint(bytes.length + 1);
+    writeRaw(bytes);
+  }
+
+  private static String readString(final ByteBuffer in) {
+    int lengthPlusOne = readVarint(in);
+    if(lengthPlusOne == 0)
+      return null;
+    return readUtf8(in, lengthPlusOne - 1);
+  }
+
+  private void writeBytes(final byte[] bytes) {
+    writeVarint(bytes.length);
+    writeRaw(bytes);
+  }
+
+  private static String readUtf8(final ByteBuffer in) {
+    return readUtf8(in, readVarint(in));
+  }
+
+  private static String readUtf8(final ByteBuffer in, final int byteCount) {
+    if(byteCount < 0 || byteCount > in.remaining())
+      throw new IllegalArgumentException("Encoded event was truncated");
+    byte[] bytes = new byte[byteCount];
+    in.get(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private void writeVarint(int value) {
+    ensureCapacity(5);
+    while((value & ~0x7F) != 0) {
+      buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[length++] = (byte) value;
+  }
+
+  private static int readVarint(final ByteBuffer in) {
+    int value = 0;
+    for(int shift = 0; shift < 35; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7F) << shift;
+      if((b & 0x80) == 0)
+        return value;
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  private static int zigZag(final int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unZigZag(final int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private void writeRaw(final byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  private void ensureCapacity(final int extra) {
+    if(length + extra > buffer.length)
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+  }
+}
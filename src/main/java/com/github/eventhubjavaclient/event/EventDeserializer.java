@@ -4,8 +4,10 @@ import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 import org.joda.time.DateTime;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,32 +15,107 @@ import java.util.Set;
 
 import static com.github.eventhubjavaclient.EventHubClientUtils.EVENT_HUB_DATE_FORMATTER;
 
+/**
+ * Turns the JSON form of an event back into an {@link Event}.
+ * <p>
+ * Created with a {@link StringInterner}, event types and property keys are interned and properties are kept in an
+ * {@link ArrayPropertyMap}, so a deep timeline holds one copy of each type and key and no HashMap per event.
+ */
 public class EventDeserializer implements JsonDeserializer<Event> {
 
   public static final String KEY_EVENT_TYPE = "event_type";
   public static final String KEY_EXTERNAL_USER_ID = "external_user_id";
   public static final String KEY_DATE = "date";
 
+  private final StringInterner interner;
+
+  public EventDeserializer() {
+    this(null);
+  }
+
+  /**
+   * @param interner The interner for event types and property keys, shared by everything this deserializer reads. May
+   *                 be null to deserialize properties into a HashMap without interning.
+   */
+  public EventDeserializer(final StringInterner interner) {
+    this.interner = interner;
+  }
+
   @Override public Event deserialize(final JsonElement jsonElement, final Type type,
       final JsonDeserializationContext jsonDeserializationContext)
       throws JsonParseException {
-    final Map<String, String> properties = new HashMap<String, String>();
+    Set<Map.Entry<String, JsonElement>> entries = jsonElement.getAsJsonObject().entrySet();
+    final Map<String, String> properties = interner == null
+        ? new HashMap<String, String>()
+        : new ArrayPropertyMap(entries.size());
     String eventType = null;
     String externalUserId = null;
     DateTime date = null;
-    Set<Map.Entry<String, JsonElement>> entries = jsonElement.getAsJsonObject().entrySet();
     for(Map.Entry<String, JsonElement> entry : entries) {
       String key = entry.getKey();
       String value = entry.getValue().getAsString();
       if(KEY_EVENT_TYPE.equals(key))
-        eventType = value;
+        eventType = intern(value);
       else if(KEY_EXTERNAL_USER_ID.equals(key))
         externalUserId = value;
       else if(KEY_DATE.equals(key))
         date = EVENT_HUB_DATE_FORMATTER.parseDateTime(value);
       else
-        properties.put(key,value);
+        properties.put(intern(key),value);
     }
     return new Event(eventType,externalUserId,date,properties);
   }
+
+  /**
+   * Reads the next event straight from the reader, producing the same event as {@link #deserialize} without building a
+   * tree. Properties with null values are left out.
+   * @param reader The reader, positioned at the start of an event's JSON object.
+   * @return The event read.
+   * @throws IOException Thrown if the reader fails or the JSON is malformed.
+   * @throws JsonParseException Thrown if a value is an object or an array.
+   */
+  public Event readEvent(final JsonReader reader) throws IOException {
+    final Map<String, String> properties = interner == null
+        ? new HashMap<String, String>()
+        : new ArrayPropertyMap();
+    String eventType = null;
+    String externalUserId = null;
+    DateTime date = null;
+    reader.beginObject();
+    while(reader.hasNext()) {
+      String key = reader.nextName();
+      String value = readValue(reader, key);
+      if(value == null)
+        continue;
+      if(KEY_EVENT_TYPE.equals(key))
+        eventType = intern(value);
+      else if(KEY_EXTERNAL_USER_ID.equals(key))
+        externalUserId = value;
+      else if(KEY_DATE.equals(key))
+        date = EVENT_HUB_DATE_FORMATTER.parseDateTime(value);
+      else
+        properties.put(intern(key),value);
+    }
+    reader.endObject();
+    return new Event(eventType,externalUserId,date,properties);
+  }
+
+  private static String readValue(final JsonReader reader, final String key) throws IOException {
+    switch(reader.peek()) {
+      case STRING:
+      case NUMBER:
+        return reader.nextString();
+      case BOOLEAN:
+        return Boolean.toString(reader.nextBoolean());
+      case NULL:
+        reader.nextNull();
+        return null;
+      default:
+        throw new JsonParseException("Expected a string value for " + key + " but was " + reader.peek());
+    }
+  }
+
+  private String intern(final String s) {
+    return interner == null ? s : interner.intern(s);
+  }
 }
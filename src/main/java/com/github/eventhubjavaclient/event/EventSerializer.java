@@ -5,8 +5,10 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.stream.JsonWriter;
 import org.joda.time.DateTime;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.Map;
 
@@ -30,8 +32,32 @@ public class EventSerializer implements JsonSerializer<Event> {
     return eventJson;
   }
 
+  /**
+   * Writes the event straight to the writer, producing the same JSON as {@link #serialize} without building a tree.
+   * @param writer The writer to write the event's JSON object to.
+   * @param event The event to write.
+   * @throws IOException Thrown if the writer fails.
+   */
+  public static void writeEvent(final JsonWriter writer, final Event event) throws IOException {
+    writer.beginObject();
+    writeIfPropertyNotNull(writer, KEY_EVENT_TYPE, event.getEventType());
+    writeIfPropertyNotNull(writer, KEY_EXTERNAL_USER_ID, event.getExternalUserId());
+    DateTime date = event.getDate();
+    if(date!=null)
+      writeIfPropertyNotNull(writer, KEY_DATE, date.toString(EVENT_HUB_DATE_FORMATTER));
+    for(Map.Entry<String, String> entry : event.getPropertyEntrySet()) {
+      writeIfPropertyNotNull(writer, entry.getKey(), entry.getValue());
+    }
+    writer.endObject();
+  }
+
   private static void addIfPropertyNotNull(JsonObject eventJson, final String key, final String property) {
     if(property!=null)
       eventJson.add(key, new JsonPrimitive(property));
   }
+
+  private static void writeIfPropertyNotNull(final JsonWriter writer, final String key, final String property) throws IOException {
+    if(property!=null)
+      writer.name(key).value(property);
+  }
 }
@@ -0,0 +1,58 @@
+package com.github.eventhubjavaclient.event;
+
+/**
+ * A bounded, lossy string interner. Strings are cached in a fixed size table indexed by hash, so interning an equal
+ * string returns the cached instance and lets the new one be collected. A string whose slot is taken by another
+ * replaces it, which keeps the table bounded however many distinct strings are seen; the strings that keep repeating,
+ * such as event types and property keys, keep their slots.
+ * <p>
+ * Safe to share between threads: at worst a race replaces a cached string with an equal one.
+ */
+public class StringInterner {
+
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  private final String[] table;
+  private final int mask;
+
+  public StringInterner() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity The most strings held, rounded up to a power of two. Must be greater than 0.
+   */
+  public StringInterner(final int capacity) {
+    if(capacity < 1 || capacity > (1 << 30))
+      throw new IllegalArgumentException("capacity must be between 1 and 2^30 but was " + capacity);
+    int size = Integer.highestOneBit(capacity);
+    if(size < capacity)
+      size <<= 1;
+    table = new String[size];
+    mask = size - 1;
+  }
+
+  /**
+   * @param s The string to intern. May be null.
+   * @return The cached string equal to s, or s itself if none is cached.
+   */
+  public String intern(final String s) {
+    if(s == null)
+      return null;
+    int h = s.hashCode();
+    int index = (h ^ (h >>> 16)) & mask;
+    String cached = table[index];
+    if(s.equals(cached))
+      return cached;
+    // Strings are immutable, so publishing one through a plain array write is safe
+    table[index] = s;
+    return s;
+  }
+
+  /**
+   * @return The most strings this interner can hold.
+   */
+  public int getCapacity() {
+    return table.length;
+  }
+}
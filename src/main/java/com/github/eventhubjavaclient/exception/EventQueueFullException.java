@@ -0,0 +1,11 @@
+package com.github.eventhubjavaclient.exception;
+
+/**
+ * Thrown when an event is offered to a full queue that is configured to fail fast
+ */
+public class EventQueueFullException extends Exception {
+
+  public EventQueueFullException(final String s) {
+    super(s);
+  }
+}
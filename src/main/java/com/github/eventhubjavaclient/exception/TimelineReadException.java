@@ -0,0 +1,13 @@
+package com.github.eventhubjavaclient.exception;
+
+/**
+ * Thrown from a timeline iterator when a page of the timeline could not be read. Iterators can't throw checked
+ * exceptions, so the {@link UnexpectedResponseCodeException} or {@link BadlyFormedResponseBodyException} that caused
+ * it is its cause.
+ */
+public class TimelineReadException extends RuntimeException {
+
+  public TimelineReadException(final String s, final Throwable throwable) {
+    super(s, throwable);
+  }
+}
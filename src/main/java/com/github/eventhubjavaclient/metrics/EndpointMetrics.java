@@ -0,0 +1,155 @@
+package com.github.eventhubjavaclient.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters, gauges and a latency histogram for the requests to one EventHub end point. A request's latency runs from
+ * sending it until its response body has been read and closed, or until it failed.
+ */
+public class EndpointMetrics implements EndpointMetricsMXBean {
+
+  private static final int MAX_STATUS = 599;
+
+  private final String path;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  // Indexed by status code, statuses out of range are counted at 0
+  private final AtomicLongArray statusCounts = new AtomicLongArray(MAX_STATUS + 1);
+  private final LongAdder unexpectedResponseCodes = new LongAdder();
+  private final LongAdder badlyFormedResponses = new LongAdder();
+  private final LongAdder transportErrors = new LongAdder();
+
+  EndpointMetrics(final String path) {
+    this.path = path;
+  }
+
+  @Override public String getPath() {
+    return path;
+  }
+
+  public LatencyHistogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * @return The number of requests that have finished, successfully or not.
+   */
+  @Override public long getRequestCount() {
+    return latency.getCount();
+  }
+
+  @Override public int getInFlightCount() {
+    return inFlight.get();
+  }
+
+  /**
+   * @return Request body bytes as written to the connection, after any compression.
+   */
+  @Override public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  /**
+   * @return Response body bytes as read by the client, after any decompression.
+   */
+  @Override public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  /**
+   * @param status An HTTP status code.
+   * @return The number of responses with the status.
+   */
+  public long getStatusCount(final int status) {
+    return status > 0 && status <= MAX_STATUS ? statusCounts.get(status) : 0;
+  }
+
+  /**
+   * @return The number of responses for each status seen, in status order.
+   */
+  public Map<Integer, Long> getStatusCounts() {
+    Map<Integer, Long> counts = new TreeMap<Integer, Long>();
+    for(int status = 0; status <= MAX_STATUS; status++) {
+      long count = statusCounts.get(status);
+      if(count > 0)
+        counts.put(status, count);
+    }
+    return counts;
+  }
+
+  /**
+   * @return The number of responses with a status other than 200 OK, each of which the client throws an
+   * UnexpectedResponseCodeException for.
+   */
+  @Override public long getUnexpectedResponseCodeCount() {
+    return unexpectedResponseCodes.sum();
+  }
+
+  @Override public long getBadlyFormedResponseCount() {
+    return badlyFormedResponses.sum();
+  }
+
+  /**
+   * @return The number of requests that got no response, for example because connecting or reading timed out.
+   */
+  @Override public long getTransportErrorCount() {
+    return transportErrors.sum();
+  }
+
+  @Override public double getMeanLatencyMicros() {
+    return latency.getMeanMicros();
+  }
+
+  @Override public long getMedianLatencyMicros() {
+    return latency.getPercentileMicros(50);
+  }
+
+  @Override public long get99thPercentileLatencyMicros() {
+    return latency.getPercentileMicros(99);
+  }
+
+  @Override public long get999thPercentileLatencyMicros() {
+    return latency.getPercentileMicros(99.9);
+  }
+
+  @Override public long getMaxLatencyMicros() {
+    return latency.getMaxMicros();
+  }
+
+  void requestStarted() {
+    inFlight.incrementAndGet();
+  }
+
+  void requestFinished(final long elapsedNanos) {
+    latency.recordNanos(elapsedNanos);
+    inFlight.decrementAndGet();
+  }
+
+  void responseReceived(final int status) {
+    statusCounts.incrementAndGet(status > 0 && status <= MAX_STATUS ? status : 0);
+    if(status != 200)
+      unexpectedResponseCodes.increment();
+  }
+
+  void bytesSent(final long count) {
+    bytesSent.add(count);
+  }
+
+  void bytesReceived(final long count) {
+    bytesReceived.add(count);
+  }
+
+  void transportError() {
+    transportErrors.increment();
+  }
+
+  void badlyFormedResponse() {
+    badlyFormedResponses.increment();
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.eventhubjavaclient.metrics;
+
+/**
+ * What {@link EndpointMetrics} shows through JMX. Latencies are in microseconds.
+ */
+public interface EndpointMetricsMXBean {
+
+  String getPath();
+
+  long getRequestCount();
+
+  int getInFlightCount();
+
+  long getBytesSent();
+
+  long getBytesReceived();
+
+  long getUnexpectedResponseCodeCount();
+
+  long getBadlyFormedResponseCount();
+
+  long getTransportErrorCount();
+
+  double getMeanLatencyMicros();
+
+  long getMedianLatencyMicros();
+
+  long get99thPercentileLatencyMicros();
+
+  long get999thPercentileLatencyMicros();
+
+  long getMaxLatencyMicros();
+}
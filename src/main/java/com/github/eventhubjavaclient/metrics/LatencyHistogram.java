@@ -0,0 +1,105 @@
+package com.github.eventhubjavaclient.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in microseconds, bucketed as HdrHistogram does: each power of two is split into
+ * 32 equal buckets, so a recorded value is known to within about 3% using a few thousand counters in all. Recording
+ * is a handful of atomic increments with no allocation. Values above about 19 hours are counted as 19 hours.
+ * <p>
+ * Reads are not a consistent snapshot of concurrent recording, but are close enough for monitoring.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 36;
+  private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+  private static final int NUMBER_OF_BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param nanos The latency to record, in nanoseconds. Negative values are recorded as 0.
+   */
+  public void recordNanos(final long nanos) {
+    record(TimeUnit.NANOSECONDS.toMicros(Math.max(0, nanos)));
+  }
+
+  /**
+   * @param micros The latency to record, in microseconds. Negative values are recorded as 0.
+   */
+  public void record(final long micros) {
+    long value = Math.min(Math.max(0, micros), MAX_VALUE);
+    counts.incrementAndGet(bucketIndex(value));
+    count.increment();
+    sum.add(value);
+    long currentMax;
+    while(value > (currentMax = max.get()) && !max.compareAndSet(currentMax, value)) {
+    }
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public double getMeanMicros() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  public long getMaxMicros() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile The percentile to find, from 0 to 100.
+   * @return The highest value in the bucket holding the percentile, never more than the maximum recorded, or 0 if
+   * nothing has been recorded.
+   */
+  public long getPercentileMicros(final double percentile) {
+    if(percentile < 0 || percentile > 100)
+      throw new IllegalArgumentException("percentile must be from 0 to 100 but was " + percentile);
+    long total = 0;
+    long[] snapshot = new long[NUMBER_OF_BUCKETS];
+    for(int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if(total == 0)
+      return 0;
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for(int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+      seen += snapshot[i];
+      if(seen >= rank)
+        return Math.min(bucketUpperBound(i), max.get());
+    }
+    return max.get();
+  }
+
+  static int bucketIndex(final long value) {
+    if(value < SUB_BUCKETS)
+      return (int) value;
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BUCKET_BITS;
+    // The top SUB_BUCKET_BITS + 1 bits of the value, less the leading one, pick the bucket within its power of two
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  static long bucketUpperBound(final int index) {
+    if(index < SUB_BUCKETS)
+      return index;
+    int shift = (index - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowerBound = (long) (SUB_BUCKETS + subBucket) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+}
@@ -0,0 +1,140 @@
+package com.github.eventhubjavaclient.metrics;
+
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records every request a client sends in a {@link MetricsRegistry}, against the request's path below the client's base
+ * URL. A request is in flight, and its latency keeps running, until its response body has been read to the end or
+ * closed, so time spent streaming a large body counts.
+ */
+public class MetricsFilter extends ClientFilter {
+
+  private final MetricsRegistry registry;
+  private final String basePath;
+
+  /**
+   * @param registry Where the metrics are kept. Must be NotNull.
+   * @param basePath The path of the client's base URL, stripped from request paths. May be empty.
+   */
+  public MetricsFilter(final MetricsRegistry registry, final String basePath) {
+    if(registry == null)
+      throw new IllegalArgumentException("registry must not be null");
+    this.registry = registry;
+    this.basePath = basePath == null || basePath.equals("/") ? "" : basePath;
+  }
+
+  @Override public ClientResponse handle(final ClientRequest request) throws ClientHandlerException {
+    final EndpointMetrics metrics = registry.getEndpoint(endpointPath(request));
+    registry.setLastEndpoint(metrics);
+    if(request.getEntity() != null)
+      request.setAdapter(new CountingAdapter(request.getAdapter(), metrics));
+
+    final long start = System.nanoTime();
+    metrics.requestStarted();
+    ClientResponse response;
+    try {
+      response = getNext().handle(request);
+    } catch(RuntimeException e) {
+      metrics.transportError();
+      metrics.requestFinished(System.nanoTime() - start);
+      throw e;
+    }
+    metrics.responseReceived(response.getStatus());
+    InputStream entity = response.getEntityInputStream();
+    if(entity == null)
+      metrics.requestFinished(System.nanoTime() - start);
+    else
+      response.setEntityInputStream(new CountingInputStream(entity, metrics, start));
+    return response;
+  }
+
+  private String endpointPath(final ClientRequest request) {
+    String path = request.getURI().getRawPath();
+    if(path == null || path.isEmpty())
+      return "/";
+    return path.startsWith(basePath) && path.length() > basePath.length() ? path.substring(basePath.length()) : path;
+  }
+
+  private static class CountingAdapter extends AbstractClientRequestAdapter {
+
+    private final EndpointMetrics metrics;
+
+    CountingAdapter(final ClientRequestAdapter adapter, final EndpointMetrics metrics) {
+      super(adapter);
+      this.metrics = metrics;
+    }
+
+    @Override public OutputStream adapt(final ClientRequest request, final OutputStream output) throws IOException {
+      return new FilterOutputStream(getAdapter().adapt(request, output)) {
+        @Override public void write(final int b) throws IOException {
+          out.write(b);
+          metrics.bytesSent(1);
+        }
+
+        @Override public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+          out.write(bytes, offset, length);
+          metrics.bytesSent(length);
+        }
+      };
+    }
+  }
+
+  /**
+   * Counts the bytes of a response body and finishes its request once the body is read to the end or closed.
+   */
+  private static class CountingInputStream extends FilterInputStream {
+
+    private final EndpointMetrics metrics;
+    private final long start;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    CountingInputStream(final InputStream in, final EndpointMetrics metrics, final long start) {
+      super(in);
+      this.metrics = metrics;
+      this.start = start;
+    }
+
+    @Override public int read() throws IOException {
+      int b = in.read();
+      if(b < 0)
+        finish();
+      else
+        metrics.bytesReceived(1);
+      return b;
+    }
+
+    @Override public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+      int count = in.read(bytes, offset, length);
+      if(count < 0)
+        finish();
+      else
+        metrics.bytesReceived(count);
+      return count;
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        in.close();
+      } finally {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if(finished.compareAndSet(false, true))
+        metrics.requestFinished(System.nanoTime() - start);
+    }
+  }
+}
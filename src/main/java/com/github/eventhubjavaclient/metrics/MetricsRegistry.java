@@ -0,0 +1,176 @@
+package com.github.eventhubjavaclient.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the {@link EndpointMetrics} of a client, one per end point path, created the first time the path is requested.
+ * The metrics can be read directly, published as MXBeans through JMX, or pushed to {@link MetricsReporter}s at an
+ * interval.
+ */
+public class MetricsRegistry implements Closeable {
+
+  private static final AtomicInteger REPORTER_THREAD_COUNT = new AtomicInteger();
+
+  private final ConcurrentSkipListMap<String, EndpointMetrics> endpoints = new ConcurrentSkipListMap<String, EndpointMetrics>();
+  // The end point of the last request made on each thread, which a response body read afterwards belongs to
+  private final ThreadLocal<EndpointMetrics> lastEndpoint = new ThreadLocal<EndpointMetrics>();
+  private final ConcurrentHashMap<String, ObjectName> registeredNames = new ConcurrentHashMap<String, ObjectName>();
+  private final List<ScheduledFuture<?>> reporters = new ArrayList<ScheduledFuture<?>>();
+
+  // Guarded by this
+  private String jmxName;
+  private ScheduledExecutorService reporterExecutor;
+
+  /**
+   * @param path The end point path, such as /events/track.
+   * @return The end point's metrics, created if it has not been requested before.
+   */
+  public EndpointMetrics getEndpoint(final String path) {
+    EndpointMetrics metrics = endpoints.get(path);
+    if(metrics == null) {
+      EndpointMetrics created = new EndpointMetrics(path);
+      metrics = endpoints.putIfAbsent(path, created);
+      if(metrics == null) {
+        metrics = created;
+        registerIfPublished(created);
+      }
+    }
+    return metrics;
+  }
+
+  /**
+   * @return The metrics of each end point requested so far, in path order.
+   */
+  public Collection<EndpointMetrics> getEndpoints() {
+    return Collections.unmodifiableCollection(endpoints.values());
+  }
+
+  /**
+   * Counts a badly formed response against the end point last requested on this thread, as response bodies are parsed
+   * on the thread that made the request.
+   */
+  public void recordBadlyFormedResponse() {
+    EndpointMetrics metrics = lastEndpoint.get();
+    if(metrics != null)
+      metrics.badlyFormedResponse();
+  }
+
+  /**
+   * Registers an MXBean for every end point, now and as new ones are requested, with the platform MBean server. Their
+   * names are {@code com.github.eventhubjavaclient:type=EventHubClient,name=<name>,endpoint=<path>}.
+   * @param name Tells this client's metrics apart from other clients'. Must be NotNull.
+   * @throws IllegalStateException Thrown if the metrics are already published or the name is taken.
+   */
+  public synchronized void publishToJmx(final String name) {
+    if(name == null)
+      throw new IllegalArgumentException("name must not be null");
+    if(jmxName != null)
+      throw new IllegalStateException("Metrics are already published as " + jmxName);
+    jmxName = name;
+    for(EndpointMetrics metrics : endpoints.values()) {
+      register(metrics);
+    }
+  }
+
+  /**
+   * Starts calling the reporter with every end point's metrics at a fixed rate, until the registry is closed.
+   * @param reporter The reporter to call. Must be NotNull.
+   * @param periodMillis How often to report. Must be greater than 0.
+   */
+  public synchronized void startReporter(final MetricsReporter reporter, final long periodMillis) {
+    if(reporter == null)
+      throw new IllegalArgumentException("reporter must not be null");
+    if(periodMillis < 1)
+      throw new IllegalArgumentException("periodMillis must be greater than 0 but was " + periodMillis);
+    if(reporterExecutor == null) {
+      reporterExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(final Runnable runnable) {
+          Thread thread = new Thread(runnable, "eventhub-metrics-reporter-" + REPORTER_THREAD_COUNT.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    reporters.add(reporterExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override public void run() {
+        try {
+          reporter.report(getEndpoints());
+        } catch(RuntimeException e) {
+          // A failing reporter must not stop later reports, which a scheduled executor would do if this escaped
+        }
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS));
+  }
+
+  /**
+   * Stops the reporters and unregisters the MXBeans. The metrics themselves can still be read.
+   */
+  @Override public synchronized void close() {
+    for(ScheduledFuture<?> reporter : reporters) {
+      reporter.cancel(false);
+    }
+    reporters.clear();
+    if(reporterExecutor != null) {
+      reporterExecutor.shutdown();
+      reporterExecutor = null;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    for(ObjectName objectName : registeredNames.values()) {
+      try {
+        server.unregisterMBean(objectName);
+      } catch(InstanceNotFoundException e) {
+        // Already unregistered by someone else
+      } catch(MBeanRegistrationException e) {
+        // Nothing more we can do with it
+      }
+    }
+    registeredNames.clear();
+    jmxName = null;
+  }
+
+  void setLastEndpoint(final EndpointMetrics metrics) {
+    lastEndpoint.set(metrics);
+  }
+
+  private synchronized void registerIfPublished(final EndpointMetrics metrics) {
+    if(jmxName != null)
+      register(metrics);
+  }
+
+  private void register(final EndpointMetrics metrics) {
+    try {
+      ObjectName objectName = new ObjectName("com.github.eventhubjavaclient:type=EventHubClient,name="
+          + ObjectName.quote(jmxName) + ",endpoint=" + ObjectName.quote(metrics.getPath()));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, objectName);
+      registeredNames.put(metrics.getPath(), objectName);
+    } catch(MalformedObjectNameException e) {
+      throw new IllegalStateException("Cannot name MXBean for " + metrics.getPath(), e);
+    } catch(InstanceAlreadyExistsException e) {
+      throw new IllegalStateException("Metrics named " + jmxName + " are already registered", e);
+    } catch(MBeanRegistrationException e) {
+      throw new IllegalStateException("Cannot register MXBean for " + metrics.getPath(), e);
+    } catch(NotCompliantMBeanException e) {
+      throw new IllegalStateException("Cannot register MXBean for " + metrics.getPath(), e);
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.github.eventhubjavaclient.metrics;
+
+import java.util.Collection;
+
+/**
+ * Receives the metrics of every end point at a fixed interval, to send on to a monitoring system. See
+ * {@link MetricsRegistry#startReporter}.
+ */
+public interface MetricsReporter {
+
+  /**
+   * Called on the registry's reporting thread, so should not block for long. The metrics are live, not a copy; each
+   * call sees them as they are at that moment.
+   * @param endpoints The metrics of each end point requested so far, in path order.
+   */
+  void report(Collection<EndpointMetrics> endpoints);
+}
@@ -0,0 +1,36 @@
+package com.github.eventhubjavaclient.replica;
+
+/**
+ * Caps hedged reads at a share of all reads. Every read earns a fraction of a hedge and every hedge spends a whole
+ * one, so over any stretch of reads the hedges sent are at most that share of them, plus a small burst saved up
+ * beforehand.
+ */
+final class HedgeBudget {
+
+  private static final double MAX_SAVED_HEDGES = 10;
+
+  private final double hedgesPerRead;
+  // Guarded by this
+  private double savedHedges;
+
+  /**
+   * @param budgetPercent The most hedges sent, as a percentage of reads.
+   */
+  HedgeBudget(final double budgetPercent) {
+    this.hedgesPerRead = budgetPercent / 100;
+  }
+
+  synchronized void readStarted() {
+    savedHedges = Math.min(MAX_SAVED_HEDGES, savedHedges + hedgesPerRead);
+  }
+
+  /**
+   * @return True if there was budget for a hedge, which is now spent.
+   */
+  synchronized boolean tryHedge() {
+    if(savedHedges < 1)
+      return false;
+    savedHedges -= 1;
+    return true;
+  }
+}
@@ -0,0 +1,470 @@
+package com.github.eventhubjavaclient.replica;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the read only calls of EventHub over several replicas of the same server, through an {@link EventHubClient}
+ * per replica. Each read goes to the less loaded of two healthy replicas picked at random, loaded meaning reads in
+ * flight or peak EWMA latency, see {@link ReplicaSelection}. A slow replica is thereby passed over as soon as it is
+ * seen to be slow, rather than holding up a share of reads.
+ * <p>
+ * A replica is unhealthy while its /varz probe is failing, or for a while after too many of its reads fail with a
+ * server error, transport error or badly formed response. If every replica is unhealthy, reads go to all of them
+ * rather than failing outright.
+ * <p>
+ * Reads may also be hedged, see {@link ReplicaConfig#setHedgePercentile}. A read still unanswered after the given
+ * percentile of recent latency for its kind is sent again to another replica and the first answer is used, within a
+ * budget on the extra load. The losing request cannot be aborted mid flight, so it runs on in the background and its
+ * answer is dropped.
+ * <p>
+ * Writes and queries must be sent to the primary server through its own client.
+ */
+public class LoadBalancedReadClient implements Closeable {
+
+  // Static
+
+  private static final AtomicInteger PROBE_THREAD_COUNT = new AtomicInteger();
+  private static final AtomicInteger HEDGE_THREAD_COUNT = new AtomicInteger();
+
+  /**
+   * Creates a load balanced client with the default config, reading from each replica through a default {@link EventHubClient}.
+   * @param baseUrls The base URL of each replica. Must be NotNull, not empty and without repeats.
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @return The created client
+   */
+  public static LoadBalancedReadClient createDefaultClient(final List<String> baseUrls, final Integer connectionTimeout,
+      final Integer readTimeout) {
+    return createCustomClient(baseUrls, connectionTimeout, readTimeout, new ReplicaConfig());
+  }
+
+  /**
+   * Creates a load balanced client with the provided config, reading from each replica through a default {@link EventHubClient}.
+   * @param baseUrls The base URL of each replica. Must be NotNull, not empty and without repeats.
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @param config The configuration for picking replicas and checking their health. Must be NotNull.
+   * @return The created client
+   */
+  public static LoadBalancedReadClient createCustomClient(final List<String> baseUrls, final Integer connectionTimeout,
+      final Integer readTimeout, final ReplicaConfig config) {
+    if(baseUrls == null || baseUrls.isEmpty())
+      throw new IllegalArgumentException("baseUrls must not be null or empty");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    // Checked before any client is created, so none are left open when a URL is bad
+    Set<String> distinctUrls = new HashSet<String>();
+    for(String baseUrl : baseUrls) {
+      if(baseUrl == null)
+        throw new IllegalArgumentException("baseUrl must not be null");
+      if(!distinctUrls.add(baseUrl))
+        throw new IllegalArgumentException("Replica " + baseUrl + " is given more than once");
+    }
+    Map<String, EventHubClient> clients = new LinkedHashMap<String, EventHubClient>();
+    for(String baseUrl : baseUrls) {
+      clients.put(baseUrl, EventHubClient.createDefaultClient(baseUrl, connectionTimeout, readTimeout));
+    }
+    return new LoadBalancedReadClient(clients, config);
+  }
+
+  // Instance
+
+  private final Replica[] replicas;
+  private final Map<String, EventHubClient> clients;
+  private final ScheduledExecutorService probeExecutor;
+  private final double hedgePercentile;
+  private final long hedgeWindowMillis;
+  private final int hedgeMinSamples;
+  private final HedgeBudget hedgeBudget;
+  private final ExecutorService hedgeExecutor;
+  private final ConcurrentMap<String, RecentLatency> latencies = new ConcurrentHashMap<String, RecentLatency>();
+
+  private LoadBalancedReadClient(final Map<String, EventHubClient> clients, final ReplicaConfig config) {
+    this.clients = Collections.unmodifiableMap(clients);
+    List<Replica> replicaList = new ArrayList<Replica>(clients.size());
+    for(Map.Entry<String, EventHubClient> client : clients.entrySet()) {
+      replicaList.add(new Replica(client.getKey(), client.getValue(), config));
+    }
+    replicas = replicaList.toArray(new Replica[replicaList.size()]);
+
+    if(config.getProbeIntervalMillis() > 0) {
+      probeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override public Thread newThread(final Runnable runnable) {
+          Thread thread = new Thread(runnable, "eventhub-replica-probe-" + PROBE_THREAD_COUNT.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      probeExecutor.scheduleWithFixedDelay(new Runnable() {
+        @Override public void run() {
+          probeAll();
+        }
+      }, 0, config.getProbeIntervalMillis(), TimeUnit.MILLISECONDS);
+    } else {
+      probeExecutor = null;
+    }
+
+    hedgePercentile = config.getHedgePercentile();
+    hedgeWindowMillis = config.getHedgeWindowMillis();
+    hedgeMinSamples = config.getHedgeMinSamples();
+    if(hedgePercentile > 0) {
+      hedgeBudget = new HedgeBudget(config.getHedgeBudgetPercent());
+      // Both attempts of a hedged read run here, leaving the caller free to take whichever answers first
+      hedgeExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override public Thread newThread(final Runnable runnable) {
+          Thread thread = new Thread(runnable, "eventhub-replica-hedge-" + HEDGE_THREAD_COUNT.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    } else {
+      hedgeBudget = null;
+      hedgeExecutor = null;
+    }
+  }
+
+  /**
+   * A read made on one replica.
+   */
+  private interface Read<T> {
+    T call(EventHubClient replica) throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException;
+  }
+
+  // Users
+
+  /**
+   * Gets the user keys from a replica. See {@link EventHubClient#getUserKeys}.
+   */
+  public String[] getUserKeys() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    return readWithoutInput("/users/keys", new Read<String[]>() {
+      @Override public String[] call(final EventHubClient replica) throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+        return replica.getUserKeys();
+      }
+    });
+  }
+
+  /**
+   * Gets the values of the user key from a replica. See {@link EventHubClient#getUserValues(String)}.
+   */
+  public String[] getUserValues(final String userKey)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return getUserValues(userKey, null);
+  }
+
+  /**
+   * Gets the values of the user key with the prefix from a replica. See {@link EventHubClient#getUserValues(String, String)}.
+   */
+  public String[] getUserValues(final String userKey, final String prefix)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return read("/users/values", new Read<String[]>() {
+      @Override public String[] call(final EventHubClient replica)
+          throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+        return replica.getUserValues(userKey, prefix);
+      }
+    });
+  }
+
+  /**
+   * Gets events for the user from a replica. See {@link EventHubClient#getUserTimeline}.
+   */
+  public Collection<Event> getUserTimeline(final String userName, final int offset, final int numberOfRecords)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return read("/users/timeline", new Read<Collection<Event>>() {
+      @Override public Collection<Event> call(final EventHubClient replica)
+          throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+        return replica.getUserTimeline(userName, offset, numberOfRecords);
+      }
+    });
+  }
+
+  // Events
+
+  /**
+   * Gets the event types from a replica. See {@link EventHubClient#getEventTypes}.
+   */
+  public String[] getEventTypes() throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    return readWithoutInput("/events/types", new Read<String[]>() {
+      @Override public String[] call(final EventHubClient replica) throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+        return replica.getEventTypes();
+      }
+    });
+  }
+
+  /**
+   * Gets the keys of the event type from a replica. See {@link EventHubClient#getEventKeys}.
+   */
+  public String[] getEventKeys(final String eventType)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return read("/events/keys", new Read<String[]>() {
+      @Override public String[] call(final EventHubClient replica)
+          throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+        return replica.getEventKeys(eventType);
+      }
+    });
+  }
+
+  /**
+   * Gets the values of the event type and key from a replica. See {@link EventHubClient#getEventValues(String, String)}.
+   */
+  public String[] getEventValues(final String eventType, final String eventKey)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return getEventValues(eventType, eventKey, null);
+  }
+
+  /**
+   * Gets the values of the event type and key with the prefix from a replica. See
+   * {@link EventHubClient#getEventValues(String, String, String)}.
+   */
+  public String[] getEventValues(final String eventType, final String eventKey, final String prefix)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    return read("/events/values", new Read<String[]>() {
+      @Override public String[] call(final EventHubClient replica)
+          throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+        return replica.getEventValues(eventType, eventKey, prefix);
+      }
+    });
+  }
+
+  /**
+   * Gets the server stats of a replica. See {@link EventHubClient#getServerStats}.
+   */
+  public String getServerStats() throws UnexpectedResponseCodeException {
+    try {
+      return readWithoutInput("/varz", new Read<String>() {
+        @Override public String call(final EventHubClient replica) throws UnexpectedResponseCodeException {
+          return replica.getServerStats();
+        }
+      });
+    } catch(BadlyFormedResponseBodyException e) {
+      throw new IllegalStateException("Server stats are not parsed", e);
+    }
+  }
+
+  // Replicas
+
+  /**
+   * @return The client of each replica by base URL, in the order they were given.
+   */
+  public Map<String, EventHubClient> getReplicas() {
+    return clients;
+  }
+
+  /**
+   * @return The base URLs of the replicas now getting reads, in the order they were given.
+   */
+  public List<String> getHealthyReplicas() {
+    long now = System.nanoTime();
+    List<String> healthy = new ArrayList<String>(replicas.length);
+    for(Replica replica : replicas) {
+      if(replica.isAvailable(now))
+        healthy.add(replica.getBaseUrl());
+    }
+    return healthy;
+  }
+
+  /**
+   * Stops probing and hedging and releases the connections and threads held by every replica's client. The client must not be used
+   * afterwards.
+   */
+  @Override public void close() {
+    if(probeExecutor != null)
+      probeExecutor.shutdownNow();
+    if(hedgeExecutor != null)
+      hedgeExecutor.shutdownNow();
+    for(Replica replica : replicas) {
+      replica.getClient().close();
+    }
+  }
+
+  // Utils
+
+  private <T> T readWithoutInput(final String path, final Read<T> read)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException {
+    try {
+      return read(path, read);
+    } catch(IllegalInputException e) {
+      throw new IllegalStateException("Read without input rejected its input", e);
+    }
+  }
+
+  private <T> T read(final String path, final Read<T> read)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    if(hedgeExecutor == null)
+      return readFrom(choose(null), read, null);
+    return hedgedRead(latencyOf(path), read);
+  }
+
+  /**
+   * Reads from the first replica picked and, if it has not answered by the hedge percentile of recent latency and the
+   * budget allows, from a second. The first answer is returned, or the first failure if both fail.
+   */
+  private <T> T hedgedRead(final RecentLatency latency, final Read<T> read)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    hedgeBudget.readStarted();
+    long hedgeDelayMicros = latency.getPercentileMicros(hedgePercentile);
+    final Replica first = choose(null);
+    if(hedgeDelayMicros < 0)
+      return readFrom(first, read, latency);
+
+    CompletionService<T> attempts = new ExecutorCompletionService<T>(hedgeExecutor);
+    List<Future<T>> futures = new ArrayList<Future<T>>(2);
+    try {
+      futures.add(attempts.submit(attempt(first, read, latency)));
+      Future<T> answered = attempts.poll(hedgeDelayMicros, TimeUnit.MICROSECONDS);
+      if(answered == null) {
+        if(hedgeBudget.tryHedge())
+          futures.add(attempts.submit(attempt(choose(first), read, latency)));
+        answered = attempts.take();
+      }
+      try {
+        return answered.get();
+      } catch(ExecutionException e) {
+        if(futures.size() == 1)
+          throw rethrowReadFailure(e.getCause());
+        try {
+          return attempts.take().get();
+        } catch(ExecutionException ignored) {
+          throw rethrowReadFailure(e.getCause());
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for replicas", e);
+    } finally {
+      // Not interrupted, as a request cut short would be counted against its replica
+      for(Future<T> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  private <T> Callable<T> attempt(final Replica replica, final Read<T> read, final RecentLatency latency) {
+    return new Callable<T>() {
+      @Override public T call() throws Exception {
+        return readFrom(replica, read, latency);
+      }
+    };
+  }
+
+  private <T> T readFrom(final Replica replica, final Read<T> read, final RecentLatency latency)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    long start = replica.started();
+    boolean failed = false;
+    try {
+      T result = read.call(replica.getClient());
+      if(latency != null)
+        latency.recordNanos(System.nanoTime() - start);
+      return result;
+    } catch(UnexpectedResponseCodeException e) {
+      // A client error is about the request, not the replica
+      failed = e.getActualCode() >= 500;
+      throw e;
+    } catch(BadlyFormedResponseBodyException e) {
+      failed = true;
+      throw e;
+    } catch(RuntimeException e) {
+      failed = true;
+      throw e;
+    } finally {
+      replica.finished(start, failed);
+    }
+  }
+
+  private RecentLatency latencyOf(final String path) {
+    RecentLatency latency = latencies.get(path);
+    if(latency == null) {
+      RecentLatency created = new RecentLatency(hedgeWindowMillis, hedgeMinSamples);
+      latency = latencies.putIfAbsent(path, created);
+      if(latency == null)
+        latency = created;
+    }
+    return latency;
+  }
+
+  private static RuntimeException rethrowReadFailure(final Throwable failure)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    if(failure instanceof UnexpectedResponseCodeException)
+      throw (UnexpectedResponseCodeException) failure;
+    if(failure instanceof BadlyFormedResponseBodyException)
+      throw (BadlyFormedResponseBodyException) failure;
+    if(failure instanceof IllegalInputException)
+      throw (IllegalInputException) failure;
+    if(failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    throw new IllegalStateException("Unexpected exception reading from a replica", failure);
+  }
+
+  /**
+   * Picks two different healthy replicas at random and returns the less loaded, or the only one there is. A hedge
+   * passes the replica already read from as excluded, and is only sent back to it if no other replica is healthy.
+   */
+  private Replica choose(final Replica excluded) {
+    if(replicas.length == 1)
+      return replicas[0];
+    long now = System.nanoTime();
+    Replica[] candidates = new Replica[replicas.length];
+    int count = 0;
+    for(Replica replica : replicas) {
+      if(replica != excluded && replica.isAvailable(now))
+        candidates[count++] = replica;
+    }
+    if(count == 0 && excluded != null)
+      return excluded;
+    if(count == 0) {
+      // Better to try an unhealthy replica than to fail every read
+      candidates = replicas;
+      count = replicas.length;
+    }
+    if(count == 1)
+      return candidates[0];
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(count);
+    int second = random.nextInt(count - 1);
+    if(second >= first)
+      second++;
+    Replica a = candidates[first];
+    Replica b = candidates[second];
+    return a.cost(now) <= b.cost(now) ? a : b;
+  }
+
+  private void probeAll() {
+    for(Replica replica : replicas) {
+      try {
+        replica.getClient().getServerStats();
+        replica.probed(true);
+      } catch(UnexpectedResponseCodeException e) {
+        replica.probed(false);
+      } catch(RuntimeException e) {
+        replica.probed(false);
+      }
+    }
+  }
+}
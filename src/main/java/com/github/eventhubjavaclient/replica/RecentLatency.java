@@ -0,0 +1,55 @@
+package com.github.eventhubjavaclient.replica;
+
+import com.github.eventhubjavaclient.metrics.LatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of one kind of read over the last window or two, kept as a {@link LatencyHistogram} per window. Old
+ * windows are dropped whole, so percentiles follow the replicas as they speed up or slow down.
+ */
+final class RecentLatency {
+
+  private final long windowNanos;
+  private final int minSamples;
+  private volatile LatencyHistogram current = new LatencyHistogram();
+  private volatile LatencyHistogram previous;
+  private volatile long windowStartNanos = System.nanoTime();
+
+  RecentLatency(final long windowMillis, final int minSamples) {
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.minSamples = minSamples;
+  }
+
+  void recordNanos(final long nanos) {
+    rotateIfDue();
+    current.recordNanos(nanos);
+  }
+
+  /**
+   * @param percentile The percentile to find, from 0 to 100.
+   * @return The percentile of the current window, or of the previous one while the current is too young to tell, or
+   * -1 if neither has enough reads.
+   */
+  long getPercentileMicros(final double percentile) {
+    rotateIfDue();
+    LatencyHistogram histogram = current;
+    if(histogram.getCount() < minSamples)
+      histogram = previous;
+    return histogram == null || histogram.getCount() < minSamples ? -1 : histogram.getPercentileMicros(percentile);
+  }
+
+  private void rotateIfDue() {
+    if(System.nanoTime() - windowStartNanos < windowNanos)
+      return;
+    synchronized(this) {
+      long now = System.nanoTime();
+      if(now - windowStartNanos < windowNanos)
+        return;
+      // A window with no reads at all leaves nothing recent to go on
+      previous = now - windowStartNanos < 2 * windowNanos ? current : null;
+      current = new LatencyHistogram();
+      windowStartNanos = now;
+    }
+  }
+}
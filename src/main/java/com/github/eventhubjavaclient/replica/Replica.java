@@ -0,0 +1,102 @@
+package com.github.eventhubjavaclient.replica;
+
+import com.github.eventhubjavaclient.EventHubClient;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One replica of a {@link LoadBalancedReadClient}: its client, the load on it and its health.
+ */
+class Replica {
+
+  private final String baseUrl;
+  private final EventHubClient client;
+  private final ReplicaConfig config;
+  private final double decayNanos;
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private volatile boolean probeFailed;
+  private volatile long ejectedUntilNanos;
+  private volatile boolean ejected;
+
+  // Guarded by this
+  private double peakEwmaNanos;
+  private long lastObservedNanos = System.nanoTime();
+  private double errorRate;
+  private int readsSinceAdmitted;
+
+  Replica(final String baseUrl, final EventHubClient client, final ReplicaConfig config) {
+    this.baseUrl = baseUrl;
+    this.client = client;
+    this.config = config;
+    this.decayNanos = TimeUnit.MILLISECONDS.toNanos(config.getLatencyDecayMillis());
+  }
+
+  String getBaseUrl() {
+    return baseUrl;
+  }
+
+  EventHubClient getClient() {
+    return client;
+  }
+
+  int getOutstanding() {
+    return outstanding.get();
+  }
+
+  boolean isAvailable(final long now) {
+    return !probeFailed && (!ejected || now - ejectedUntilNanos >= 0);
+  }
+
+  /**
+   * @return How loaded the replica is by the configured selection, lower being better.
+   */
+  double cost(final long now) {
+    int inFlight = outstanding.get();
+    if(config.getSelection() == ReplicaSelection.LEAST_OUTSTANDING)
+      return inFlight;
+    double latency;
+    synchronized(this) {
+      latency = peakEwmaNanos * Math.exp(-(now - lastObservedNanos) / decayNanos);
+    }
+    // A replica nobody has timed yet costs only its reads in flight, so it gets tried
+    return (latency + 1) * (inFlight + 1);
+  }
+
+  long started() {
+    outstanding.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * @param startNanos What {@link #started()} returned for the read.
+   * @param failed True if the read failed because of the replica, rather than the input or the data asked for.
+   */
+  void finished(final long startNanos, final boolean failed) {
+    outstanding.decrementAndGet();
+    long now = System.nanoTime();
+    long latency = now - startNanos;
+    synchronized(this) {
+      double weight = Math.exp(-(now - lastObservedNanos) / decayNanos);
+      lastObservedNanos = now;
+      peakEwmaNanos = latency > peakEwmaNanos ? latency : peakEwmaNanos * weight + latency * (1 - weight);
+
+      if(ejected && now - ejectedUntilNanos >= 0) {
+        // Back from ejection, judge it on its reads from here on
+        ejected = false;
+        errorRate = 0;
+        readsSinceAdmitted = 0;
+      }
+      errorRate += ((failed ? 1 : 0) - errorRate) / config.getErrorWindow();
+      readsSinceAdmitted++;
+      if(!ejected && readsSinceAdmitted >= config.getErrorWindow() && errorRate > config.getMaxErrorRate()) {
+        ejectedUntilNanos = now + TimeUnit.MILLISECONDS.toNanos(config.getEjectionMillis());
+        ejected = true;
+      }
+    }
+  }
+
+  void probed(final boolean succeeded) {
+    probeFailed = !succeeded;
+  }
+}
@@ -0,0 +1,190 @@
+package com.github.eventhubjavaclient.replica;
+
+/**
+ * Configuration for a {@link LoadBalancedReadClient}. Every setting has a default so only the values that matter need setting.
+ */
+public class ReplicaConfig {
+
+  public static final ReplicaSelection DEFAULT_SELECTION = ReplicaSelection.PEAK_EWMA;
+  public static final long DEFAULT_LATENCY_DECAY_MILLIS = 10000;
+  public static final long DEFAULT_PROBE_INTERVAL_MILLIS = 5000;
+  public static final int DEFAULT_ERROR_WINDOW = 20;
+  public static final double DEFAULT_MAX_ERROR_RATE = 0.5;
+  public static final long DEFAULT_EJECTION_MILLIS = 30000;
+  public static final double DEFAULT_HEDGE_PERCENTILE = 0;
+  public static final double DEFAULT_HEDGE_BUDGET_PERCENT = 5;
+  public static final int DEFAULT_HEDGE_MIN_SAMPLES = 50;
+  public static final long DEFAULT_HEDGE_WINDOW_MILLIS = 60000;
+
+  private ReplicaSelection selection = DEFAULT_SELECTION;
+  private long latencyDecayMillis = DEFAULT_LATENCY_DECAY_MILLIS;
+  private long probeIntervalMillis = DEFAULT_PROBE_INTERVAL_MILLIS;
+  private int errorWindow = DEFAULT_ERROR_WINDOW;
+  private double maxErrorRate = DEFAULT_MAX_ERROR_RATE;
+  private long ejectionMillis = DEFAULT_EJECTION_MILLIS;
+  private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+  private double hedgeBudgetPercent = DEFAULT_HEDGE_BUDGET_PERCENT;
+  private int hedgeMinSamples = DEFAULT_HEDGE_MIN_SAMPLES;
+  private long hedgeWindowMillis = DEFAULT_HEDGE_WINDOW_MILLIS;
+
+  public ReplicaSelection getSelection() {
+    return selection;
+  }
+
+  /**
+   * @param selection How the replica for each read is picked. Must be NotNull.
+   * @return This config
+   */
+  public ReplicaConfig setSelection(final ReplicaSelection selection) {
+    if(selection == null)
+      throw new IllegalArgumentException("selection must not be null");
+    this.selection = selection;
+    return this;
+  }
+
+  public long getLatencyDecayMillis() {
+    return latencyDecayMillis;
+  }
+
+  /**
+   * @param latencyDecayMillis How quickly the peak EWMA latency of a replica forgets a slow response: after this long
+   *                           without a slower one, about a third of it is left. Must be greater than 0.
+   * @return This config
+   */
+  public ReplicaConfig setLatencyDecayMillis(final long latencyDecayMillis) {
+    if(latencyDecayMillis < 1)
+      throw new IllegalArgumentException("latencyDecayMillis must be greater than 0 but was " + latencyDecayMillis);
+    this.latencyDecayMillis = latencyDecayMillis;
+    return this;
+  }
+
+  public long getProbeIntervalMillis() {
+    return probeIntervalMillis;
+  }
+
+  /**
+   * @param probeIntervalMillis How often each replica's /varz is requested to check it is up. A replica whose probe
+   *                            fails gets no reads until a probe succeeds. 0 turns probing off. Must not be negative.
+   * @return This config
+   */
+  public ReplicaConfig setProbeIntervalMillis(final long probeIntervalMillis) {
+    if(probeIntervalMillis < 0)
+      throw new IllegalArgumentException("probeIntervalMillis must not be negative but was " + probeIntervalMillis);
+    this.probeIntervalMillis = probeIntervalMillis;
+    return this;
+  }
+
+  public int getErrorWindow() {
+    return errorWindow;
+  }
+
+  /**
+   * @param errorWindow About how many of a replica's latest reads its error rate is taken over. A replica is not
+   *                    ejected for errors until it has served this many reads. Must be greater than 0.
+   * @return This config
+   */
+  public ReplicaConfig setErrorWindow(final int errorWindow) {
+    if(errorWindow < 1)
+      throw new IllegalArgumentException("errorWindow must be greater than 0 but was " + errorWindow);
+    this.errorWindow = errorWindow;
+    return this;
+  }
+
+  public double getMaxErrorRate() {
+    return maxErrorRate;
+  }
+
+  /**
+   * @param maxErrorRate The share of reads failing with a server error, transport error or badly formed response above
+   *                     which a replica is ejected. Must be greater than 0 and at most 1.
+   * @return This config
+   */
+  public ReplicaConfig setMaxErrorRate(final double maxErrorRate) {
+    if(!(maxErrorRate > 0 && maxErrorRate <= 1))
+      throw new IllegalArgumentException("maxErrorRate must be greater than 0 and at most 1 but was " + maxErrorRate);
+    this.maxErrorRate = maxErrorRate;
+    return this;
+  }
+
+  public long getEjectionMillis() {
+    return ejectionMillis;
+  }
+
+  /**
+   * @param ejectionMillis How long a replica ejected for errors gets no reads. Afterwards its error rate starts afresh.
+   *                       Must be greater than 0.
+   * @return This config
+   */
+  public ReplicaConfig setEjectionMillis(final long ejectionMillis) {
+    if(ejectionMillis < 1)
+      throw new IllegalArgumentException("ejectionMillis must be greater than 0 but was " + ejectionMillis);
+    this.ejectionMillis = ejectionMillis;
+    return this;
+  }
+
+  public double getHedgePercentile() {
+    return hedgePercentile;
+  }
+
+  /**
+   * @param hedgePercentile The percentile of recent latency for the same kind of read after which a read is hedged: a
+   *                        duplicate is sent to another replica, or the same one if there is no other, and the first
+   *                        answer is used. For example 95 hedges the slowest 5% of reads. 0 turns hedging off, the
+   *                        default. Must be 0, or greater than 0 and less than 100.
+   * @return This config
+   */
+  public ReplicaConfig setHedgePercentile(final double hedgePercentile) {
+    if(!(hedgePercentile >= 0 && hedgePercentile < 100))
+      throw new IllegalArgumentException("hedgePercentile must be at least 0 and less than 100 but was " + hedgePercentile);
+    this.hedgePercentile = hedgePercentile;
+    return this;
+  }
+
+  public double getHedgeBudgetPercent() {
+    return hedgeBudgetPercent;
+  }
+
+  /**
+   * @param hedgeBudgetPercent The most hedges sent, as a percentage of reads, so a slow spell on every replica adds at
+   *                           most this much load to them. Must be greater than 0 and at most 100.
+   * @return This config
+   */
+  public ReplicaConfig setHedgeBudgetPercent(final double hedgeBudgetPercent) {
+    if(!(hedgeBudgetPercent > 0 && hedgeBudgetPercent <= 100))
+      throw new IllegalArgumentException("hedgeBudgetPercent must be greater than 0 and at most 100 but was " + hedgeBudgetPercent);
+    this.hedgeBudgetPercent = hedgeBudgetPercent;
+    return this;
+  }
+
+  public int getHedgeMinSamples() {
+    return hedgeMinSamples;
+  }
+
+  /**
+   * @param hedgeMinSamples How many reads of a kind must have been timed in the latency window before any are hedged,
+   *                        so the percentile means something. Must be greater than 0.
+   * @return This config
+   */
+  public ReplicaConfig setHedgeMinSamples(final int hedgeMinSamples) {
+    if(hedgeMinSamples < 1)
+      throw new IllegalArgumentException("hedgeMinSamples must be greater than 0 but was " + hedgeMinSamples);
+    this.hedgeMinSamples = hedgeMinSamples;
+    return this;
+  }
+
+  public long getHedgeWindowMillis() {
+    return hedgeWindowMillis;
+  }
+
+  /**
+   * @param hedgeWindowMillis How long the latency the hedge percentile is taken from is gathered over. Latency older
+   *                          than two windows is forgotten. Must be greater than 0.
+   * @return This config
+   */
+  public ReplicaConfig setHedgeWindowMillis(final long hedgeWindowMillis) {
+    if(hedgeWindowMillis < 1)
+      throw new IllegalArgumentException("hedgeWindowMillis must be greater than 0 but was " + hedgeWindowMillis);
+    this.hedgeWindowMillis = hedgeWindowMillis;
+    return this;
+  }
+}
@@ -0,0 +1,17 @@
+package com.github.eventhubjavaclient.replica;
+
+/**
+ * How a {@link LoadBalancedReadClient} picks the replica for a read. Either way two healthy replicas are picked at
+ * random and the less loaded one is used, which spreads load nearly as well as checking every replica while never
+ * sending every caller to the same one at once.
+ */
+public enum ReplicaSelection {
+  /** The replica with fewer reads in flight. */
+  LEAST_OUTSTANDING,
+  /**
+   * The replica with the lower peak EWMA latency times its reads in flight plus one. The average jumps straight up to a
+   * slow response and decays slowly back down, so a replica that turns slow stops getting reads at once, and gets them
+   * again once it has been left alone for a while.
+   */
+  PEAK_EWMA
+}
@@ -0,0 +1,85 @@
+package com.github.eventhubjavaclient.shard;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Maps keys to nodes by consistent hashing. Each node is placed at many points on a ring of 64 bit hashes, and a key
+ * belongs to the node at the first point at or after its own hash. Adding a node only takes the keys just before its
+ * points, about 1/n of them, from the nodes already there; every other key stays where it was.
+ * <p>
+ * Points are placed by hashing each node's name, so the same names give the same ring in any order and on any
+ * machine. Immutable.
+ */
+final class ConsistentHashRing<N> {
+
+  private final long[] points;
+  private final N[] owners;
+
+  /**
+   * @param nodes The nodes by name. Must not be empty.
+   * @param pointsPerNode How many points each node has on the ring. More spread keys more evenly. Must be greater than 0.
+   */
+  @SuppressWarnings("unchecked")
+  ConsistentHashRing(final Map<String, N> nodes, final int pointsPerNode) {
+    if(nodes.isEmpty())
+      throw new IllegalArgumentException("A ring needs at least one node");
+    int size = nodes.size() * pointsPerNode;
+    long[] unsortedPoints = new long[size];
+    Object[] unsortedOwners = new Object[size];
+    int i = 0;
+    for(Map.Entry<String, N> node : nodes.entrySet()) {
+      for(int point = 0; point < pointsPerNode; point++) {
+        unsortedPoints[i] = hash(node.getKey() + "#" + point);
+        unsortedOwners[i] = node.getValue();
+        i++;
+      }
+    }
+    // Sort the points, carrying their owners along
+    Integer[] order = new Integer[size];
+    for(int j = 0; j < size; j++) {
+      order[j] = j;
+    }
+    final long[] sortKeys = unsortedPoints;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override public int compare(final Integer a, final Integer b) {
+        return Long.compare(sortKeys[a], sortKeys[b]);
+      }
+    });
+    points = new long[size];
+    owners = (N[]) new Object[size];
+    for(int j = 0; j < size; j++) {
+      points[j] = unsortedPoints[order[j]];
+      owners[j] = (N) unsortedOwners[order[j]];
+    }
+  }
+
+  /**
+   * @param key The key to place, such as an external user id.
+   * @return The node owning the key.
+   */
+  N nodeFor(final String key) {
+    int index = Arrays.binarySearch(points, hash(key));
+    if(index < 0)
+      index = -index - 1;
+    return owners[index == points.length ? 0 : index];
+  }
+
+  /**
+   * FNV-1a over the string's characters, then MurmurHash3's finalizer to spread the bits FNV leaves clustered.
+   */
+  static long hash(final String key) {
+    long hash = 0xcbf29ce484222325L;
+    for(int i = 0; i < key.length(); i++) {
+      hash ^= key.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
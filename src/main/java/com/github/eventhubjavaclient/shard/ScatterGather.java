@@ -0,0 +1,159 @@
+package com.github.eventhubjavaclient.shard;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends a query to every shard at once and merges what comes back within the deadline. Shards are independent, each
+ * holding its own users, so the totals of every shard merged are the totals over all users.
+ */
+final class ScatterGather {
+
+  /**
+   * A query made on one shard.
+   */
+  interface Query<T> {
+    T call(EventHubClient shard) throws Exception;
+  }
+
+  /**
+   * Combines the results of the shards that answered, of which there is at least one.
+   */
+  interface Merger<T> {
+    T merge(List<T> results);
+  }
+
+  private ScatterGather() {
+  }
+
+  /**
+   * @param shards The shards to query, by base URL.
+   * @param executor Runs the query on each shard.
+   * @param timeoutMillis How long to wait for the shards, all at once. Shards that have not answered by then are
+   *                      cancelled and reported as timed out; their requests run on until their read timeout.
+   * @throws IllegalInputException Thrown if the query was given illegal input, which every shard would reject alike.
+   */
+  static <T> ShardedResult<T> run(final Map<String, EventHubClient> shards, final ExecutorService executor,
+      final long timeoutMillis, final Query<T> query, final Merger<T> merger) throws IllegalInputException {
+    Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+    for(final Map.Entry<String, EventHubClient> shard : shards.entrySet()) {
+      futures.put(shard.getKey(), executor.submit(new Callable<T>() {
+        @Override public T call() throws Exception {
+          return query.call(shard.getValue());
+        }
+      }));
+    }
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    List<T> results = new ArrayList<T>(shards.size());
+    List<String> succeededShards = new ArrayList<String>(shards.size());
+    Map<String, Exception> failures = new LinkedHashMap<String, Exception>();
+    try {
+      for(Map.Entry<String, Future<T>> future : futures.entrySet()) {
+        try {
+          results.add(future.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+          succeededShards.add(future.getKey());
+        } catch(ExecutionException e) {
+          Throwable cause = e.getCause();
+          if(cause instanceof IllegalInputException)
+            throw (IllegalInputException) cause;
+          failures.put(future.getKey(), cause instanceof Exception ? (Exception) cause : e);
+        } catch(TimeoutException e) {
+          future.getValue().cancel(true);
+          failures.put(future.getKey(), new TimeoutException("Shard " + future.getKey() + " did not answer within "
+              + timeoutMillis + "ms"));
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for shards", e);
+    } finally {
+      for(Future<T> future : futures.values()) {
+        future.cancel(true);
+      }
+    }
+    return new ShardedResult<T>(results.isEmpty() ? null : merger.merge(results), succeededShards, failures);
+  }
+
+  // Mergers
+
+  static final Merger<int[]> SUM_COUNTS = new Merger<int[]>() {
+    @Override public int[] merge(final List<int[]> results) {
+      return sum(results);
+    }
+  };
+
+  static final Merger<int[][]> SUM_TABLES = new Merger<int[][]>() {
+    @Override public int[][] merge(final List<int[][]> results) {
+      int rows = 0;
+      for(int[][] table : results) {
+        rows = Math.max(rows, table.length);
+      }
+      int[][] merged = new int[rows][];
+      List<int[]> row = new ArrayList<int[]>(results.size());
+      for(int i = 0; i < rows; i++) {
+        row.clear();
+        for(int[][] table : results) {
+          if(i < table.length && table[i] != null)
+            row.add(table[i]);
+        }
+        merged[i] = sum(row);
+      }
+      return merged;
+    }
+  };
+
+  static final Merger<String[]> UNION = new Merger<String[]>() {
+    @Override public String[] merge(final List<String[]> results) {
+      Set<String> union = new LinkedHashSet<String>();
+      for(String[] values : results) {
+        for(String value : values) {
+          union.add(value);
+        }
+      }
+      return union.toArray(new String[union.size()]);
+    }
+  };
+
+  static final Merger<List<String>> UNION_LISTS = new Merger<List<String>>() {
+    @Override public List<String> merge(final List<List<String>> results) {
+      Set<String> union = new LinkedHashSet<String>();
+      for(Collection<String> values : results) {
+        union.addAll(values);
+      }
+      return new ArrayList<String>(union);
+    }
+  };
+
+  /**
+   * Sums the arrays element by element. Shards with no data for a trailing day or step can send a shorter array, so
+   * the sum is as long as the longest.
+   */
+  private static int[] sum(final List<int[]> arrays) {
+    int length = 0;
+    for(int[] array : arrays) {
+      length = Math.max(length, array.length);
+    }
+    int[] sum = new int[length];
+    for(int[] array : arrays) {
+      for(int i = 0; i < array.length; i++) {
+        sum[i] += array[i];
+      }
+    }
+    return sum;
+  }
+}
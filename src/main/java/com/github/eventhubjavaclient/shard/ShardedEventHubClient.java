@@ -0,0 +1,393 @@
+package com.github.eventhubjavaclient.shard;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Talks to several EventHub servers that each own a shard of the users, through an {@link EventHubClient} per server.
+ * Calls about a user are sent to the shard owning them, picked by consistent hashing of their external user id over
+ * the shards' base URLs, so every client given the same URLs agrees on where each user lives whatever order the URLs
+ * are in. Adding a shard moves only about 1/n of the users, all of them to the new shard.
+ * <p>
+ * Queries over all users, such as funnels, cohorts and event types, are sent to every shard at once and their results
+ * merged: counts are summed and lists of values are combined without repeats. A shard that fails or does not answer
+ * within {@link ShardingConfig#getShardTimeoutMillis()} is left out and reported in the {@link ShardedResult}.
+ * <p>
+ * Other calls can be made on any shard's client, see {@link #getShards()}.
+ */
+public class ShardedEventHubClient implements Closeable {
+
+  // Static
+
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  /**
+   * Creates a sharded client with the default config, talking to each shard through a default {@link EventHubClient}.
+   * @param baseUrls The base URL of each shard's EventHub server. Must be NotNull, not empty and without repeats.
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @return The created client
+   */
+  public static ShardedEventHubClient createDefaultClient(final List<String> baseUrls, final Integer connectionTimeout,
+      final Integer readTimeout) {
+    return createCustomClient(baseUrls, connectionTimeout, readTimeout, new ShardingConfig());
+  }
+
+  /**
+   * Creates a sharded client with the provided config, talking to each shard through a default {@link EventHubClient}.
+   * @param baseUrls The base URL of each shard's EventHub server. Must be NotNull, not empty and without repeats.
+   * @param connectionTimeout Timeout for making the initial connection
+   * @param readTimeout Timeout for reading data
+   * @param config The configuration for sharding. Must be NotNull.
+   * @return The created client
+   */
+  public static ShardedEventHubClient createCustomClient(final List<String> baseUrls, final Integer connectionTimeout,
+      final Integer readTimeout, final ShardingConfig config) {
+    if(baseUrls == null || baseUrls.isEmpty())
+      throw new IllegalArgumentException("baseUrls must not be null or empty");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    return new ShardedEventHubClient(baseUrls, connectionTimeout, readTimeout, config);
+  }
+
+  // Instance
+
+  private final Integer connectionTimeout;
+  private final Integer readTimeout;
+  private final ShardingConfig config;
+  // Replaced whole when a shard is added, so a call sees one consistent set of shards
+  private volatile Map<String, EventHubClient> shards;
+  private volatile ConsistentHashRing<EventHubClient> ring;
+  // Created on first use, by batch tracking and queries sent to every shard
+  private ExecutorService executor;
+
+  private ShardedEventHubClient(final List<String> baseUrls, final Integer connectionTimeout, final Integer readTimeout,
+      final ShardingConfig config) {
+    this.connectionTimeout = connectionTimeout;
+    this.readTimeout = readTimeout;
+    this.config = config;
+    // Checked before any client is created, so none are left open when a URL is bad
+    Set<String> distinctUrls = new HashSet<String>();
+    for(String baseUrl : baseUrls) {
+      checkNewShard(distinctUrls, baseUrl);
+      distinctUrls.add(baseUrl);
+    }
+    Map<String, EventHubClient> clients = new LinkedHashMap<String, EventHubClient>();
+    for(String baseUrl : baseUrls) {
+      clients.put(baseUrl, EventHubClient.createDefaultClient(baseUrl, connectionTimeout, readTimeout));
+    }
+    setShards(clients);
+  }
+
+  // Users
+
+  /**
+   * Adds or updates the user on the shard owning them. See {@link EventHubClient#addOrUpdateUser}.
+   */
+  public void addOrUpdateUser(final String userId, final Map<String, String> userFieldValueMap)
+      throws UnexpectedResponseCodeException, IllegalInputException {
+    checkNotNull(userId);
+    ring.nodeFor(userId).addOrUpdateUser(userId, userFieldValueMap);
+  }
+
+  /**
+   * Creates an alias on the shard owning the existing user, which is the one holding the user the alias points to.
+   * Events tracked under the new name afterwards are routed by the new name, which may be another shard, so keep
+   * tracking under the existing name. See {@link EventHubClient#aliasUser}.
+   */
+  public void aliasUser(final String newUserName, final String existingUserName)
+      throws UnexpectedResponseCodeException, IllegalInputException {
+    checkNotNull(newUserName);
+    checkNotNull(existingUserName);
+    ring.nodeFor(existingUserName).aliasUser(newUserName, existingUserName);
+  }
+
+  /**
+   * Gets events for the user from the shard owning them. See {@link EventHubClient#getUserTimeline}.
+   */
+  public Collection<Event> getUserTimeline(final String userName, final int offset, final int numberOfRecords)
+      throws UnexpectedResponseCodeException, BadlyFormedResponseBodyException, IllegalInputException {
+    checkNotNull(userName);
+    return ring.nodeFor(userName).getUserTimeline(userName, offset, numberOfRecords);
+  }
+
+  /**
+   * Gets the users matching the filters on every shard. See {@link EventHubClient#getUsers}.
+   */
+  public ShardedResult<List<String>> getUsers(final Map<String, String> filters) throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<List<String>>() {
+      @Override public List<String> call(final EventHubClient shard) throws Exception {
+        return shard.getUsers(filters);
+      }
+    }, ScatterGather.UNION_LISTS);
+  }
+
+  /**
+   * Gets the user keys of every shard. See {@link EventHubClient#getUserKeys}.
+   */
+  public ShardedResult<String[]> getUserKeys() throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<String[]>() {
+      @Override public String[] call(final EventHubClient shard) throws Exception {
+        return shard.getUserKeys();
+      }
+    }, ScatterGather.UNION);
+  }
+
+  /**
+   * Gets the values of the user key on every shard. See {@link EventHubClient#getUserValues(String, String)}.
+   */
+  public ShardedResult<String[]> getUserValues(final String userKey, final String prefix) throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<String[]>() {
+      @Override public String[] call(final EventHubClient shard) throws Exception {
+        return shard.getUserValues(userKey, prefix);
+      }
+    }, ScatterGather.UNION);
+  }
+
+  // Events
+
+  /**
+   * Gets the event types of every shard. See {@link EventHubClient#getEventTypes}.
+   */
+  public ShardedResult<String[]> getEventTypes() throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<String[]>() {
+      @Override public String[] call(final EventHubClient shard) throws Exception {
+        return shard.getEventTypes();
+      }
+    }, ScatterGather.UNION);
+  }
+
+  /**
+   * Gets the keys of the event type on every shard. See {@link EventHubClient#getEventKeys}.
+   */
+  public ShardedResult<String[]> getEventKeys(final String eventType) throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<String[]>() {
+      @Override public String[] call(final EventHubClient shard) throws Exception {
+        return shard.getEventKeys(eventType);
+      }
+    }, ScatterGather.UNION);
+  }
+
+  /**
+   * Gets the values of the event type and key on every shard. See {@link EventHubClient#getEventValues(String, String, String)}.
+   */
+  public ShardedResult<String[]> getEventValues(final String eventType, final String eventKey, final String prefix)
+      throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<String[]>() {
+      @Override public String[] call(final EventHubClient shard) throws Exception {
+        return shard.getEventValues(eventType, eventKey, prefix);
+      }
+    }, ScatterGather.UNION);
+  }
+
+  /**
+   * Retrieves funnel counts from every shard and adds them up. See {@link EventHubClient#retrieveEventFunnelCounts}.
+   */
+  public ShardedResult<int[]> retrieveEventFunnelCounts(final DateTime startDate, final DateTime endDate,
+      final String[] funnelSteps, final int daysToCompleteFunnel) throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<int[]>() {
+      @Override public int[] call(final EventHubClient shard) throws Exception {
+        return shard.retrieveEventFunnelCounts(startDate, endDate, funnelSteps, daysToCompleteFunnel);
+      }
+    }, ScatterGather.SUM_COUNTS);
+  }
+
+  /**
+   * Retrieves a cohort table from every shard and adds them up cell by cell. See {@link EventHubClient#retrieveEventCohortTable}.
+   */
+  public ShardedResult<int[][]> retrieveEventCohortTable(final DateTime startDate, final DateTime endDate,
+      final String rowEventType, final String columnEventType, final int numberOfDaysPerRow, final int numberOfDaysPerColumn,
+      final Map<String, String> rowFilters, final Map<String, String> columnFilters) throws IllegalInputException {
+    return scatterGather(new ScatterGather.Query<int[][]>() {
+      @Override public int[][] call(final EventHubClient shard) throws Exception {
+        return shard.retrieveEventCohortTable(startDate, endDate, rowEventType, columnEventType, numberOfDaysPerRow,
+            numberOfDaysPerColumn, rowFilters, columnFilters);
+      }
+    }, ScatterGather.SUM_TABLES);
+  }
+
+  /**
+   * Tracks the event on the shard owning its user. See {@link EventHubClient#trackEvent}.
+   */
+  public void trackEvent(final Event event) throws UnexpectedResponseCodeException, IllegalInputException {
+    checkEvent(event);
+    ring.nodeFor(event.getExternalUserId()).trackEvent(event);
+  }
+
+  /**
+   * Batch tracks the events, splitting them into a batch per shard, each in the order given, and sending the batches
+   * concurrently. Every batch is sent even if another fails, so when this throws, the batches of the other shards may
+   * have been tracked.
+   * @param events The events to track. Must be NotNull, contain at least one event and each must have a user.
+   * @throws UnexpectedResponseCodeException Thrown if any shard got anything other than a 200 OK response.
+   * @throws IllegalInputException Thrown if illegal input is provided (null or empty events list, or an event without a user).
+   */
+  public void batchTrackEvents(final List<Event> events) throws UnexpectedResponseCodeException, IllegalInputException {
+    if(events == null || events.isEmpty())
+      throw new IllegalInputException("The provided list was " + (events == null ? "null" : "empty"));
+    ConsistentHashRing<EventHubClient> ring = this.ring;
+    final Map<EventHubClient, List<Event>> batches = new IdentityHashMap<EventHubClient, List<Event>>();
+    for(Event event : events) {
+      checkEvent(event);
+      EventHubClient shard = ring.nodeFor(event.getExternalUserId());
+      List<Event> batch = batches.get(shard);
+      if(batch == null) {
+        batch = new ArrayList<Event>();
+        batches.put(shard, batch);
+      }
+      batch.add(event);
+    }
+
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(batches.size());
+    Exception failure = null;
+    Map.Entry<EventHubClient, List<Event>> callerBatch = null;
+    for(final Map.Entry<EventHubClient, List<Event>> batch : batches.entrySet()) {
+      // The calling thread sends one batch itself rather than sitting idle
+      if(callerBatch == null) {
+        callerBatch = batch;
+        continue;
+      }
+      futures.add(getExecutor().submit(new Callable<Void>() {
+        @Override public Void call() throws Exception {
+          batch.getKey().batchTrackEvents(batch.getValue());
+          return null;
+        }
+      }));
+    }
+    try {
+      callerBatch.getKey().batchTrackEvents(callerBatch.getValue());
+    } catch(UnexpectedResponseCodeException e) {
+      failure = e;
+    } catch(RuntimeException e) {
+      failure = e;
+    }
+    for(Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch(ExecutionException e) {
+        if(failure == null)
+          failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : new IllegalStateException(e.getCause());
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for shards", e);
+      }
+    }
+    if(failure instanceof UnexpectedResponseCodeException)
+      throw (UnexpectedResponseCodeException) failure;
+    if(failure instanceof IllegalInputException)
+      throw (IllegalInputException) failure;
+    if(failure instanceof RuntimeException)
+      throw (RuntimeException) failure;
+    if(failure != null)
+      throw new IllegalStateException("Unexpected exception tracking a batch", failure);
+  }
+
+  // Shards
+
+  /**
+   * @param externalUserId The user's external id. Must be NotNull.
+   * @return The client of the shard owning the user.
+   */
+  public EventHubClient getShardFor(final String externalUserId) {
+    if(externalUserId == null)
+      throw new IllegalArgumentException("externalUserId must not be null");
+    return ring.nodeFor(externalUserId);
+  }
+
+  /**
+   * @return The client of each shard by base URL, in the order the shards were given and added.
+   */
+  public Map<String, EventHubClient> getShards() {
+    return shards;
+  }
+
+  /**
+   * Adds a shard, which takes over about 1/n of the users from the shards already there. Users' existing data is not
+   * moved; calls for the users it takes over go to the new shard from now on.
+   * @param baseUrl The base URL of the new shard's EventHub server. Must be NotNull and not already a shard.
+   */
+  public synchronized void addShard(final String baseUrl) {
+    Map<String, EventHubClient> clients = new LinkedHashMap<String, EventHubClient>(shards);
+    checkNewShard(clients.keySet(), baseUrl);
+    clients.put(baseUrl, EventHubClient.createDefaultClient(baseUrl, connectionTimeout, readTimeout));
+    setShards(clients);
+  }
+
+  /**
+   * Releases the connections and threads held by every shard's client. The client must not be used afterwards.
+   */
+  @Override public void close() {
+    synchronized(this) {
+      if(executor != null)
+        executor.shutdownNow();
+    }
+    for(EventHubClient client : shards.values()) {
+      client.close();
+    }
+  }
+
+  // Utils
+
+  private <T> ShardedResult<T> scatterGather(final ScatterGather.Query<T> query, final ScatterGather.Merger<T> merger)
+      throws IllegalInputException {
+    return ScatterGather.run(shards, getExecutor(), config.getShardTimeoutMillis(), query, merger);
+  }
+
+  private void setShards(final Map<String, EventHubClient> clients) {
+    ring = new ConsistentHashRing<EventHubClient>(clients, config.getPointsPerShard());
+    shards = Collections.unmodifiableMap(clients);
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    if(executor == null) {
+      executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override public Thread newThread(final Runnable runnable) {
+          Thread thread = new Thread(runnable, "eventhub-shard-worker-" + THREAD_COUNT.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return executor;
+  }
+
+  private static void checkNewShard(final Set<String> baseUrls, final String baseUrl) {
+    if(baseUrl == null)
+      throw new IllegalArgumentException("baseUrl must not be null");
+    if(baseUrls.contains(baseUrl))
+      throw new IllegalArgumentException("Shard " + baseUrl + " is given more than once");
+  }
+
+  private static void checkEvent(final Event event) throws IllegalInputException {
+    checkNotNull(event);
+    checkNotNull(event.getEventType());
+    checkNotNull(event.getExternalUserId());
+  }
+
+  private static void checkNotNull(final Object obj) throws IllegalInputException {
+    if(obj == null)
+      throw new IllegalInputException("Expecting non null value");
+  }
+}
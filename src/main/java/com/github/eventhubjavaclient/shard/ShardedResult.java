@@ -0,0 +1,52 @@
+package com.github.eventhubjavaclient.shard;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The merged result of a query sent to every shard, along with which shards it is missing. A shard that failed or
+ * did not answer in time is left out of the merge rather than failing the whole query, so check
+ * {@link #isComplete()} before taking the value as the total.
+ */
+public final class ShardedResult<T> {
+
+  private final T value;
+  private final List<String> succeededShards;
+  private final Map<String, Exception> failures;
+
+  ShardedResult(final T value, final List<String> succeededShards, final Map<String, Exception> failures) {
+    this.value = value;
+    this.succeededShards = Collections.unmodifiableList(succeededShards);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * @return The results of the shards that answered, merged, or null if none did.
+   */
+  public T getValue() {
+    return value;
+  }
+
+  /**
+   * @return The base URLs of the shards whose results are in the value, in shard order.
+   */
+  public List<String> getSucceededShards() {
+    return succeededShards;
+  }
+
+  /**
+   * @return Why each missing shard is missing, by base URL. A shard that did not answer in time has a
+   * {@link java.util.concurrent.TimeoutException}.
+   */
+  public Map<String, Exception> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return True if every shard answered, so the value covers all users.
+   */
+  public boolean isComplete() {
+    return failures.isEmpty();
+  }
+}
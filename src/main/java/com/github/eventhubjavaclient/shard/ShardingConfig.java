@@ -0,0 +1,47 @@
+package com.github.eventhubjavaclient.shard;
+
+/**
+ * Configuration for a {@link ShardedEventHubClient}. Every setting has a default so only the values that matter need setting.
+ */
+public class ShardingConfig {
+
+  public static final int DEFAULT_POINTS_PER_SHARD = 160;
+  public static final long DEFAULT_SHARD_TIMEOUT_MILLIS = 30000;
+
+  private int pointsPerShard = DEFAULT_POINTS_PER_SHARD;
+  private long shardTimeoutMillis = DEFAULT_SHARD_TIMEOUT_MILLIS;
+
+  public int getPointsPerShard() {
+    return pointsPerShard;
+  }
+
+  /**
+   * @param pointsPerShard How many points each shard has on the hash ring. More points spread users more evenly
+   *                       across shards, at the cost of a larger ring to search. Every client writing to the same
+   *                       shards must use the same value. Must be greater than 0.
+   * @return This config
+   */
+  public ShardingConfig setPointsPerShard(final int pointsPerShard) {
+    if(pointsPerShard < 1)
+      throw new IllegalArgumentException("pointsPerShard must be greater than 0 but was " + pointsPerShard);
+    this.pointsPerShard = pointsPerShard;
+    return this;
+  }
+
+  public long getShardTimeoutMillis() {
+    return shardTimeoutMillis;
+  }
+
+  /**
+   * @param shardTimeoutMillis How long a query sent to every shard waits for them to answer. Shards that have not
+   *                           answered by then are left out of the result and reported as timed out. Must be greater
+   *                           than 0.
+   * @return This config
+   */
+  public ShardingConfig setShardTimeoutMillis(final long shardTimeoutMillis) {
+    if(shardTimeoutMillis < 1)
+      throw new IllegalArgumentException("shardTimeoutMillis must be greater than 0 but was " + shardTimeoutMillis);
+    this.shardTimeoutMillis = shardTimeoutMillis;
+    return this;
+  }
+}
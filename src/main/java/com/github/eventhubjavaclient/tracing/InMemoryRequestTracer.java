@@ -0,0 +1,116 @@
+package com.github.eventhubjavaclient.tracing;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps every finished span in memory, for tests and for looking into a slow call by hand. Spans are kept until
+ * {@link #clear()} is called, so leave it off a long running client.
+ */
+public class InMemoryRequestTracer implements RequestTracer {
+
+  private final List<RecordedSpan> spans = new ArrayList<RecordedSpan>();
+
+  @Override public RequestSpan startSpan(final String path) {
+    return new RecordedSpan(path);
+  }
+
+  /**
+   * @return The spans ended so far, in the order they ended.
+   */
+  public synchronized List<RecordedSpan> getSpans() {
+    return new ArrayList<RecordedSpan>(spans);
+  }
+
+  /**
+   * @param path The end point, such as /events/cohort.
+   * @return The spans ended so far for the end point, in the order they ended.
+   */
+  public synchronized List<RecordedSpan> getSpans(final String path) {
+    List<RecordedSpan> matching = new ArrayList<RecordedSpan>();
+    for(RecordedSpan span : spans) {
+      if(span.getPath().equals(path))
+        matching.add(span);
+    }
+    return matching;
+  }
+
+  public synchronized void clear() {
+    spans.clear();
+  }
+
+  private synchronized void ended(final RecordedSpan span) {
+    spans.add(span);
+  }
+
+  /**
+   * A span as it was recorded. Its timings are final once it has been handed out by the tracer.
+   */
+  public class RecordedSpan implements RequestSpan {
+
+    private final String path;
+    private final long startNanos = System.nanoTime();
+    private final Map<TracePhase, Long> phaseNanos = new EnumMap<TracePhase, Long>(TracePhase.class);
+    private long lastMarkNanos = startNanos;
+    private long totalNanos;
+    private Throwable error;
+
+    RecordedSpan(final String path) {
+      this.path = path;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * @param phase The phase to get the time of.
+     * @return How long the phase took in nanoseconds, or -1 if it was not marked.
+     */
+    public long getPhaseNanos(final TracePhase phase) {
+      Long nanos = phaseNanos.get(phase);
+      return nanos == null ? -1 : nanos;
+    }
+
+    /**
+     * @return The phases marked, in phase order.
+     */
+    public List<TracePhase> getPhases() {
+      return new ArrayList<TracePhase>(phaseNanos.keySet());
+    }
+
+    public long getTotalNanos() {
+      return totalNanos;
+    }
+
+    /**
+     * @return Why the call failed, or null if it succeeded.
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    @Override public void mark(final TracePhase phase) {
+      long now = System.nanoTime();
+      Long earlier = phaseNanos.get(phase);
+      phaseNanos.put(phase, (earlier == null ? 0 : earlier) + now - lastMarkNanos);
+      lastMarkNanos = now;
+    }
+
+    @Override public void failed(final Throwable error) {
+      if(this.error == null)
+        this.error = error;
+    }
+
+    @Override public void end() {
+      totalNanos = System.nanoTime() - startNanos;
+      ended(this);
+    }
+
+    @Override public String toString() {
+      return path + " " + phaseNanos + " total=" + totalNanos + (error == null ? "" : " error=" + error);
+    }
+  }
+}
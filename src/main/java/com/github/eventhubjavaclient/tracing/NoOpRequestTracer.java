@@ -0,0 +1,28 @@
+package com.github.eventhubjavaclient.tracing;
+
+/**
+ * The tracer a client has until one is set. It hands out a single shared span that ignores everything, so tracing
+ * costs no allocation when it is off.
+ */
+public final class NoOpRequestTracer implements RequestTracer {
+
+  public static final NoOpRequestTracer INSTANCE = new NoOpRequestTracer();
+
+  static final RequestSpan SPAN = new RequestSpan() {
+    @Override public void mark(final TracePhase phase) {
+    }
+
+    @Override public void failed(final Throwable error) {
+    }
+
+    @Override public void end() {
+    }
+  };
+
+  private NoOpRequestTracer() {
+  }
+
+  @Override public RequestSpan startSpan(final String path) {
+    return SPAN;
+  }
+}
@@ -0,0 +1,23 @@
+package com.github.eventhubjavaclient.tracing;
+
+/**
+ * One call to an EventHubClient end point, told when each {@link TracePhase} of it ends. A span is only used from the
+ * thread that started it.
+ */
+public interface RequestSpan {
+
+  /**
+   * @param phase The phase that has just ended.
+   */
+  void mark(TracePhase phase);
+
+  /**
+   * @param error Why the call failed, such as an unexpected response code, a badly formed body or a transport error.
+   */
+  void failed(Throwable error);
+
+  /**
+   * Ends the span, successful unless {@link #failed(Throwable)} was called. Called exactly once.
+   */
+  void end();
+}
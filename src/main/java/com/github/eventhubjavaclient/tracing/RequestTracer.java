@@ -0,0 +1,14 @@
+package com.github.eventhubjavaclient.tracing;
+
+/**
+ * Starts a {@link RequestSpan} for each call an EventHubClient makes to the EventHub API, to hook the client up to a
+ * tracing system. Implementations must be thread safe and quick, they are called on the request path.
+ */
+public interface RequestTracer {
+
+  /**
+   * @param path The end point called, such as /events/cohort.
+   * @return The span for the call, guaranteed not null.
+   */
+  RequestSpan startSpan(String path);
+}
@@ -0,0 +1,38 @@
+package com.github.eventhubjavaclient.tracing;
+
+/**
+ * Holds the span of the call in progress on each thread, so the filters and transports a request passes through can
+ * mark the phases only they see. Requests are sent on the thread that made the call.
+ */
+public final class TraceContext {
+
+  private static final ThreadLocal<RequestSpan> CURRENT = new ThreadLocal<RequestSpan>();
+
+  private TraceContext() {
+  }
+
+  /**
+   * @return The span of the call in progress on this thread, or a span that ignores everything if there is none.
+   */
+  public static RequestSpan current() {
+    RequestSpan span = CURRENT.get();
+    return span == null ? NoOpRequestTracer.SPAN : span;
+  }
+
+  /**
+   * @param span The span of the call starting on this thread.
+   */
+  public static void attach(final RequestSpan span) {
+    if(span != NoOpRequestTracer.SPAN)
+      CURRENT.set(span);
+  }
+
+  /**
+   * Forgets the span attached to this thread.
+   * @param span The span of the call ending on this thread.
+   */
+  public static void detach(final RequestSpan span) {
+    if(span != NoOpRequestTracer.SPAN)
+      CURRENT.remove();
+  }
+}
@@ -0,0 +1,18 @@
+package com.github.eventhubjavaclient.tracing;
+
+/**
+ * The parts of a request a {@link RequestSpan} is told about, in the order they end. Each phase runs from the end of
+ * the one marked before it, or the start of the span, so a phase that is not marked is counted in the next one.
+ */
+public enum TracePhase {
+  /** Building the query or request body. Batch tracking streams its body while sending, so encoding it is counted in FIRST_BYTE. */
+  ENCODE,
+  /** Opening a new connection, including waiting for the pool and any TLS handshake. Not marked when a pooled connection is reused or the transport cannot tell. */
+  CONNECT,
+  /** Sending the request and waiting for the response status and headers. */
+  FIRST_BYTE,
+  /** Reading the response body, until it is read to the end or closed. */
+  BODY_READ,
+  /** Parsing the response body. Timelines are parsed as they are read, so their parsing is counted in BODY_READ. */
+  DECODE
+}
@@ -0,0 +1,93 @@
+package com.github.eventhubjavaclient.tracing;
+
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Marks the {@link TracePhase#FIRST_BYTE} and {@link TracePhase#BODY_READ} phases of the span in progress on the
+ * requesting thread. Added to a client before any other filter, so it is the one nearest the network.
+ */
+public class TracingFilter extends ClientFilter {
+
+  @Override public ClientResponse handle(final ClientRequest request) throws ClientHandlerException {
+    final RequestSpan span = TraceContext.current();
+    if(span == NoOpRequestTracer.SPAN)
+      return getNext().handle(request);
+
+    ClientResponse response;
+    try {
+      response = getNext().handle(request);
+    } catch(RuntimeException e) {
+      span.failed(e);
+      throw e;
+    }
+    span.mark(TracePhase.FIRST_BYTE);
+    InputStream entity = response.getEntityInputStream();
+    if(entity == null)
+      span.mark(TracePhase.BODY_READ);
+    else
+      response.setEntityInputStream(new TracingInputStream(entity, span));
+    return response;
+  }
+
+  /**
+   * Marks the body read once it is read to the end or closed, whichever comes first.
+   */
+  private static class TracingInputStream extends FilterInputStream {
+
+    private final RequestSpan span;
+    private boolean finished;
+
+    TracingInputStream(final InputStream in, final RequestSpan span) {
+      super(in);
+      this.span = span;
+    }
+
+    @Override public int read() throws IOException {
+      int b;
+      try {
+        b = in.read();
+      } catch(IOException e) {
+        span.failed(e);
+        throw e;
+      }
+      if(b < 0)
+        finish();
+      return b;
+    }
+
+    @Override public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+      int count;
+      try {
+        count = in.read(bytes, offset, length);
+      } catch(IOException e) {
+        span.failed(e);
+        throw e;
+      }
+      if(count < 0)
+        finish();
+      return count;
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        in.close();
+      } finally {
+        finish();
+      }
+    }
+
+    private void finish() {
+      if(!finished) {
+        finished = true;
+        span.mark(TracePhase.BODY_READ);
+      }
+    }
+  }
+}
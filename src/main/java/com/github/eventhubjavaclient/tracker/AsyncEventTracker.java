@@ -0,0 +1,304 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.EventQueueFullException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks events without making the caller wait on the EventHub server. Events are put on a bounded in-memory queue and
+ * background workers send them with {@link EventHubClient#batchTrackEvents(List)} once a batch is full or its linger
+ * time has passed. What happens when the queue is full is decided by the configured {@link BackpressurePolicy}.
+ * <p>
+ * By default the workers share one queue, so with more than one worker a user's events can reach the server out of
+ * order. When partitioned by user, each worker has a lane of its own and every event of a user goes to the same lane,
+ * so each user's events are sent in the order they were tracked while the lanes send in parallel.
+ */
+public class AsyncEventTracker {
+
+  // Static
+
+  private static final AtomicInteger TRACKER_COUNT = new AtomicInteger();
+  // Upper bound on how long an idle worker waits before checking whether the tracker has been shut down
+  private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /**
+   * Creates and starts a tracker with the default config.
+   * @param client The client used to send batches. Must be NotNull.
+   * @return The started tracker
+   */
+  public static AsyncEventTracker createDefaultTracker(final EventHubClient client) {
+    return createCustomTracker(client, new AsyncEventTrackerConfig());
+  }
+
+  /**
+   * Creates and starts a tracker with the provided config.
+   * @param client The client used to send batches. Must be NotNull.
+   * @param config The configuration for the tracker. Must be NotNull.
+   * @return The started tracker
+   */
+  public static AsyncEventTracker createCustomTracker(final EventHubClient client, final AsyncEventTrackerConfig config) {
+    if(client == null)
+      throw new IllegalArgumentException("client must not be null");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    AsyncEventTracker tracker = new AsyncEventTracker(client, config);
+    tracker.start();
+    return tracker;
+  }
+
+  // Instance
+
+  private final EventHubClient client;
+  // One queue shared by every worker, or a lane per worker when partitioned by user
+  private final BlockingQueue<Event>[] lanes;
+  private final int maxBatchSize;
+  private final long lingerNanos;
+  private final BackpressurePolicy backpressurePolicy;
+  private final TrackerListener listener;
+  private final Thread[] workers;
+
+  private final AtomicLong sentEventCount = new AtomicLong();
+  private final AtomicLong failedEventCount = new AtomicLong();
+  private final AtomicLong droppedEventCount = new AtomicLong();
+
+  private volatile boolean closed;
+
+  private AsyncEventTracker(final EventHubClient client, final AsyncEventTrackerConfig config) {
+    this.client = client;
+    int numberOfLanes = config.isPartitionByUser() ? config.getNumberOfWorkers() : 1;
+    this.lanes = createLanes(numberOfLanes, config.getQueueCapacity());
+    this.maxBatchSize = config.getMaxBatchSize();
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getLingerMillis());
+    this.backpressurePolicy = config.getBackpressurePolicy();
+    this.listener = config.getListener();
+    this.workers = new Thread[config.getNumberOfWorkers()];
+    int trackerNumber = TRACKER_COUNT.incrementAndGet();
+    for(int i = 0; i < workers.length; i++) {
+      Thread worker = new Thread(new Worker(lanes[i % numberOfLanes]), "eventhub-tracker-" + trackerNumber + "-worker-" + i);
+      worker.setDaemon(true);
+      workers[i] = worker;
+    }
+  }
+
+  private void start() {
+    for(Thread worker : workers) {
+      worker.start();
+    }
+  }
+
+  /**
+   * Queues the given event to be sent in a later batch.
+   * @param event The event to track. Must be NotNull and have a NotNull event type and external user ID.
+   * @return true if the event was queued, false if it was dropped because the queue was full (or the wait for room was interrupted).
+   * @throws IllegalInputException Thrown if illegal input is provided or the tracker has been shut down, including while
+   * waiting for room in the queue.
+   * @throws EventQueueFullException Thrown if the queue is full and the backpressure policy is {@link BackpressurePolicy#FAIL_FAST}.
+   */
+  public boolean track(final Event event) throws IllegalInputException, EventQueueFullException {
+    if(event == null || event.getEventType() == null || event.getExternalUserId() == null)
+      throw new IllegalInputException("Expecting non null event with non null event type and external user ID");
+    if(closed)
+      throw new IllegalInputException("The tracker has been shut down");
+
+    BlockingQueue<Event> queue = laneFor(event);
+    boolean queued = enqueue(queue, event);
+    // The lane's workers may have seen the tracker shut down with the lane empty and finished just before the event
+    // was queued, leaving nobody to send it. If it is still queued it is taken back, if not a worker has it
+    if(queued && closed && queue.remove(event))
+      throw new IllegalInputException("The tracker has been shut down");
+    return queued;
+  }
+
+  /**
+   * Stops accepting events and waits for the workers to send everything already queued.
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return true if every worker finished within the timeout.
+   * @throws InterruptedException Thrown if interrupted while waiting.
+   */
+  public boolean shutdown(final long timeout, final TimeUnit unit) throws InterruptedException {
+    closed = true;
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    for(Thread worker : workers) {
+      long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if(remainingMillis > 0)
+        worker.join(remainingMillis);
+      if(worker.isAlive())
+        return false;
+    }
+    return true;
+  }
+
+  public boolean isShutdown() {
+    return closed;
+  }
+
+  /**
+   * @return The number of events waiting to be sent.
+   */
+  public int getQueueSize() {
+    int size = 0;
+    for(BlockingQueue<Event> lane : lanes) {
+      size += lane.size();
+    }
+    return size;
+  }
+
+  /**
+   * @return The number of events the server has accepted.
+   */
+  public long getSentEventCount() {
+    return sentEventCount.get();
+  }
+
+  /**
+   * @return The number of events in batches the server did not accept.
+   */
+  public long getFailedEventCount() {
+    return failedEventCount.get();
+  }
+
+  /**
+   * @return The number of events discarded by the backpressure policy.
+   */
+  public long getDroppedEventCount() {
+    return droppedEventCount.get();
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static BlockingQueue<Event>[] createLanes(final int numberOfLanes, final int queueCapacity) {
+    BlockingQueue<Event>[] lanes = new BlockingQueue[numberOfLanes];
+    // The capacity is split between the lanes, the first lanes taking one more each when it does not divide evenly. A
+    // lane always has room for one event, so a capacity below the number of lanes is exceeded
+    int laneCapacity = queueCapacity / numberOfLanes;
+    int remainder = queueCapacity % numberOfLanes;
+    for(int i = 0; i < numberOfLanes; i++) {
+      lanes[i] = new ArrayBlockingQueue<Event>(Math.max(1, laneCapacity + (i < remainder ? 1 : 0)));
+    }
+    return lanes;
+  }
+
+  private boolean enqueue(final BlockingQueue<Event> queue, final Event event)
+      throws IllegalInputException, EventQueueFullException {
+    switch(backpressurePolicy) {
+      case BLOCK:
+        try {
+          // Waits in steps rather than for good, as the workers that would make room are gone once shut down
+          while(!queue.offer(event, POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS)) {
+            if(closed)
+              throw new IllegalInputException("The tracker has been shut down");
+          }
+          return true;
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+          dropped(event);
+          return false;
+        }
+      case DROP_OLDEST:
+        while(!queue.offer(event)) {
+          Event oldest = queue.poll();
+          if(oldest != null)
+            dropped(oldest);
+        }
+        return true;
+      case FAIL_FAST:
+        if(!queue.offer(event))
+          throw new EventQueueFullException("Event queue is full, capacity is " + (queue.size() + queue.remainingCapacity()));
+        return true;
+      default:
+        if(queue.offer(event))
+          return true;
+        dropped(event);
+        return false;
+    }
+  }
+
+  private BlockingQueue<Event> laneFor(final Event event) {
+    if(lanes.length == 1)
+      return lanes[0];
+    int hash = event.getExternalUserId().hashCode();
+    // Spread the high bits down, user IDs often differ only in their last characters
+    hash ^= hash >>> 16;
+    return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+  }
+
+  private void dropped(final Event event) {
+    droppedEventCount.incrementAndGet();
+    if(listener != null)
+      listener.onEventDropped(event);
+  }
+
+  private void send(final List<Event> batch) {
+    try {
+      client.batchTrackEvents(batch);
+    } catch(Exception e) {
+      failedEventCount.addAndGet(batch.size());
+      if(listener != null)
+        listener.onBatchFailed(batch, e);
+      return;
+    }
+    sentEventCount.addAndGet(batch.size());
+    if(listener != null)
+      listener.onBatchSent(batch);
+  }
+
+  /**
+   * Takes events off its queue in batches of up to maxBatchSize, waiting at most the linger time for a batch to fill.
+   * Once the tracker is shut down it keeps sending until the queue is empty.
+   */
+  private class Worker implements Runnable {
+
+    private final BlockingQueue<Event> queue;
+
+    Worker(final BlockingQueue<Event> queue) {
+      this.queue = queue;
+    }
+
+    @Override public void run() {
+      while(true) {
+        List<Event> batch = new ArrayList<Event>(maxBatchSize);
+        try {
+          Event first = queue.poll(POLL_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+          if(first == null) {
+            if(closed && queue.isEmpty())
+              return;
+            continue;
+          }
+          batch.add(first);
+          fill(batch);
+        } catch(InterruptedException e) {
+          // Send what we have then finish
+          queue.drainTo(batch, maxBatchSize - batch.size());
+          if(!batch.isEmpty())
+            send(batch);
+          return;
+        }
+        send(batch);
+      }
+    }
+
+    private void fill(final List<Event> batch) throws InterruptedException {
+      long deadline = System.nanoTime() + lingerNanos;
+      while(batch.size() < maxBatchSize) {
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        if(batch.size() >= maxBatchSize || closed)
+          return;
+        long remaining = deadline - System.nanoTime();
+        if(remaining <= 0)
+          return;
+        Event next = queue.poll(Math.min(remaining, POLL_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+        if(next != null)
+          batch.add(next);
+      }
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.github.eventhubjavaclient.tracker;
+
+/**
+ * Configuration for an {@link AsyncEventTracker}. Every setting has a default so only the values that matter need setting.
+ */
+public class AsyncEventTrackerConfig {
+
+  public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+  public static final long DEFAULT_LINGER_MILLIS = 1000;
+  public static final int DEFAULT_NUMBER_OF_WORKERS = 1;
+  public static final BackpressurePolicy DEFAULT_BACKPRESSURE_POLICY = BackpressurePolicy.DROP_NEWEST;
+  public static final boolean DEFAULT_PARTITION_BY_USER = false;
+
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private long lingerMillis = DEFAULT_LINGER_MILLIS;
+  private int numberOfWorkers = DEFAULT_NUMBER_OF_WORKERS;
+  private BackpressurePolicy backpressurePolicy = DEFAULT_BACKPRESSURE_POLICY;
+  private boolean partitionByUser = DEFAULT_PARTITION_BY_USER;
+  private TrackerListener listener;
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /**
+   * @param queueCapacity The maximum number of events held in memory waiting to be sent. Must be greater than 0.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setQueueCapacity(final int queueCapacity) {
+    checkPositive(queueCapacity, "queueCapacity");
+    this.queueCapacity = queueCapacity;
+    return this;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * @param maxBatchSize A batch is sent as soon as it holds this many events. Must be greater than 0.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setMaxBatchSize(final int maxBatchSize) {
+    checkPositive(maxBatchSize, "maxBatchSize");
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  public long getLingerMillis() {
+    return lingerMillis;
+  }
+
+  /**
+   * @param lingerMillis How long a worker waits for a batch to fill up after taking its first event. Must not be negative.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setLingerMillis(final long lingerMillis) {
+    if(lingerMillis < 0)
+      throw new IllegalArgumentException("lingerMillis must not be negative but was " + lingerMillis);
+    this.lingerMillis = lingerMillis;
+    return this;
+  }
+
+  public int getNumberOfWorkers() {
+    return numberOfWorkers;
+  }
+
+  /**
+   * @param numberOfWorkers The number of background threads sending batches. Must be greater than 0.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setNumberOfWorkers(final int numberOfWorkers) {
+    checkPositive(numberOfWorkers, "numberOfWorkers");
+    this.numberOfWorkers = numberOfWorkers;
+    return this;
+  }
+
+  public BackpressurePolicy getBackpressurePolicy() {
+    return backpressurePolicy;
+  }
+
+  /**
+   * @param backpressurePolicy What to do when an event is tracked while the queue is full. Must be NotNull.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setBackpressurePolicy(final BackpressurePolicy backpressurePolicy) {
+    if(backpressurePolicy == null)
+      throw new IllegalArgumentException("backpressurePolicy must not be null");
+    this.backpressurePolicy = backpressurePolicy;
+    return this;
+  }
+
+  public boolean isPartitionByUser() {
+    return partitionByUser;
+  }
+
+  /**
+   * @param partitionByUser Whether to give each worker a lane of its own, holding an equal share of the queue capacity,
+   *                        and send all of a user's events through the same lane. Keeps each user's events in order
+   *                        however many workers there are, at the cost of a user with many events filling their lane
+   *                        before the queue as a whole is full. Each lane holds at least one event, so the queue
+   *                        capacity is raised to the number of workers if it is lower.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setPartitionByUser(final boolean partitionByUser) {
+    this.partitionByUser = partitionByUser;
+    return this;
+  }
+
+  public TrackerListener getListener() {
+    return listener;
+  }
+
+  /**
+   * @param listener Optional listener told about sent, failed and dropped events. May be null.
+   * @return This config
+   */
+  public AsyncEventTrackerConfig setListener(final TrackerListener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  private static void checkPositive(final long value, final String name) {
+    if(value < 1)
+      throw new IllegalArgumentException(name + " must be greater than 0 but was " + value);
+  }
+}
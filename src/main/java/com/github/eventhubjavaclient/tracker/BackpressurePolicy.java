@@ -0,0 +1,15 @@
+package com.github.eventhubjavaclient.tracker;
+
+/**
+ * What an {@link AsyncEventTracker} does with a newly tracked event when its queue is full.
+ */
+public enum BackpressurePolicy {
+  /** Wait on the calling thread until there is room in the queue. */
+  BLOCK,
+  /** Discard the event being tracked. */
+  DROP_NEWEST,
+  /** Discard the oldest queued event to make room for the event being tracked. */
+  DROP_OLDEST,
+  /** Throw an {@link com.github.eventhubjavaclient.exception.EventQueueFullException}. */
+  FAIL_FAST
+}
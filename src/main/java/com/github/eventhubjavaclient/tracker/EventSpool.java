@@ -0,0 +1,470 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventCodec;
+import com.github.eventhubjavaclient.exception.EventQueueFullException;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only write-ahead log of events, kept in memory-mapped segment files in a directory. Events are appended
+ * before they are sent and stay on disk until {@link #acknowledge(Batch)} is called for them, so they survive the
+ * process being restarted.
+ * <p>
+ * Each record is its payload length, a CRC32 of the payload and then the event encoded by an {@link EventCodec}. Each
+ * segment has its own codec dictionary, rebuilt by scanning the segment when the spool is reopened. The length is
+ * written last, so a record torn by a crash is ignored when the spool is reopened. The position up to which events have been
+ * acknowledged is kept in a checkpoint file and segments are deleted once every event in them has been acknowledged.
+ * <p>
+ * Reads always start from the last acknowledged position, so a batch that is read and never acknowledged is read again.
+ */
+public class EventSpool implements Closeable {
+
+  // Static
+
+  static final String SEGMENT_PREFIX = "segment-";
+  static final String SEGMENT_SUFFIX = ".spool";
+  static final String CHECKPOINT_FILE_NAME = "checkpoint";
+
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  /**
+   * Events read from the spool, with the position to acknowledge up to once they have been sent.
+   */
+  public static class Batch {
+    private final List<Event> events;
+    private final long endSegmentId;
+    private final int endOffset;
+    private final int records;
+    private final long bytes;
+
+    Batch(final List<Event> events, final int records, final long endSegmentId, final int endOffset, final long bytes) {
+      this.events = events;
+      this.records = records;
+      this.endSegmentId = endSegmentId;
+      this.endOffset = endOffset;
+      this.bytes = bytes;
+    }
+
+    public List<Event> getEvents() {
+      return events;
+    }
+
+    /**
+     * @return The number of bytes the batch's records take up in the spool.
+     */
+    public long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @return true if nothing was read. A batch can hold no events but still need acknowledging if every record read
+     * was corrupt.
+     */
+    public boolean isEmpty() {
+      return records == 0;
+    }
+  }
+
+  // Instance
+
+  private final File directory;
+  private final int segmentSizeBytes;
+  private final long maxSpoolBytes;
+  private final boolean forceOnAppend;
+  private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+
+  private Segment writeSegment;
+  private long ackedSegmentId;
+  private int ackedOffset;
+  private long pendingEventCount;
+  private long pendingBytes;
+  private boolean closed;
+
+  /**
+   * Opens the spool in the given directory, creating it if needed and recovering any events left unacknowledged.
+   * @param directory The directory holding the segment files. Must be NotNull.
+   * @param segmentSizeBytes The size of each segment file. Must be greater than 0.
+   * @param maxSpoolBytes The most bytes of unacknowledged records held before appends are refused. Must be greater than 0.
+   * @param forceOnAppend Whether every append is forced to the storage device before returning.
+   * @throws IOException Thrown if the directory or its files cannot be read or created.
+   */
+  public EventSpool(final File directory, final int segmentSizeBytes, final long maxSpoolBytes, final boolean forceOnAppend)
+      throws IOException {
+    if(directory == null)
+      throw new IllegalArgumentException("directory must not be null");
+    if(segmentSizeBytes < 1)
+      throw new IllegalArgumentException("segmentSizeBytes must be greater than 0 but was " + segmentSizeBytes);
+    if(maxSpoolBytes < 1)
+      throw new IllegalArgumentException("maxSpoolBytes must be greater than 0 but was " + maxSpoolBytes);
+    this.directory = directory;
+    this.segmentSizeBytes = segmentSizeBytes;
+    this.maxSpoolBytes = maxSpoolBytes;
+    this.forceOnAppend = forceOnAppend;
+    if(!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Could not create spool directory " + directory);
+    recover();
+  }
+
+  /**
+   * Appends the event to the end of the spool.
+   * @param event The event to append. Must be NotNull.
+   * @throws EventQueueFullException Thrown if appending the event would take the spool over its maximum size.
+   * @throws IOException Thrown if a new segment file could not be created.
+   */
+  public synchronized void append(final Event event) throws EventQueueFullException, IOException {
+    checkOpen();
+    // Nothing the codec learns from encoding is kept until the record is written, so a refused event leaves the
+    // segment's dictionary as it was
+    EventCodec codec = null;
+    int dictionarySize = 0;
+    byte[] payload = null;
+    if(writeSegment != null) {
+      codec = writeSegment.codec;
+      dictionarySize = codec.getDictionarySize();
+      payload = codec.encode(event);
+      if(writeSegment.remaining() < RECORD_HEADER_BYTES + payload.length) {
+        codec.truncateDictionary(dictionarySize);
+        codec = null;
+      }
+    }
+    boolean rolling = codec == null;
+    if(rolling) {
+      // Encoded with the dictionary of the segment that will hold it, which starts out empty
+      codec = new EventCodec();
+      dictionarySize = 0;
+      payload = codec.encode(event);
+    }
+    int recordBytes = RECORD_HEADER_BYTES + payload.length;
+    if(pendingBytes + recordBytes > maxSpoolBytes) {
+      codec.truncateDictionary(dictionarySize);
+      throw new EventQueueFullException("Event spool is full, holding " + pendingBytes + " of " + maxSpoolBytes + " bytes");
+    }
+    if(rolling)
+      roll(recordBytes, codec);
+    writeSegment.append(payload);
+    if(forceOnAppend)
+      writeSegment.buffer.force();
+    pendingEventCount++;
+    pendingBytes += recordBytes;
+    notifyAll();
+  }
+
+  /**
+   * Reads up to maxEvents events from the last acknowledged position.
+   * @param maxEvents The most events to read. Must be greater than 0.
+   * @return The events read, empty if every event has been acknowledged.
+   */
+  public synchronized Batch read(final int maxEvents) {
+    checkOpen();
+    List<Event> events = new ArrayList<Event>(Math.min(maxEvents, 1024));
+    long segmentId = ackedSegmentId;
+    int offset = ackedOffset;
+    int records = 0;
+    long bytes = 0;
+    Map.Entry<Long, Segment> entry = segments.ceilingEntry(segmentId);
+    while(entry != null && records < maxEvents) {
+      Segment segment = entry.getValue();
+      if(entry.getKey() != segmentId) {
+        segmentId = entry.getKey();
+        offset = 0;
+      }
+      if(offset >= segment.end) {
+        entry = segments.higherEntry(segmentId);
+        continue;
+      }
+      int payloadLength = segment.buffer.getInt(offset);
+      try {
+        events.add(segment.codec.decode(segment.payload(offset)));
+      } catch(IllegalArgumentException e) {
+        // The checksum matched so this was written as it is, skip it rather than block every event behind it
+      }
+      offset += RECORD_HEADER_BYTES + payloadLength;
+      bytes += RECORD_HEADER_BYTES + payloadLength;
+      records++;
+    }
+    return new Batch(events, records, segmentId, offset, bytes);
+  }
+
+  /**
+   * Marks every event up to the end of the batch as sent, so they are never read again. Segments that have been fully
+   * acknowledged are deleted.
+   * @param batch A batch returned by the latest call to {@link #read(int)}. Must be NotNull.
+   * @throws IOException Thrown if the checkpoint could not be written.
+   */
+  public synchronized void acknowledge(final Batch batch) throws IOException {
+    checkOpen();
+    if(batch.endSegmentId < ackedSegmentId || (batch.endSegmentId == ackedSegmentId && batch.endOffset <= ackedOffset))
+      return;
+    ackedSegmentId = batch.endSegmentId;
+    ackedOffset = batch.endOffset;
+    pendingEventCount = Math.max(0, pendingEventCount - batch.records);
+    pendingBytes = Math.max(0, pendingBytes - batch.bytes);
+    writeCheckpoint();
+    while(!segments.isEmpty() && segments.firstKey() < ackedSegmentId) {
+      segments.remove(segments.firstKey()).delete();
+    }
+  }
+
+  /**
+   * Waits until there is at least one unacknowledged event.
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return true if there are unacknowledged events.
+   * @throws InterruptedException Thrown if interrupted while waiting.
+   */
+  public synchronized boolean awaitEvents(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    while(pendingEventCount == 0 && !closed) {
+      long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      if(remainingMillis <= 0)
+        break;
+      wait(remainingMillis);
+    }
+    return pendingEventCount > 0;
+  }
+
+  /**
+   * @return The number of events appended and not yet acknowledged.
+   */
+  public synchronized long getPendingEventCount() {
+    return pendingEventCount;
+  }
+
+  /**
+   * @return The number of bytes of records appended and not yet acknowledged.
+   */
+  public synchronized long getPendingBytes() {
+    return pendingBytes;
+  }
+
+  /**
+   * @return The number of segment files currently in use.
+   */
+  public synchronized int getSegmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Forces outstanding writes to the storage device and closes the segment files. Unacknowledged events are read again
+   * when the spool is next opened.
+   */
+  @Override public synchronized void close() throws IOException {
+    if(closed)
+      return;
+    closed = true;
+    if(writeSegment != null)
+      writeSegment.buffer.force();
+    for(Segment segment : segments.values()) {
+      segment.close();
+    }
+    segments.clear();
+    notifyAll();
+  }
+
+  private void checkOpen() {
+    if(closed)
+      throw new IllegalStateException("The spool has been closed");
+  }
+
+  private void recover() throws IOException {
+    List<Long> segmentIds = listSegmentIds();
+    long checkpointSegmentId = segmentIds.isEmpty() ? 0 : segmentIds.get(0);
+    int checkpointOffset = 0;
+    File checkpointFile = new File(directory, CHECKPOINT_FILE_NAME);
+    if(checkpointFile.exists()) {
+      DataInputStream in = new DataInputStream(new FileInputStream(checkpointFile));
+      try {
+        checkpointSegmentId = in.readLong();
+        checkpointOffset = in.readInt();
+      } finally {
+        in.close();
+      }
+    }
+    if(!segmentIds.contains(checkpointSegmentId))
+      checkpointOffset = 0;
+    ackedSegmentId = checkpointSegmentId;
+    ackedOffset = checkpointOffset;
+    for(long segmentId : segmentIds) {
+      File file = segmentFile(segmentId);
+      if(segmentId < checkpointSegmentId) {
+        deleteFile(file);
+        continue;
+      }
+      Segment segment = Segment.open(file);
+      int offset = segmentId == checkpointSegmentId ? checkpointOffset : 0;
+      // Recovered segments are only ever read, new events go to a fresh segment after them
+      while(offset < segment.end) {
+        int recordBytes = RECORD_HEADER_BYTES + segment.buffer.getInt(offset);
+        pendingEventCount++;
+        pendingBytes += recordBytes;
+        offset += recordBytes;
+      }
+      segments.put(segmentId, segment);
+    }
+  }
+
+  private void roll(final int recordBytes, final EventCodec codec) throws IOException {
+    long nextId = segments.isEmpty() ? ackedSegmentId : segments.lastKey() + 1;
+    if(writeSegment != null)
+      writeSegment.buffer.force();
+    writeSegment = Segment.create(segmentFile(nextId), Math.max(segmentSizeBytes, recordBytes), codec);
+    segments.put(nextId, writeSegment);
+  }
+
+  private void writeCheckpoint() throws IOException {
+    File temporary = new File(directory, CHECKPOINT_FILE_NAME + ".tmp");
+    FileOutputStream fileOut = new FileOutputStream(temporary);
+    try {
+      DataOutputStream out = new DataOutputStream(fileOut);
+      out.writeLong(ackedSegmentId);
+      out.writeInt(ackedOffset);
+      out.flush();
+      if(forceOnAppend)
+        fileOut.getFD().sync();
+    } finally {
+      fileOut.close();
+    }
+    Files.move(temporary.toPath(), new File(directory, CHECKPOINT_FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private List<Long> listSegmentIds() {
+    String[] names = directory.list(new FilenameFilter() {
+      @Override public boolean accept(final File dir, final String name) {
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+      }
+    });
+    List<Long> ids = new ArrayList<Long>();
+    if(names != null) {
+      for(String name : names) {
+        try {
+          ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        } catch(NumberFormatException e) {
+          // Not one of ours
+        }
+      }
+    }
+    Collections.sort(ids);
+    return ids;
+  }
+
+  private File segmentFile(final long segmentId) {
+    return new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, segmentId, SEGMENT_SUFFIX));
+  }
+
+  private static void deleteFile(final File file) {
+    if(!file.delete() && file.exists())
+      file.deleteOnExit();
+  }
+
+  /**
+   * One memory-mapped segment file. end is the offset just past the last complete record.
+   */
+  private static class Segment {
+    final File file;
+    final FileChannel channel;
+    final MappedByteBuffer buffer;
+    final EventCodec codec;
+    int end;
+
+    private Segment(final File file, final FileChannel channel, final MappedByteBuffer buffer, final EventCodec codec) {
+      this.file = file;
+      this.channel = channel;
+      this.buffer = buffer;
+      this.codec = codec;
+    }
+
+    static Segment create(final File file, final int size, final EventCodec codec) throws IOException {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+      randomAccessFile.setLength(size);
+      FileChannel channel = randomAccessFile.getChannel();
+      return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), codec);
+    }
+
+    static Segment open(final File file) throws IOException {
+      FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+      Segment segment = new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()),
+          new EventCodec());
+      segment.end = segment.scanEnd();
+      return segment;
+    }
+
+    int remaining() {
+      return buffer.capacity() - end;
+    }
+
+    void append(final byte[] payload) {
+      CRC32 crc = new CRC32();
+      crc.update(payload);
+      ByteBuffer record = buffer.duplicate();
+      record.position(end + 4);
+      record.putInt((int) crc.getValue());
+      record.put(payload);
+      // Written last so a record is only seen once it is complete
+      buffer.putInt(end, payload.length);
+      end += RECORD_HEADER_BYTES + payload.length;
+    }
+
+    ByteBuffer payload(final int offset) {
+      ByteBuffer payload = buffer.duplicate();
+      payload.position(offset + RECORD_HEADER_BYTES);
+      payload.limit(offset + RECORD_HEADER_BYTES + buffer.getInt(offset));
+      return payload;
+    }
+
+    void close() throws IOException {
+      channel.close();
+    }
+
+    void delete() throws IOException {
+      close();
+      deleteFile(file);
+    }
+
+    /**
+     * Finds the end of the records that were written completely, stopping at the first empty, truncated or corrupt one.
+     * Every record is decoded on the way so the codec learns the segment's dictionary.
+     */
+    private int scanEnd() {
+      int offset = 0;
+      int capacity = buffer.capacity();
+      while(offset + RECORD_HEADER_BYTES <= capacity) {
+        int length = buffer.getInt(offset);
+        if(length <= 0 || length > capacity - offset - RECORD_HEADER_BYTES)
+          break;
+        CRC32 crc = new CRC32();
+        crc.update(payload(offset));
+        if((int) crc.getValue() != buffer.getInt(offset + 4))
+          break;
+        try {
+          codec.decode(payload(offset));
+        } catch(IllegalArgumentException e) {
+          // Skipped when read
+        }
+        offset += RECORD_HEADER_BYTES + length;
+      }
+      return offset;
+    }
+  }
+}
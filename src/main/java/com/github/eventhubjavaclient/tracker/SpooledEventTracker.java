@@ -0,0 +1,292 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.EventQueueFullException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks events through a durable {@link EventSpool} on disk, so events survive EventHub server outages and process
+ * restarts without being held on the heap. Each event is appended to the spool before track returns and a background
+ * thread replays the spool with {@link EventHubClient#batchTrackEvents(List)}, at a bounded rate. Events are only
+ * removed from the spool once the server has accepted them; failed batches are retried with exponential backoff.
+ * <p>
+ * A batch the server rejects as malformed (400 or 422) is split in half and each half sent again, down to the single
+ * event the server refuses, which would be rejected every time and hold up every event behind it. Only that event is
+ * removed from the spool unsent and reported to the listener as dropped. A batch rejected as too large (413) is split
+ * the same way and later batches are kept to the smaller size. Every other failure, including 401, 403 and 404 from a
+ * wrong URL or credentials, is retried with backoff, so a misconfiguration never empties the spool.
+ */
+public class SpooledEventTracker {
+
+  // Static
+
+  private static final AtomicInteger TRACKER_COUNT = new AtomicInteger();
+  // Upper bound on how long the replayer waits before checking whether the tracker has been shut down
+  private static final long POLL_INTERVAL_MILLIS = 100;
+  private static final int BAD_REQUEST = 400;
+  private static final int PAYLOAD_TOO_LARGE = 413;
+  private static final int UNPROCESSABLE_ENTITY = 422;
+
+  /**
+   * Creates and starts a tracker spooling to the given directory with the default config. Events left in the directory
+   * by an earlier tracker are replayed.
+   * @param client The client used to send batches. Must be NotNull.
+   * @param directory The directory to keep the spool in. Must be NotNull.
+   * @return The started tracker
+   * @throws IOException Thrown if the spool could not be opened.
+   */
+  public static SpooledEventTracker createDefaultTracker(final EventHubClient client, final File directory) throws IOException {
+    return createCustomTracker(client, directory, new SpooledEventTrackerConfig());
+  }
+
+  /**
+   * Creates and starts a tracker spooling to the given directory with the provided config. Events left in the directory
+   * by an earlier tracker are replayed.
+   * @param client The client used to send batches. Must be NotNull.
+   * @param directory The directory to keep the spool in. Must be NotNull.
+   * @param config The configuration for the tracker. Must be NotNull.
+   * @return The started tracker
+   * @throws IOException Thrown if the spool could not be opened.
+   */
+  public static SpooledEventTracker createCustomTracker(final EventHubClient client, final File directory,
+      final SpooledEventTrackerConfig config) throws IOException {
+    if(client == null)
+      throw new IllegalArgumentException("client must not be null");
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    EventSpool spool = new EventSpool(directory, config.getSegmentSizeBytes(), config.getMaxSpoolBytes(), config.isForceOnAppend());
+    SpooledEventTracker tracker = new SpooledEventTracker(client, spool, config);
+    tracker.replayer.start();
+    return tracker;
+  }
+
+  // Instance
+
+  private final EventHubClient client;
+  private final EventSpool spool;
+  private final int maxBatchSize;
+  private final long nanosPerByte;
+  private final long retryBackoffMillis;
+  private final long maxRetryBackoffMillis;
+  private final TrackerListener listener;
+  private final Thread replayer;
+
+  private final AtomicLong sentEventCount = new AtomicLong();
+  private final AtomicLong failedBatchCount = new AtomicLong();
+  private final AtomicLong rejectedEventCount = new AtomicLong();
+
+  private volatile boolean closed;
+  private volatile boolean stopped;
+
+  private SpooledEventTracker(final EventHubClient client, final EventSpool spool, final SpooledEventTrackerConfig config) {
+    this.client = client;
+    this.spool = spool;
+    this.maxBatchSize = config.getMaxBatchSize();
+    this.nanosPerByte = Math.max(1, TimeUnit.SECONDS.toNanos(1) / config.getMaxReplayBytesPerSecond());
+    this.retryBackoffMillis = config.getRetryBackoffMillis();
+    this.maxRetryBackoffMillis = Math.max(config.getRetryBackoffMillis(), config.getMaxRetryBackoffMillis());
+    this.listener = config.getListener();
+    this.replayer = new Thread(new Replayer(), "eventhub-spooled-tracker-" + TRACKER_COUNT.incrementAndGet() + "-replayer");
+    this.replayer.setDaemon(true);
+  }
+
+  /**
+   * Appends the given event to the spool to be sent in a later batch.
+   * @param event The event to track. Must be NotNull and have a NotNull event type and external user ID.
+   * @throws IllegalInputException Thrown if illegal input is provided or the tracker has been shut down.
+   * @throws EventQueueFullException Thrown if the spool has reached its maximum size.
+   * @throws IOException Thrown if the event could not be written to the spool.
+   */
+  public void track(final Event event) throws IllegalInputException, EventQueueFullException, IOException {
+    if(event == null || event.getEventType() == null || event.getExternalUserId() == null)
+      throw new IllegalInputException("Expecting non null event with non null event type and external user ID");
+    if(closed)
+      throw new IllegalInputException("The tracker has been shut down");
+    spool.append(event);
+  }
+
+  /**
+   * Stops accepting events and waits for the spool to be sent. Whatever has not been sent when the timeout passes stays
+   * in the spool and is sent by the next tracker opened on the same directory.
+   * @param timeout The maximum time to wait.
+   * @param unit The unit of the timeout.
+   * @return true if every spooled event was sent within the timeout.
+   * @throws InterruptedException Thrown if interrupted while waiting.
+   * @throws IOException Thrown if the spool could not be closed cleanly.
+   */
+  public boolean shutdown(final long timeout, final TimeUnit unit) throws InterruptedException, IOException {
+    closed = true;
+    replayer.join(Math.max(1, unit.toMillis(timeout)));
+    stopped = true;
+    replayer.interrupt();
+    replayer.join();
+    boolean drained = spool.getPendingEventCount() == 0;
+    spool.close();
+    return drained;
+  }
+
+  public boolean isShutdown() {
+    return closed;
+  }
+
+  /**
+   * @return The number of events in the spool waiting to be sent.
+   */
+  public long getSpooledEventCount() {
+    return spool.getPendingEventCount();
+  }
+
+  /**
+   * @return The number of events the server has accepted.
+   */
+  public long getSentEventCount() {
+    return sentEventCount.get();
+  }
+
+  /**
+   * @return The number of batch sends that failed and will be retried, whole or split in half.
+   */
+  public long getFailedBatchCount() {
+    return failedBatchCount.get();
+  }
+
+  /**
+   * @return The number of events the server rejected on their own as malformed or too large, which were removed from
+   * the spool unsent.
+   */
+  public long getRejectedEventCount() {
+    return rejectedEventCount.get();
+  }
+
+  /**
+   * Reads batches from the spool, acknowledging each once it has been sent, until the tracker is stopped or has been
+   * shut down and the spool is empty.
+   */
+  private class Replayer implements Runnable {
+
+    private long nextSendNanos = System.nanoTime();
+    private long backoffMillis = retryBackoffMillis;
+    // The most events read into a batch, lowered for good when the server says a batch is too large
+    private int batchSizeLimit = maxBatchSize;
+    // The most events read into the next batch, lower still while narrowing a rejected batch down to the bad event
+    private int batchSize = maxBatchSize;
+    // Events of the batch being narrowed down that are still to get through before reading full size batches again
+    private int narrowingEventCount;
+
+    @Override public void run() {
+      try {
+        while(!stopped) {
+          EventSpool.Batch batch = spool.read(batchSize);
+          if(batch.isEmpty()) {
+            if(closed)
+              return;
+            spool.awaitEvents(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            continue;
+          }
+          if(!batch.getEvents().isEmpty()) {
+            throttle(batch.getBytes());
+            Outcome outcome = send(batch.getEvents());
+            if(outcome == Outcome.RETRY)
+              backOff();
+            if(outcome != Outcome.DONE)
+              continue;
+          }
+          // A batch with no events held only unreadable records, which are skipped
+          try {
+            spool.acknowledge(batch);
+            backoffMillis = retryBackoffMillis;
+            onFinished(batch.getEvents().size());
+          } catch(IOException e) {
+            // The batch stays unacknowledged and is sent again, the server sees it at least once
+            backOff();
+          }
+        }
+      } catch(InterruptedException e) {
+        // Stopped, anything unsent stays in the spool
+      } catch(IllegalStateException e) {
+        // The spool was closed under us
+      }
+    }
+
+    private void backOff() throws InterruptedException {
+      Thread.sleep(backoffMillis);
+      backoffMillis = Math.min(backoffMillis * 2, maxRetryBackoffMillis);
+    }
+
+    /**
+     * Waits until sending another batch of the given size keeps the replay within its byte rate.
+     */
+    private void throttle(final long bytes) throws InterruptedException {
+      long waitNanos = nextSendNanos - System.nanoTime();
+      if(waitNanos > 0)
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      nextSendNanos = Math.max(nextSendNanos, System.nanoTime()) + bytes * nanosPerByte;
+    }
+
+    private Outcome send(final List<Event> batch) {
+      try {
+        client.batchTrackEvents(batch);
+      } catch(UnexpectedResponseCodeException e) {
+        if(listener != null)
+          listener.onBatchFailed(batch, e);
+        int code = e.getActualCode();
+        if(code != BAD_REQUEST && code != UNPROCESSABLE_ENTITY && code != PAYLOAD_TOO_LARGE) {
+          failedBatchCount.incrementAndGet();
+          return Outcome.RETRY;
+        }
+        if(batch.size() == 1) {
+          // Nothing left to split, the event itself is what the server refuses
+          rejectedEventCount.incrementAndGet();
+          if(listener != null)
+            listener.onEventDropped(batch.get(0));
+          return Outcome.DONE;
+        }
+        failedBatchCount.incrementAndGet();
+        if(narrowingEventCount <= 0)
+          narrowingEventCount = batch.size();
+        batchSize = batch.size() / 2;
+        if(code == PAYLOAD_TOO_LARGE)
+          batchSizeLimit = batchSize;
+        return Outcome.SPLIT;
+      } catch(Exception e) {
+        failedBatchCount.incrementAndGet();
+        if(listener != null)
+          listener.onBatchFailed(batch, e);
+        return Outcome.RETRY;
+      }
+      sentEventCount.addAndGet(batch.size());
+      if(listener != null)
+        listener.onBatchSent(batch);
+      return Outcome.DONE;
+    }
+
+    /**
+     * Goes back to full size batches once every event of a batch that was split has been sent or dropped.
+     */
+    private void onFinished(final int eventCount) {
+      if(narrowingEventCount <= 0)
+        return;
+      narrowingEventCount -= eventCount;
+      if(narrowingEventCount <= 0)
+        batchSize = batchSizeLimit;
+    }
+  }
+
+  private enum Outcome {
+    /** Sent, or dropped as an event the server refuses, so it can be acknowledged. */
+    DONE,
+    /** Rejected as a whole, send its halves straight away. */
+    SPLIT,
+    /** Failed for a reason that may pass, send it again after backing off. */
+    RETRY
+  }
+}
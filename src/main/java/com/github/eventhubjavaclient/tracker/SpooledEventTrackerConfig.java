@@ -0,0 +1,142 @@
+package com.github.eventhubjavaclient.tracker;
+
+/**
+ * Configuration for a {@link SpooledEventTracker}. Every setting has a default so only the values that matter need setting.
+ */
+public class SpooledEventTrackerConfig {
+
+  public static final int DEFAULT_SEGMENT_SIZE_BYTES = 16 * 1024 * 1024;
+  public static final long DEFAULT_MAX_SPOOL_BYTES = 1024L * 1024 * 1024;
+  public static final boolean DEFAULT_FORCE_ON_APPEND = false;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+  public static final long DEFAULT_MAX_REPLAY_BYTES_PER_SECOND = 1024 * 1024;
+  public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 1000;
+  public static final long DEFAULT_MAX_RETRY_BACKOFF_MILLIS = 60000;
+
+  private int segmentSizeBytes = DEFAULT_SEGMENT_SIZE_BYTES;
+  private long maxSpoolBytes = DEFAULT_MAX_SPOOL_BYTES;
+  private boolean forceOnAppend = DEFAULT_FORCE_ON_APPEND;
+  private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+  private long maxReplayBytesPerSecond = DEFAULT_MAX_REPLAY_BYTES_PER_SECOND;
+  private long retryBackoffMillis = DEFAULT_RETRY_BACKOFF_MILLIS;
+  private long maxRetryBackoffMillis = DEFAULT_MAX_RETRY_BACKOFF_MILLIS;
+  private TrackerListener listener;
+
+  public int getSegmentSizeBytes() {
+    return segmentSizeBytes;
+  }
+
+  /**
+   * @param segmentSizeBytes The size of each memory-mapped segment file. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setSegmentSizeBytes(final int segmentSizeBytes) {
+    checkPositive(segmentSizeBytes, "segmentSizeBytes");
+    this.segmentSizeBytes = segmentSizeBytes;
+    return this;
+  }
+
+  public long getMaxSpoolBytes() {
+    return maxSpoolBytes;
+  }
+
+  /**
+   * @param maxSpoolBytes The most bytes of unsent events kept on disk before tracking is refused. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setMaxSpoolBytes(final long maxSpoolBytes) {
+    checkPositive(maxSpoolBytes, "maxSpoolBytes");
+    this.maxSpoolBytes = maxSpoolBytes;
+    return this;
+  }
+
+  public boolean isForceOnAppend() {
+    return forceOnAppend;
+  }
+
+  /**
+   * @param forceOnAppend Whether every tracked event is forced to the storage device before track returns. Without it
+   *                      events survive the process dying but not the machine losing power.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setForceOnAppend(final boolean forceOnAppend) {
+    this.forceOnAppend = forceOnAppend;
+    return this;
+  }
+
+  public int getMaxBatchSize() {
+    return maxBatchSize;
+  }
+
+  /**
+   * @param maxBatchSize The most events sent in one batch. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setMaxBatchSize(final int maxBatchSize) {
+    checkPositive(maxBatchSize, "maxBatchSize");
+    this.maxBatchSize = maxBatchSize;
+    return this;
+  }
+
+  public long getMaxReplayBytesPerSecond() {
+    return maxReplayBytesPerSecond;
+  }
+
+  /**
+   * @param maxReplayBytesPerSecond The most bytes of spooled events sent per second, so replaying a backlog after an
+   *                                outage doesn't swamp the server. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setMaxReplayBytesPerSecond(final long maxReplayBytesPerSecond) {
+    checkPositive(maxReplayBytesPerSecond, "maxReplayBytesPerSecond");
+    this.maxReplayBytesPerSecond = maxReplayBytesPerSecond;
+    return this;
+  }
+
+  public long getRetryBackoffMillis() {
+    return retryBackoffMillis;
+  }
+
+  /**
+   * @param retryBackoffMillis How long to wait before resending after the first failed batch. The wait doubles with each
+   *                           failure in a row, up to the maximum retry backoff. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setRetryBackoffMillis(final long retryBackoffMillis) {
+    checkPositive(retryBackoffMillis, "retryBackoffMillis");
+    this.retryBackoffMillis = retryBackoffMillis;
+    return this;
+  }
+
+  public long getMaxRetryBackoffMillis() {
+    return maxRetryBackoffMillis;
+  }
+
+  /**
+   * @param maxRetryBackoffMillis The longest wait between resending failed batches. Must be greater than 0.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setMaxRetryBackoffMillis(final long maxRetryBackoffMillis) {
+    checkPositive(maxRetryBackoffMillis, "maxRetryBackoffMillis");
+    this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+    return this;
+  }
+
+  public TrackerListener getListener() {
+    return listener;
+  }
+
+  /**
+   * @param listener Optional listener told about sent and failed batches. May be null.
+   * @return This config
+   */
+  public SpooledEventTrackerConfig setListener(final TrackerListener listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  private static void checkPositive(final long value, final String name) {
+    if(value < 1)
+      throw new IllegalArgumentException(name + " must be greater than 0 but was " + value);
+  }
+}
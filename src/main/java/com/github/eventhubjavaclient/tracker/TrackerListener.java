@@ -0,0 +1,18 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.event.Event;
+
+import java.util.List;
+
+/**
+ * Receives notifications about what happened to events handed to an {@link AsyncEventTracker} or {@link SpooledEventTracker}.
+ * Methods are called from the tracker's worker threads (or the tracking thread for dropped events) so should return quickly.
+ */
+public interface TrackerListener {
+
+  void onBatchSent(List<Event> events);
+
+  void onBatchFailed(List<Event> events, Exception cause);
+
+  void onEventDropped(Event event);
+}
@@ -0,0 +1,76 @@
+package com.github.eventhubjavaclient.transport;
+
+/**
+ * Settings for a {@link CompressionFilter}. Every setting has a default so only the values that matter need setting.
+ */
+public class CompressionConfig {
+
+  public static final ContentEncoding DEFAULT_REQUEST_ENCODING = ContentEncoding.GZIP;
+  public static final int DEFAULT_MIN_REQUEST_BYTES = 1024;
+  public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+  public static final boolean DEFAULT_ACCEPT_COMPRESSED_RESPONSES = true;
+
+  private ContentEncoding requestEncoding = DEFAULT_REQUEST_ENCODING;
+  private int minRequestBytes = DEFAULT_MIN_REQUEST_BYTES;
+  private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+  private boolean acceptCompressedResponses = DEFAULT_ACCEPT_COMPRESSED_RESPONSES;
+
+  public ContentEncoding getRequestEncoding() {
+    return requestEncoding;
+  }
+
+  /**
+   * @param requestEncoding The encoding request bodies are compressed with, or null to send them uncompressed.
+   * @return This config
+   */
+  public CompressionConfig setRequestEncoding(final ContentEncoding requestEncoding) {
+    this.requestEncoding = requestEncoding;
+    return this;
+  }
+
+  public int getMinRequestBytes() {
+    return minRequestBytes;
+  }
+
+  /**
+   * @param minRequestBytes Request bodies smaller than this are sent uncompressed, as compressing them saves too little
+   *                        to be worth it. Streamed bodies, such as batch track events, have no size up front and are
+   *                        always compressed. Must not be negative.
+   * @return This config
+   */
+  public CompressionConfig setMinRequestBytes(final int minRequestBytes) {
+    if(minRequestBytes < 0)
+      throw new IllegalArgumentException("minRequestBytes must not be negative but was " + minRequestBytes);
+    this.minRequestBytes = minRequestBytes;
+    return this;
+  }
+
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  /**
+   * @param compressionLevel The deflate level, from 1 for the fastest to 9 for the smallest bodies.
+   * @return This config
+   */
+  public CompressionConfig setCompressionLevel(final int compressionLevel) {
+    if(compressionLevel < 1 || compressionLevel > 9)
+      throw new IllegalArgumentException("compressionLevel must be from 1 to 9 but was " + compressionLevel);
+    this.compressionLevel = compressionLevel;
+    return this;
+  }
+
+  public boolean isAcceptCompressedResponses() {
+    return acceptCompressedResponses;
+  }
+
+  /**
+   * @param acceptCompressedResponses Whether to ask for gzip or deflate compressed responses, which are decompressed as
+   *                                  they are read.
+   * @return This config
+   */
+  public CompressionConfig setAcceptCompressedResponses(final boolean acceptCompressedResponses) {
+    this.acceptCompressedResponses = acceptCompressedResponses;
+    return this;
+  }
+}
@@ -0,0 +1,113 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+import javax.ws.rs.core.HttpHeaders;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses request bodies and decompresses responses, whatever transport a client uses. Bodies are compressed as
+ * they are written to the connection, so a streamed body is never held in memory whole, compressed or not. Likewise
+ * responses are inflated as they are read.
+ */
+public class CompressionFilter extends ClientFilter {
+
+  private static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+  private final ContentEncoding requestEncoding;
+  private final int minRequestBytes;
+  private final int compressionLevel;
+  private final boolean acceptCompressedResponses;
+
+  public CompressionFilter(final CompressionConfig config) {
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    this.requestEncoding = config.getRequestEncoding();
+    this.minRequestBytes = config.getMinRequestBytes();
+    this.compressionLevel = config.getCompressionLevel();
+    this.acceptCompressedResponses = config.isAcceptCompressedResponses();
+  }
+
+  @Override public ClientResponse handle(final ClientRequest request) throws ClientHandlerException {
+    if(shouldCompress(request)) {
+      request.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, requestEncoding.getHeaderValue());
+      request.setAdapter(new CompressingAdapter(request.getAdapter()));
+    }
+    if(acceptCompressedResponses && !request.getHeaders().containsKey(HttpHeaders.ACCEPT_ENCODING))
+      request.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, ACCEPTED_ENCODINGS);
+
+    ClientResponse response = getNext().handle(request);
+    // Some transports decompress by themselves and drop the header, then there is nothing left to do
+    String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if(encoding != null && response.hasEntity()) {
+      InputStream entity = response.getEntityInputStream();
+      try {
+        if(encoding.equalsIgnoreCase("gzip") || encoding.equalsIgnoreCase("x-gzip")) {
+          response.setEntityInputStream(new GZIPInputStream(entity));
+          response.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        } else if(encoding.equalsIgnoreCase("deflate")) {
+          response.setEntityInputStream(new InflaterInputStream(entity));
+          response.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        }
+      } catch(IOException e) {
+        response.close();
+        throw new ClientHandlerException("Reading the compressed response failed", e);
+      }
+    }
+    return response;
+  }
+
+  private boolean shouldCompress(final ClientRequest request) {
+    Object entity = request.getEntity();
+    if(requestEncoding == null || entity == null || request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING))
+      return false;
+    // Bodies of unknown length are streamed, so their size cannot be checked before deciding
+    if(entity instanceof byte[])
+      return ((byte[]) entity).length >= minRequestBytes;
+    // A String is at least as many bytes as chars, so checking its length never compresses too little
+    if(entity instanceof String)
+      return ((String) entity).length() >= minRequestBytes;
+    return true;
+  }
+
+  private class CompressingAdapter extends AbstractClientRequestAdapter {
+
+    CompressingAdapter(final ClientRequestAdapter adapter) {
+      super(adapter);
+    }
+
+    @Override public OutputStream adapt(final ClientRequest request, final OutputStream output) throws IOException {
+      OutputStream adapted = getAdapter().adapt(request, output);
+      if(requestEncoding == ContentEncoding.GZIP) {
+        return new GZIPOutputStream(adapted) {
+          {
+            def.setLevel(compressionLevel);
+          }
+        };
+      }
+      final Deflater deflater = new Deflater(compressionLevel);
+      return new DeflaterOutputStream(adapted, deflater) {
+        @Override public void close() throws IOException {
+          try {
+            super.close();
+          } finally {
+            // A deflater passed in is not released by the stream itself
+            deflater.end();
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.github.eventhubjavaclient.transport;
+
+/**
+ * The encodings request bodies can be compressed with.
+ */
+public enum ContentEncoding {
+
+  /** A gzip stream, understood by nearly every HTTP server. */
+  GZIP("gzip"),
+
+  /** A zlib stream, a few bytes smaller than gzip. */
+  DEFLATE("deflate");
+
+  private final String headerValue;
+
+  ContentEncoding(final String headerValue) {
+    this.headerValue = headerValue;
+  }
+
+  /**
+   * @return The value of the Content-Encoding header for bodies in this encoding.
+   */
+  public String getHeaderValue() {
+    return headerValue;
+  }
+}
@@ -0,0 +1,27 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+
+/**
+ * Provides the Jersey {@link ClientHandler} at the end of an EventHubClient's handler chain, i.e. the part that actually
+ * opens connections and moves bytes. Implement this to plug a different HTTP stack in behind the client.
+ * A transport belongs to a single client and is closed along with it.
+ */
+public interface EventHubTransport {
+
+  /**
+   * Creates the handler requests are sent through.
+   * @param config A copy of the Jersey config the client was created with, owned by the client, so the transport may
+   *               put properties it needs into it.
+   * @param connectionTimeout Timeout in milliseconds for making the initial connection, may be null for no timeout.
+   * @param readTimeout Timeout in milliseconds for reading data, may be null for no timeout.
+   * @return The handler, guaranteed not null.
+   */
+  ClientHandler createClientHandler(ClientConfig config, Integer connectionTimeout, Integer readTimeout);
+
+  /**
+   * Releases any connections and threads held by handlers this transport created.
+   */
+  void close();
+}
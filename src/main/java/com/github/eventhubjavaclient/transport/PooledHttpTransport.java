@@ -0,0 +1,116 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.apache4.ApacheHttpClient4Handler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends requests through Apache HttpClient with a pool of keep-alive connections, so TCP connections are reused across
+ * requests instead of being set up for each one. The pool is bounded in total and per host, idle connections are evicted
+ * in the background and connections that have been idle for a while are validated before being reused.
+ * <p>
+ * Request bodies are sent with chunked transfer encoding, so they are written straight to the connection as they are
+ * produced rather than buffered first to find their length.
+ */
+public class PooledHttpTransport implements EventHubTransport {
+
+  private static final int DEFAULT_CHUNK_SIZE = 8192;
+
+  private final PooledHttpTransportConfig config;
+  private final List<PoolingHttpClientConnectionManager> connectionManagers = new ArrayList<PoolingHttpClientConnectionManager>();
+  private final List<CloseableHttpClient> httpClients = new ArrayList<CloseableHttpClient>();
+
+  public PooledHttpTransport() {
+    this(new PooledHttpTransportConfig());
+  }
+
+  public PooledHttpTransport(final PooledHttpTransportConfig config) {
+    if(config == null)
+      throw new IllegalArgumentException("config must not be null");
+    this.config = config;
+  }
+
+  @Override public synchronized ClientHandler createClientHandler(final ClientConfig clientConfig,
+      final Integer connectionTimeout, final Integer readTimeout) {
+    // The same socket factories as the default, wrapped to mark new connections in traces
+    Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", new TracingSocketFactory(PlainConnectionSocketFactory.getSocketFactory()))
+        .register("https", new TracingSocketFactory.Layered(SSLConnectionSocketFactory.getSocketFactory()))
+        .build();
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactories,
+        null, null, null, config.getConnectionTimeToLiveMillis(), TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(config.getMaxTotalConnections());
+    connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerHost());
+    connectionManager.setValidateAfterInactivity(config.getValidateAfterInactivityMillis());
+
+    RequestConfig.Builder requestConfig = RequestConfig.custom();
+    if(connectionTimeout != null) {
+      requestConfig.setConnectTimeout(connectionTimeout);
+      // Waiting for a connection from an exhausted pool counts towards connecting
+      requestConfig.setConnectionRequestTimeout(connectionTimeout);
+    }
+    if(readTimeout != null)
+      requestConfig.setSocketTimeout(readTimeout);
+
+    CloseableHttpClient httpClient = HttpClients.custom()
+                                                .setConnectionManager(connectionManager)
+                                                .setDefaultRequestConfig(requestConfig.build())
+                                                .disableCookieManagement()
+                                                .evictExpiredConnections()
+                                                .evictIdleConnections(config.getMaxIdleMillis(), TimeUnit.MILLISECONDS)
+                                                .build();
+    connectionManagers.add(connectionManager);
+    httpClients.add(httpClient);
+    // Without a chunk size the handler copies every request body into a buffer to learn its length, so streamed and
+    // compressed bodies would be held whole on the heap. The size is only checked for, HttpClient picks its own chunks.
+    // The config is the client's own copy, so this does not reach configs the caller shares with other clients
+    if(!clientConfig.getProperties().containsKey(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE))
+      clientConfig.getProperties().put(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, DEFAULT_CHUNK_SIZE);
+    return new ApacheHttpClient4Handler(httpClient, null, false);
+  }
+
+  /**
+   * @return Connection counts summed over every pool this transport created.
+   */
+  public synchronized PoolStats getPoolStats() {
+    int leased = 0;
+    int pending = 0;
+    int available = 0;
+    int max = 0;
+    for(PoolingHttpClientConnectionManager connectionManager : connectionManagers) {
+      PoolStats stats = connectionManager.getTotalStats();
+      leased += stats.getLeased();
+      pending += stats.getPending();
+      available += stats.getAvailable();
+      max += stats.getMax();
+    }
+    return new PoolStats(leased, pending, available, max);
+  }
+
+  @Override public synchronized void close() {
+    for(CloseableHttpClient httpClient : httpClients) {
+      try {
+        httpClient.close();
+      } catch(IOException e) {
+        // Closing the pool's sockets failed, nothing more we can do with them
+      }
+    }
+    httpClients.clear();
+    connectionManagers.clear();
+  }
+}
@@ -0,0 +1,95 @@
+package com.github.eventhubjavaclient.transport;
+
+/**
+ * Connection pool settings for a {@link PooledHttpTransport}. Every setting has a default so only the values that matter
+ * need setting.
+ */
+public class PooledHttpTransportConfig {
+
+  public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 200;
+  public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 50;
+  public static final long DEFAULT_MAX_IDLE_MILLIS = 60000;
+  public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+  public static final long DEFAULT_CONNECTION_TIME_TO_LIVE_MILLIS = -1;
+
+  private int maxTotalConnections = DEFAULT_MAX_TOTAL_CONNECTIONS;
+  private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+  private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+  private int validateAfterInactivityMillis = DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
+  private long connectionTimeToLiveMillis = DEFAULT_CONNECTION_TIME_TO_LIVE_MILLIS;
+
+  public int getMaxTotalConnections() {
+    return maxTotalConnections;
+  }
+
+  /**
+   * @param maxTotalConnections The most connections the pool keeps open across all hosts. Must be greater than 0.
+   * @return This config
+   */
+  public PooledHttpTransportConfig setMaxTotalConnections(final int maxTotalConnections) {
+    checkPositive(maxTotalConnections, "maxTotalConnections");
+    this.maxTotalConnections = maxTotalConnections;
+    return this;
+  }
+
+  public int getMaxConnectionsPerHost() {
+    return maxConnectionsPerHost;
+  }
+
+  /**
+   * @param maxConnectionsPerHost The most connections the pool keeps open to a single host. Must be greater than 0.
+   * @return This config
+   */
+  public PooledHttpTransportConfig setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+    checkPositive(maxConnectionsPerHost, "maxConnectionsPerHost");
+    this.maxConnectionsPerHost = maxConnectionsPerHost;
+    return this;
+  }
+
+  public long getMaxIdleMillis() {
+    return maxIdleMillis;
+  }
+
+  /**
+   * @param maxIdleMillis Pooled connections unused for this long are closed by a background evictor. Must be greater than 0.
+   * @return This config
+   */
+  public PooledHttpTransportConfig setMaxIdleMillis(final long maxIdleMillis) {
+    checkPositive(maxIdleMillis, "maxIdleMillis");
+    this.maxIdleMillis = maxIdleMillis;
+    return this;
+  }
+
+  public int getValidateAfterInactivityMillis() {
+    return validateAfterInactivityMillis;
+  }
+
+  /**
+   * @param validateAfterInactivityMillis A pooled connection unused for this long is checked to still be open before
+   *                                      it is reused. Zero or less disables the check.
+   * @return This config
+   */
+  public PooledHttpTransportConfig setValidateAfterInactivityMillis(final int validateAfterInactivityMillis) {
+    this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    return this;
+  }
+
+  public long getConnectionTimeToLiveMillis() {
+    return connectionTimeToLiveMillis;
+  }
+
+  /**
+   * @param connectionTimeToLiveMillis Connections are never reused once they are this old, useful behind DNS based
+   *                                   load balancing. Zero or less means connections live until they idle out.
+   * @return This config
+   */
+  public PooledHttpTransportConfig setConnectionTimeToLiveMillis(final long connectionTimeToLiveMillis) {
+    this.connectionTimeToLiveMillis = connectionTimeToLiveMillis;
+    return this;
+  }
+
+  private static void checkPositive(final long value, final String name) {
+    if(value < 1)
+      throw new IllegalArgumentException(name + " must be greater than 0 but was " + value);
+  }
+}
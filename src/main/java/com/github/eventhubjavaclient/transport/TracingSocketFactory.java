@@ -0,0 +1,53 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.github.eventhubjavaclient.tracing.TraceContext;
+import com.github.eventhubjavaclient.tracing.TracePhase;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Marks {@link TracePhase#CONNECT} on the span of the requesting thread whenever the pool opens a new connection.
+ */
+class TracingSocketFactory implements ConnectionSocketFactory {
+
+  private final ConnectionSocketFactory delegate;
+
+  TracingSocketFactory(final ConnectionSocketFactory delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override public Socket createSocket(final HttpContext context) throws IOException {
+    return delegate.createSocket(context);
+  }
+
+  @Override public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host,
+      final InetSocketAddress remoteAddress, final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+    Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+    TraceContext.current().mark(TracePhase.CONNECT);
+    return connected;
+  }
+
+  /**
+   * For TLS, which can also be layered over a tunnel through a proxy.
+   */
+  static class Layered extends TracingSocketFactory implements LayeredConnectionSocketFactory {
+
+    private final LayeredConnectionSocketFactory delegate;
+
+    Layered(final LayeredConnectionSocketFactory delegate) {
+      super(delegate);
+      this.delegate = delegate;
+    }
+
+    @Override public Socket createLayeredSocket(final Socket socket, final String target, final int port,
+        final HttpContext context) throws IOException {
+      return delegate.createLayeredSocket(socket, target, port, context);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.client.urlconnection.URLConnectionClientHandler;
+
+/**
+ * Sends requests through {@link java.net.HttpURLConnection}, as a plain Jersey client does. Connection reuse is left to
+ * the JDK's keep-alive cache, which cannot be sized or monitored.
+ */
+public class UrlConnectionTransport implements EventHubTransport {
+
+  @Override public ClientHandler createClientHandler(final ClientConfig config, final Integer connectionTimeout,
+      final Integer readTimeout) {
+    // Timeouts are picked up from the client's properties by the handler on every request
+    return new URLConnectionClientHandler();
+  }
+
+  @Override public void close() {
+  }
+}
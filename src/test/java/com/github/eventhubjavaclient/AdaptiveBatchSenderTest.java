@@ -0,0 +1,217 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveBatchSenderTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private final List<Integer> batchSizes = new ArrayList<Integer>();
+  private final List<String> receivedUsers = new ArrayList<String>();
+  private volatile int slowAbove = Integer.MAX_VALUE;
+  private volatile int failRequest = -1;
+  private volatile int failStatus = 500;
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    server.setResponder("/events/batch_track", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        if(requestCount.incrementAndGet() == failRequest)
+          throw new StubEventHubServer.StatusException(failStatus);
+        JsonArray events = new JsonParser().parse(request.getFormFields().get("events")).getAsJsonArray();
+        synchronized(batchSizes) {
+          batchSizes.add(events.size());
+          for(int i = 0; i < events.size(); i++) {
+            receivedUsers.add(events.get(i).getAsJsonObject().get("external_user_id").getAsString());
+          }
+        }
+        if(events.size() > slowAbove)
+          Thread.sleep(150);
+        return "";
+      }
+    });
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldGrowBatchSizeAdditivelyWhileFast() throws Exception {
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchSize(10).setBatchSizeIncrease(5));
+    List<Event> events = produceEvents(100);
+    BatchTrackResult result = sender.send(events);
+    assertTrue(result.isSuccessful());
+    assertEquals(100, result.getSentEventCount());
+    assertEquals(5, result.getNumberOfRequests());
+    assertEquals(Arrays.asList(10, 15, 20, 25, 30), batchSizes);
+    // The last sub-batch took every event left, so its size limit did not hold it back
+    assertEquals(30, sender.getBatchSizeLimit());
+    assertEquals(users(events), receivedUsers);
+  }
+
+  @Test
+  public void testShouldNotGrowBatchSizeForListExactlyAtLimit() throws Exception {
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchSize(10).setBatchSizeIncrease(5));
+    assertTrue(sender.send(produceEvents(10)).isSuccessful());
+    assertEquals(Arrays.asList(10), batchSizes);
+    assertEquals(10, sender.getBatchSizeLimit());
+  }
+
+  @Test
+  public void testShouldCutBatchSizeWhenSlow() throws Exception {
+    slowAbove = 20;
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchSize(40).setBatchSizeIncrease(10).setTargetLatencyMillis(100));
+    List<Event> events = produceEvents(100);
+    assertTrue(sender.send(events).isSuccessful());
+    // 40 is slow so halves to 20, which is fast and grows to 30, which is slow again
+    assertEquals(Arrays.asList(40, 20, 30, 10), batchSizes);
+    assertEquals(users(events), receivedUsers);
+  }
+
+  @Test
+  public void testShouldKeepSubBatchesWithinByteLimit() throws Exception {
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchBytes(1000).setMaxBatchBytes(1000));
+    List<Event> events = produceEvents(50);
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put("big", new String(new char[2000]).replace('\0', 'x'));
+    events.add(25, new Event("signup", "big-user", properties));
+    assertTrue(sender.send(events).isSuccessful());
+    assertEquals(users(events), receivedUsers);
+    List<StubEventHubServer.RecordedRequest> requests = server.getRequests();
+    for(int i = 0; i < requests.size(); i++) {
+      // Event bytes plus the separators between them and the brackets around them
+      int eventBytes = requests.get(i).body.length - "events=%5B%5D".length() - (batchSizes.get(i) - 1) * "%2C".length();
+      assertTrue(eventBytes <= 1000 || batchSizes.get(i) == 1);
+    }
+    assertTrue(batchSizes.contains(1));
+    assertEquals(1000, sender.getBatchBytesLimit());
+  }
+
+  @Test
+  public void testShouldEncodeSameBodyAsBatchTrackEvents() throws Exception {
+    List<Event> events = produceEvents(3);
+    events.get(1).putProperty("treatment", "a&b=c é");
+    client.batchTrackEvents(events);
+    AdaptiveBatchSender.createDefaultSender(client).send(events);
+    List<StubEventHubServer.RecordedRequest> requests = server.getRequests();
+    assertArrayEquals(requests.get(0).body, requests.get(1).body);
+  }
+
+  @Test
+  public void testShouldStopAtFailedSubBatchAndCutLimits() throws Exception {
+    failRequest = 2;
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchSize(10).setInitialBatchBytes(100000));
+    List<Event> events = produceEvents(30);
+    BatchTrackResult result = sender.send(events);
+    assertFalse(result.isSuccessful());
+    assertTrue(result.getError() instanceof UnexpectedResponseCodeException);
+    assertEquals(10, result.getSentEventCount());
+    assertEquals(2, result.getNumberOfRequests());
+    assertEquals(events.subList(10, 30), result.getUnsentEvents());
+    assertEquals(30, sender.getBatchSizeLimit());
+    assertEquals(50000, sender.getBatchBytesLimit());
+  }
+
+  @Test
+  public void testShouldCutLimitsWhenTooManyRequests() throws Exception {
+    assertLimitsAfterFailure(429, 30, 50000);
+  }
+
+  @Test
+  public void testShouldCutLimitsWhenReadTimesOut() throws Exception {
+    slowAbove = 0;
+    EventHubClient impatientClient = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, 50);
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(impatientClient,
+        new AdaptiveBatchConfig().setInitialBatchSize(10).setInitialBatchBytes(100000));
+    BatchTrackResult result = sender.send(produceEvents(30));
+    impatientClient.close();
+    assertFalse(result.isSuccessful());
+    assertEquals(5, sender.getBatchSizeLimit());
+    assertEquals(50000, sender.getBatchBytesLimit());
+  }
+
+  @Test
+  public void testShouldCutOnlyByteLimitWhenPayloadTooLarge() throws Exception {
+    assertLimitsAfterFailure(413, 60, 50000);
+  }
+
+  @Test
+  public void testShouldKeepLimitsWhenSubBatchIsRejectedAsBad() throws Exception {
+    assertLimitsAfterFailure(400, 60, 100000);
+    assertLimitsAfterFailure(422, 60, 100000);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectEventWithoutUser() throws Exception {
+    AdaptiveBatchSender.createDefaultSender(client).send(Arrays.asList(new Event("signup", null, new HashMap<String, String>())));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectDecreaseFactorOfOne() throws Exception {
+    new AdaptiveBatchConfig().setDecreaseFactor(1);
+  }
+
+  // Utils
+
+  private void assertLimitsAfterFailure(final int status, final int batchSizeLimit, final long batchBytesLimit)
+      throws Exception {
+    requestCount.set(0);
+    failRequest = 2;
+    failStatus = status;
+    AdaptiveBatchSender sender = AdaptiveBatchSender.createCustomSender(client,
+        new AdaptiveBatchConfig().setInitialBatchSize(10).setInitialBatchBytes(100000));
+    BatchTrackResult result = sender.send(produceEvents(30));
+    assertEquals(status, ((UnexpectedResponseCodeException) result.getError()).getActualCode());
+    assertEquals(batchSizeLimit, sender.getBatchSizeLimit());
+    assertEquals(batchBytesLimit, sender.getBatchBytesLimit());
+  }
+
+  private static List<Event> produceEvents(final int count) {
+    List<Event> events = new ArrayList<Event>();
+    for(int i = 0; i < count; i++) {
+      events.add(new Event("signup", "user" + i, new HashMap<String, String>()));
+    }
+    return events;
+  }
+
+  private static List<String> users(final List<Event> events) {
+    List<String> users = new ArrayList<String>();
+    for(Event event : events) {
+      users.add(event.getExternalUserId());
+    }
+    return users;
+  }
+}
@@ -0,0 +1,163 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventSerializationTestBase;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.github.eventhubjavaclient.transport.PooledHttpTransportConfig;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncEventHubClientTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final long WAIT_SECONDS = 10;
+
+  private StubEventHubServer server;
+  private AsyncEventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = AsyncEventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT,
+        new PooledHttpTransportConfig().setMaxTotalConnections(200).setMaxConnectionsPerHost(200), 1);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldParseStringArrayResponse() throws Exception {
+    server.setResponse("/events/types", 200, "[\"click\",\"signup\"]");
+    assertArrayEquals(new String[] {"click", "signup"}, await(client.getEventTypes()));
+  }
+
+  @Test
+  public void testShouldParseTimelineResponse() throws Exception {
+    server.setResponse("/users/timeline", 200, EventSerializationTestBase.ALL_JSON_EVENTS);
+    Collection<Event> events = await(client.getUserTimeline("user", 0, 10));
+    EventSerializationTestBase.assertThatListsOfEventsHaveSameValues(EventSerializationTestBase.ALL_EVENTS_SORTED_IN_JSON_ORDER,
+        new ArrayList<Event>(events));
+    assertEquals("external_user_id=user&offset=0&num_records=10", server.getRequests().get(0).query);
+  }
+
+  @Test
+  public void testShouldPostSameFunnelBodyAsBlockingClient() throws Exception {
+    server.setResponse("/events/funnel", 200, "[10,5]");
+    DateTime start = new DateTime(2014, 1, 1, 0, 0);
+    DateTime end = new DateTime(2014, 1, 31, 0, 0);
+    String[] steps = new String[] {"signup", "purchase"};
+    assertArrayEquals(new int[] {10, 5}, await(client.retrieveEventFunnelCounts(start, end, steps, 7)));
+    StubEventHubServer.RecordedRequest request = server.getRequests().get(0);
+    assertEquals("POST", request.method);
+    assertTrue(request.getHeader("Content-Type").startsWith("application/x-www-form-urlencoded"));
+    assertArrayEquals(EventHubClient.produceEventFunnelCountsRequestBody(start, end, steps, 7), request.body);
+  }
+
+  @Test
+  public void testShouldPostFilterBodyForGetUsers() throws Exception {
+    server.setResponse("/users/find", 200, "[{\"external_user_id\":\"user1\"},{\"external_user_id\":\"user2\"}]");
+    Map<String, String> filters = new HashMap<String, String>();
+    filters.put("email", "someone@somewhere.com");
+    List<String> users = await(client.getUsers(filters));
+    assertEquals(2, users.size());
+    assertEquals("ufk%5B%5D=email&ufv%5B%5D=someone%40somewhere.com", new String(server.getRequests().get(0).body, "UTF-8"));
+  }
+
+  @Test
+  public void testShouldBatchTrackEvents() throws Exception {
+    List<Event> events = new ArrayList<Event>();
+    events.add(new Event("signup", "user1", null));
+    events.add(new Event("click", "user2", null));
+    assertNull(await(client.batchTrackEvents(events)));
+    String body = new String(server.getRequests().get(0).body, "UTF-8");
+    assertTrue(body.startsWith("events=%5B%7B"));
+  }
+
+  @Test
+  public void testShouldKeepManyRequestsInFlightOnOneIoThread() throws Exception {
+    server.setResponse("/varz", 200, "stats", 200);
+    List<CompletableFuture<String>> futures = new ArrayList<CompletableFuture<String>>();
+    long start = System.nanoTime();
+    for(int i = 0; i < 100; i++) {
+      futures.add(client.getServerStats());
+    }
+    for(CompletableFuture<String> future : futures) {
+      assertEquals("stats", await(future));
+    }
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    // One after another these would take 20 seconds
+    assertTrue("Requests were not overlapped, took " + elapsedMillis + "ms", elapsedMillis < 5000);
+  }
+
+  @Test
+  public void testShouldCompleteExceptionallyWithUnexpectedResponseCodeExceptionForNon200Response() throws Exception {
+    server.setResponse("/varz", 500, "error");
+    Throwable cause = awaitFailure(client.getServerStats());
+    assertTrue(cause instanceof UnexpectedResponseCodeException);
+    assertEquals(500, ((UnexpectedResponseCodeException) cause).getActualCode());
+  }
+
+  @Test
+  public void testShouldCompleteExceptionallyWithBadlyFormedResponseBodyExceptionForEmptyBody() throws Exception {
+    server.setResponse("/events/types", 200, "");
+    assertTrue(awaitFailure(client.getEventTypes()) instanceof BadlyFormedResponseBodyException);
+  }
+
+  @Test
+  public void testShouldCompleteExceptionallyWithIllegalInputExceptionForNullEvent() throws Exception {
+    assertTrue(awaitFailure(client.trackEvent(null)) instanceof IllegalInputException);
+    assertTrue(server.getRequests().isEmpty());
+  }
+
+  @Test
+  public void testShouldCompleteExceptionallyWithIllegalInputExceptionForEmptyFilters() throws Exception {
+    assertTrue(awaitFailure(client.getUsers(new HashMap<String, String>())) instanceof IllegalInputException);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForBadUrl() throws Exception {
+    AsyncEventHubClient.createDefaultClient("some bad url", CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForZeroIoThreads() throws Exception {
+    AsyncEventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT, new PooledHttpTransportConfig(), 0);
+  }
+
+  private static <T> T await(final CompletableFuture<T> future) throws Exception {
+    return future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private static Throwable awaitFailure(final CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(WAIT_SECONDS, TimeUnit.SECONDS);
+    } catch(ExecutionException e) {
+      return e.getCause();
+    }
+    fail("Expected the future to complete exceptionally");
+    return null;
+  }
+}
@@ -6,12 +6,18 @@ import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
 import com.sun.jersey.api.client.ClientResponse;
 import mockit.NonStrictExpectations;
 import mockit.integration.junit4.JMockit;
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
 
 @RunWith(JMockit.class)
 public class BatchTrackEventTest extends EventHubClientTestBase {
@@ -33,16 +39,30 @@ public class BatchTrackEventTest extends EventHubClientTestBase {
   @Test
   public void testShouldCallPostWithCorrectJsonBody() throws Exception {
     List<Event> events = produceEventList();
-    final String expectedBody = "events=[{\"event_type\":\"click\",\"external_user_id\":\"userid\"}]";
+    final String expectedBody = "events=" + URLEncoder.encode("[{\"event_type\":\"click\",\"external_user_id\":\"userid\"}]", "UTF-8");
     new NonStrictExpectations() {{
       webResource.path(anyString); result = webResource;
       webResource.header(anyString, anyString); result = builder;
-      builder.post(ClientResponse.class, expectedBody); result = response; times = 1;
+      builder.post(ClientResponse.class, with(bodyMatching(expectedBody))); result = response; times = 1;
       response.getStatus(); result = 200;
     }};
     client.batchTrackEvents(events);
   }
 
+  @Test
+  public void testShouldStreamPercentEncodedJsonForEventsWithDatesAndProperties() throws Exception {
+    Map<String, String> properties = new TreeMap<String, String>();
+    properties.put("experiment", "signup_v1");
+    properties.put("treatment", "a&b=c");
+    List<Event> events = new ArrayList<Event>();
+    events.add(new Event("signup", "user1", new DateTime(2014, 11, 22, 0, 0), properties));
+    events.add(new Event("click", "user2", new HashMap<String, String>()));
+    final String expectedJson = "[{\"event_type\":\"signup\",\"external_user_id\":\"user1\",\"date\":\"20141122\","
+        + "\"experiment\":\"signup_v1\",\"treatment\":\"a\\u0026b\\u003dc\"},"
+        + "{\"event_type\":\"click\",\"external_user_id\":\"user2\"}]";
+    assertEquals("events=" + URLEncoder.encode(expectedJson, "UTF-8"), entityAsString(EventHubClient.produceBatchEventsBody(events)));
+  }
+
   @Test(expected = IllegalInputException.class)
   public void testShouldThrowIllegalInputExceptionForNullEventList() throws Exception {
     mockClientResponse(200,SOME_STRING);
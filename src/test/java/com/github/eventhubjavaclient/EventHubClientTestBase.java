@@ -2,11 +2,15 @@ package com.github.eventhubjavaclient;
 
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.WebResource;
+import mockit.Delegate;
 import mockit.Mocked;
 import mockit.NonStrictExpectations;
 import org.junit.Before;
 
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
 /**
  *
@@ -33,7 +37,7 @@ public class EventHubClientTestBase {
       builder.get(ClientResponse.class); result = response;
       webResource.get(ClientResponse.class); result = response;
       // Mock Post request
-      builder.post(ClientResponse.class,anyString); result = response;
+      builder.post(ClientResponse.class,any); result = response;
       builder.post(ClientResponse.class); result = response;
       webResource.post(ClientResponse.class); result = response;
       // Mock the response
@@ -42,6 +46,28 @@ public class EventHubClientTestBase {
     }};
   }
 
+  /**
+   * Matches a posted entity whose encoded form is the expected body, for use with with() in expectations.
+   */
+  protected static Delegate<Object> bodyMatching(final String expectedBody) {
+    return new Delegate<Object>() {
+      boolean matches(Object entity) throws IOException {
+        return expectedBody.equals(entityAsString(entity));
+      }
+    };
+  }
+
+  protected static String entityAsString(final Object entity) throws IOException {
+    if(entity instanceof byte[])
+      return new String((byte[]) entity, "UTF-8");
+    if(entity instanceof StreamingOutput) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      ((StreamingOutput) entity).write(output);
+      return output.toString("UTF-8");
+    }
+    return String.valueOf(entity);
+  }
+
   @Before
   public void setUp() {
     client = EventHubClient.createDefaultClient("http://acceptableurl", CONNECTION_TIMEOUT, READ_TIMEOUT);
@@ -0,0 +1,80 @@
+package com.github.eventhubjavaclient;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Writer;
+import java.net.URLEncoder;
+
+import static org.junit.Assert.assertEquals;
+
+public class FormBodyEncoderTest {
+
+  private static final String[] VALUES = new String[] {
+      "",
+      "plain",
+      "with space",
+      "reserved &=+%?#/[]",
+      "unreserved -_.*~",
+      "café €",
+      "emoji 😀 end",
+      "unpaired high \ud83d end",
+      "unpaired low \ude00 end",
+      "trailing high \ud83d"
+  };
+
+  @Test
+  public void testShouldEncodeValuesTheSameAsUrlEncoder() throws Exception {
+    for(String value : VALUES) {
+      FormBodyEncoder encoder = new FormBodyEncoder();
+      encoder.appendEncoded(value);
+      assertEquals("Encoding of " + value, URLEncoder.encode(value, "UTF-8"), encoder.toString());
+    }
+  }
+
+  @Test
+  public void testShouldJoinPairsWithAmpersands() throws Exception {
+    FormBodyEncoder encoder = new FormBodyEncoder().add("funnel_steps[]", "sign up").add("num_days", 7);
+    assertEquals("funnel_steps%5B%5D=sign+up&num_days=7", encoder.toString());
+    assertEquals(encoder.toString(), new String(encoder.toByteArray(), "US-ASCII"));
+  }
+
+  @Test
+  public void testShouldStartAfreshWhenReusedOnSameThread() throws Exception {
+    FormBodyEncoder.forCurrentThread().add("first", "body");
+    assertEquals("second=body", FormBodyEncoder.forCurrentThread().add("second", "body").toString());
+  }
+
+  @Test
+  public void testShouldGrowPastInitialCapacity() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for(int i = 0; i < 1000; i++) {
+      value.append("é");
+    }
+    FormBodyEncoder encoder = new FormBodyEncoder(4);
+    encoder.appendEncoded(value);
+    assertEquals(URLEncoder.encode(value.toString(), "UTF-8"), encoder.toString());
+  }
+
+  @Test
+  public void testEncodingWriterShouldEncodeAcrossWritesAndBufferFlushes() throws Exception {
+    StringBuilder expected = new StringBuilder();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Writer writer = FormBodyEncoder.encodingWriter(output);
+    for(int i = 0; i < 2000; i++) {
+      for(String value : VALUES) {
+        // Write surrogate pairs one char at a time so pairs straddle writes
+        if(i % 2 == 0) {
+          writer.write(value);
+        } else {
+          for(char c : value.toCharArray()) {
+            writer.write(c);
+          }
+        }
+        expected.append(value);
+      }
+    }
+    writer.close();
+    assertEquals(URLEncoder.encode(expected.toString(), "UTF-8"), output.toString("US-ASCII"));
+  }
+}
@@ -0,0 +1,131 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FunnelBatchTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final long DELAY_MILLIS = 100;
+  private static final DateTime START_DATE = new DateTime(2014, 11, 1, 0, 0);
+  private static final DateTime END_DATE = new DateTime(2014, 11, 22, 0, 0);
+  private static final String[] FUNNEL_STEPS = new String[] {"signup", "submit"};
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    // Answers with the days to complete, so each result can be matched to its query
+    server.setResponder("/events/funnel", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        int current = inFlight.incrementAndGet();
+        while(maxInFlight.get() < current && !maxInFlight.compareAndSet(maxInFlight.get(), current)) {
+        }
+        try {
+          Thread.sleep(DELAY_MILLIS);
+          Map<String, String> form = request.getFormFields();
+          if("broken".equals(form.get("funnel_steps[]")))
+            throw new IllegalStateException("Failing broken funnels");
+          return "[" + form.get("num_days_to_complete_funnel") + ",1]";
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    });
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldReturnResultsInQueryOrder() throws Exception {
+    List<FunnelQuery> queries = new ArrayList<FunnelQuery>();
+    for(int days = 1; days <= 12; days++) {
+      queries.add(new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, days));
+    }
+    long start = System.currentTimeMillis();
+    List<FunnelResult> results = client.retrieveEventFunnelCountsBatch(queries, 4);
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(12, results.size());
+    for(int i = 0; i < 12; i++) {
+      assertSame(queries.get(i), results.get(i).getQuery());
+      assertArrayEquals(new int[] {i + 1, 1}, results.get(i).getCounts());
+      assertTrue(results.get(i).isSuccessful());
+      assertTrue(results.get(i).getElapsedMillis() >= DELAY_MILLIS);
+    }
+    assertTrue(maxInFlight.get() >= 2);
+    assertTrue(maxInFlight.get() <= 4);
+    assertTrue("Took " + elapsed + "ms", elapsed < 12 * DELAY_MILLIS);
+  }
+
+  @Test
+  public void testShouldSendRepeatedQueriesOnce() throws Exception {
+    List<FunnelQuery> queries = Arrays.asList(
+        new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 7),
+        new FunnelQuery(START_DATE.plusHours(2), END_DATE, FUNNEL_STEPS, 7),
+        new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 14));
+    List<FunnelResult> results = client.retrieveEventFunnelCountsBatch(queries);
+    assertEquals(2, server.getRequests().size());
+    assertArrayEquals(new int[] {7, 1}, results.get(0).getCounts());
+    assertArrayEquals(new int[] {7, 1}, results.get(1).getCounts());
+    assertNotSame(results.get(0).getCounts(), results.get(1).getCounts());
+    assertArrayEquals(new int[] {14, 1}, results.get(2).getCounts());
+  }
+
+  @Test
+  public void testShouldGiveEachQueryItsOwnError() throws Exception {
+    List<FunnelQuery> queries = Arrays.asList(
+        new FunnelQuery(START_DATE, END_DATE, new String[] {"broken"}, 7),
+        new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 0),
+        new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    List<FunnelResult> results = client.retrieveEventFunnelCountsBatch(queries, 2);
+    assertFalse(results.get(0).isSuccessful());
+    assertNull(results.get(0).getCounts());
+    assertTrue(results.get(0).getError() instanceof UnexpectedResponseCodeException);
+    assertTrue(results.get(1).getError() instanceof IllegalInputException);
+    assertArrayEquals(new int[] {7, 1}, results.get(2).getCounts());
+  }
+
+  @Test
+  public void testShouldReturnEmptyListForNoQueries() throws Exception {
+    assertTrue(client.retrieveEventFunnelCountsBatch(new ArrayList<FunnelQuery>()).isEmpty());
+    assertEquals(0, server.getRequests().size());
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectConcurrencyBelowOne() throws Exception {
+    client.retrieveEventFunnelCountsBatch(Arrays.asList(new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 7)), 0);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectNullQuery() throws Exception {
+    client.retrieveEventFunnelCountsBatch(Arrays.asList(new FunnelQuery(START_DATE, END_DATE, FUNNEL_STEPS, 7), null));
+  }
+}
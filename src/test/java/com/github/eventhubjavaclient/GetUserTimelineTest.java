@@ -35,6 +35,20 @@ public class GetUserTimelineTest extends EventHubClientTestBase {
     EventSerializationTestBase.assertThatListsOfEventsHaveSameValues(expectedEvents,actualEvents);
   }
 
+  @Test
+  public void testShouldExtractCorrectEntitiesWithInterningDeserialization() throws Exception {
+    mockClientResponse(200, EventSerializationTestBase.ALL_JSON_EVENTS);
+    client.setInternedStringCapacity(64);
+    List<Event> actualEvents = new ArrayList<Event>(client.getUserTimeline(USER_NAME,0,10));
+    EventSerializationTestBase.assertThatListsOfEventsHaveSameValues(
+        new ArrayList<Event>(EventSerializationTestBase.ALL_EVENTS_SORTED_IN_JSON_ORDER),actualEvents);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForNegativeInternedStringCapacity() throws Exception {
+    client.setInternedStringCapacity(-1);
+  }
+
   @Test(expected = UnexpectedResponseCodeException.class)
   public void testShouldThrowUnexpectedResponseCodeExceptionForNon200Response() throws Exception {
     mockClientResponse(500, EventSerializationTestBase.ALL_JSON_EVENTS);
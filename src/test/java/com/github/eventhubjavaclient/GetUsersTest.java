@@ -96,11 +96,11 @@ public class GetUsersTest extends EventHubClientTestBase {
   public void testShouldPostProvidedBody() throws Exception {
     Map<String,String> userFilters = new HashMap<String, String>();
     userFilters.put(USER_FILTERS_MAP_USER_ID_KEY, EMAIL_IN_RESPONSE);
-    final String expectedPostedBody = "ufk[]="+USER_FILTERS_MAP_USER_ID_KEY+"&ufv[]="+EMAIL_IN_RESPONSE;
+    final String expectedPostedBody = "ufk%5B%5D="+USER_FILTERS_MAP_USER_ID_KEY+"&ufv%5B%5D="+"someemailaddress%40somedomain.com";
     new NonStrictExpectations() {{
       webResource.path(anyString); result = webResource;
       webResource.header(anyString,anyString); result = builder;
-      builder.post(ClientResponse.class,expectedPostedBody); result = response; times = 1;
+      builder.post(ClientResponse.class,with(bodyMatching(expectedPostedBody))); result = response; times = 1;
       response.getStatus(); result = 200;
       response.getEntity(String.class); result = ENTITY_BODY_2_VALUES;
     }};
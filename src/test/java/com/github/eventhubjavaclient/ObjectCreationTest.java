@@ -1,5 +1,6 @@
 package com.github.eventhubjavaclient;
 
+import com.github.eventhubjavaclient.transport.UrlConnectionTransport;
 import com.sun.jersey.api.client.config.ClientConfig;
 import com.sun.jersey.api.client.config.DefaultClientConfig;
 import org.junit.Test;
@@ -26,6 +27,16 @@ public class ObjectCreationTest {
     ClientConfig config = new DefaultClientConfig();
     producedClient = EventHubClient.createCustomClient(GOOD_URL, CONNECTION_TIMEOUT, READ_TIMEOUT, config);
     assertNotNull("createCustomClient returned a null client", producedClient);
+
+    producedClient = EventHubClient.createCustomClient(GOOD_URL, CONNECTION_TIMEOUT, READ_TIMEOUT, config, new UrlConnectionTransport());
+    assertNotNull("createCustomClient with a transport returned a null client", producedClient);
+    producedClient.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCreateCustomClientShouldThrowIllegalArgumentExceptionForNullTransport() throws Exception {
+    ClientConfig config = new DefaultClientConfig();
+    EventHubClient.createCustomClient(GOOD_URL, CONNECTION_TIMEOUT, READ_TIMEOUT, config, null);
   }
 
   @Test(expected = IllegalArgumentException.class)
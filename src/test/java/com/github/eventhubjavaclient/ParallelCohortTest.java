@@ -0,0 +1,119 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+import org.joda.time.Days;
+import org.joda.time.LocalDate;
+import org.joda.time.format.DateTimeFormat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelCohortTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final DateTime START_DATE = new DateTime(2014, 1, 1, 0, 0);
+  private static final Map<String, String> NO_FILTERS = Collections.emptyMap();
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    // Labels each row with the number of days from START_DATE to its first day, so joined tables can be checked
+    server.setResponder("/events/cohort", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        int current = inFlight.incrementAndGet();
+        while(maxInFlight.get() < current && !maxInFlight.compareAndSet(maxInFlight.get(), current)) {
+        }
+        try {
+          Thread.sleep(50);
+          Map<String, String> form = request.getFormFields();
+          if("fail".equals(form.get("row_event_type")) && !form.get("start_date").equals("20140101"))
+            throw new IllegalStateException("Failing every chunk but the first");
+          LocalDate start = LocalDate.parse(form.get("start_date"), DateTimeFormat.forPattern("yyyyMMdd"));
+          LocalDate end = LocalDate.parse(form.get("end_date"), DateTimeFormat.forPattern("yyyyMMdd"));
+          int daysPerRow = Integer.parseInt(form.get("num_days_per_row"));
+          int rows = (Days.daysBetween(start, end).getDays() + 1) / daysPerRow;
+          int offset = Days.daysBetween(START_DATE.toLocalDate(), start).getDays();
+          StringBuilder body = new StringBuilder("[");
+          for(int i = 0; i < rows; i++) {
+            body.append(i == 0 ? "" : ",").append("[").append(offset + i * daysPerRow).append(",1]");
+          }
+          return body.append("]").toString();
+        } finally {
+          inFlight.decrementAndGet();
+        }
+      }
+    });
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldJoinChunksIntoSameTableAsSingleRequest() throws Exception {
+    // 100 days at 3 days per row is 33 rows, the last day left over
+    DateTime endDate = START_DATE.plusDays(99);
+    int[][] single = client.retrieveEventCohortTable(START_DATE, endDate, "signup", "submit", 3, 7, NO_FILTERS, NO_FILTERS);
+    int[][] parallel = client.retrieveEventCohortTableInParallel(START_DATE, endDate, "signup", "submit", 3, 7,
+        NO_FILTERS, NO_FILTERS, 5, 3);
+    assertEquals(33, single.length);
+    assertEquals(single.length, parallel.length);
+    for(int i = 0; i < single.length; i++) {
+      assertArrayEquals(single[i], parallel[i]);
+    }
+    assertEquals(1 + 7, server.getRequests().size());
+    assertTrue(maxInFlight.get() >= 2);
+    assertTrue(maxInFlight.get() <= 3);
+  }
+
+  @Test
+  public void testShouldSendSingleRequestWhenRowsFitInOne() throws Exception {
+    int[][] table = client.retrieveEventCohortTableInParallel(START_DATE, START_DATE.plusDays(9), "signup", "submit", 1, 7,
+        NO_FILTERS, NO_FILTERS, 10, 4);
+    assertEquals(10, table.length);
+    assertEquals(1, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldThrowFirstChunkError() throws Exception {
+    try {
+      client.retrieveEventCohortTableInParallel(START_DATE, START_DATE.plusDays(39), "fail", "submit", 1, 7,
+          NO_FILTERS, NO_FILTERS, 10, 2);
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(UnexpectedResponseCodeException e) {
+      assertEquals(500, e.getActualCode());
+    }
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectRowsPerRequestBelowOne() throws Exception {
+    client.retrieveEventCohortTableInParallel(START_DATE, START_DATE.plusDays(9), "signup", "submit", 1, 7,
+        NO_FILTERS, NO_FILTERS, 0, 4);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectParallelismBelowOne() throws Exception {
+    client.retrieveEventCohortTableInParallel(START_DATE, START_DATE.plusDays(9), "signup", "submit", 1, 7,
+        NO_FILTERS, NO_FILTERS, 5, 0);
+  }
+}
@@ -0,0 +1,165 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescingTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final int CALLERS = 8;
+  private static final long DELAY_MILLIS = 300;
+  private static final DateTime START_DATE = new DateTime(2014, 11, 1, 0, 0);
+  private static final DateTime END_DATE = new DateTime(2014, 11, 22, 0, 0);
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private ExecutorService callers;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+    callers = Executors.newFixedThreadPool(CALLERS);
+  }
+
+  @After
+  public void tearDown() {
+    callers.shutdownNow();
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldSendOneFunnelRequestForIdenticalConcurrentCalls() throws Exception {
+    server.setResponse("/events/funnel", 200, "[10,5]", DELAY_MILLIS);
+    List<int[]> results = callConcurrently(new Callable<int[]>() {
+      @Override public int[] call() throws Exception {
+        // Times within the same day make the same query
+        return client.retrieveEventFunnelCounts(START_DATE.plusHours(1), END_DATE, new String[] {"signup", "submit"}, 7);
+      }
+    });
+    assertEquals(1, server.getRequests().size());
+    for(int[] result : results) {
+      assertArrayEquals(new int[] {10, 5}, result);
+    }
+    assertNotSame(results.get(0), results.get(1));
+  }
+
+  @Test
+  public void testShouldSendOneCohortRequestForFiltersInDifferentOrder() throws Exception {
+    server.setResponse("/events/cohort", 200, "[[1,2],[3]]", DELAY_MILLIS);
+    final AtomicInteger counter = new AtomicInteger();
+    List<int[][]> results = callConcurrently(new Callable<int[][]>() {
+      @Override public int[][] call() throws Exception {
+        boolean reversed = counter.incrementAndGet() % 2 == 0;
+        Map<String, String> rowFilters = new LinkedHashMap<String, String>();
+        rowFilters.put(reversed ? "b" : "a", reversed ? "2" : "1");
+        rowFilters.put(reversed ? "a" : "b", reversed ? "1" : "2");
+        return client.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, rowFilters,
+            new LinkedHashMap<String, String>());
+      }
+    });
+    assertEquals(1, server.getRequests().size());
+    for(int[][] result : results) {
+      assertArrayEquals(new int[] {1, 2}, result[0]);
+      assertArrayEquals(new int[] {3}, result[1]);
+    }
+    assertNotSame(results.get(0)[0], results.get(1)[0]);
+  }
+
+  @Test
+  public void testShouldSendSeparateRequestsForDifferentArguments() throws Exception {
+    server.setResponse("/events/funnel", 200, "[10,5]", DELAY_MILLIS);
+    final AtomicInteger counter = new AtomicInteger();
+    callConcurrently(new Callable<int[]>() {
+      @Override public int[] call() throws Exception {
+        int daysToComplete = counter.incrementAndGet() % 2 == 0 ? 7 : 14;
+        return client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"signup", "submit"}, daysToComplete);
+      }
+    });
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldSendNewRequestOnceEarlierCallHasFinished() throws Exception {
+    server.setResponse("/events/funnel", 200, "[10,5]");
+    client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"signup"}, 7);
+    client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"signup"}, 7);
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldGiveEveryWaiterTheSameError() throws Exception {
+    server.setResponse("/events/funnel", 500, "down", DELAY_MILLIS);
+    try {
+      callConcurrently(new Callable<int[]>() {
+        @Override public int[] call() throws Exception {
+          return client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"signup"}, 7);
+        }
+      });
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(ExecutionException e) {
+      assertTrue(e.getCause() instanceof UnexpectedResponseCodeException);
+    }
+    assertEquals(1, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldGiveCallerThatMadeTheCallACopyToo() throws Exception {
+    final int[] shared = new int[] {10, 5};
+    int[] result = new SingleFlight().execute("key", new SingleFlight.Call<int[]>() {
+      @Override int[] call() throws Exception {
+        return shared;
+      }
+
+      @Override int[] copy(final int[] result) {
+        return result.clone();
+      }
+    });
+    assertNotSame(shared, result);
+    assertArrayEquals(shared, result);
+  }
+
+  // Utils
+
+  private <T> List<T> callConcurrently(final Callable<T> call) throws Exception {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Future<T>> futures = new ArrayList<Future<T>>();
+    for(int i = 0; i < CALLERS; i++) {
+      futures.add(callers.submit(new Callable<T>() {
+        @Override public T call() throws Exception {
+          start.await();
+          return call.call();
+        }
+      }));
+    }
+    start.countDown();
+    List<T> results = new ArrayList<T>();
+    for(Future<T> future : futures) {
+      results.add(future.get());
+    }
+    return results;
+  }
+}
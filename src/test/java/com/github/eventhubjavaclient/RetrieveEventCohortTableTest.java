@@ -46,12 +46,12 @@ public class RetrieveEventCohortTableTest extends EventHubClientTestBase {
 
   @Test
   public void testShouldCallPostWithCorrectBody() throws Exception {
-    final String expectedBody = "start_date=20131225&end_date=20141225&row_event_type=rowEventType&column_event_type=columnEventType&num_days_per_row=1&num_columns=1&refk[]=rf1&refv[]=rfv1&cefk[]=cf1&cefv[]=cfv1";
+    final String expectedBody = "start_date=20131225&end_date=20141225&row_event_type=rowEventType&column_event_type=columnEventType&num_days_per_row=1&num_columns=1&refk%5B%5D=rf1&refv%5B%5D=rfv1&cefk%5B%5D=cf1&cefv%5B%5D=cfv1";
 
     new NonStrictExpectations() {{
       webResource.path(anyString); result = webResource;
       webResource.header(anyString, anyString); result = builder;
-      builder.post(ClientResponse.class, expectedBody); result = response; times = 1;
+      builder.post(ClientResponse.class, with(bodyMatching(expectedBody))); result = response; times = 1;
       response.getStatus(); result = 200;
       response.getEntity(String.class); result = "[[\n  4,\n  3,\n  2\n]]\n";
     }};
@@ -99,12 +99,12 @@ public class RetrieveEventFunnelCountsTest extends EventHubClientTestBase {
     DateTime endDate = new DateTime(2014, 12, 25, 12, 0, 0, 0);
     String[] funnelSteps = new String[]{"one"};
     int daysToCompleteFunnel = 7;
-    final String expectedBody = "start_date=20131225&end_date=20141225&funnel_steps[]=one&num_days_to_complete_funnel=7";
+    final String expectedBody = "start_date=20131225&end_date=20141225&funnel_steps%5B%5D=one&num_days_to_complete_funnel=7";
     new NonStrictExpectations() {{
       webResource.path(anyString); result = webResource;
       webResource.header(anyString, anyString); result = builder;
       builder.accept(withAny(MediaType.APPLICATION_JSON_TYPE)); result = builder;
-      builder.post(ClientResponse.class, expectedBody); result = response; times = 1;
+      builder.post(ClientResponse.class, with(bodyMatching(expectedBody))); result = response; times = 1;
       response.getStatus(); result = 200;
       response.getEntity(String.class); result = "[\n  4,\n  3,\n  2\n]\n";
     }};
@@ -0,0 +1,237 @@
+package com.github.eventhubjavaclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An in-process HTTP server standing in for EventHub in tests that need real connections. Every path answers 200 with
+ * an empty JSON array unless a response has been set for it, and every request is recorded.
+ */
+public class StubEventHubServer {
+
+  /**
+   * A request as the stub server saw it.
+   */
+  public static class RecordedRequest {
+    public final String method;
+    public final String path;
+    public final String query;
+    public final Map<String, List<String>> headers;
+    public final byte[] body;
+    public final int remotePort;
+
+    RecordedRequest(final String method, final String path, final String query, final Map<String, List<String>> headers,
+        final byte[] body, final int remotePort) {
+      this.method = method;
+      this.path = path;
+      this.query = query;
+      this.headers = headers;
+      this.body = body;
+      this.remotePort = remotePort;
+    }
+
+    public String getHeader(final String name) {
+      for(Map.Entry<String, List<String>> entry : headers.entrySet()) {
+        if(entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty())
+          return entry.getValue().get(0);
+      }
+      return null;
+    }
+
+    /**
+     * @return The first value of each field of a form encoded body.
+     */
+    public Map<String, String> getFormFields() throws IOException {
+      Map<String, String> fields = new HashMap<String, String>();
+      for(String pair : new String(body, "UTF-8").split("&")) {
+        int equals = pair.indexOf('=');
+        if(equals < 0)
+          continue;
+        String name = URLDecoder.decode(pair.substring(0, equals), "UTF-8");
+        if(!fields.containsKey(name))
+          fields.put(name, URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+      }
+      return fields;
+    }
+  }
+
+  /**
+   * Builds the body of a 200 response from the request, for responses that depend on what was asked for.
+   */
+  public interface Responder {
+    String respond(RecordedRequest request) throws Exception;
+  }
+
+  /**
+   * Thrown by a responder to fail the request with the given status.
+   */
+  public static class StatusException extends Exception {
+    final int status;
+
+    public StatusException(final int status) {
+      super("Failing with " + status);
+      this.status = status;
+    }
+  }
+
+  private static class Response {
+    final int status;
+    final String body;
+    final long delayMillis;
+
+    Response(final int status, final String body, final long delayMillis) {
+      this.status = status;
+      this.body = body;
+      this.delayMillis = delayMillis;
+    }
+  }
+
+  private static final Response DEFAULT_RESPONSE = new Response(200, "[]", 0);
+
+  static {
+    // Without TCP_NODELAY small responses wait on the client's delayed ACK, capping each connection at ~25 requests/s
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, Response> responses = new ConcurrentHashMap<String, Response>();
+  private final Map<String, Responder> responders = new ConcurrentHashMap<String, Responder>();
+  private final List<RecordedRequest> requests = new CopyOnWriteArrayList<RecordedRequest>();
+  private volatile boolean compressResponses;
+
+  public StubEventHubServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override public void handle(final HttpExchange exchange) throws IOException {
+        respond(exchange);
+      }
+    });
+    server.start();
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * @param path The request path, optionally followed by "?" and the exact raw query to respond to. Responses set for
+   *             a path and query are preferred over ones set for the path alone.
+   */
+  public void setResponse(final String path, final int status, final String body) {
+    setResponse(path, status, body, 0);
+  }
+
+  public void setResponse(final String path, final int status, final String body, final long delayMillis) {
+    responses.put(path, new Response(status, body, delayMillis));
+  }
+
+  /**
+   * @param path The request path to answer. A responder takes precedence over responses set for the path.
+   * @param responder Builds the body of each response, or fails the request by throwing, with the status of a
+   *                  {@link StatusException} or else a 500.
+   */
+  public void setResponder(final String path, final Responder responder) {
+    responders.put(path, responder);
+  }
+
+  /**
+   * @param compressResponses Whether to gzip response bodies for requests that accept gzip.
+   */
+  public void setCompressResponses(final boolean compressResponses) {
+    this.compressResponses = compressResponses;
+  }
+
+  public List<RecordedRequest> getRequests() {
+    return Collections.unmodifiableList(requests);
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void respond(final HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    byte[] requestBody = readFully(exchange.getRequestBody());
+    RecordedRequest request = new RecordedRequest(exchange.getRequestMethod(), path, exchange.getRequestURI().getRawQuery(),
+        exchange.getRequestHeaders(), requestBody, exchange.getRemoteAddress().getPort());
+    requests.add(request);
+
+    String query = exchange.getRequestURI().getRawQuery();
+    Response response = null;
+    Responder responder = responders.get(path);
+    if(responder != null) {
+      try {
+        response = new Response(200, responder.respond(request), 0);
+      } catch(StatusException e) {
+        response = new Response(e.status, e.getMessage(), 0);
+      } catch(Exception e) {
+        response = new Response(500, String.valueOf(e.getMessage()), 0);
+      }
+    }
+    if(response == null && query != null)
+      response = responses.get(path + "?" + query);
+    if(response == null)
+      response = responses.get(path);
+    if(response == null)
+      response = DEFAULT_RESPONSE;
+    if(response.delayMillis > 0) {
+      try {
+        Thread.sleep(response.delayMillis);
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    byte[] responseBody = response.body.getBytes("UTF-8");
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if(compressResponses && responseBody.length > 0 && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+      GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+      gzip.write(responseBody);
+      gzip.close();
+      responseBody = compressed.toByteArray();
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+    }
+    exchange.sendResponseHeaders(response.status, responseBody.length == 0 ? -1 : responseBody.length);
+    if(responseBody.length == 0) {
+      // An empty response is finished once its headers are sent. Closing its body stream too would tell the server so
+      // a second time, and it would start a second exchange on the connection, racing the next request for its bytes
+      exchange.close();
+      return;
+    }
+    OutputStream out = exchange.getResponseBody();
+    out.write(responseBody);
+    out.close();
+  }
+
+  private static byte[] readFully(final InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
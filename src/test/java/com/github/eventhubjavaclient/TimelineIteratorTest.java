@@ -0,0 +1,143 @@
+package com.github.eventhubjavaclient;
+
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.event.EventSerializationTestBase;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.TimelineReadException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimelineIteratorTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final String USER_NAME = "user";
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldPageThroughWholeTimeline() throws Exception {
+    setPage(0, 2, "e0", "e1");
+    setPage(2, 2, "e2", "e3");
+    setPage(4, 2, "e4");
+    TimelineIterator iterator = client.iterateUserTimeline(USER_NAME, 2);
+    List<String> eventTypes = new ArrayList<String>();
+    while(iterator.hasNext()) {
+      eventTypes.add(iterator.next().getEventType());
+    }
+    assertEquals(5, eventTypes.size());
+    for(int i = 0; i < eventTypes.size(); i++) {
+      assertEquals("e" + i, eventTypes.get(i));
+    }
+    assertEquals(3, server.getRequests().size());
+    assertEquals("external_user_id=user&offset=4&num_records=2", server.getRequests().get(2).query);
+  }
+
+  @Test
+  public void testShouldStopAtEmptyPageWhenTimelineIsMultipleOfPageSize() throws Exception {
+    setPage(0, 2, "e0", "e1");
+    setPage(2, 2);
+    TimelineIterator iterator = client.iterateUserTimeline(USER_NAME, 2);
+    assertEquals("e0", iterator.next().getEventType());
+    assertEquals("e1", iterator.next().getEventType());
+    assertFalse(iterator.hasNext());
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldReturnEventValuesFromResponse() throws Exception {
+    server.setResponse("/users/timeline", 200, EventSerializationTestBase.ALL_JSON_EVENTS);
+    List<Event> events = new ArrayList<Event>();
+    TimelineIterator iterator = client.iterateUserTimeline(USER_NAME, 10);
+    while(iterator.hasNext()) {
+      events.add(iterator.next());
+    }
+    EventSerializationTestBase.assertThatListsOfEventsHaveSameValues(
+        new ArrayList<Event>(EventSerializationTestBase.ALL_EVENTS_SORTED_IN_JSON_ORDER), events);
+  }
+
+  @Test
+  public void testShouldThrowTimelineReadExceptionWhenPageFails() throws Exception {
+    setPage(0, 2, "e0", "e1");
+    server.setResponse("/users/timeline?external_user_id=user&offset=2&num_records=2", 500, "");
+    TimelineIterator iterator = client.iterateUserTimeline(USER_NAME, 2);
+    iterator.next();
+    iterator.next();
+    try {
+      iterator.hasNext();
+      fail("Expected a TimelineReadException");
+    } catch(TimelineReadException e) {
+      assertTrue(e.getCause() instanceof UnexpectedResponseCodeException);
+    }
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void testShouldStreamTimeline() throws Exception {
+    setPage(0, 2, "e0", "e1");
+    setPage(2, 2, "e2");
+    Stream<Event> stream = client.streamUserTimeline(USER_NAME, 2);
+    try {
+      List<String> eventTypes = stream.map(new Function<Event, String>() {
+        @Override public String apply(final Event event) {
+          return event.getEventType();
+        }
+      }).collect(Collectors.<String>toList());
+      assertEquals(3, eventTypes.size());
+      assertEquals("e2", eventTypes.get(2));
+    } finally {
+      stream.close();
+    }
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionForNullUser() throws Exception {
+    client.iterateUserTimeline(null, 2);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionForZeroPageSize() throws Exception {
+    client.iterateUserTimeline(USER_NAME, 0);
+  }
+
+  // Utils
+
+  private void setPage(final int offset, final int pageSize, final String... eventTypes) {
+    StringBuilder body = new StringBuilder("[");
+    for(int i = 0; i < eventTypes.length; i++) {
+      if(i > 0)
+        body.append(',');
+      body.append("{\"event_type\":\"").append(eventTypes[i]).append("\",\"external_user_id\":\"user\",\"date\":\"20141122\",\"page\":\"")
+          .append(offset).append("\"}");
+    }
+    body.append(']');
+    server.setResponse("/users/timeline?external_user_id=" + USER_NAME + "&offset=" + offset + "&num_records=" + pageSize,
+        200, body.toString());
+  }
+}
@@ -0,0 +1,245 @@
+package com.github.eventhubjavaclient.cache;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CachingEventHubClientTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final long WAIT_MILLIS = 10000;
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private CachingEventHubClient cachingClient;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    if(cachingClient != null)
+      cachingClient.close();
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldServeRepeatedCallsFromCache() throws Exception {
+    server.setResponse("/events/types", 200, "[\"click\",\"signup\"]");
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    String[] first = cachingClient.getEventTypes();
+    first[0] = "changed";
+    assertArrayEquals(new String[] {"click", "signup"}, cachingClient.getEventTypes());
+    assertEquals(1, server.getRequests().size());
+    assertEquals(1, cachingClient.getHitCount());
+    assertEquals(1, cachingClient.getMissCount());
+  }
+
+  @Test
+  public void testShouldCacheEachArgumentsSeparately() throws Exception {
+    cachingClient = CachingEventHubClient.createCustomClient(client, new MetadataCacheConfig().setPrefixIndexMaxBytes(0));
+    cachingClient.getEventValues("signup", "experiment", "a");
+    cachingClient.getEventValues("signup", "experiment", "ab");
+    cachingClient.getEventValues("signup", "experiment");
+    cachingClient.getEventValues("signup", "experiment", "a");
+    cachingClient.getUserValues("plan", "a");
+    cachingClient.getUserValues("plan", "a");
+    assertEquals(4, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldCollapseConcurrentMissesIntoOneRequest() throws Exception {
+    server.setResponse("/events/keys", 200, "[\"experiment\"]", 300);
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    ExecutorService callers = Executors.newFixedThreadPool(8);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      List<Future<String[]>> results = new ArrayList<Future<String[]>>();
+      for(int i = 0; i < 8; i++) {
+        results.add(callers.submit(new Callable<String[]>() {
+          @Override public String[] call() throws Exception {
+            start.await();
+            return cachingClient.getEventKeys("signup");
+          }
+        }));
+      }
+      start.countDown();
+      for(Future<String[]> result : results) {
+        assertArrayEquals(new String[] {"experiment"}, result.get());
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    assertEquals(1, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldReloadAfterTtl() throws Exception {
+    cachingClient = CachingEventHubClient.createCustomClient(client,
+        new MetadataCacheConfig().setUserKeysTtlMillis(100).setRefreshAfterRatio(1));
+    cachingClient.getUserKeys();
+    cachingClient.getUserKeys();
+    assertEquals(1, server.getRequests().size());
+    Thread.sleep(150);
+    cachingClient.getUserKeys();
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldRefreshInBackgroundWhileServingCachedValue() throws Exception {
+    server.setResponse("/events/types", 200, "[\"click\"]");
+    cachingClient = CachingEventHubClient.createCustomClient(client,
+        new MetadataCacheConfig().setEventTypesTtlMillis(WAIT_MILLIS).setRefreshAfterRatio(0.01));
+    cachingClient.getEventTypes();
+    Thread.sleep(150);
+    server.setResponse("/events/types", 200, "[\"click\",\"signup\"]");
+    assertArrayEquals(new String[] {"click"}, cachingClient.getEventTypes());
+    long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+    while(cachingClient.getEventTypes().length != 2 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertArrayEquals(new String[] {"click", "signup"}, cachingClient.getEventTypes());
+    assertEquals(1, cachingClient.getMissCount());
+  }
+
+  @Test
+  public void testShouldNotCacheErrors() throws Exception {
+    server.setResponse("/events/types", 500, "down");
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    try {
+      cachingClient.getEventTypes();
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(UnexpectedResponseCodeException e) {
+      // expected
+    }
+    server.setResponse("/events/types", 200, "[\"click\"]");
+    assertArrayEquals(new String[] {"click"}, cachingClient.getEventTypes());
+  }
+
+  @Test
+  public void testShouldEvictLeastRecentlyUsedResults() throws Exception {
+    cachingClient = CachingEventHubClient.createCustomClient(client, new MetadataCacheConfig().setMaxEntriesPerEndpoint(2));
+    cachingClient.getEventKeys("a");
+    cachingClient.getEventKeys("b");
+    cachingClient.getEventKeys("a");
+    cachingClient.getEventKeys("c");
+    assertEquals(3, server.getRequests().size());
+    cachingClient.getEventKeys("a");
+    assertEquals(3, server.getRequests().size());
+    cachingClient.getEventKeys("b");
+    assertEquals(4, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldAnswerPrefixQueriesFromIndex() throws Exception {
+    server.setResponse("/events/values", 200, "[\"beta\",\"alpine\",\"al\",\"alpha\"]");
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    assertArrayEquals(new String[] {"al", "alpha", "alpine"}, cachingClient.getEventValues("signup", "experiment", "al"));
+    assertArrayEquals(new String[] {"alpha", "alpine"}, cachingClient.getEventValues("signup", "experiment", "alp"));
+    assertArrayEquals(new String[0], cachingClient.getEventValues("signup", "experiment", "gamma"));
+    assertArrayEquals(new String[] {"beta", "alpine", "al", "alpha"}, cachingClient.getEventValues("signup", "experiment"));
+    assertEquals(1, server.getRequests().size());
+    assertEquals("event_type=signup&event_key=experiment", server.getRequests().get(0).query);
+    assertTrue(cachingClient.getPrefixIndexBytes() > 0);
+  }
+
+  @Test
+  public void testShouldQueryServerPerPrefixWhenValuesExceedIndexBudget() throws Exception {
+    server.setResponse("/users/values", 200, "[\"alpha\",\"beta\",\"gamma\"]");
+    cachingClient = CachingEventHubClient.createCustomClient(client, new MetadataCacheConfig().setPrefixIndexMaxBytes(100));
+    cachingClient.getUserValues("plan", "a");
+    cachingClient.getUserValues("plan", "a");
+    cachingClient.getUserValues("plan", "b");
+    assertEquals(3, server.getRequests().size());
+    assertEquals("user_key=plan&prefix=b", server.getRequests().get(2).query);
+    assertTrue(cachingClient.getPrefixIndexBytes() < 100);
+  }
+
+  @Test
+  public void testShouldReloadInvalidatedValues() throws Exception {
+    server.setResponse("/users/values", 200, "[\"free\"]");
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    assertArrayEquals(new String[] {"free"}, cachingClient.getUserValues("plan", "f"));
+    server.setResponse("/users/values", 200, "[\"free\",\"family\"]");
+    assertArrayEquals(new String[] {"free"}, cachingClient.getUserValues("plan", "f"));
+    cachingClient.invalidateUserValues("plan");
+    assertArrayEquals(new String[] {"family", "free"}, cachingClient.getUserValues("plan", "f"));
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldNotCacheLoadOvertakenByInvalidation() throws Exception {
+    final CountDownLatch firstRequestReceived = new CountDownLatch(1);
+    final CountDownLatch releaseFirstRequest = new CountDownLatch(1);
+    final AtomicInteger requestCount = new AtomicInteger();
+    server.setResponder("/events/types", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        if(requestCount.incrementAndGet() > 1)
+          return "[\"click\",\"signup\"]";
+        firstRequestReceived.countDown();
+        releaseFirstRequest.await();
+        return "[\"click\"]";
+      }
+    });
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      Future<String[]> stale = callers.submit(new Callable<String[]>() {
+        @Override public String[] call() throws Exception {
+          return cachingClient.getEventTypes();
+        }
+      });
+      assertTrue(firstRequestReceived.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+      cachingClient.invalidateAll();
+      // Starts its own load rather than waiting on the one from before the invalidation
+      Future<String[]> fresh = callers.submit(new Callable<String[]>() {
+        @Override public String[] call() throws Exception {
+          return cachingClient.getEventTypes();
+        }
+      });
+      assertArrayEquals(new String[] {"click", "signup"}, fresh.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+      releaseFirstRequest.countDown();
+      assertArrayEquals(new String[] {"click"}, stale.get(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+    } finally {
+      releaseFirstRequest.countDown();
+      callers.shutdownNow();
+    }
+    assertArrayEquals(new String[] {"click", "signup"}, cachingClient.getEventTypes());
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionForNullEventType() throws Exception {
+    cachingClient = CachingEventHubClient.createDefaultClient(client);
+    cachingClient.getEventKeys(null);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectRefreshAfterRatioAboveOne() throws Exception {
+    new MetadataCacheConfig().setRefreshAfterRatio(1.5);
+  }
+}
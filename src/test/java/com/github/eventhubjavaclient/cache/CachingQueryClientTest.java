@@ -0,0 +1,264 @@
+package com.github.eventhubjavaclient.cache;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingQueryClientTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final DateTime START_DATE = new DateTime(2014, 11, 1, 0, 0);
+  private static final DateTime END_DATE = new DateTime(2014, 11, 22, 0, 0);
+  private static final String[] FUNNEL_STEPS = new String[] {"signup", "submit"};
+  private static final Map<String, String> NO_FILTERS = Collections.emptyMap();
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    server.setResponse("/events/funnel", 200, "[10,5]");
+    server.setResponse("/events/cohort", 200, "[[100,20],[300,4000000]]");
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldCacheClosedRangeUntilEvicted() throws Exception {
+    CachingQueryClient cachingClient = CachingQueryClient.createCustomClient(client,
+        new QueryCacheConfig().setOpenRangeTtlMillis(1));
+    int[] first = cachingClient.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    Thread.sleep(10);
+    int[] second = cachingClient.retrieveEventFunnelCounts(START_DATE, END_DATE.plusHours(3), FUNNEL_STEPS, 7);
+    assertArrayEquals(new int[] {10, 5}, second);
+    assertNotSame(first, second);
+    assertEquals(1, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldExpireOpenRangeAfterTtl() throws Exception {
+    CachingQueryClient cachingClient = CachingQueryClient.createCustomClient(client,
+        new QueryCacheConfig().setOpenRangeTtlMillis(100));
+    DateTime today = new DateTime();
+    cachingClient.retrieveEventFunnelCounts(START_DATE, today, FUNNEL_STEPS, 7);
+    cachingClient.retrieveEventFunnelCounts(START_DATE, today, FUNNEL_STEPS, 7);
+    assertEquals(1, server.getRequests().size());
+    Thread.sleep(150);
+    cachingClient.retrieveEventFunnelCounts(START_DATE, today, FUNNEL_STEPS, 7);
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldTreatFunnelAsOpenUntilItsCompletionDaysHavePassed() throws Exception {
+    CachingQueryClient cachingClient = CachingQueryClient.createCustomClient(client,
+        new QueryCacheConfig().setOpenRangeTtlMillis(1).setClosedRangeDelayMillis(0));
+    DateTime threeDaysAgo = new DateTime().minusDays(3);
+    cachingClient.retrieveEventFunnelCounts(START_DATE, threeDaysAgo, FUNNEL_STEPS, 7);
+    Thread.sleep(10);
+    cachingClient.retrieveEventFunnelCounts(START_DATE, threeDaysAgo, FUNNEL_STEPS, 7);
+    assertEquals(2, server.getRequests().size());
+    cachingClient.retrieveEventFunnelCounts(START_DATE, threeDaysAgo, FUNNEL_STEPS, 1);
+    Thread.sleep(10);
+    cachingClient.retrieveEventFunnelCounts(START_DATE, threeDaysAgo, FUNNEL_STEPS, 1);
+    assertEquals(3, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldCacheCohortTablesWithFiltersInAnyOrder() throws Exception {
+    CachingQueryClient cachingClient = CachingQueryClient.createDefaultClient(client);
+    Map<String, String> filters = new LinkedHashMap<String, String>();
+    filters.put("a", "1");
+    filters.put("b", "2");
+    Map<String, String> reversedFilters = new LinkedHashMap<String, String>();
+    reversedFilters.put("b", "2");
+    reversedFilters.put("a", "1");
+    cachingClient.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, filters, NO_FILTERS);
+    int[][] table = cachingClient.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, reversedFilters, NO_FILTERS);
+    assertArrayEquals(new int[] {300, 4000000}, table[1]);
+    assertEquals(1, server.getRequests().size());
+    cachingClient.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, NO_FILTERS, filters);
+    assertEquals(2, server.getRequests().size());
+  }
+
+  @Test
+  public void testShouldReloadClosedRangesFromPersistenceFile() throws Exception {
+    File file = new File(folder.getRoot(), "results");
+    QueryCacheConfig config = new QueryCacheConfig().setPersistenceFile(file);
+    CachingQueryClient first = CachingQueryClient.createCustomClient(client, config);
+    first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    first.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, NO_FILTERS, NO_FILTERS);
+    first.retrieveEventFunnelCounts(START_DATE, new DateTime(), FUNNEL_STEPS, 7);
+    assertTrue(first.isPersisting());
+    first.close();
+
+    CachingQueryClient second = CachingQueryClient.createCustomClient(client, config);
+    assertArrayEquals(new int[] {10, 5}, second.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    int[][] table = second.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, NO_FILTERS, NO_FILTERS);
+    assertArrayEquals(new int[] {100, 20}, table[0]);
+    assertEquals(3, server.getRequests().size());
+    // Open ranges are not persisted
+    second.retrieveEventFunnelCounts(START_DATE, new DateTime(), FUNNEL_STEPS, 7);
+    assertEquals(4, server.getRequests().size());
+    second.close();
+  }
+
+  @Test
+  public void testShouldForgetPersistedResultsAfterInvalidateAll() throws Exception {
+    File file = new File(folder.getRoot(), "results");
+    QueryCacheConfig config = new QueryCacheConfig().setPersistenceFile(file);
+    CachingQueryClient first = CachingQueryClient.createCustomClient(client, config);
+    first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    first.invalidateAll();
+    first.close();
+
+    CachingQueryClient second = CachingQueryClient.createCustomClient(client, config);
+    second.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    assertEquals(2, server.getRequests().size());
+    second.close();
+  }
+
+  @Test
+  public void testShouldNotKeepResultOfQueryRunningDuringInvalidateAll() throws Exception {
+    final CountDownLatch firstRequestReceived = new CountDownLatch(1);
+    final CountDownLatch releaseFirstRequest = new CountDownLatch(1);
+    final AtomicInteger requestCount = new AtomicInteger();
+    server.setResponder("/events/funnel", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        if(requestCount.incrementAndGet() > 1)
+          return "[12,6]";
+        firstRequestReceived.countDown();
+        releaseFirstRequest.await();
+        return "[10,5]";
+      }
+    });
+    File file = new File(folder.getRoot(), "results");
+    QueryCacheConfig config = new QueryCacheConfig().setPersistenceFile(file);
+    final CachingQueryClient first = CachingQueryClient.createCustomClient(client, config);
+    ExecutorService callers = Executors.newSingleThreadExecutor();
+    try {
+      Future<int[]> stale = callers.submit(new Callable<int[]>() {
+        @Override public int[] call() throws Exception {
+          return first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+        }
+      });
+      assertTrue(firstRequestReceived.await(10, TimeUnit.SECONDS));
+      first.invalidateAll();
+      releaseFirstRequest.countDown();
+      assertArrayEquals(new int[] {10, 5}, stale.get(10, TimeUnit.SECONDS));
+    } finally {
+      releaseFirstRequest.countDown();
+      callers.shutdownNow();
+    }
+    first.close();
+
+    CachingQueryClient second = CachingQueryClient.createCustomClient(client, config);
+    assertArrayEquals(new int[] {12, 6}, second.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    assertEquals(2, server.getRequests().size());
+    assertArrayEquals(new int[] {12, 6}, first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    assertEquals(3, server.getRequests().size());
+    second.close();
+  }
+
+  @Test
+  public void testShouldIgnoreRecordCutShortAtEndOfPersistenceFile() throws Exception {
+    File file = new File(folder.getRoot(), "results");
+    QueryCacheConfig config = new QueryCacheConfig().setPersistenceFile(file);
+    CachingQueryClient first = CachingQueryClient.createCustomClient(client, config);
+    first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    first.close();
+    FileOutputStream out = new FileOutputStream(file, true);
+    out.write(new byte[] {0, 0, 0, 100, 'f', 'u'});
+    out.close();
+
+    CachingQueryClient second = CachingQueryClient.createCustomClient(client, config);
+    assertArrayEquals(new int[] {10, 5}, second.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    assertEquals(1, server.getRequests().size());
+    second.close();
+  }
+
+  @Test
+  public void testShouldKeepClosedAndOpenRangesWithinOneBudget() throws Exception {
+    CachingQueryClient cachingClient = CachingQueryClient.createCustomClient(client,
+        new QueryCacheConfig().setMaxCachedBytes(1000));
+    DateTime today = new DateTime();
+    for(int days = 1; days <= 20; days++) {
+      cachingClient.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, days);
+      cachingClient.retrieveEventFunnelCounts(START_DATE, today, FUNNEL_STEPS, days);
+    }
+    assertTrue("Cached " + cachingClient.getCachedBytes() + " bytes", cachingClient.getCachedBytes() <= 1000);
+  }
+
+  @Test
+  public void testShouldDropDamagedRecordFromPersistenceFile() throws Exception {
+    File file = new File(folder.getRoot(), "results");
+    QueryCacheConfig config = new QueryCacheConfig().setPersistenceFile(file);
+    CachingQueryClient first = CachingQueryClient.createCustomClient(client, config);
+    first.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7);
+    first.close();
+    RandomAccessFile damaged = new RandomAccessFile(file, "rw");
+    // The first byte of the result, leaving every length intact
+    long resultOffset = 4 + damaged.readInt() + 4;
+    damaged.seek(resultOffset);
+    int b = damaged.read();
+    damaged.seek(resultOffset);
+    damaged.write(b ^ 0xFF);
+    damaged.close();
+
+    CachingQueryClient second = CachingQueryClient.createCustomClient(client, config);
+    assertArrayEquals(new int[] {10, 5}, second.retrieveEventFunnelCounts(START_DATE, END_DATE, FUNNEL_STEPS, 7));
+    assertEquals(2, server.getRequests().size());
+    second.close();
+  }
+
+  @Test
+  public void testCodecShouldRoundTripTables() throws Exception {
+    int[][] table = new int[][] {{0, 1, 127, 128, 300000, Integer.MAX_VALUE, -1, Integer.MIN_VALUE}, null, {}};
+    byte[] encoded = QueryResultCodec.encode(table);
+    int[][] decoded = QueryResultCodec.decodeTable(encoded);
+    assertEquals(3, decoded.length);
+    assertTrue(Arrays.equals(table[0], decoded[0]));
+    assertNull(decoded[1]);
+    assertEquals(0, decoded[2].length);
+    assertEquals(5, QueryResultCodec.encode(new int[] {10, 5, 1}).length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectNegativeClosedRangeDelay() throws Exception {
+    new QueryCacheConfig().setClosedRangeDelayMillis(-1);
+  }
+}
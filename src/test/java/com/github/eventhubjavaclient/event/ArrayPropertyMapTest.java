@@ -0,0 +1,86 @@
+package com.github.eventhubjavaclient.event;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArrayPropertyMapTest {
+
+  @Test
+  public void testShouldBehaveLikeHashMap() throws Exception {
+    Map<String, String> expected = new HashMap<String, String>();
+    Map<String, String> actual = new ArrayPropertyMap(0);
+    for(int i = 0; i < 20; i++) {
+      assertEquals(expected.put("key" + i, "value" + i), actual.put("key" + i, "value" + i));
+    }
+    assertEquals(expected.put("key3", "replaced"), actual.put("key3", "replaced"));
+    assertEquals(expected.remove("key7"), actual.remove("key7"));
+    assertEquals(expected.remove("missing"), actual.remove("missing"));
+    assertEquals(expected, actual);
+    assertEquals(actual, expected);
+    assertEquals(expected.hashCode(), actual.hashCode());
+    assertEquals(19, actual.size());
+    assertEquals("replaced", actual.get("key3"));
+    assertNull(actual.get("key7"));
+  }
+
+  @Test
+  public void testShouldKeepInsertionOrderAndAllowNulls() throws Exception {
+    Map<String, String> map = new ArrayPropertyMap();
+    map.put("b", "1");
+    map.put(null, "2");
+    map.put("a", null);
+    assertEquals(Arrays.asList("b", null, "a"), new ArrayList<String>(map.keySet()));
+    assertTrue(map.containsKey(null));
+    assertTrue(map.containsKey("a"));
+    assertNull(map.get("a"));
+    assertEquals("2", map.get(null));
+  }
+
+  @Test
+  public void testIteratorShouldRemoveAndSetValues() throws Exception {
+    Map<String, String> map = new ArrayPropertyMap();
+    map.put("a", "1");
+    map.put("b", "2");
+    map.put("c", "3");
+    Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+    while(iterator.hasNext()) {
+      Map.Entry<String, String> entry = iterator.next();
+      if("b".equals(entry.getKey()))
+        iterator.remove();
+      else
+        entry.setValue(entry.getValue() + "!");
+    }
+    assertEquals(2, map.size());
+    assertEquals("1!", map.get("a"));
+    assertEquals("3!", map.get("c"));
+    assertFalse(map.containsKey("b"));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testShouldSurviveJavaSerialization() throws Exception {
+    Map<String, String> properties = new ArrayPropertyMap();
+    properties.put("experiment", "signup_v1");
+    Event event = new Event("signup", "user", null, properties);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    out.writeObject(event);
+    out.close();
+    Event copy = (Event) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    assertEquals(event, copy);
+  }
+}
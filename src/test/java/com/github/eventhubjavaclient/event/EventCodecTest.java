@@ -0,0 +1,143 @@
+package com.github.eventhubjavaclient.event;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EventCodecTest extends EventSerializationTestBase {
+
+  @Test
+  public void testDecodedEventsShouldProduceSameJson() throws Exception {
+    EventCodec codec = new EventCodec();
+    for(Event event : ALL_EVENTS_SORTED_IN_JSON_ORDER) {
+      assertEquals(gson.toJson(event, Event.class), gson.toJson(codec.decode(codec.encode(event)), Event.class));
+    }
+  }
+
+  @Test
+  public void testShouldKeepOnlyTheDayOfTheDateAsJsonDoes() throws Exception {
+    Event event = new Event("signup", "user", new DateTime(1969, 12, 31, 23, 59, 59), null);
+    EventCodec codec = new EventCodec();
+    Event decoded = codec.decode(codec.encode(event));
+    assertEquals(gson.toJson(event, Event.class), gson.toJson(decoded, Event.class));
+    assertEquals(new DateTime(1969, 12, 31, 0, 0), decoded.getDate());
+  }
+
+  @Test
+  public void testShouldKeepPropertyOrderNullValuesAndNonAsciiStrings() throws Exception {
+    Map<String, String> properties = new LinkedHashMap<String, String>();
+    properties.put("z", "last key first");
+    properties.put("été", "☃ 😀");
+    properties.put("empty", "");
+    properties.put("nothing", null);
+    Event event = new Event("type", "user", null, properties);
+    EventCodec codec = new EventCodec();
+    Event decoded = codec.decode(codec.encode(event));
+    assertEquals(event, decoded);
+    assertEquals(new ArrayList<String>(properties.keySet()), new ArrayList<String>(decoded.getPropertyKeys()));
+  }
+
+  @Test
+  public void testShouldWriteTypesAndKeysOnlyOnceThenRefer() throws Exception {
+    EventCodec codec = new EventCodec();
+    int first = codec.encode(EVENT_2_PROPERTIES).length;
+    int second = codec.encode(EVENT_2_PROPERTIES).length;
+    assertEquals(3, codec.getDictionarySize());
+    // Each string and its one byte length
+    assertEquals("signup".length() + "experiment".length() + "treatment".length() + 3, first - second);
+  }
+
+  @Test
+  public void testShouldDefineStringsAgainAfterTruncatingDictionary() throws Exception {
+    EventCodec codec = new EventCodec();
+    codec.encode(new Event("signup", "user", null));
+    codec.encode(EVENT_2_PROPERTIES);
+    codec.truncateDictionary(1);
+    assertEquals(1, codec.getDictionarySize());
+    // A fresh decoder that only saw the first event still learns the keys from the next encoding
+    EventCodec decoder = new EventCodec();
+    decoder.decode(new EventCodec().encode(new Event("signup", "user", null)));
+    assertEquals(EVENT_2_PROPERTIES, decoder.decode(codec.encode(EVENT_2_PROPERTIES)));
+  }
+
+  @Test
+  public void testFreshCodecShouldDecodeEventsInTheOrderTheyWereEncoded() throws Exception {
+    EventCodec encoder = new EventCodec();
+    List<byte[]> encoded = new ArrayList<byte[]>();
+    for(int i = 0; i < 3; i++) {
+      for(Event event : ALL_EVENTS_SORTED_IN_JSON_ORDER) {
+        encoded.add(encoder.encode(event));
+      }
+    }
+    EventCodec decoder = new EventCodec();
+    for(int i = 0; i < encoded.size(); i++) {
+      Event expected = ALL_EVENTS_SORTED_IN_JSON_ORDER.get(i % ALL_EVENTS_SORTED_IN_JSON_ORDER.size());
+      assertThatEventsHaveSameValues(expected, decoder.decode(encoded.get(i)));
+    }
+    // Having learnt the dictionary, earlier events can be decoded again
+    assertThatEventsHaveSameValues(ALL_EVENTS_SORTED_IN_JSON_ORDER.get(0), decoder.decode(encoded.get(0)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForUndefinedDictionaryId() throws Exception {
+    EventCodec encoder = new EventCodec();
+    encoder.encode(EVENT_1_PROPERTY);
+    byte[] reference = encoder.encode(EVENT_1_PROPERTY);
+    new EventCodec().decode(reference);
+  }
+
+  @Test
+  public void testShouldWriteStringsInFullOnceDictionaryIsFull() throws Exception {
+    EventCodec encoder = new EventCodec(1);
+    byte[] first = encoder.encode(EVENT_2_PROPERTIES);
+    byte[] second = encoder.encode(EVENT_2_PROPERTIES);
+    assertEquals(1, encoder.getDictionarySize());
+    assertEquals("signup".length() + 1, first.length - second.length);
+    EventCodec decoder = new EventCodec(1);
+    assertEquals(EVENT_2_PROPERTIES, decoder.decode(first));
+    assertEquals(EVENT_2_PROPERTIES, decoder.decode(second));
+  }
+
+  @Test
+  public void testShouldDecodeFromBufferPosition() throws Exception {
+    EventCodec codec = new EventCodec();
+    byte[] first = codec.encode(EVENT_1_PROPERTY);
+    byte[] second = codec.encode(EVENT_NO_DATE);
+    ByteBuffer buffer = ByteBuffer.allocate(first.length + second.length);
+    buffer.put(first).put(second).flip();
+    assertEquals(EVENT_1_PROPERTY, codec.decode(buffer));
+    assertEquals(EVENT_NO_DATE, codec.decode(buffer));
+    assertEquals(0, buffer.remaining());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForTruncatedEvent() throws Exception {
+    EventCodec codec = new EventCodec();
+    byte[] encoded = codec.encode(EVENT_2_PROPERTIES);
+    new EventCodec().decode(Arrays.copyOf(encoded, encoded.length - 3));
+  }
+
+  @Test
+  public void testShouldBeMuchSmallerThanJavaSerialization() throws Exception {
+    EventCodec codec = new EventCodec();
+    codec.encode(EVENT_2_PROPERTIES);
+    ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(serialized);
+    out.writeObject(EVENT_2_PROPERTIES);
+    out.close();
+    int encodedLength = codec.encode(EVENT_2_PROPERTIES).length;
+    assertTrue(encodedLength + " bytes encoded against " + serialized.size() + " serialized",
+        encodedLength * 10 < serialized.size());
+  }
+}
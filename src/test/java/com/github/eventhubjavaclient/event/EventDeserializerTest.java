@@ -1,5 +1,7 @@
 package com.github.eventhubjavaclient.event;
 
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
 import org.junit.Test;
 
@@ -10,6 +12,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class EventDeserializerTest extends EventSerializationTestBase {
 
@@ -54,8 +58,50 @@ public class EventDeserializerTest extends EventSerializationTestBase {
     assertEquals(expectedAllEventsSorted,actualAllEventsSorted);
   }
 
+  @Test
+  public void testInterningDeserializerShouldProduceEqualEvents() throws Exception {
+    Type collectionType = new TypeToken<Collection<Event>>(){}.getType();
+    Collection<Event> actualAllUserEvents = createInterningGson(new StringInterner()).fromJson(ALL_JSON_EVENTS,collectionType);
+    List<Event> actualAllEventsSorted = new ArrayList<Event>(actualAllUserEvents);
+    Collections.sort(actualAllEventsSorted,eventComparator);
+    List<Event> expectedAllEventsSorted = new ArrayList<Event>(ALL_EVENTS_SORTED_IN_JSON_ORDER);
+    Collections.sort(expectedAllEventsSorted,eventComparator);
+    assertEquals(expectedAllEventsSorted,actualAllEventsSorted);
+  }
+
+  @Test
+  public void testInterningDeserializerShouldShareEventTypesAndPropertyKeysBetweenEvents() throws Exception {
+    Gson interningGson = createInterningGson(new StringInterner());
+    Event first = interningGson.fromJson(JSON_EVENT_2_PROPERTIES, Event.class);
+    Event second = interningGson.fromJson(JSON_EVENT_2_PROPERTIES, Event.class);
+    assertSame(first.getEventType(), second.getEventType());
+    List<String> firstKeys = new ArrayList<String>(first.getPropertyKeys());
+    List<String> secondKeys = new ArrayList<String>(second.getPropertyKeys());
+    for(int i = 0; i < firstKeys.size(); i++) {
+      assertSame(firstKeys.get(i), secondKeys.get(i));
+    }
+    assertTrue(first.getUnmodifiablePropertyMap().equals(EVENT_2_PROPERTIES.getUnmodifiablePropertyMap()));
+  }
+
+  @Test
+  public void testStringInternerShouldStayWithinItsCapacity() throws Exception {
+    StringInterner interner = new StringInterner(3);
+    assertEquals(4, interner.getCapacity());
+    for(int i = 0; i < 100; i++) {
+      assertEquals("key" + i, interner.intern("key" + i));
+    }
+    String cached = interner.intern(new String("signup"));
+    assertSame(cached, interner.intern(new String("signup")));
+  }
+
   // Util
 
+  private static Gson createInterningGson(final StringInterner interner) {
+    GsonBuilder gsonBuilder = new GsonBuilder();
+    gsonBuilder.registerTypeAdapter(Event.class, new EventDeserializer(interner));
+    return gsonBuilder.create();
+  }
+
   private void testJsonIsConvertedToEvent(final Event expectedEvent, final String jsonToConvert) {
     Event actualEvent = gson.fromJson(jsonToConvert,Event.class);
     assertThatEventsHaveSameValues(expectedEvent, actualEvent);
@@ -1,9 +1,11 @@
 package com.github.eventhubjavaclient.event;
 
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 import net.javacrumbs.jsonunit.core.Option;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.util.Collection;
 
@@ -50,6 +52,15 @@ public class EventSerializerTest extends EventSerializationTestBase {
     assertJsonEquals(expectedJson,actualJson,when(Option.IGNORING_ARRAY_ORDER));
   }
 
+  @Test
+  public void testWriteEventProducesSameJsonAsSerialize() throws Exception {
+    for(Event event : ALL_EVENTS_SORTED_IN_JSON_ORDER) {
+      StringWriter stringWriter = new StringWriter();
+      EventSerializer.writeEvent(new JsonWriter(stringWriter), event);
+      assertEquals(gson.toJson(event, Event.class), stringWriter.toString());
+    }
+  }
+
   // Util
 
   private void testEventIsConvertedToJson(final String expectedJson, final Event eventToConvert) {
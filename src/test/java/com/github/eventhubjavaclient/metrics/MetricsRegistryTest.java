@@ -0,0 +1,149 @@
+package com.github.eventhubjavaclient.metrics;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetricsRegistryTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldRecordRequestsPerEndpoint() throws Exception {
+    server.setResponse("/events/types", 200, "[\"signup\",\"submit\"]", 20);
+    server.setResponse("/users/keys", 200, "[\"name\"]");
+    client.getEventTypes();
+    client.getEventTypes();
+    assertArrayEquals(new String[] {"name"}, client.getUserKeys());
+
+    EndpointMetrics types = client.getMetrics().getEndpoint("/events/types");
+    assertEquals(2, types.getRequestCount());
+    assertEquals(2, types.getStatusCount(200));
+    assertEquals(2, types.getLatency().getCount());
+    assertTrue(types.getMedianLatencyMicros() >= 20000);
+    assertEquals(2 * "[\"signup\",\"submit\"]".length(), types.getBytesReceived());
+    assertEquals(0, types.getInFlightCount());
+    assertEquals(1, client.getMetrics().getEndpoint("/users/keys").getRequestCount());
+    assertEquals(2, client.getMetrics().getEndpoints().size());
+  }
+
+  @Test
+  public void testShouldCountErrorsAndBytesSent() throws Exception {
+    server.setResponse("/events/types", 500, "down");
+    server.setResponse("/events/keys", 200, "not json");
+    server.setResponse("/users/find", 200, "[{\"external_user_id\":\"tom\"}]");
+    try {
+      client.getEventTypes();
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(UnexpectedResponseCodeException e) {
+      // Expected
+    }
+    try {
+      client.getEventKeys("signup");
+      fail("Expected a BadlyFormedResponseBodyException");
+    } catch(BadlyFormedResponseBodyException e) {
+      // Expected
+    }
+    client.getUsers(Collections.singletonMap("name", "tom"));
+
+    EndpointMetrics types = client.getMetrics().getEndpoint("/events/types");
+    assertEquals(1, types.getUnexpectedResponseCodeCount());
+    assertEquals(1, types.getStatusCount(500));
+    assertEquals(0, types.getInFlightCount());
+    assertEquals(1, client.getMetrics().getEndpoint("/events/keys").getBadlyFormedResponseCount());
+    EndpointMetrics find = client.getMetrics().getEndpoint("/users/find");
+    assertEquals(server.getRequests().get(2).body.length, find.getBytesSent());
+    assertEquals(0, find.getBadlyFormedResponseCount());
+  }
+
+  @Test
+  public void testShouldPublishMetricsThroughJmx() throws Exception {
+    server.setResponse("/events/types", 200, "[]");
+    client.getMetrics().publishToJmx("test");
+    client.getEventTypes();
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("com.github.eventhubjavaclient:type=EventHubClient,name=\"test\",endpoint=\"/events/types\"");
+    assertEquals(1L, mBeanServer.getAttribute(name, "RequestCount"));
+    client.getMetrics().close();
+    assertFalse(mBeanServer.isRegistered(name));
+  }
+
+  @Test
+  public void testShouldCallReporterPeriodically() throws Exception {
+    server.setResponse("/events/types", 200, "[]");
+    client.getEventTypes();
+    final CountDownLatch reports = new CountDownLatch(2);
+    client.getMetrics().startReporter(new MetricsReporter() {
+      @Override public void report(final Collection<EndpointMetrics> endpoints) {
+        if(endpoints.size() == 1 && endpoints.iterator().next().getRequestCount() == 1)
+          reports.countDown();
+        throw new IllegalStateException("A failing reporter is still called again");
+      }
+    }, 10);
+    assertTrue(reports.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testHistogramShouldReportPercentilesWithinBucketPrecision() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileMicros(50));
+    for(int i = 1; i <= 1000; i++) {
+      histogram.record(i * 100);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(50050, histogram.getMeanMicros(), 0.001);
+    assertEquals(100000, histogram.getMaxMicros());
+    assertWithin(50000, histogram.getPercentileMicros(50));
+    assertWithin(99000, histogram.getPercentileMicros(99));
+    assertEquals(100000, histogram.getPercentileMicros(100));
+  }
+
+  @Test
+  public void testHistogramBucketsShouldCoverEveryValue() throws Exception {
+    for(long value : new long[] {0, 1, 31, 32, 33, 63, 64, 1000, 123456789, (1L << 36) - 1}) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+      assertTrue(index == 0 || value > LatencyHistogram.bucketUpperBound(index - 1));
+    }
+  }
+
+  // Utils
+
+  private static void assertWithin(final long expected, final long actual) {
+    assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32);
+  }
+}
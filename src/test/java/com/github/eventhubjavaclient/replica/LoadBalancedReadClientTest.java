@@ -0,0 +1,265 @@
+package com.github.eventhubjavaclient.replica;
+
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LoadBalancedReadClientTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final int NUMBER_OF_REPLICAS = 3;
+  private static final String EVENT_TYPES = "[\"signup\",\"submit\"]";
+
+  private final List<StubEventHubServer> servers = new ArrayList<StubEventHubServer>();
+  private final List<String> baseUrls = new ArrayList<String>();
+  private LoadBalancedReadClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    for(int i = 0; i < NUMBER_OF_REPLICAS; i++) {
+      StubEventHubServer server = new StubEventHubServer();
+      server.setResponse("/events/types", 200, EVENT_TYPES);
+      server.setResponse("/varz", 200, "ok");
+      servers.add(server);
+      baseUrls.add(server.getBaseUrl());
+    }
+  }
+
+  @After
+  public void tearDown() {
+    if(client != null)
+      client.close();
+    for(StubEventHubServer server : servers) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testShouldSpreadReadsEvenly() throws Exception {
+    client = createClient(new ReplicaConfig().setSelection(ReplicaSelection.LEAST_OUTSTANDING).setProbeIntervalMillis(0));
+    for(int i = 0; i < 300; i++) {
+      assertArrayEquals(new String[] {"signup", "submit"}, client.getEventTypes());
+    }
+    for(StubEventHubServer server : servers) {
+      int reads = server.getRequests().size();
+      assertTrue("Replica got " + reads, reads > 60 && reads < 140);
+    }
+  }
+
+  @Test
+  public void testShouldPassOverSlowReplicaWithPeakEwma() throws Exception {
+    servers.get(0).setResponse("/events/types", 200, EVENT_TYPES, 200);
+    client = createClient(new ReplicaConfig().setSelection(ReplicaSelection.PEAK_EWMA).setProbeIntervalMillis(0));
+    for(int i = 0; i < 60; i++) {
+      client.getEventTypes();
+    }
+    int slowReads = servers.get(0).getRequests().size();
+    assertTrue("Slow replica got " + slowReads, slowReads <= 3);
+  }
+
+  @Test
+  public void testShouldPassOverReplicaWithReadsInFlight() throws Exception {
+    servers.get(0).setResponse("/events/types", 200, EVENT_TYPES, 300);
+    client = createClient(new ReplicaConfig().setSelection(ReplicaSelection.LEAST_OUTSTANDING).setProbeIntervalMillis(0));
+    ExecutorService callers = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String[]>> futures = new ArrayList<Future<String[]>>();
+      for(int i = 0; i < 40; i++) {
+        futures.add(callers.submit(new Callable<String[]>() {
+          @Override public String[] call() throws Exception {
+            return client.getEventTypes();
+          }
+        }));
+      }
+      for(Future<String[]> future : futures) {
+        future.get();
+      }
+    } finally {
+      callers.shutdownNow();
+    }
+    int slowReads = servers.get(0).getRequests().size();
+    assertTrue("Slow replica got " + slowReads, slowReads < 10);
+  }
+
+  @Test
+  public void testShouldEjectReplicaWithTooManyErrors() throws Exception {
+    // Reads in flight rather than latency, so the failing replica keeps its share of reads until ejected
+    servers.get(0).setResponse("/events/types", 500, "down");
+    client = createClient(new ReplicaConfig().setSelection(ReplicaSelection.LEAST_OUTSTANDING).setProbeIntervalMillis(0).setErrorWindow(5).setEjectionMillis(60000));
+    int failures = 0;
+    for(int i = 0; i < 100; i++) {
+      try {
+        client.getEventTypes();
+      } catch(UnexpectedResponseCodeException e) {
+        failures++;
+      }
+    }
+    assertEquals(5, failures);
+    assertEquals(5, servers.get(0).getRequests().size());
+    assertEquals(Arrays.asList(baseUrls.get(1), baseUrls.get(2)), client.getHealthyReplicas());
+  }
+
+  @Test
+  public void testShouldNotEjectReplicaForClientErrors() throws Exception {
+    servers.get(0).setResponse("/events/types", 404, "");
+    client = createClient(new ReplicaConfig().setSelection(ReplicaSelection.LEAST_OUTSTANDING).setProbeIntervalMillis(0).setErrorWindow(5));
+    for(int i = 0; i < 60; i++) {
+      try {
+        client.getEventTypes();
+      } catch(UnexpectedResponseCodeException e) {
+        // Expected from the first replica
+      }
+    }
+    assertTrue(servers.get(0).getRequests().size() > 5);
+    assertEquals(baseUrls, client.getHealthyReplicas());
+  }
+
+  @Test
+  public void testShouldSkipReplicaUntilItsProbeSucceeds() throws Exception {
+    servers.get(0).setResponse("/varz", 500, "down");
+    client = createClient(new ReplicaConfig().setProbeIntervalMillis(20));
+    waitForHealthyReplicas(NUMBER_OF_REPLICAS - 1);
+    for(int i = 0; i < 30; i++) {
+      client.getEventTypes();
+    }
+    assertEquals(0, countReads(servers.get(0)));
+
+    servers.get(0).setResponse("/varz", 200, "ok");
+    waitForHealthyReplicas(NUMBER_OF_REPLICAS);
+  }
+
+  @Test
+  public void testShouldStillReadWhenEveryReplicaIsUnhealthy() throws Exception {
+    for(StubEventHubServer server : servers) {
+      server.setResponse("/varz", 500, "down");
+    }
+    client = createClient(new ReplicaConfig().setProbeIntervalMillis(20));
+    waitForHealthyReplicas(0);
+    assertArrayEquals(new String[] {"signup", "submit"}, client.getEventTypes());
+  }
+
+  @Test
+  public void testShouldAnswerFromHedgeWhenReadIsSlow() throws Exception {
+    final AtomicBoolean slowNext = new AtomicBoolean();
+    setSlowResponder(slowNext, 2000);
+    client = createClient(new ReplicaConfig().setProbeIntervalMillis(0).setHedgePercentile(90)
+        .setHedgeBudgetPercent(100).setHedgeMinSamples(10));
+    for(int i = 0; i < 20; i++) {
+      client.getEventTypes();
+    }
+    slowNext.set(true);
+    long start = System.currentTimeMillis();
+    assertArrayEquals(new String[] {"signup", "submit"}, client.getEventTypes());
+    long took = System.currentTimeMillis() - start;
+    assertTrue("Hedged read took " + took + "ms", took < 1000);
+    assertFalse(slowNext.get());
+  }
+
+  @Test
+  public void testShouldKeepHedgesWithinBudget() throws Exception {
+    final AtomicBoolean slow = new AtomicBoolean();
+    for(StubEventHubServer server : servers) {
+      server.setResponder("/events/types", new StubEventHubServer.Responder() {
+        @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+          if(slow.get())
+            Thread.sleep(30);
+          return EVENT_TYPES;
+        }
+      });
+    }
+    client = createClient(new ReplicaConfig().setProbeIntervalMillis(0).setHedgePercentile(50)
+        .setHedgeBudgetPercent(10).setHedgeMinSamples(10));
+    for(int i = 0; i < 20; i++) {
+      client.getEventTypes();
+    }
+    int warmUpRequests = countAllReads();
+    slow.set(true);
+    for(int i = 0; i < 50; i++) {
+      client.getEventTypes();
+    }
+    // 10% of the 50 slow reads, plus whatever was saved up in warm up
+    int slowRequests = countAllReads() - warmUpRequests;
+    assertTrue("Slow reads sent " + slowRequests + " requests", slowRequests <= 50 + 5 + 2 + 1);
+  }
+
+  @Test
+  public void testShouldNotHedgeByDefault() throws Exception {
+    final AtomicBoolean slowNext = new AtomicBoolean();
+    setSlowResponder(slowNext, 200);
+    client = createClient(new ReplicaConfig().setProbeIntervalMillis(0));
+    for(int i = 0; i < 100; i++) {
+      client.getEventTypes();
+    }
+    slowNext.set(true);
+    client.getEventTypes();
+    assertEquals(101, countAllReads());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectMaxErrorRateAboveOne() throws Exception {
+    new ReplicaConfig().setMaxErrorRate(1.5);
+  }
+
+  // Utils
+
+  private LoadBalancedReadClient createClient(final ReplicaConfig config) {
+    return LoadBalancedReadClient.createCustomClient(baseUrls, CONNECTION_TIMEOUT, READ_TIMEOUT, config);
+  }
+
+  /**
+   * Makes the next request on any replica after the flag is set take the given time.
+   */
+  private void setSlowResponder(final AtomicBoolean slowNext, final long delayMillis) {
+    for(StubEventHubServer server : servers) {
+      server.setResponder("/events/types", new StubEventHubServer.Responder() {
+        @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+          if(slowNext.compareAndSet(true, false))
+            Thread.sleep(delayMillis);
+          return EVENT_TYPES;
+        }
+      });
+    }
+  }
+
+  private int countAllReads() {
+    int reads = 0;
+    for(StubEventHubServer server : servers) {
+      reads += countReads(server);
+    }
+    return reads;
+  }
+
+  private void waitForHealthyReplicas(final int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while(client.getHealthyReplicas().size() != count) {
+      assertTrue("Expected " + count + " healthy replicas", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  private static int countReads(final StubEventHubServer server) {
+    int reads = 0;
+    for(StubEventHubServer.RecordedRequest request : server.getRequests()) {
+      if(request.path.equals("/events/types"))
+        reads++;
+    }
+    return reads;
+  }
+}
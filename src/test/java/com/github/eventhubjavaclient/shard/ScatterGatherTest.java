@@ -0,0 +1,120 @@
+package com.github.eventhubjavaclient.shard;
+
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScatterGatherTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final long SHARD_TIMEOUT_MILLIS = 500;
+  private static final DateTime START_DATE = new DateTime(2014, 11, 1, 0, 0);
+  private static final DateTime END_DATE = new DateTime(2014, 11, 22, 0, 0);
+  private static final Map<String, String> NO_FILTERS = Collections.emptyMap();
+
+  private final List<StubEventHubServer> servers = new ArrayList<StubEventHubServer>();
+  private final List<String> baseUrls = new ArrayList<String>();
+  private ShardedEventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    for(int i = 0; i < 3; i++) {
+      StubEventHubServer server = new StubEventHubServer();
+      servers.add(server);
+      baseUrls.add(server.getBaseUrl());
+    }
+    client = ShardedEventHubClient.createCustomClient(baseUrls, CONNECTION_TIMEOUT, READ_TIMEOUT,
+        new ShardingConfig().setShardTimeoutMillis(SHARD_TIMEOUT_MILLIS));
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    for(StubEventHubServer server : servers) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testShouldSumFunnelCountsOfEveryShard() throws Exception {
+    servers.get(0).setResponse("/events/funnel", 200, "[10,5,1]");
+    servers.get(1).setResponse("/events/funnel", 200, "[20,7,0]");
+    servers.get(2).setResponse("/events/funnel", 200, "[3,0,0]");
+    ShardedResult<int[]> result = client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"a", "b", "c"}, 7);
+    assertTrue(result.isComplete());
+    assertArrayEquals(new int[] {33, 12, 1}, result.getValue());
+    assertEquals(baseUrls, result.getSucceededShards());
+  }
+
+  @Test
+  public void testShouldSumCohortTablesCellByCell() throws Exception {
+    servers.get(0).setResponse("/events/cohort", 200, "[[100,20],[300,4]]");
+    servers.get(1).setResponse("/events/cohort", 200, "[[1,2],[3]]");
+    servers.get(2).setResponse("/events/cohort", 200, "[[1,1]]");
+    int[][] table = client.retrieveEventCohortTable(START_DATE, END_DATE, "signup", "submit", 1, 7, NO_FILTERS, NO_FILTERS)
+                          .getValue();
+    assertEquals(2, table.length);
+    assertArrayEquals(new int[] {102, 23}, table[0]);
+    assertArrayEquals(new int[] {303, 4}, table[1]);
+  }
+
+  @Test
+  public void testShouldUnionValuesWithoutRepeats() throws Exception {
+    servers.get(0).setResponse("/events/types", 200, "[\"signup\",\"submit\"]");
+    servers.get(1).setResponse("/events/types", 200, "[\"submit\",\"click\"]");
+    servers.get(2).setResponse("/events/types", 200, "[]");
+    servers.get(0).setResponse("/users/find", 200, "[{\"external_user_id\":\"a\"}]");
+    servers.get(1).setResponse("/users/find", 200, "[{\"external_user_id\":\"b\"}]");
+    servers.get(2).setResponse("/users/find", 200, "[]");
+    assertArrayEquals(new String[] {"signup", "submit", "click"}, client.getEventTypes().getValue());
+    assertEquals(Arrays.asList("a", "b"), client.getUsers(Collections.singletonMap("plan", "free")).getValue());
+  }
+
+  @Test
+  public void testShouldReportFailedAndSlowShards() throws Exception {
+    servers.get(0).setResponse("/events/funnel", 200, "[10,5]");
+    servers.get(1).setResponse("/events/funnel", 500, "down");
+    servers.get(2).setResponse("/events/funnel", 200, "[1,1]", SHARD_TIMEOUT_MILLIS * 4);
+    long start = System.currentTimeMillis();
+    ShardedResult<int[]> result = client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"a", "b"}, 7);
+    assertTrue(System.currentTimeMillis() - start < SHARD_TIMEOUT_MILLIS * 3);
+    assertFalse(result.isComplete());
+    assertArrayEquals(new int[] {10, 5}, result.getValue());
+    assertEquals(Collections.singletonList(baseUrls.get(0)), result.getSucceededShards());
+    assertTrue(result.getFailures().get(baseUrls.get(1)) instanceof UnexpectedResponseCodeException);
+    assertTrue(result.getFailures().get(baseUrls.get(2)) instanceof TimeoutException);
+  }
+
+  @Test
+  public void testShouldGiveNoValueWhenEveryShardFails() throws Exception {
+    for(StubEventHubServer server : servers) {
+      server.setResponse("/events/types", 503, "down");
+    }
+    ShardedResult<String[]> result = client.getEventTypes();
+    assertNull(result.getValue());
+    assertEquals(3, result.getFailures().size());
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputRatherThanReportIt() throws Exception {
+    client.getEventKeys(null);
+  }
+}
@@ -0,0 +1,206 @@
+package com.github.eventhubjavaclient.shard;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedEventHubClientTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final int NUMBER_OF_SHARDS = 3;
+
+  private final List<StubEventHubServer> servers = new ArrayList<StubEventHubServer>();
+  private final List<String> baseUrls = new ArrayList<String>();
+  private ShardedEventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    for(int i = 0; i < NUMBER_OF_SHARDS; i++) {
+      StubEventHubServer server = new StubEventHubServer();
+      server.setResponse("/events/track", 200, "");
+      server.setResponse("/events/batch_track", 200, "");
+      server.setResponse("/users/add_or_update", 200, "");
+      servers.add(server);
+      baseUrls.add(server.getBaseUrl());
+    }
+    client = ShardedEventHubClient.createDefaultClient(baseUrls, CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    for(StubEventHubServer server : servers) {
+      server.stop();
+    }
+  }
+
+  @Test
+  public void testShouldSendEachUsersCallsToTheSameShard() throws Exception {
+    for(int i = 0; i < 30; i++) {
+      client.trackEvent(new Event("click", "user" + i, new HashMap<String, String>()));
+      client.addOrUpdateUser("user" + i, Collections.singletonMap("plan", "free"));
+    }
+    int total = 0;
+    for(int shard = 0; shard < NUMBER_OF_SHARDS; shard++) {
+      StubEventHubServer server = servers.get(shard);
+      total += server.getRequests().size();
+      assertTrue("Every shard should get some users", server.getRequests().size() > 0);
+      for(StubEventHubServer.RecordedRequest request : server.getRequests()) {
+        String userId = request.query.replaceAll(".*external_user_id=([^&]*).*", "$1");
+        assertSame(client.getShards().get(baseUrls.get(shard)), client.getShardFor(userId));
+      }
+    }
+    assertEquals(60, total);
+  }
+
+  @Test
+  public void testShouldSplitBatchesByShard() throws Exception {
+    List<Event> events = new ArrayList<Event>();
+    for(int i = 0; i < 50; i++) {
+      events.add(new Event("click", "user" + (i % 20), new HashMap<String, String>()));
+    }
+    client.batchTrackEvents(events);
+    int batches = 0;
+    for(int shard = 0; shard < NUMBER_OF_SHARDS; shard++) {
+      EventHubClient shardClient = client.getShards().get(baseUrls.get(shard));
+      int expected = 0;
+      for(Event event : events) {
+        if(client.getShardFor(event.getExternalUserId()) == shardClient)
+          expected++;
+      }
+      List<StubEventHubServer.RecordedRequest> requests = servers.get(shard).getRequests();
+      batches += requests.size();
+      if(expected > 0)
+        assertEquals(expected, countOccurrences(new String(requests.get(0).body, "UTF-8"), "event_type"));
+    }
+    assertTrue(batches > 1 && batches <= NUMBER_OF_SHARDS);
+  }
+
+  @Test
+  public void testShouldSendEveryBatchWhenOneShardFails() throws Exception {
+    servers.get(0).setResponse("/events/batch_track", 500, "down");
+    List<Event> events = new ArrayList<Event>();
+    for(int i = 0; i < 50; i++) {
+      events.add(new Event("click", "user" + i, new HashMap<String, String>()));
+    }
+    try {
+      client.batchTrackEvents(events);
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(UnexpectedResponseCodeException e) {
+      assertEquals(500, e.getActualCode());
+    }
+    for(StubEventHubServer server : servers) {
+      assertEquals(1, server.getRequests().size());
+    }
+  }
+
+  @Test
+  public void testShouldRouteTheSameWhateverTheOrderOfUrls() throws Exception {
+    List<String> reversed = new ArrayList<String>(baseUrls);
+    Collections.reverse(reversed);
+    ShardedEventHubClient other = ShardedEventHubClient.createDefaultClient(reversed, CONNECTION_TIMEOUT, READ_TIMEOUT);
+    try {
+      for(int i = 0; i < 100; i++) {
+        assertEquals(urlOf(client, client.getShardFor("user" + i)), urlOf(other, other.getShardFor("user" + i)));
+      }
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void testAddingANodeShouldOnlyMoveItsShareOfUsers() throws Exception {
+    Map<String, String> nodes = new LinkedHashMap<String, String>();
+    for(int i = 0; i < 4; i++) {
+      nodes.put("http://shard" + i + ":8080", "http://shard" + i + ":8080");
+    }
+    ConsistentHashRing<String> before = new ConsistentHashRing<String>(nodes, ShardingConfig.DEFAULT_POINTS_PER_SHARD);
+    nodes.put("http://shard4:8080", "http://shard4:8080");
+    ConsistentHashRing<String> after = new ConsistentHashRing<String>(nodes, ShardingConfig.DEFAULT_POINTS_PER_SHARD);
+
+    int users = 20000;
+    int moved = 0;
+    Map<String, Integer> counts = new HashMap<String, Integer>();
+    for(int i = 0; i < users; i++) {
+      String owner = after.nodeFor("user" + i);
+      if(!owner.equals(before.nodeFor("user" + i))) {
+        moved++;
+        assertEquals("Users only move to the new node", "http://shard4:8080", owner);
+      }
+      Integer count = counts.get(owner);
+      counts.put(owner, count == null ? 1 : count + 1);
+    }
+    // A fifth of the users should move, give or take the unevenness of the ring
+    assertTrue("Moved " + moved, moved > users / 8 && moved < users * 3 / 10);
+    for(int count : counts.values()) {
+      assertTrue("Shard has " + count, count > users / 5 * 0.7 && count < users / 5 * 1.3);
+    }
+  }
+
+  @Test
+  public void testAddShardShouldRouteItsUsersToIt() throws Exception {
+    StubEventHubServer added = new StubEventHubServer();
+    added.setResponse("/events/track", 200, "");
+    try {
+      client.addShard(added.getBaseUrl());
+      int routed = 0;
+      for(int i = 0; i < 40; i++) {
+        String userId = "user" + i;
+        client.trackEvent(new Event("click", userId, new HashMap<String, String>()));
+        if(client.getShardFor(userId) == client.getShards().get(added.getBaseUrl()))
+          routed++;
+      }
+      assertEquals(NUMBER_OF_SHARDS + 1, client.getShards().size());
+      assertEquals(routed, added.getRequests().size());
+    } finally {
+      added.stop();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectRepeatedShards() throws Exception {
+    ShardedEventHubClient.createDefaultClient(Arrays.asList("http://a", "http://a"), CONNECTION_TIMEOUT, READ_TIMEOUT);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldRejectEventWithoutUser() throws Exception {
+    client.batchTrackEvents(Collections.singletonList(new Event("click", null, new HashMap<String, String>())));
+  }
+
+  // Utils
+
+  private static String urlOf(final ShardedEventHubClient client, final EventHubClient shard) {
+    for(Map.Entry<String, EventHubClient> entry : client.getShards().entrySet()) {
+      if(entry.getValue() == shard)
+        return entry.getKey();
+    }
+    return null;
+  }
+
+  private static int countOccurrences(final String text, final String part) {
+    int count = 0;
+    for(int index = text.indexOf(part); index >= 0; index = text.indexOf(part, index + 1)) {
+      count++;
+    }
+    return count;
+  }
+}
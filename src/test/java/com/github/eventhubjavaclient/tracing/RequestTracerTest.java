@@ -0,0 +1,122 @@
+package com.github.eventhubjavaclient.tracing;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.exception.BadlyFormedResponseBodyException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.github.eventhubjavaclient.transport.PooledHttpTransport;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RequestTracerTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final DateTime START_DATE = new DateTime(2014, 11, 1, 0, 0);
+  private static final DateTime END_DATE = new DateTime(2014, 11, 22, 0, 0);
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private InMemoryRequestTracer tracer;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT, new DefaultClientConfig(),
+        new PooledHttpTransport());
+    tracer = new InMemoryRequestTracer();
+    client.setTracer(tracer);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldTimeEveryPhaseOfAFunnelCall() throws Exception {
+    server.setResponse("/events/funnel", 200, "[10,5]", 50);
+    assertArrayEquals(new int[] {10, 5}, client.retrieveEventFunnelCounts(START_DATE, END_DATE, new String[] {"signup"}, 7));
+
+    List<InMemoryRequestTracer.RecordedSpan> spans = tracer.getSpans();
+    assertEquals(1, spans.size());
+    InMemoryRequestTracer.RecordedSpan span = spans.get(0);
+    assertEquals("/events/funnel", span.getPath());
+    assertEquals(5, span.getPhases().size());
+    assertTrue(span.getPhaseNanos(TracePhase.FIRST_BYTE) >= TimeUnit.MILLISECONDS.toNanos(50));
+    long sum = 0;
+    for(TracePhase phase : span.getPhases()) {
+      sum += span.getPhaseNanos(phase);
+    }
+    assertTrue(sum <= span.getTotalNanos());
+    assertNull(span.getError());
+  }
+
+  @Test
+  public void testShouldOnlyMarkConnectForNewConnections() throws Exception {
+    server.setResponse("/events/types", 200, "[]");
+    client.getEventTypes();
+    client.getEventTypes();
+    List<InMemoryRequestTracer.RecordedSpan> spans = tracer.getSpans("/events/types");
+    assertTrue(spans.get(0).getPhaseNanos(TracePhase.CONNECT) >= 0);
+    assertEquals(-1, spans.get(1).getPhaseNanos(TracePhase.CONNECT));
+    assertEquals(-1, spans.get(1).getPhaseNanos(TracePhase.ENCODE));
+    assertTrue(spans.get(1).getPhaseNanos(TracePhase.BODY_READ) >= 0);
+  }
+
+  @Test
+  public void testShouldRecordFailures() throws Exception {
+    server.setResponse("/events/types", 503, "down");
+    server.setResponse("/users/find", 200, "not json");
+    try {
+      client.getEventTypes();
+      fail("Expected an UnexpectedResponseCodeException");
+    } catch(UnexpectedResponseCodeException e) {
+      assertSame(e, tracer.getSpans("/events/types").get(0).getError());
+    }
+    try {
+      client.getUsers(Collections.singletonMap("name", "tom"));
+      fail("Expected a BadlyFormedResponseBodyException");
+    } catch(BadlyFormedResponseBodyException e) {
+      assertSame(e, tracer.getSpans("/users/find").get(0).getError());
+    }
+    assertSame(NoOpRequestTracer.SPAN, TraceContext.current());
+  }
+
+  @Test
+  public void testShouldTraceEachPartOfAParallelCohortCall() throws Exception {
+    server.setResponse("/events/cohort", 200, "[[1,2]]");
+    client.retrieveEventCohortTableInParallel(START_DATE, START_DATE.plusDays(3), "signup", "submit", 1, 1,
+        Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(), 1, 2);
+    assertEquals(4, tracer.getSpans("/events/cohort").size());
+  }
+
+  @Test
+  public void testNoOpTracerShouldHandOutOneSharedSpan() throws Exception {
+    client.setTracer(NoOpRequestTracer.INSTANCE);
+    server.setResponse("/events/types", 200, "[]");
+    client.getEventTypes();
+    assertSame(NoOpRequestTracer.INSTANCE.startSpan("/a"), NoOpRequestTracer.INSTANCE.startSpan("/b"));
+    assertEquals(0, tracer.getSpans().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectNullTracer() throws Exception {
+    client.setTracer(null);
+  }
+}
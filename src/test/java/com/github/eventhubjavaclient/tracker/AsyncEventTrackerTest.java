@@ -0,0 +1,292 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.EventQueueFullException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import mockit.Delegate;
+import mockit.Mocked;
+import mockit.NonStrictExpectations;
+import mockit.integration.junit4.JMockit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JMockit.class)
+public class AsyncEventTrackerTest {
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  @Mocked EventHubClient client;
+
+  private final List<List<Event>> sentBatches = Collections.synchronizedList(new ArrayList<List<Event>>());
+  private final CountDownLatch releaseSends = new CountDownLatch(1);
+  private final AtomicInteger sendsInFlight = new AtomicInteger();
+  private final AtomicInteger maxSendsInFlight = new AtomicInteger();
+  private volatile long sendDelayMillis;
+  private AsyncEventTracker tracker;
+
+  @After
+  public void tearDown() throws Exception {
+    releaseSends.countDown();
+    if(tracker != null)
+      tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testShouldSendFullBatchesThroughBatchTrackEvents() throws Exception {
+    mockBatchTrackEvents(false);
+    releaseSends.countDown();
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setMaxBatchSize(5).setLingerMillis(60000));
+    for(int i = 0; i < 10; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(2, sentBatches.size());
+    assertEquals(5, sentBatches.get(0).size());
+    assertEquals(5, sentBatches.get(1).size());
+    assertEquals(10, tracker.getSentEventCount());
+  }
+
+  @Test
+  public void testShouldSendPartialBatchOnceLingerTimeHasPassed() throws Exception {
+    mockBatchTrackEvents(false);
+    releaseSends.countDown();
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setMaxBatchSize(100).setLingerMillis(10));
+    tracker.track(createEvent(0));
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS);
+    while(tracker.getSentEventCount() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(1, tracker.getSentEventCount());
+  }
+
+  @Test
+  public void testShouldCountFailedEventsWhenBatchIsRejected() throws Exception {
+    mockBatchTrackEvents(true);
+    releaseSends.countDown();
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setMaxBatchSize(3).setLingerMillis(60000));
+    for(int i = 0; i < 3; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(3, tracker.getFailedEventCount());
+    assertEquals(0, tracker.getSentEventCount());
+  }
+
+  @Test
+  public void testShouldDropNewestEventWhenQueueIsFull() throws Exception {
+    tracker = createStalledTracker(BackpressurePolicy.DROP_NEWEST);
+    assertTrue(tracker.track(createEvent(1)));
+    assertTrue(tracker.track(createEvent(2)));
+    assertFalse(tracker.track(createEvent(3)));
+    assertEquals(1, tracker.getDroppedEventCount());
+    releaseSends.countDown();
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(createEvent(2), sentBatches.get(sentBatches.size() - 1).get(1));
+  }
+
+  @Test
+  public void testShouldDropOldestEventWhenQueueIsFull() throws Exception {
+    tracker = createStalledTracker(BackpressurePolicy.DROP_OLDEST);
+    assertTrue(tracker.track(createEvent(1)));
+    assertTrue(tracker.track(createEvent(2)));
+    assertTrue(tracker.track(createEvent(3)));
+    assertEquals(1, tracker.getDroppedEventCount());
+    releaseSends.countDown();
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    List<Event> lastBatch = sentBatches.get(sentBatches.size() - 1);
+    assertEquals(createEvent(2), lastBatch.get(0));
+    assertEquals(createEvent(3), lastBatch.get(1));
+  }
+
+  @Test
+  public void testShouldStopBlockingForRoomOnceShutDown() throws Exception {
+    tracker = createStalledTracker(BackpressurePolicy.BLOCK);
+    tracker.track(createEvent(1));
+    tracker.track(createEvent(2));
+    final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+    Thread blocked = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          tracker.track(createEvent(3));
+        } catch(Exception e) {
+          failure.set(e);
+        }
+      }
+    });
+    blocked.start();
+    Thread.sleep(50);
+    assertFalse(tracker.shutdown(0, TimeUnit.MILLISECONDS));
+    blocked.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+    assertFalse(blocked.isAlive());
+    assertTrue(failure.get() instanceof IllegalInputException);
+  }
+
+  @Test
+  public void testShouldSendEveryEventQueuedWhileShuttingDown() throws Exception {
+    mockBatchTrackEvents(false);
+    releaseSends.countDown();
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setNumberOfWorkers(2)
+        .setQueueCapacity(4).setMaxBatchSize(2).setLingerMillis(0).setBackpressurePolicy(BackpressurePolicy.BLOCK));
+    final AtomicInteger queued = new AtomicInteger();
+    List<Thread> trackers = new ArrayList<Thread>();
+    for(int i = 0; i < 4; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override public void run() {
+          try {
+            for(int j = 0; ; j++) {
+              if(tracker.track(createEvent(j)))
+                queued.incrementAndGet();
+            }
+          } catch(Exception e) {
+            // Shut down
+          }
+        }
+      });
+      thread.start();
+      trackers.add(thread);
+    }
+    Thread.sleep(50);
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    for(Thread thread : trackers) {
+      thread.join();
+    }
+    assertEquals(0, tracker.getQueueSize());
+    assertEquals(queued.get(), tracker.getSentEventCount());
+  }
+
+  @Test(expected = EventQueueFullException.class)
+  public void testShouldThrowEventQueueFullExceptionWhenFailingFast() throws Exception {
+    tracker = createStalledTracker(BackpressurePolicy.FAIL_FAST);
+    tracker.track(createEvent(1));
+    tracker.track(createEvent(2));
+    tracker.track(createEvent(3));
+  }
+
+  @Test
+  public void testShouldKeepEachUsersEventsInOrderWhenPartitionedByUser() throws Exception {
+    mockBatchTrackEvents(false);
+    releaseSends.countDown();
+    sendDelayMillis = 5;
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setNumberOfWorkers(4)
+        .setPartitionByUser(true).setMaxBatchSize(3).setLingerMillis(0));
+    for(int i = 0; i < 200; i++) {
+      Map<String, String> properties = new HashMap<String, String>();
+      properties.put("sequence", Integer.toString(i));
+      tracker.track(new Event("click", "user" + (i % 10), properties));
+    }
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(200, tracker.getSentEventCount());
+    assertTrue(maxSendsInFlight.get() > 1);
+    Map<String, Integer> lastSequences = new HashMap<String, Integer>();
+    for(List<Event> batch : sentBatches) {
+      for(Event event : batch) {
+        int sequence = Integer.parseInt(event.getProperty("sequence"));
+        Integer last = lastSequences.put(event.getExternalUserId(), sequence);
+        assertTrue(last == null || last < sequence);
+      }
+    }
+    assertEquals(10, lastSequences.size());
+  }
+
+  @Test
+  public void testShouldSplitQueueCapacityBetweenLanes() throws Exception {
+    mockBatchTrackEvents(false);
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setNumberOfWorkers(2)
+        .setPartitionByUser(true).setQueueCapacity(4).setMaxBatchSize(1).setLingerMillis(0));
+    // Every event of one user goes to one lane, which holds half the capacity beyond the event its worker is sending
+    int queued = 0;
+    for(int i = 0; i < 5; i++) {
+      if(tracker.track(createEvent(7)))
+        queued++;
+    }
+    assertTrue(queued <= 3);
+    assertEquals(5 - queued, tracker.getDroppedEventCount());
+  }
+
+  @Test
+  public void testShouldNotExceedQueueCapacityWhenSplittingItUnevenly() throws Exception {
+    mockBatchTrackEvents(false);
+    tracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig().setNumberOfWorkers(2)
+        .setPartitionByUser(true).setQueueCapacity(3).setMaxBatchSize(1).setLingerMillis(0));
+    // Both workers stall on their first event, then both lanes fill up
+    for(int i = 0; i < 100; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertEquals(3, tracker.getQueueSize());
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionForNullEvent() throws Exception {
+    tracker = AsyncEventTracker.createDefaultTracker(client);
+    tracker.track(null);
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionAfterShutdown() throws Exception {
+    tracker = AsyncEventTracker.createDefaultTracker(client);
+    tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    tracker.track(createEvent(0));
+  }
+
+  // Util
+
+  /**
+   * Creates a tracker with a queue of two whose single worker is stuck sending a first event until releaseSends is counted down.
+   */
+  private AsyncEventTracker createStalledTracker(final BackpressurePolicy policy) throws Exception {
+    mockBatchTrackEvents(false);
+    AsyncEventTracker stalledTracker = AsyncEventTracker.createCustomTracker(client, new AsyncEventTrackerConfig()
+        .setQueueCapacity(2).setMaxBatchSize(2).setLingerMillis(0).setBackpressurePolicy(policy));
+    stalledTracker.track(createEvent(0));
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS);
+    while(stalledTracker.getQueueSize() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    return stalledTracker;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void mockBatchTrackEvents(final boolean fail) throws Exception {
+    new NonStrictExpectations() {{
+      client.batchTrackEvents((List<Event>) any);
+      result = new Delegate<Void>() {
+        void batchTrackEvents(List<Event> events) throws Exception {
+          releaseSends.await();
+          int inFlight = sendsInFlight.incrementAndGet();
+          while(inFlight > maxSendsInFlight.get() && !maxSendsInFlight.compareAndSet(maxSendsInFlight.get(), inFlight)) {
+          }
+          try {
+            if(sendDelayMillis > 0)
+              Thread.sleep(sendDelayMillis);
+            if(fail)
+              throw new UnexpectedResponseCodeException(new int[] {200}, 500);
+            sentBatches.add(new ArrayList<Event>(events));
+          } finally {
+            sendsInFlight.decrementAndGet();
+          }
+        }
+      };
+    }};
+  }
+
+  private static Event createEvent(final int number) {
+    return new Event("click", "user" + number, new HashMap<String, String>());
+  }
+}
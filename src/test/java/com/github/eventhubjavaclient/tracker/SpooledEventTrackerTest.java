@@ -0,0 +1,364 @@
+package com.github.eventhubjavaclient.tracker;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.EventQueueFullException;
+import com.github.eventhubjavaclient.exception.IllegalInputException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpooledEventTrackerTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+  private static final int SEGMENT_SIZE_BYTES = 1024;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+  private File directory;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    client = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+    directory = new File(folder.getRoot(), "spool");
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldKeepEventsThroughOutageAndSendThemOnceServerRecovers() throws Exception {
+    server.setResponse("/events/batch_track", 500, "down");
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    for(int i = 0; i < 20; i++) {
+      tracker.track(createEvent(i));
+    }
+    waitFor(new Condition() {
+      @Override public boolean isMet(final SpooledEventTracker tracker) {
+        return tracker.getFailedBatchCount() >= 2;
+      }
+    }, tracker);
+    assertEquals(20, tracker.getSpooledEventCount());
+
+    server.setResponse("/events/batch_track", 200, "");
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(20, tracker.getSentEventCount());
+    assertEquals(0, tracker.getSpooledEventCount());
+  }
+
+  @Test
+  public void testShouldDropOnlyEventRejectedAsMalformedAndKeepSending() throws Exception {
+    final Set<String> badUsers = new HashSet<String>(Arrays.asList("user3", "user12"));
+    final List<String> receivedUsers = new CopyOnWriteArrayList<String>();
+    server.setResponder("/events/batch_track", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        List<String> users = usersIn(request);
+        for(String user : users) {
+          if(badUsers.contains(user))
+            throw new StubEventHubServer.StatusException(user.equals("user3") ? 400 : 422);
+        }
+        receivedUsers.addAll(users);
+        return "";
+      }
+    });
+    final List<Event> dropped = new CopyOnWriteArrayList<Event>();
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig().setListener(
+        new TrackerListener() {
+          @Override public void onBatchSent(final List<Event> events) {
+          }
+
+          @Override public void onBatchFailed(final List<Event> events, final Exception cause) {
+          }
+
+          @Override public void onEventDropped(final Event event) {
+            dropped.add(event);
+          }
+        }));
+    for(int i = 0; i < 20; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(createEvent(3), createEvent(12)), dropped);
+    assertEquals(2, tracker.getRejectedEventCount());
+    assertEquals(18, tracker.getSentEventCount());
+    assertEquals(18, receivedUsers.size());
+    assertEquals(18, new HashSet<String>(receivedUsers).size());
+  }
+
+  @Test
+  public void testShouldKeepRetryingBatchWhileNotFound() throws Exception {
+    server.setResponse("/events/batch_track", 404, "not found");
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    for(int i = 0; i < 5; i++) {
+      tracker.track(createEvent(i));
+    }
+    waitFor(new Condition() {
+      @Override public boolean isMet(final SpooledEventTracker tracker) {
+        return tracker.getFailedBatchCount() >= 3;
+      }
+    }, tracker);
+    assertEquals(5, tracker.getSpooledEventCount());
+    assertEquals(0, tracker.getRejectedEventCount());
+
+    server.setResponse("/events/batch_track", 200, "");
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(5, tracker.getSentEventCount());
+  }
+
+  @Test
+  public void testShouldSendSmallerBatchesWhenPayloadTooLarge() throws Exception {
+    final List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+    final AtomicInteger tooLargeCount = new AtomicInteger();
+    server.setResponder("/events/batch_track", new StubEventHubServer.Responder() {
+      @Override public String respond(final StubEventHubServer.RecordedRequest request) throws Exception {
+        int size = usersIn(request).size();
+        if(size > 3) {
+          tooLargeCount.incrementAndGet();
+          throw new StubEventHubServer.StatusException(413);
+        }
+        batchSizes.add(size);
+        return "";
+      }
+    });
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    for(int i = 0; i < 20; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertTrue(tracker.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(20, tracker.getSentEventCount());
+    assertEquals(0, tracker.getRejectedEventCount());
+    // Halving at most twice takes any batch of up to 10 events within the limit, and later batches keep to it
+    assertTrue(tooLargeCount.get() <= 2);
+    assertTrue(Collections.max(batchSizes) <= 3);
+  }
+
+  @Test
+  public void testShouldReplayEventsLeftByEarlierTracker() throws Exception {
+    server.setResponse("/events/batch_track", 500, "down");
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    for(int i = 0; i < 5; i++) {
+      tracker.track(createEvent(i));
+    }
+    assertFalse(tracker.shutdown(100, TimeUnit.MILLISECONDS));
+
+    server.setResponse("/events/batch_track", 200, "");
+    SpooledEventTracker restarted = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    assertEquals(5, restarted.getSpooledEventCount());
+    assertTrue(restarted.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertEquals(5, restarted.getSentEventCount());
+  }
+
+  @Test(expected = EventQueueFullException.class)
+  public void testShouldThrowEventQueueFullExceptionWhenSpoolIsFull() throws Exception {
+    server.setResponse("/events/batch_track", 500, "down");
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig().setMaxSpoolBytes(500));
+    try {
+      for(int i = 0; i < 100; i++) {
+        tracker.track(createEvent(i));
+      }
+    } finally {
+      tracker.shutdown(0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Test(expected = IllegalInputException.class)
+  public void testShouldThrowIllegalInputExceptionForNullEvent() throws Exception {
+    SpooledEventTracker tracker = SpooledEventTracker.createCustomTracker(client, directory, fastConfig());
+    try {
+      tracker.track(null);
+    } finally {
+      tracker.shutdown(0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Test
+  public void testSpoolShouldReadSameEventsUntilAcknowledged() throws Exception {
+    EventSpool spool = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    for(int i = 0; i < 3; i++) {
+      spool.append(createEvent(i));
+    }
+    EventSpool.Batch first = spool.read(2);
+    assertEquals(2, first.getEvents().size());
+    assertEquals(createEvent(0), first.getEvents().get(0));
+    assertEquals(createEvent(0), spool.read(2).getEvents().get(0));
+
+    spool.acknowledge(first);
+    EventSpool.Batch rest = spool.read(2);
+    assertEquals(1, rest.getEvents().size());
+    assertEquals(createEvent(2), rest.getEvents().get(0));
+    spool.close();
+  }
+
+  @Test
+  public void testSpoolShouldRollSegmentsAndDeleteThemOnceAcknowledged() throws Exception {
+    EventSpool spool = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    for(int i = 0; i < 100; i++) {
+      spool.append(createEvent(i));
+    }
+    assertTrue(spool.getSegmentCount() > 2);
+    EventSpool.Batch batch = spool.read(1000);
+    assertEquals(100, batch.getEvents().size());
+    assertEquals(createEvent(99), batch.getEvents().get(99));
+    spool.acknowledge(batch);
+    assertEquals(1, spool.getSegmentCount());
+    assertEquals(0, spool.getPendingEventCount());
+    assertTrue(spool.read(1000).isEmpty());
+    spool.close();
+  }
+
+  @Test
+  public void testSpoolShouldRecoverUnacknowledgedEventsAfterReopening() throws Exception {
+    EventSpool spool = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    for(int i = 0; i < 30; i++) {
+      spool.append(createEvent(i));
+    }
+    spool.acknowledge(spool.read(10));
+    spool.close();
+
+    EventSpool reopened = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    assertEquals(20, reopened.getPendingEventCount());
+    reopened.append(createEvent(30));
+    EventSpool.Batch batch = reopened.read(1000);
+    assertEquals(21, batch.getEvents().size());
+    assertEquals(createEvent(10), batch.getEvents().get(0));
+    assertEquals(createEvent(30), batch.getEvents().get(20));
+    reopened.close();
+  }
+
+  @Test
+  public void testSpoolShouldIgnoreTornRecordAtEndOfSegment() throws Exception {
+    EventSpool spool = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    spool.append(createEvent(0));
+    spool.close();
+    File segment = new File(directory, String.format("%s%020d%s", EventSpool.SEGMENT_PREFIX, 0, EventSpool.SEGMENT_SUFFIX));
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    // A length whose payload and checksum never made it to disk
+    file.seek(8 + file.readInt());
+    file.writeInt(40);
+    file.close();
+
+    EventSpool reopened = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    assertEquals(1, reopened.getPendingEventCount());
+    assertEquals(createEvent(0), reopened.read(10).getEvents().get(0));
+    reopened.close();
+  }
+
+  @Test
+  public void testSpoolShouldNotCreateSegmentsWhileFull() throws Exception {
+    EventSpool spool = new EventSpool(directory, SEGMENT_SIZE_BYTES, 200, false);
+    int appended = 0;
+    try {
+      while(true) {
+        spool.append(createEvent(appended));
+        appended++;
+      }
+    } catch(EventQueueFullException e) {
+      // Full
+    }
+    int segmentFiles = directory.list().length;
+    for(int i = 0; i < 40; i++) {
+      try {
+        spool.append(createEvent(appended + i));
+      } catch(EventQueueFullException e) {
+        // Still full
+      }
+    }
+    assertEquals(segmentFiles, directory.list().length);
+    assertEquals(1, spool.getSegmentCount());
+
+    // The refused events left nothing behind in the segment's dictionary
+    spool.acknowledge(spool.read(1));
+    spool.append(createEvent(100));
+    spool.close();
+    EventSpool reopened = new EventSpool(directory, SEGMENT_SIZE_BYTES, Long.MAX_VALUE, false);
+    EventSpool.Batch batch = reopened.read(1000);
+    assertEquals(appended, batch.getEvents().size());
+    assertEquals(createEvent(100), batch.getEvents().get(appended - 1));
+    reopened.close();
+  }
+
+  @Test
+  public void testSpoolShouldSizeSegmentsForRecordsLargerThanThem() throws Exception {
+    EventSpool spool = new EventSpool(directory, 32, Long.MAX_VALUE, false);
+    for(int i = 0; i < 10; i++) {
+      spool.append(createEvent(i));
+    }
+    assertEquals(10, spool.getSegmentCount());
+    long pendingBytes = spool.getPendingBytes();
+    spool.close();
+
+    EventSpool reopened = new EventSpool(directory, 32, Long.MAX_VALUE, false);
+    assertEquals(pendingBytes, reopened.getPendingBytes());
+    EventSpool.Batch batch = reopened.read(1000);
+    assertEquals(10, batch.getEvents().size());
+    assertEquals(createEvent(9), batch.getEvents().get(9));
+    reopened.close();
+  }
+
+  private static SpooledEventTrackerConfig fastConfig() {
+    return new SpooledEventTrackerConfig().setSegmentSizeBytes(SEGMENT_SIZE_BYTES)
+                                          .setMaxBatchSize(10)
+                                          .setRetryBackoffMillis(10)
+                                          .setMaxRetryBackoffMillis(50)
+                                          .setMaxReplayBytesPerSecond(10 * 1024 * 1024);
+  }
+
+  private static Event createEvent(final int i) {
+    Map<String, String> properties = new HashMap<String, String>();
+    properties.put("index", Integer.toString(i));
+    return new Event("type", "user" + i, properties);
+  }
+
+  private static List<String> usersIn(final StubEventHubServer.RecordedRequest request) throws IOException {
+    JsonArray events = new JsonParser().parse(request.getFormFields().get("events")).getAsJsonArray();
+    List<String> users = new ArrayList<String>();
+    for(int i = 0; i < events.size(); i++) {
+      users.add(events.get(i).getAsJsonObject().get("external_user_id").getAsString());
+    }
+    return users;
+  }
+
+  private interface Condition {
+    boolean isMet(SpooledEventTracker tracker);
+  }
+
+  private static void waitFor(final Condition condition, final SpooledEventTracker tracker) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+    while(!condition.isMet(tracker)) {
+      assertTrue("Timed out waiting", System.nanoTime() < deadline);
+      Thread.sleep(10);
+    }
+  }
+}
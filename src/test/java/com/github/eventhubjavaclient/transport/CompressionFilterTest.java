@@ -0,0 +1,145 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.event.Event;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CompressionFilterTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+
+  private StubEventHubServer server;
+  private EventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+  }
+
+  @After
+  public void tearDown() {
+    if(client != null)
+      client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldGzipStreamedBatchBody() throws Exception {
+    client = createClient(new PooledHttpTransport(), new CompressionConfig());
+    List<Event> events = produceEvents(200);
+    client.batchTrackEvents(events);
+
+    EventHubClient plainClient = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+    plainClient.batchTrackEvents(events);
+    plainClient.close();
+
+    StubEventHubServer.RecordedRequest compressed = server.getRequests().get(0);
+    StubEventHubServer.RecordedRequest plain = server.getRequests().get(1);
+    assertEquals("gzip", compressed.getHeader("Content-Encoding"));
+    assertNull(plain.getHeader("Content-Encoding"));
+    // Compressed as it is sent, with no compressed copy buffered to find its length
+    assertEquals("chunked", compressed.getHeader("Transfer-Encoding"));
+    assertNull(compressed.getHeader("Content-Length"));
+    assertArrayEquals(plain.body, readFully(new GZIPInputStream(new ByteArrayInputStream(compressed.body))));
+    assertTrue(compressed.body.length * 5 < plain.body.length);
+  }
+
+  @Test
+  public void testShouldDeflateWithUrlConnectionTransport() throws Exception {
+    client = createClient(new UrlConnectionTransport(),
+        new CompressionConfig().setRequestEncoding(ContentEncoding.DEFLATE).setCompressionLevel(9));
+    client.batchTrackEvents(produceEvents(50));
+    StubEventHubServer.RecordedRequest request = server.getRequests().get(0);
+    assertEquals("deflate", request.getHeader("Content-Encoding"));
+    String body = new String(readFully(new InflaterInputStream(new ByteArrayInputStream(request.body))), "UTF-8");
+    assertTrue(body.startsWith("events="));
+  }
+
+  @Test
+  public void testShouldLeaveSmallBodiesUncompressed() throws Exception {
+    client = createClient(new PooledHttpTransport(), new CompressionConfig().setMinRequestBytes(1024));
+    Map<String, String> filters = new HashMap<String, String>();
+    filters.put("plan", "free");
+    client.getUsers(filters);
+    assertNull(server.getRequests().get(0).getHeader("Content-Encoding"));
+  }
+
+  @Test
+  public void testShouldCompressFormBodiesOverThreshold() throws Exception {
+    client = createClient(new PooledHttpTransport(), new CompressionConfig().setMinRequestBytes(10));
+    Map<String, String> filters = new HashMap<String, String>();
+    filters.put("plan", "free");
+    client.getUsers(filters);
+    StubEventHubServer.RecordedRequest request = server.getRequests().get(0);
+    assertEquals("gzip", request.getHeader("Content-Encoding"));
+    assertEquals("ufk%5B%5D=plan&ufv%5B%5D=free",
+        new String(readFully(new GZIPInputStream(new ByteArrayInputStream(request.body))), "UTF-8"));
+  }
+
+  @Test
+  public void testShouldDecompressResponsesWithEitherTransport() throws Exception {
+    server.setCompressResponses(true);
+    server.setResponse("/events/types", 200, "[\"click\",\"signup\"]");
+    for(EventHubTransport transport : new EventHubTransport[] {new PooledHttpTransport(), new UrlConnectionTransport()}) {
+      EventHubClient compressingClient = createClient(transport, new CompressionConfig());
+      assertArrayEquals(new String[] {"click", "signup"}, compressingClient.getEventTypes());
+      compressingClient.close();
+    }
+    for(StubEventHubServer.RecordedRequest request : server.getRequests()) {
+      assertTrue(request.getHeader("Accept-Encoding").contains("gzip"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldRejectCompressionLevelAboveNine() throws Exception {
+    new CompressionConfig().setCompressionLevel(10);
+  }
+
+  // Utils
+
+  private EventHubClient createClient(final EventHubTransport transport, final CompressionConfig compressionConfig) {
+    return EventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT, new DefaultClientConfig(),
+        transport, compressionConfig);
+  }
+
+  private static List<Event> produceEvents(final int count) {
+    List<Event> events = new ArrayList<Event>();
+    for(int i = 0; i < count; i++) {
+      Map<String, String> properties = new HashMap<String, String>();
+      properties.put("experiment", "signup_v1");
+      events.add(new Event("signup", "user" + i, properties));
+    }
+    return events;
+  }
+
+  private static byte[] readFully(final InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,119 @@
+package com.github.eventhubjavaclient.transport;
+
+import com.github.eventhubjavaclient.EventHubClient;
+import com.github.eventhubjavaclient.StubEventHubServer;
+import com.github.eventhubjavaclient.event.Event;
+import com.github.eventhubjavaclient.exception.UnexpectedResponseCodeException;
+import com.sun.jersey.api.client.config.ClientConfig;
+import com.sun.jersey.api.client.config.DefaultClientConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PooledHttpTransportTest {
+
+  private static final Integer CONNECTION_TIMEOUT = 60000;
+  private static final Integer READ_TIMEOUT = 60000;
+
+  private StubEventHubServer server;
+  private PooledHttpTransport transport;
+  private EventHubClient client;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new StubEventHubServer();
+    transport = new PooledHttpTransport(new PooledHttpTransportConfig().setMaxTotalConnections(4).setMaxConnectionsPerHost(2));
+    client = EventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT, new DefaultClientConfig(),
+        transport);
+  }
+
+  @After
+  public void tearDown() {
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void testShouldReuseOneConnectionForSequentialRequests() throws Exception {
+    server.setResponse("/events/types", 200, "[\"click\",\"signup\"]");
+    for(int i = 0; i < 20; i++) {
+      assertArrayEquals(new String[] {"click", "signup"}, client.getEventTypes());
+    }
+    Set<Integer> remotePorts = new HashSet<Integer>();
+    for(StubEventHubServer.RecordedRequest request : server.getRequests()) {
+      remotePorts.add(request.remotePort);
+    }
+    assertEquals("Expected every request to go over the same pooled connection", 1, remotePorts.size());
+  }
+
+  @Test
+  public void testShouldReturnConnectionToPoolAfterNon200Response() throws Exception {
+    server.setResponse("/varz", 500, "error");
+    for(int i = 0; i < 5; i++) {
+      try {
+        client.getServerStats();
+      } catch(UnexpectedResponseCodeException e) {
+        assertEquals(500, e.getActualCode());
+      }
+    }
+    assertEquals(0, transport.getPoolStats().getLeased());
+    assertTrue(transport.getPoolStats().getAvailable() <= 1);
+  }
+
+  @Test
+  public void testShouldSendLargeBatchBodyChunked() throws Exception {
+    server.setResponse("/events/batch_track", 200, "");
+    EventHubClient defaultClient = EventHubClient.createDefaultClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT);
+    List<Event> events = new ArrayList<Event>();
+    for(int i = 0; i < 5000; i++) {
+      events.add(new Event("signup", "user" + i, new HashMap<String, String>()));
+    }
+    defaultClient.batchTrackEvents(events);
+    defaultClient.close();
+    StubEventHubServer.RecordedRequest request = server.getRequests().get(0);
+    assertEquals("chunked", request.getHeader("Transfer-Encoding"));
+    assertNull(request.getHeader("Content-Length"));
+    assertTrue(request.body.length > 100000);
+  }
+
+  @Test
+  public void testShouldNotChangeConfigSharedWithOtherClients() throws Exception {
+    server.setResponse("/events/batch_track", 200, "");
+    DefaultClientConfig sharedConfig = new DefaultClientConfig();
+    EventHubClient pooledClient = EventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT, READ_TIMEOUT,
+        sharedConfig);
+    EventHubClient urlConnectionClient = EventHubClient.createCustomClient(server.getBaseUrl(), CONNECTION_TIMEOUT,
+        READ_TIMEOUT, sharedConfig, new UrlConnectionTransport());
+    List<Event> events = new ArrayList<Event>();
+    events.add(new Event("signup", "user", new HashMap<String, String>()));
+    urlConnectionClient.batchTrackEvents(events);
+    pooledClient.close();
+    urlConnectionClient.close();
+    assertFalse(sharedConfig.getProperties().containsKey(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE));
+    StubEventHubServer.RecordedRequest request = server.getRequests().get(0);
+    assertNull(request.getHeader("Transfer-Encoding"));
+    assertEquals(String.valueOf(request.body.length), request.getHeader("Content-Length"));
+  }
+
+  @Test
+  public void testShouldReportPoolLimits() throws Exception {
+    assertEquals(4, transport.getPoolStats().getMax());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testShouldThrowIllegalArgumentExceptionForZeroMaxConnections() throws Exception {
+    new PooledHttpTransportConfig().setMaxTotalConnections(0);
+  }
+}